@@ -0,0 +1,94 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares recording into, and reporting of, histograms with log-linear buckets and base-2
+ * exponential ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-server", "-XX:+UseG1GC" })
+public class ExponentialHistogramBenchmark {
+
+    @Benchmark
+    public void recordValue(BenchmarkState state) {
+        // Spans 6 orders of magnitude, forcing the exponential histogram to downscale
+        state.histogram.recordValue(Math.exp(ThreadLocalRandom.current().nextDouble(14)));
+    }
+
+    @Benchmark
+    public void recordAndReport(BenchmarkState state) {
+        for (int i = 0; i < 1000; ++i) {
+            state.histogram.recordValue(Math.exp(ThreadLocalRandom.current().nextDouble(14)));
+        }
+
+        state.scope.report(state.reporter);
+    }
+
+    @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+    public static class BenchmarkState {
+
+        @Param({ "logLinear", "base2Exponential" })
+        private String bucketsType;
+
+        private final StatsReporter reporter = new NullStatsReporter();
+
+        private ScopeImpl scope;
+
+        private Histogram histogram;
+
+        @Setup
+        public void setup() {
+            scope =
+                (ScopeImpl) new RootScopeBuilder()
+                    .reporter(reporter)
+                    .reportEvery(Duration.MAX_VALUE);
+
+            Buckets buckets =
+                "logLinear".equals(bucketsType)
+                    ? ValueBuckets.logLinear()
+                    : ValueBuckets.base2Exponential();
+
+            histogram = scope.histogram("histogram", buckets);
+        }
+
+        @TearDown
+        public void teardown() {
+            scope.close();
+        }
+
+    }
+}
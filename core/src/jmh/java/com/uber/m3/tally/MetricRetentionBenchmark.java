@@ -0,0 +1,97 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of retaining a single interval of many series, and of reading
+ * the whole retained range of a single series back.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-server", "-XX:+UseG1GC" })
+public class MetricRetentionBenchmark {
+    private static final long INTERVAL_MILLIS = 10_000;
+
+    @Benchmark
+    public void retainInterval(BenchmarkState state) {
+        state.reportInterval();
+    }
+
+    @Benchmark
+    public void readSeries(BenchmarkState state, Blackhole blackhole) {
+        state.retention.read("gauge0", null, Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> blackhole.consume(value));
+    }
+
+    @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+    public static class BenchmarkState {
+
+        @Param({ "100", "1000" })
+        private int seriesCount;
+
+        private String[] names;
+
+        private MetricRetention retention;
+
+        private long timestampMillis;
+
+        @Setup
+        public void setup() {
+            names = new String[seriesCount];
+
+            for (int i = 0; i < seriesCount; ++i) {
+                names[i] = "gauge" + i;
+            }
+
+            retention = new MetricRetention(new NullStatsReporter(), 64 * 1024 * 1024);
+            timestampMillis = System.currentTimeMillis();
+
+            // A day worth of intervals
+            for (int i = 0; i < 8_640; ++i) {
+                reportInterval();
+            }
+        }
+
+        void reportInterval() {
+            timestampMillis += INTERVAL_MILLIS;
+            retention.beginInterval(timestampMillis * Duration.NANOS_PER_MILLI);
+
+            for (int i = 0; i < names.length; ++i) {
+                retention.reportGauge(names[i], null, (timestampMillis / INTERVAL_MILLIS) % (i + 10));
+            }
+
+            retention.flush();
+        }
+
+    }
+}
@@ -0,0 +1,136 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures update throughput of a single counter, gauge, up/down counter and meter, both uncontended and
+ * contended by multiple threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-server", "-XX:+UseG1GC" })
+public class MetricUpdateBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public void counterIncSingleThreaded(BenchmarkState state) {
+        state.counter.inc(1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void counterIncMultiThreaded(BenchmarkState state) {
+        state.counter.inc(1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void gaugeUpdateSingleThreaded(BenchmarkState state) {
+        state.gauge.update(42.);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void gaugeUpdateMultiThreaded(BenchmarkState state) {
+        state.gauge.update(42.);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void upDownCounterAddSingleThreaded(BenchmarkState state) {
+        state.upDownCounter.add(1);
+        state.upDownCounter.add(-1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void upDownCounterAddMultiThreaded(BenchmarkState state) {
+        state.upDownCounter.add(1);
+        state.upDownCounter.add(-1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void meterMarkMultiThreaded(BenchmarkState state) {
+        state.meter.mark(1);
+    }
+
+    // Reading the rate, as done by admission control on every request
+    @Benchmark
+    @Threads(8)
+    public double meterRateMultiThreaded(BenchmarkState state) {
+        return state.meter.getOneMinuteRate();
+    }
+
+    // Tracking the total in an application's own atomic, as done before up/down counters
+    @Benchmark
+    @Threads(8)
+    public void atomicGaugeUpdateMultiThreaded(BenchmarkState state) {
+        state.gauge.update(state.inflight.incrementAndGet());
+        state.gauge.update(state.inflight.decrementAndGet());
+    }
+
+    @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+    public static class BenchmarkState {
+
+        private Scope scope;
+
+        private Counter counter;
+        private Gauge gauge;
+        private UpDownCounter upDownCounter;
+        private Meter meter;
+
+        private final AtomicLong inflight = new AtomicLong();
+
+        @Setup
+        public void setup() {
+            scope =
+                new RootScopeBuilder()
+                    .reporter(new NullStatsReporter())
+                    .reportEvery(Duration.MAX_VALUE);
+
+            counter = scope.counter("counter");
+            gauge = scope.gauge("gauge");
+            upDownCounter = scope.upDownCounter("up-down-counter");
+            meter = scope.meter("meter");
+        }
+
+        @TearDown
+        public void teardown() throws ScopeCloseException {
+            scope.close();
+        }
+
+    }
+}
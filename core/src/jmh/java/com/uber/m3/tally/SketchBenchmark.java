@@ -0,0 +1,95 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-server", "-XX:+UseG1GC" })
+public class SketchBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public void recordSingleThreaded(BenchmarkState state) {
+        state.sketch.recordValue(ThreadLocalRandom.current().nextDouble(1e6));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordMultiThreaded(BenchmarkState state) {
+        state.sketch.recordValue(ThreadLocalRandom.current().nextDouble(1e6));
+    }
+
+    @Benchmark
+    public void mergeAndSerialize(BenchmarkState state, Blackhole blackhole) {
+        DDSketch merged = new DDSketch(DDSketch.DEFAULT_RELATIVE_ACCURACY);
+        merged.merge(state.populated);
+        merged.merge(state.populated);
+
+        blackhole.consume(DDSketch.deserialize(merged.serialize()));
+    }
+
+    @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+    public static class BenchmarkState {
+
+        private Scope scope;
+
+        private Sketch sketch;
+
+        private DDSketch populated;
+
+        @Setup
+        public void setup() {
+            scope =
+                new RootScopeBuilder()
+                    .reporter(new NullStatsReporter())
+                    .reportEvery(Duration.ofSeconds(1));
+
+            sketch = scope.sketch("sketch");
+
+            populated = new DDSketch(DDSketch.DEFAULT_RELATIVE_ACCURACY);
+
+            for (int i = 0; i < 100_000; ++i) {
+                populated.add(Math.exp(ThreadLocalRandom.current().nextGaussian() * 3));
+            }
+        }
+
+        @TearDown
+        public void teardown() throws ScopeCloseException {
+            scope.close();
+        }
+
+    }
+}
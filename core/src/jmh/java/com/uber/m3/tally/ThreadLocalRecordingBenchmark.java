@@ -0,0 +1,111 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the default (atomic) and thread-local recording of a single shared counter
+ * and histogram, contended by an increasing number of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-server", "-XX:+UseG1GC" })
+public class ThreadLocalRecordingBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public void counterInc1Thread(BenchmarkState state) {
+        state.counter.inc(1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void counterInc4Threads(BenchmarkState state) {
+        state.counter.inc(1);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void counterInc16Threads(BenchmarkState state) {
+        state.counter.inc(1);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void counterInc64Threads(BenchmarkState state) {
+        state.counter.inc(1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void histogramRecord1Thread(BenchmarkState state) {
+        state.histogram.recordValue(42.);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void histogramRecord64Threads(BenchmarkState state) {
+        state.histogram.recordValue(42.);
+    }
+
+    @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+    public static class BenchmarkState {
+
+        @Param({ "false", "true" })
+        private boolean threadLocalRecording;
+
+        private Scope scope;
+
+        private Counter counter;
+        private Histogram histogram;
+
+        @Setup
+        public void setup() {
+            scope =
+                new RootScopeBuilder()
+                    .reporter(new NullStatsReporter())
+                    .threadLocalRecording(threadLocalRecording)
+                    .reportEvery(Duration.ofSeconds(1));
+
+            counter = scope.counter("counter");
+            histogram = scope.histogram("histogram", ValueBuckets.linear(0, 10, 10));
+        }
+
+        @TearDown
+        public void teardown() throws ScopeCloseException {
+            scope.close();
+        }
+
+    }
+}
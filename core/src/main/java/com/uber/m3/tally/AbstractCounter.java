@@ -0,0 +1,57 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.ImmutableMap;
+
+/**
+ * Common logic of the {@link Counter} implementations, independent of how the value is stored.
+ */
+abstract class AbstractCounter extends MetricBase implements Counter, Reportable {
+    /**
+     * NOTE: The counter is not added to the reporting queue, which is up to the caller once
+     *       the construction completes, so that it's never reported before being fully initialized
+     */
+    protected AbstractCounter(String fqn) {
+        super(fqn);
+    }
+
+    /**
+     * Returns the delta since the last call, resetting it.
+     */
+    abstract long value();
+
+    /**
+     * Returns the delta since the last call to {@link #value()}, without resetting it.
+     */
+    abstract long snapshot();
+
+    @Override
+    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        long delta = value();
+
+        if (delta == 0) {
+            return;
+        }
+
+        reporter.reportCounter(getQualifiedName(), tags, delta);
+    }
+}
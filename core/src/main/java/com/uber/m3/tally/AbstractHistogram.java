@@ -0,0 +1,196 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Common logic of the bucketed {@link Histogram} implementations, independent of how
+ * the recorded values are stored.
+ */
+abstract class AbstractHistogram extends MetricBase implements Histogram, StopwatchRecorder {
+    protected final Type type;
+
+    protected final ImmutableMap<String, String> tags;
+
+    protected final ImmutableBuckets specification;
+
+    // Each bucket value, serves as a boundary de-marking upper bound
+    // for the bucket to the left, and lower bound for the bucket to the right
+    protected final int bucketsCount;
+
+    protected AbstractHistogram(String fqn, ImmutableMap<String, String> tags, Buckets buckets) {
+        super(fqn);
+
+        this.type = buckets instanceof DurationBuckets ? Type.DURATION : Type.VALUE;
+        this.tags = tags;
+        this.specification = buckets;
+        this.bucketsCount = buckets.asValues().length + 1;
+    }
+
+    @Override
+    public void recordValue(double value) {
+        recordValue(value, 1);
+    }
+
+    @Override
+    public void recordDuration(Duration duration) {
+        recordDuration(duration, 1);
+    }
+
+    /**
+     * Records a value standing for the given number of samples, e.g. when sampled.
+     */
+    abstract void recordValue(double value, long samples);
+
+    /**
+     * Records a duration standing for the given number of samples, e.g. when sampled.
+     */
+    abstract void recordDuration(Duration duration, long samples);
+
+    /**
+     * Returns the count of the bucket with the given index, to be included into a {@link Snapshot}.
+     */
+    abstract long snapshotBucket(int index);
+
+    static int toBucketIndex(int binarySearchResult) {
+        // Buckets are defined in the following way:
+        //      - Each bucket is inclusive of its lower bound, and exclusive of the upper: [lower, upper)
+        //      - All buckets are defined by upper bounds: [2, 4, 8, 16, 32, ...]: therefore i
+        //      in this case [-inf, 2) will be the first bucket, [2, 4) -- the second and so on
+        //
+        // Given that our buckets are designated as [lower, upper), and
+        // that the binary search is performed over upper bounds, if binary
+        // search found the exact match we need to shift it by 1 to index appropriate bucket in the
+        // array of (bucket's) counters
+        if (binarySearchResult >= 0) {
+            return binarySearchResult + 1;
+        }
+
+        // Otherwise, binary search will return {@code (-(insertion point) - 1)} where
+        // "insertion point" designates first element that is _greater_ than the key, therefore
+        // we simply use this an index in the array of counters
+        //
+        // NOTE: {@code ~binarySearchResult} is equivalent to {@code -(binarySearchResult) - 1}
+        return ~binarySearchResult;
+    }
+
+    @Override
+    public Stopwatch start() {
+        return new Stopwatch(System.nanoTime(), this);
+    }
+
+    ImmutableMap<String, String> getTags() {
+        return tags;
+    }
+
+    private Duration getUpperBoundDurationForBucket(int bucketIndex) {
+        return bucketIndex < specification.getDurationUpperBounds().size() ? specification.getDurationUpperBounds().get(bucketIndex) : Duration.MAX_VALUE;
+    }
+
+    private Duration getLowerBoundDurationForBucket(int bucketIndex) {
+        return bucketIndex == 0 ? Duration.MIN_VALUE : specification.getDurationUpperBounds().get(bucketIndex - 1);
+    }
+
+    private double getUpperBoundValueForBucket(int bucketIndex) {
+        return bucketIndex < specification.getValueUpperBounds().size() ? specification.getValueUpperBounds().get(bucketIndex) : Double.MAX_VALUE;
+    }
+
+    private double getLowerBoundValueForBucket(int bucketIndex) {
+        return bucketIndex == 0 ? Double.MIN_VALUE : specification.getValueUpperBounds().get(bucketIndex - 1);
+    }
+
+    // NOTE: Only used in testing
+    Map<Double, Long> snapshotValues() {
+        if (type == Type.DURATION) {
+            return null;
+        }
+
+        Map<Double, Long> values = new HashMap<>(bucketsCount, 1);
+
+        for (int i = 0; i < bucketsCount; ++i) {
+            values.put(getUpperBoundValueForBucket(i), snapshotBucket(i));
+        }
+
+        return values;
+    }
+
+    Map<Duration, Long> snapshotDurations() {
+        if (type == Type.VALUE) {
+            return null;
+        }
+
+        Map<Duration, Long> durations = new HashMap<>(bucketsCount, 1);
+
+        for (int i = 0; i < bucketsCount; ++i) {
+            durations.put(getUpperBoundDurationForBucket(i), snapshotBucket(i));
+        }
+
+        return durations;
+    }
+
+    @Override
+    public void recordStopwatch(long stopwatchStart) {
+        recordDuration(Duration.between(stopwatchStart, System.nanoTime()));
+    }
+
+    /**
+     * Reports samples of a single bucket, unless there are none.
+     */
+    void reportBucket(int bucketIndex, long samples, ImmutableMap<String, String> tags, StatsReporter reporter) {
+        if (samples == 0) {
+            // Nothing to report
+            return;
+        }
+
+        switch (type) {
+            case VALUE:
+                reporter.reportHistogramValueSamples(
+                    getQualifiedName(),
+                    tags,
+                    (Buckets) specification,
+                    getLowerBoundValueForBucket(bucketIndex),
+                    getUpperBoundValueForBucket(bucketIndex),
+                    samples
+                );
+                break;
+            case DURATION:
+                reporter.reportHistogramDurationSamples(
+                    getQualifiedName(),
+                    tags,
+                    (Buckets) specification,
+                    getLowerBoundDurationForBucket(bucketIndex),
+                    getUpperBoundDurationForBucket(bucketIndex),
+                    samples
+                );
+                break;
+        }
+    }
+
+    enum Type {
+        VALUE,
+        DURATION
+    }
+}
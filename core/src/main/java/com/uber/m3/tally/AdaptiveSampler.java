@@ -0,0 +1,76 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Sampler} adjusting the number of events it records one in, on every report of the scope,
+ * to record about the target number of events per second over the last interval.
+ */
+final class AdaptiveSampler extends Sampler implements Reportable {
+    private final double targetEventsPerSecond;
+
+    private final LongAdder events = new LongAdder();
+
+    private volatile long interval = 1;
+
+    // NOTE: Only accessed when reported
+    private long lastAdjustedNanos = System.nanoTime();
+
+    /**
+     * NOTE: The sampler is not added to the reporting queue, which is up to the caller once
+     *       the construction completes, so that it's never adjusted before being fully initialized
+     */
+    AdaptiveSampler(double targetEventsPerSecond) {
+        this.targetEventsPerSecond = targetEventsPerSecond;
+    }
+
+    @Override
+    long sample() {
+        events.increment();
+
+        return sample(interval);
+    }
+
+    @Override
+    public synchronized void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        long now = System.nanoTime();
+        long elapsedNanos = Math.max(1, now - lastAdjustedNanos);
+
+        adjust(events.sumThenReset(), elapsedNanos);
+
+        lastAdjustedNanos = now;
+    }
+
+    void adjust(long eventsCount, long elapsedNanos) {
+        double eventsPerSecond = eventsCount * (double) Duration.NANOS_PER_SECOND / elapsedNanos;
+
+        interval = Math.max(1, (long) Math.ceil(eventsPerSecond / targetEventsPerSecond));
+    }
+
+    long getInterval() {
+        return interval;
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link Gauge} aggregating the values of an interval into a single word, updated with a CAS loop
+ * over the bits of the double value, and reset once reported. Intervals without updates are
+ * not reported.
+ */
+class AggregatingGaugeImpl extends AbstractGauge {
+    private static final AtomicLongFieldUpdater<AggregatingGaugeImpl> CURR_UPDATER =
+        AtomicLongFieldUpdater.newUpdater(AggregatingGaugeImpl.class, "curr");
+
+    // NaN with a payload never produced by Double.doubleToLongBits, which collapses NaNs
+    // to the canonical one, marking an interval without updates
+    private static final long EMPTY = 0x7ff8deadbeef0000L;
+
+    private final GaugeAggregation aggregation;
+
+    // Raw bits of the double value
+    private volatile long curr = EMPTY;
+
+    AggregatingGaugeImpl(String fqn, GaugeAggregation aggregation) {
+        super(fqn);
+
+        this.aggregation = aggregation;
+    }
+
+    @Override
+    public void update(double value) {
+        long prev = curr;
+
+        while (true) {
+            long next =
+                prev == EMPTY
+                    ? Double.doubleToLongBits(value)
+                    : Double.doubleToLongBits(aggregation.aggregate(Double.longBitsToDouble(prev), value));
+
+            // Spares the write when the value is not exceeding the current max (or min)
+            if (next == prev || CURR_UPDATER.compareAndSet(this, prev, next)) {
+                return;
+            }
+
+            prev = curr;
+        }
+    }
+
+    @Override
+    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        long bits = CURR_UPDATER.getAndSet(this, EMPTY);
+
+        if (bits != EMPTY) {
+            reporter.reportGauge(getQualifiedName(), tags, Double.longBitsToDouble(bits));
+        }
+    }
+
+    @Override
+    GaugeAggregation getAggregation() {
+        return aggregation;
+    }
+
+    @Override
+    double value() {
+        long bits = curr;
+
+        return bits == EMPTY ? 0 : Double.longBitsToDouble(bits);
+    }
+
+    @Override
+    boolean consumeUpdated() {
+        // NOTE: Reporting takes the value and resets it at once instead
+        return CURR_UPDATER.getAndSet(this, EMPTY) != EMPTY;
+    }
+}
@@ -0,0 +1,463 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import java.util.Arrays;
+
+/**
+ * Base-2 exponential histogram, as defined by OpenTelemetry and Prometheus native histograms: at
+ * scale {@code s}, bucket {@code i} covers {@code (base^i, base^(i + 1)]}, where
+ * {@code base = 2^(2^-s)}. The scale starts at the highest one and is automatically lowered
+ * (merging pairs of adjacent buckets) whenever the range of the recorded values no longer fits
+ * into the maximum number of buckets, trading resolution for range.
+ *
+ * Bucket counts are kept in circular primitive arrays indexed by the offset from the lowest
+ * bucket index recorded so far.
+ *
+ * NOTE: This class is not thread-safe. Concurrent recording is handled by the {@link Histogram}s
+ *       created for {@link ValueBuckets#base2Exponential()}, which report a
+ *       {@link Base2ExponentialHistogram} of every interval.
+ */
+public final class Base2ExponentialHistogram {
+    public static final int DEFAULT_MAX_SIZE = 160;
+
+    public static final int MAX_SCALE = 20;
+    public static final int MIN_SCALE = -10;
+
+    private static final long SIGNIFICAND_MASK = 0xFFFFFFFFFFFFFL;
+
+    private final int maxSize;
+    private final int maxScale;
+
+    private int scale;
+    private double scaleFactor;
+
+    private BucketCounts positive;
+    private BucketCounts negative;
+
+    private long zeroCount;
+    private long count;
+
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates an empty histogram.
+     * @param maxSize  maximum number of buckets of each of the signs
+     * @param maxScale initial (highest) scale, within [{@link #MIN_SCALE}, {@link #MAX_SCALE}]
+     */
+    public Base2ExponentialHistogram(int maxSize, int maxScale) {
+        if (maxSize < 2) {
+            throw new IllegalArgumentException("Maximum size must be at least 2");
+        }
+
+        if (maxScale < MIN_SCALE || maxScale > MAX_SCALE) {
+            throw new IllegalArgumentException(
+                String.format("Scale must be within [%d, %d]", MIN_SCALE, MAX_SCALE)
+            );
+        }
+
+        this.maxSize = maxSize;
+        this.maxScale = maxScale;
+        this.positive = new BucketCounts(maxSize);
+        this.negative = new BucketCounts(maxSize);
+
+        setScale(maxScale);
+    }
+
+    /**
+     * Records a value. Non-finite values are ignored, values of lower magnitude than
+     * {@link Double#MIN_NORMAL} are counted as zeros.
+     * @param value value to record
+     */
+    public void record(double value) {
+        record(value, 1);
+    }
+
+    /**
+     * Records a value the given number of times.
+     * @param value value to record
+     * @param count number of times to record the value
+     */
+    public void record(double value, long count) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || count <= 0) {
+            return;
+        }
+
+        double magnitude = Math.abs(value);
+
+        if (magnitude < Double.MIN_NORMAL) {
+            zeroCount += count;
+        } else {
+            BucketCounts counts = value > 0 ? positive : negative;
+            int index = indexOf(magnitude);
+
+            if (!counts.increment(index, count)) {
+                downscale(
+                    scaleChangeFor(Math.min(index, counts.getStartIndex()), Math.max(index, counts.getEndIndex()))
+                );
+                counts = value > 0 ? positive : negative;
+                counts.increment(indexOf(magnitude), count);
+            }
+        }
+
+        this.count += count;
+        sum += value * count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Merges the values recorded by the other histogram into this one, lowering the scale of this
+     * one as needed to fit the buckets of both.
+     * @param other histogram to merge
+     */
+    public void merge(Base2ExponentialHistogram other) {
+        if (other.isEmpty()) {
+            return;
+        }
+
+        if (other.scale < scale) {
+            downscale(scale - other.scale);
+        }
+
+        downscale(
+            Math.max(
+                scaleChangeFor(positive, other.positive, other.scale - scale),
+                scaleChangeFor(negative, other.negative, other.scale - scale)
+            )
+        );
+
+        positive.add(other.positive, other.scale - scale);
+        negative.add(other.negative, other.scale - scale);
+
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Removes all the recorded values, restoring the initial scale.
+     */
+    void clear() {
+        positive.clear();
+        negative.clear();
+
+        zeroCount = 0;
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+
+        setScale(maxScale);
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the exact minimum of the recorded values, or {@code NaN} if none were recorded.
+     * @return minimum of the recorded values
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the exact maximum of the recorded values, or {@code NaN} if none were recorded.
+     * @return maximum of the recorded values
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Returns counts of the buckets of the positive values.
+     * @return counts of the buckets of the positive values
+     */
+    public BucketCounts getPositive() {
+        return positive;
+    }
+
+    /**
+     * Returns counts of the buckets of the negative values, indexed by their magnitude.
+     * @return counts of the buckets of the negative values
+     */
+    public BucketCounts getNegative() {
+        return negative;
+    }
+
+    /**
+     * Returns the (exclusive) lower bound of the bucket with the given index at the current scale.
+     * @param index index of the bucket
+     * @return lower bound of the bucket
+     */
+    public double getLowerBound(int index) {
+        return boundOf(index, scale);
+    }
+
+    /**
+     * Converts this histogram into a classic one, of the given explicit buckets: every exponential
+     * bucket is attributed to the explicit bucket its values (all but the inclusive upper bound)
+     * fall into, which is exact whenever the explicit bounds are bounds of the exponential buckets
+     * at the current scale as well.
+     * @param buckets explicit value buckets to convert to
+     * @return counts of every explicit bucket, indexed the same way as the buckets
+     */
+    public long[] toBucketCounts(ImmutableBuckets buckets) {
+        long[] counts = new long[buckets.getValueUpperBounds().size() + 1];
+
+        if (zeroCount != 0) {
+            counts[buckets.getBucketIndexFor(0d)] += zeroCount;
+        }
+
+        for (int index = positive.getStartIndex(); index <= positive.getEndIndex(); ++index) {
+            long bucketCount = positive.get(index);
+
+            if (bucketCount != 0) {
+                counts[buckets.getBucketIndexFor(Math.nextDown(getLowerBound(index + 1)))] += bucketCount;
+            }
+        }
+
+        for (int index = negative.getStartIndex(); index <= negative.getEndIndex(); ++index) {
+            long bucketCount = negative.get(index);
+
+            if (bucketCount != 0) {
+                counts[buckets.getBucketIndexFor(Math.nextDown(-getLowerBound(index)))] += bucketCount;
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Returns {@code 2^(index / 2^scale)}: the bound between the buckets {@code index - 1}
+     * and {@code index} at the given scale.
+     */
+    static double boundOf(int index, int scale) {
+        // NOTE: Scaling by a power of two is exact, hence the bounds shared by different scales are equal
+        return Math.pow(2, Math.scalb((double) index, -scale));
+    }
+
+    int indexOf(double magnitude) {
+        long bits = Double.doubleToRawLongBits(magnitude);
+        int exponent = Math.getExponent(magnitude);
+
+        // Exact powers of two are the (inclusive) upper bounds of their buckets
+        boolean powerOfTwo = (bits & SIGNIFICAND_MASK) == 0;
+
+        if (scale <= 0) {
+            return (powerOfTwo ? exponent - 1 : exponent) >> -scale;
+        }
+
+        if (powerOfTwo) {
+            return (exponent << scale) - 1;
+        }
+
+        return (int) Math.ceil(Math.log(magnitude) * scaleFactor) - 1;
+    }
+
+    private void setScale(int scale) {
+        this.scale = scale;
+        this.scaleFactor = Math.scalb(1 / Math.log(2), scale);
+    }
+
+    private int scaleChangeFor(BucketCounts counts, BucketCounts other, int otherChange) {
+        if (other.isEmpty()) {
+            return 0;
+        }
+
+        return scaleChangeFor(
+            Math.min(other.getStartIndex() >> otherChange, counts.getStartIndex()),
+            Math.max(other.getEndIndex() >> otherChange, counts.getEndIndex())
+        );
+    }
+
+    /**
+     * Returns how much the scale has to be lowered for the given range of indexes to fit.
+     */
+    private int scaleChangeFor(long low, long high) {
+        int change = 0;
+
+        while (high - low + 1 > maxSize) {
+            low >>= 1;
+            high >>= 1;
+            ++change;
+        }
+
+        return change;
+    }
+
+    private void downscale(int change) {
+        if (scale - change < MIN_SCALE) {
+            throw new IllegalStateException("Range of the values exceeds the lowest scale");
+        }
+
+        positive = positive.downscale(change);
+        negative = negative.downscale(change);
+
+        setScale(scale - change);
+    }
+
+    /**
+     * Counts of the buckets within a contiguous range of indexes, kept in a circular array.
+     */
+    public static final class BucketCounts {
+        private final long[] counts;
+
+        // Index of the bucket stored at the position 0
+        private int baseIndex;
+
+        private int startIndex = Integer.MAX_VALUE;
+        private int endIndex = Integer.MIN_VALUE;
+
+        BucketCounts(int maxSize) {
+            this.counts = new long[maxSize];
+        }
+
+        public boolean isEmpty() {
+            return startIndex > endIndex;
+        }
+
+        /**
+         * Returns the lowest index of the non-empty bucket, or {@link Integer#MAX_VALUE} if none.
+         * @return lowest index of a non-empty bucket
+         */
+        public int getStartIndex() {
+            return startIndex;
+        }
+
+        /**
+         * Returns the highest index of the non-empty bucket, or {@link Integer#MIN_VALUE} if none.
+         * @return highest index of a non-empty bucket
+         */
+        public int getEndIndex() {
+            return endIndex;
+        }
+
+        /**
+         * Returns count of the bucket with the given index.
+         * @param index index of the bucket
+         * @return count of the bucket
+         */
+        public long get(int index) {
+            if (index < startIndex || index > endIndex) {
+                return 0;
+            }
+
+            return counts[position(index)];
+        }
+
+        /**
+         * Increments the bucket unless it falls out of the range that can be kept.
+         */
+        boolean increment(int index, long delta) {
+            if (isEmpty()) {
+                baseIndex = index;
+                startIndex = index;
+                endIndex = index;
+            } else if (index < startIndex) {
+                if ((long) endIndex - index + 1 > counts.length) {
+                    return false;
+                }
+
+                startIndex = index;
+            } else if (index > endIndex) {
+                if ((long) index - startIndex + 1 > counts.length) {
+                    return false;
+                }
+
+                endIndex = index;
+            }
+
+            counts[position(index)] += delta;
+
+            return true;
+        }
+
+        /**
+         * Adds the counts of the other buckets, at a scale higher by the given change.
+         * Must only be called once the buckets are known to fit.
+         */
+        void add(BucketCounts other, int change) {
+            for (int index = other.startIndex; index <= other.endIndex; ++index) {
+                long count = other.counts[other.position(index)];
+
+                if (count != 0) {
+                    increment(index >> change, count);
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(counts, 0);
+
+            startIndex = Integer.MAX_VALUE;
+            endIndex = Integer.MIN_VALUE;
+        }
+
+        BucketCounts downscale(int change) {
+            if (change == 0 || isEmpty()) {
+                return this;
+            }
+
+            BucketCounts downscaled = new BucketCounts(counts.length);
+
+            for (int index = startIndex; index <= endIndex; ++index) {
+                long count = counts[position(index)];
+
+                if (count != 0) {
+                    downscaled.increment(index >> change, count);
+                }
+            }
+
+            return downscaled;
+        }
+
+        private int position(int index) {
+            return Math.floorMod(index - baseIndex, counts.length);
+        }
+    }
+}
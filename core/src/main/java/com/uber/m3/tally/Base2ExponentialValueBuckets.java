@@ -0,0 +1,72 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+/**
+ * {@link ValueBuckets} of {@link Histogram}s backed by {@link Base2ExponentialHistogram}s, which
+ * adjust their bucket resolution to the recorded values on their own. The explicit bounds of these
+ * buckets are the bounds of the exponential buckets at the export scale, within a range of powers
+ * of two, which reporters with no native support of exponential histograms convert them to.
+ * See {@link ValueBuckets#base2Exponential(int, int, int, int)}.
+ */
+final class Base2ExponentialValueBuckets extends ValueBuckets {
+    // Two buckets per power of two, from about a microsecond (or a millionth) up to about a million
+    static final Base2ExponentialValueBuckets DEFAULT =
+        create(Base2ExponentialHistogram.DEFAULT_MAX_SIZE, 1, -20, 20);
+
+    private final int maxSize;
+
+    private Base2ExponentialValueBuckets(Double[] upperBounds, int maxSize) {
+        super(upperBounds);
+
+        this.maxSize = maxSize;
+    }
+
+    static Base2ExponentialValueBuckets create(int maxSize, int exportScale, int lowestExponent, int highestExponent) {
+        if (maxSize < 2) {
+            throw new IllegalArgumentException("Maximum size must be at least 2");
+        }
+
+        if (exportScale < 0 || exportScale > 4) {
+            throw new IllegalArgumentException("Export scale must be within [0, 4]");
+        }
+
+        if (lowestExponent >= highestExponent) {
+            throw new IllegalArgumentException("Lowest exponent must be less than the highest one");
+        }
+
+        // Bounds of the exponential buckets at the export scale: 2^(k / 2^exportScale)
+        int lowestIndex = lowestExponent << exportScale;
+        int highestIndex = highestExponent << exportScale;
+
+        Double[] upperBounds = new Double[highestIndex - lowestIndex + 1];
+
+        for (int i = 0; i < upperBounds.length; ++i) {
+            upperBounds[i] = Base2ExponentialHistogram.boundOf(lowestIndex + i, exportScale);
+        }
+
+        return new Base2ExponentialValueBuckets(upperBounds, maxSize);
+    }
+
+    Base2ExponentialHistogram newHistogram() {
+        return new Base2ExponentialHistogram(maxSize, Base2ExponentialHistogram.MAX_SCALE);
+    }
+}
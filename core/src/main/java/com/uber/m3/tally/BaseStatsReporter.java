@@ -30,6 +30,16 @@ public interface BaseStatsReporter {
      */
     Capabilities capabilities();
 
+    /**
+     * Notifies the reporter that values of the next reporting interval are about to be reported,
+     * all of them being attributed to the provided timestamp. Followed by the call to {@link #flush()},
+     * once all of the values of the interval are reported.
+     * @param intervalTimestampNanos the timestamp of the interval, in nanoseconds since the epoch
+     */
+    default void beginInterval(long intervalTimestampNanos) {
+        // no-op
+    }
+
     /**
      * Flush asks the reporter to flush all reported values.
      */
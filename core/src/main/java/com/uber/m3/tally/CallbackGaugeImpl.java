@@ -0,0 +1,134 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * {@link Gauge} whose value is supplied by a callback, only invoked when the gauge is reported.
+ *
+ * When an executor is configured, the callback is invoked on it, and the report waits for
+ * the value no longer than the timeout. A callback still running by then is left to complete,
+ * and is only polled (rather than awaited or invoked again) on the following reports.
+ *
+ * A failing callback only skips its own gauge, with the failure handed to the failure handler
+ * (the scope's uncaught exception handler), rather than aborting the report of the remaining metrics.
+ */
+class CallbackGaugeImpl extends MetricBase implements Reportable {
+    private final DoubleSupplier supplier;
+    private final Consumer<Exception> failureHandler;
+
+    // NOTE: Null unless callbacks are isolated from the reporting thread
+    private final ExecutorService executor;
+    private final Duration timeout;
+
+    // NOTE: Guarded by this
+    private Future<Double> pending;
+    // Whether the pending callback has already exceeded the timeout, guarded by this
+    private boolean overdue;
+
+    /**
+     * NOTE: The gauge is not added to the reporting queue, which is up to the caller once
+     *       the construction completes, so that it's never reported before being fully initialized
+     */
+    CallbackGaugeImpl(
+        String fqn,
+        DoubleSupplier supplier,
+        Consumer<Exception> failureHandler,
+        ExecutorService executor,
+        Duration timeout
+    ) {
+        super(fqn);
+
+        this.supplier = supplier;
+        this.failureHandler = failureHandler;
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public synchronized void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        double value;
+
+        try {
+            value = executor == null ? supplier.getAsDouble() : awaitValue();
+        } catch (TimeoutException e) {
+            // Still running, skip this report
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            failureHandler.accept(failure(e.getCause()));
+            return;
+        } catch (RuntimeException e) {
+            failureHandler.accept(failure(e));
+            return;
+        }
+
+        reporter.reportGauge(getQualifiedName(), tags, value);
+    }
+
+    private double awaitValue() throws InterruptedException, ExecutionException, TimeoutException {
+        if (pending == null) {
+            pending = executor.submit(supplier::getAsDouble);
+            overdue = false;
+        }
+
+        // NOTE: Callback that has already exceeded the timeout is only polled, so that
+        //       a hanging one doesn't keep costing the full timeout on every report
+        if (overdue && !pending.isDone()) {
+            throw new TimeoutException();
+        }
+
+        try {
+            return pending.get(timeout.getNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            overdue = true;
+            throw e;
+        } finally {
+            // Completed, either way, hence invoked again on the following report
+            if (pending.isDone()) {
+                pending = null;
+            }
+        }
+    }
+
+    private IllegalStateException failure(Throwable cause) {
+        return new IllegalStateException(
+            String.format("Callback of gauge %s failed", getQualifiedName()),
+            cause
+        );
+    }
+
+    double snapshot() {
+        return supplier.getAsDouble();
+    }
+}
@@ -35,4 +35,14 @@ public interface Capabilities {
      * @return whether this has tagging functionality
      */
     boolean tagging();
+
+    /**
+     * Returns whether {@link Timer} intervals reported along with their sample rate are counted
+     * as many times as the sample rate implies. Scopes only sample {@link Timer}s of the
+     * reporters capable of it.
+     * @return whether this has sample rates functionality
+     */
+    default boolean sampleRates() {
+        return false;
+    }
 }
@@ -28,13 +28,20 @@ public class CapableOf implements Capabilities {
     public static final CapableOf NONE = new CapableOf(false, false);
     public static final CapableOf REPORTING = new CapableOf(true, false);
     public static final CapableOf REPORTING_TAGGING = new CapableOf(true, true);
+    public static final CapableOf REPORTING_TAGGING_SAMPLE_RATES = new CapableOf(true, true, true);
 
     private boolean reporting;
     private boolean tagging;
+    private boolean sampleRates;
 
     public CapableOf(boolean reporting, boolean tagging) {
+        this(reporting, tagging, false);
+    }
+
+    public CapableOf(boolean reporting, boolean tagging, boolean sampleRates) {
         this.reporting = reporting;
         this.tagging = tagging;
+        this.sampleRates = sampleRates;
     }
 
     @Override
@@ -47,6 +54,11 @@ public class CapableOf implements Capabilities {
         return tagging;
     }
 
+    @Override
+    public boolean sampleRates() {
+        return sampleRates;
+    }
+
     @Override
     public boolean equals(Object other) {
         if (other == null) {
@@ -62,7 +74,8 @@ public class CapableOf implements Capabilities {
         CapableOf capabilities = (CapableOf) other;
 
         return capabilities.reporting == reporting
-            && capabilities.tagging == tagging;
+            && capabilities.tagging == tagging
+            && capabilities.sampleRates == sampleRates;
     }
 
     @Override
@@ -71,6 +84,7 @@ public class CapableOf implements Capabilities {
 
         code = 31 * code + new Boolean(reporting).hashCode();
         code = 31 * code + new Boolean(tagging).hashCode();
+        code = 31 * code + new Boolean(sampleRates).hashCode();
 
         return code;
     }
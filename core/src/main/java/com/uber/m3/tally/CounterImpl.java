@@ -20,53 +20,46 @@
 
 package com.uber.m3.tally;
 
-import com.uber.m3.util.ImmutableMap;
-
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Default implementation of a {@link Counter}.
  */
-class CounterImpl extends MetricBase implements Counter, Reportable {
-    private final AtomicLong prev = new AtomicLong(0);
-    private final AtomicLong curr = new AtomicLong(0);
+class CounterImpl extends AbstractCounter {
+    // NOTE: State is kept in plain volatile fields updated through field updaters, rather than
+    //       in dedicated AtomicLongs, saving an extra object (and its header) per field
+    private static final AtomicLongFieldUpdater<CounterImpl> CURR_UPDATER =
+        AtomicLongFieldUpdater.newUpdater(CounterImpl.class, "curr");
 
-    protected CounterImpl(ScopeImpl scope, String fqn) {
-        super(fqn);
+    // NOTE: Only ever written by the reporting thread
+    private volatile long prev;
+    private volatile long curr;
 
-        scope.addToReportingQueue(this);
+    protected CounterImpl(String fqn) {
+        super(fqn);
     }
 
     @Override
     public void inc(long delta) {
-        curr.getAndAdd(delta);
+        CURR_UPDATER.getAndAdd(this, delta);
     }
 
+    @Override
     long value() {
-        long current = curr.get();
-        long previous = prev.get();
+        long current = curr;
+        long previous = prev;
 
         if (current == previous) {
             return 0;
         }
 
-        prev.set(current);
+        prev = current;
 
         return current - previous;
     }
 
     @Override
-    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
-        long delta = value();
-
-        if (delta == 0) {
-            return;
-        }
-
-        reporter.reportCounter(getQualifiedName(), tags, delta);
-    }
-
     long snapshot() {
-        return curr.get() - prev.get();
+        return curr - prev;
     }
 }
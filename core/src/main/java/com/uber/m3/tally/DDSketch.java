@@ -0,0 +1,413 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Quantile sketch with relative-error guarantees, following the DDSketch algorithm: values are
+ * counted in logarithmically sized bins, such that any quantile is estimated within the configured
+ * relative accuracy of the actual value, regardless of the distribution of the values.
+ *
+ * Sketches of the same relative accuracy can be merged exactly, e.g. in a collector aggregating
+ * the sketches reported by multiple processes, and serialized into a compact binary form
+ * with {@link #serialize()} and {@link #deserialize(byte[])}.
+ *
+ * NOTE: This class is not thread-safe. Concurrent recording is handled by {@link Sketch} metrics,
+ *       which report a {@link DDSketch} of every interval.
+ */
+public final class DDSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private static final byte SERIALIZATION_VERSION = 1;
+
+    private final LogarithmicMapping mapping;
+
+    private final Bins positiveBins = new Bins();
+    private final Bins negativeBins = new Bins();
+
+    private long zeroCount;
+    private long count;
+
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates an empty sketch.
+     * @param relativeAccuracy relative accuracy of the quantiles, within (0, 1)
+     */
+    public DDSketch(double relativeAccuracy) {
+        this(new LogarithmicMapping(relativeAccuracy));
+    }
+
+    DDSketch(LogarithmicMapping mapping) {
+        this.mapping = mapping;
+    }
+
+    /**
+     * Adds a value to this sketch.
+     * @param value value to add
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Adds a value to this sketch the given number of times.
+     * @param value value to add
+     * @param count number of times to add the value
+     */
+    public void add(double value, long count) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Value must be finite");
+        }
+
+        if (count <= 0) {
+            throw new IllegalArgumentException("Count must be positive");
+        }
+
+        if (value >= mapping.getMinIndexableValue()) {
+            positiveBins.add(mapping.indexOf(value), count);
+        } else if (value <= -mapping.getMinIndexableValue()) {
+            negativeBins.add(mapping.indexOf(-value), count);
+        } else {
+            zeroCount += count;
+        }
+
+        updateStats(count, value * count, value, value);
+    }
+
+    /**
+     * Merges the other sketch into this one. Resulting sketch is the same as if all the values
+     * added to the other sketch had been added to this one.
+     * @param other sketch to merge, of the same relative accuracy
+     */
+    public void merge(DDSketch other) {
+        if (!mapping.isCompatible(other.mapping)) {
+            throw new IllegalArgumentException("Only sketches of the same relative accuracy can be merged");
+        }
+
+        if (other.isEmpty()) {
+            return;
+        }
+
+        positiveBins.merge(other.positiveBins);
+        negativeBins.merge(other.negativeBins);
+        zeroCount += other.zeroCount;
+
+        updateStats(other.count, other.sum, other.min, other.max);
+    }
+
+    /**
+     * Returns the estimate of the value at the given quantile.
+     * @param quantile quantile within [0, 1]
+     * @return the value at the quantile, within relative accuracy of the sketch,
+     *         or {@code NaN} if the sketch is empty
+     */
+    public double getValueAtQuantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be within [0, 1]");
+        }
+
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        double rank = quantile * (count - 1);
+        long cumulative = 0;
+
+        // Negative values are the lowest, in the descending order of their indexes' magnitude
+        for (int index = negativeBins.getMaxIndex(); index >= negativeBins.getMinIndex(); --index) {
+            cumulative += negativeBins.get(index);
+
+            if (cumulative > rank) {
+                return clamp(-mapping.valueOf(index));
+            }
+        }
+
+        cumulative += zeroCount;
+
+        if (cumulative > rank) {
+            return 0;
+        }
+
+        for (int index = positiveBins.getMinIndex(); index <= positiveBins.getMaxIndex(); ++index) {
+            cumulative += positiveBins.get(index);
+
+            if (cumulative > rank) {
+                return clamp(mapping.valueOf(index));
+            }
+        }
+
+        return max;
+    }
+
+    public double getRelativeAccuracy() {
+        return mapping.getRelativeAccuracy();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the exact minimum of the added values, or {@code NaN} if the sketch is empty.
+     * @return minimum of the added values
+     */
+    public double getMinValue() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the exact maximum of the added values, or {@code NaN} if the sketch is empty.
+     * @return maximum of the added values
+     */
+    public double getMaxValue() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Serializes this sketch into a compact binary form, only holding the non-empty bins.
+     * @return serialized sketch
+     */
+    public byte[] serialize() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(SERIALIZATION_VERSION);
+            out.writeDouble(mapping.getRelativeAccuracy());
+            out.writeLong(count);
+            out.writeLong(zeroCount);
+            out.writeDouble(sum);
+            out.writeDouble(min);
+            out.writeDouble(max);
+
+            positiveBins.writeTo(out);
+            negativeBins.writeTo(out);
+        } catch (IOException e) {
+            // NOTE: Never thrown by in-memory streams
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a sketch serialized with {@link #serialize()}.
+     * @param bytes serialized sketch
+     * @return the deserialized sketch
+     */
+    public static DDSketch deserialize(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte version = in.readByte();
+
+            if (version != SERIALIZATION_VERSION) {
+                throw new IllegalArgumentException("Unsupported serialization version: " + version);
+            }
+
+            DDSketch sketch = new DDSketch(in.readDouble());
+
+            sketch.count = in.readLong();
+            sketch.zeroCount = in.readLong();
+            sketch.sum = in.readDouble();
+            sketch.min = in.readDouble();
+            sketch.max = in.readDouble();
+
+            long binned = sketch.positiveBins.readFrom(in) + sketch.negativeBins.readFrom(in);
+
+            if (binned + sketch.zeroCount != sketch.count) {
+                throw new IllegalArgumentException("Malformed serialized sketch: inconsistent counts");
+            }
+
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed serialized sketch", e);
+        }
+    }
+
+    // Used to populate sketches from the concurrently recorded bins
+    void addBin(boolean negative, int index, long count) {
+        (negative ? negativeBins : positiveBins).add(index, count);
+        this.count += count;
+    }
+
+    void addZeros(long count) {
+        zeroCount += count;
+        this.count += count;
+    }
+
+    void updateStats(double sum, double min, double max) {
+        updateStats(0, sum, min, max);
+    }
+
+    private void updateStats(long count, double sum, double min, double max) {
+        this.count += count;
+        this.sum += sum;
+        this.min = Math.min(this.min, min);
+        this.max = Math.max(this.max, max);
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    @Override
+    public String toString() {
+        return "DDSketch{"
+            + "relativeAccuracy=" + mapping.getRelativeAccuracy()
+            + ", count=" + count
+            + ", min=" + getMinValue()
+            + ", max=" + getMaxValue()
+            + "}";
+    }
+
+    /**
+     * Counts of the bins, densely stored within the range of the indexes added so far.
+     */
+    private static final class Bins {
+        private static final long[] EMPTY = new long[0];
+        private static final int INITIAL_CAPACITY = 64;
+
+        private long[] counts = EMPTY;
+
+        // Index of the first element of {@code counts}
+        private int offset;
+
+        private int minIndex = Integer.MAX_VALUE;
+        private int maxIndex = Integer.MIN_VALUE;
+
+        void add(int index, long count) {
+            ensureCapacity(index);
+
+            counts[index - offset] += count;
+
+            minIndex = Math.min(minIndex, index);
+            maxIndex = Math.max(maxIndex, index);
+        }
+
+        long get(int index) {
+            return index >= offset && index - offset < counts.length ? counts[index - offset] : 0;
+        }
+
+        int getMinIndex() {
+            return minIndex;
+        }
+
+        int getMaxIndex() {
+            return maxIndex;
+        }
+
+        void merge(Bins other) {
+            for (int index = other.minIndex; index <= other.maxIndex; ++index) {
+                long count = other.get(index);
+
+                if (count != 0) {
+                    add(index, count);
+                }
+            }
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            int nonEmpty = 0;
+
+            for (int index = minIndex; index <= maxIndex; ++index) {
+                if (get(index) != 0) {
+                    ++nonEmpty;
+                }
+            }
+
+            out.writeInt(nonEmpty);
+
+            for (int index = minIndex; index <= maxIndex; ++index) {
+                long count = get(index);
+
+                if (count != 0) {
+                    out.writeInt(index);
+                    out.writeLong(count);
+                }
+            }
+        }
+
+        /**
+         * Reads the bins written by {@link #writeTo(DataOutputStream)}, returning their total count.
+         */
+        long readFrom(DataInputStream in) throws IOException {
+            int nonEmpty = in.readInt();
+            long total = 0;
+
+            if (nonEmpty < 0) {
+                throw new IOException("Negative number of bins");
+            }
+
+            for (int i = 0; i < nonEmpty; ++i) {
+                int index = in.readInt();
+                long count = in.readLong();
+
+                if (count <= 0) {
+                    throw new IOException("Non-positive bin count");
+                }
+
+                add(index, count);
+                total += count;
+            }
+
+            return total;
+        }
+
+        private void ensureCapacity(int index) {
+            if (counts.length == 0) {
+                counts = new long[INITIAL_CAPACITY];
+                offset = index - INITIAL_CAPACITY / 2;
+                return;
+            }
+
+            if (index >= offset && index - offset < counts.length) {
+                return;
+            }
+
+            long newMin = Math.min(index, offset);
+            long newMax = Math.max(index, (long) offset + counts.length - 1);
+
+            // Grows at least twofold, towards the index being added
+            int newLength = (int) Math.max(newMax - newMin + 1, 2L * counts.length);
+            int newOffset = index < offset ? (int) (newMax - newLength + 1) : offset;
+
+            long[] grown = new long[newLength];
+            System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+
+            counts = grown;
+            offset = newOffset;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link Histogram} recording samples into an active array of bucket counts, which is
+ * swapped with a spare one on every report, in the fashion of HdrHistogram's {@code Recorder}.
+ *
+ * Reporting reads and clears the swapped out array exclusively, with no contention with
+ * the writers, and without having to keep track of the previously reported count of every bucket.
+ */
+class DoubleBufferedHistogramImpl extends AbstractHistogram implements Reportable {
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+
+    private volatile AtomicLongArray activeCounts;
+
+    // NOTE: Only accessed while holding the reader lock of the phaser
+    private AtomicLongArray inactiveCounts;
+
+    /**
+     * NOTE: The histogram is not added to the reporting queue, which is up to the caller once
+     *       the construction completes, so that it's never reported before being fully initialized
+     */
+    DoubleBufferedHistogramImpl(
+        String fqn,
+        ImmutableMap<String, String> tags,
+        Buckets buckets
+    ) {
+        super(fqn, tags, buckets);
+
+        this.activeCounts = new AtomicLongArray(bucketsCount);
+        this.inactiveCounts = new AtomicLongArray(bucketsCount);
+    }
+
+    @Override
+    void recordValue(double value, long samples) {
+        recordBucket(specification.getBucketIndexFor(value), samples);
+    }
+
+    @Override
+    void recordDuration(Duration duration, long samples) {
+        recordBucket(specification.getBucketIndexFor(duration), samples);
+    }
+
+    private void recordBucket(int index, long samples) {
+        long token = phaser.writerCriticalSectionEnter();
+
+        try {
+            activeCounts.addAndGet(index, samples);
+        } finally {
+            phaser.writerCriticalSectionExit(token);
+        }
+    }
+
+    @Override
+    long snapshotBucket(int index) {
+        return activeCounts.get(index);
+    }
+
+    @Override
+    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        phaser.readerLock();
+
+        try {
+            AtomicLongArray counts = activeCounts;
+
+            activeCounts = inactiveCounts;
+            inactiveCounts = counts;
+
+            // Once flipped, no writer could still be updating the swapped out counts
+            phaser.flipPhase();
+
+            for (int i = 0; i < bucketsCount; ++i) {
+                long samples = counts.get(i);
+
+                if (samples != 0) {
+                    counts.set(i, 0);
+                    reportBucket(i, samples, tags, reporter);
+                }
+            }
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+}
@@ -152,6 +152,29 @@ public class DurationBuckets extends AbstractBuckets<Duration> {
         return new DurationBuckets(buckets);
     }
 
+    /**
+     * Helper function to create {@link DurationBuckets} of log-linear spacing, with microsecond resolution
+     * for durations up to an hour and a relative error of under 4% per bucket. Histograms using these
+     * locate buckets with bit arithmetic, and keep bucket counts in a single packed array.
+     * @return {@link DurationBuckets} of log-linear spacing
+     */
+    public static DurationBuckets logLinear() {
+        return LogLinearDurationBuckets.DEFAULT;
+    }
+
+    /**
+     * Helper function to create {@link DurationBuckets} of log-linear spacing: every power of two
+     * is split into {@code 2^(precisionBits - 1)} buckets of equal width, bounding the relative
+     * error of each bucket by {@code 2^-(precisionBits - 1)}.
+     * @param unit                     the width of the narrowest bucket
+     * @param highestTrackableDuration the highest duration to be tracked; the ones beyond fall into the overflow bucket
+     * @param precisionBits            the precision of the buckets, within [1, 16]
+     * @return {@link DurationBuckets} of the specified parameters
+     */
+    public static DurationBuckets logLinear(Duration unit, Duration highestTrackableDuration, int precisionBits) {
+        return LogLinearDurationBuckets.create(unit, highestTrackableDuration, precisionBits);
+    }
+
     /**
      * Allows to create bucket with finer bucket creation control
      *
@@ -0,0 +1,176 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+/**
+ * {@link Histogram} recording samples into {@link Base2ExponentialHistogram}s, merged into a single
+ * one and handed over to the {@link StatsReporter} on every report. Durations are recorded in seconds.
+ *
+ * Rescaling touches every bucket, hence a histogram can only be updated by a single thread at a time.
+ * Writers are spread over stripes, each with a histogram of its own and locked only while updating
+ * it, so that concurrent writers rarely contend on the same lock. Every stripe is double-buffered the
+ * same way {@link DoubleBufferedHistogramImpl} does, so that reporting reads the swapped out stripes
+ * with no contention with the writers.
+ */
+class ExponentialHistogramImpl extends AbstractHistogram implements Reportable {
+    // Power of two, at least the number of processors
+    private static final int STRIPES_COUNT =
+        Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1) << 1);
+
+    private final Base2ExponentialValueBuckets buckets;
+
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+
+    private volatile Stripe[] activeStripes;
+
+    // NOTE: Only accessed while holding the reader lock of the phaser
+    private Stripe[] inactiveStripes;
+
+    /**
+     * NOTE: The histogram is not added to the reporting queue, which is up to the caller once
+     *       the construction completes, so that it's never reported before being fully initialized
+     */
+    ExponentialHistogramImpl(
+        String fqn,
+        ImmutableMap<String, String> tags,
+        Base2ExponentialValueBuckets buckets
+    ) {
+        super(fqn, tags, buckets);
+
+        this.buckets = buckets;
+        this.activeStripes = newStripes();
+        this.inactiveStripes = newStripes();
+    }
+
+    @Override
+    void recordValue(double value, long samples) {
+        long token = phaser.writerCriticalSectionEnter();
+
+        try {
+            // NOTE: Thread ids are assigned sequentially, hence spread evenly over the stripes
+            Stripe stripe = activeStripes[(int) Thread.currentThread().getId() & (STRIPES_COUNT - 1)];
+
+            synchronized (stripe) {
+                stripe.record(value, samples);
+            }
+        } finally {
+            phaser.writerCriticalSectionExit(token);
+        }
+    }
+
+    @Override
+    void recordDuration(Duration duration, long samples) {
+        recordValue(duration.getSeconds(), samples);
+    }
+
+    @Override
+    long snapshotBucket(int index) {
+        phaser.readerLock();
+
+        try {
+            Base2ExponentialHistogram histogram = buckets.newHistogram();
+
+            for (Stripe stripe : activeStripes) {
+                synchronized (stripe) {
+                    stripe.mergeInto(histogram);
+                }
+            }
+
+            return histogram.toBucketCounts(specification)[index];
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+
+    @Override
+    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        Base2ExponentialHistogram histogram = buckets.newHistogram();
+
+        phaser.readerLock();
+
+        try {
+            Stripe[] stripes = activeStripes;
+
+            activeStripes = inactiveStripes;
+            inactiveStripes = stripes;
+
+            // Once flipped, no writer could still be updating the swapped out stripes
+            phaser.flipPhase();
+
+            for (Stripe stripe : stripes) {
+                stripe.mergeInto(histogram);
+                stripe.clear();
+            }
+        } finally {
+            phaser.readerUnlock();
+        }
+
+        if (!histogram.isEmpty()) {
+            reporter.reportExponentialHistogram(getQualifiedName(), tags, buckets, histogram);
+        }
+    }
+
+    private Stripe[] newStripes() {
+        Stripe[] stripes = new Stripe[STRIPES_COUNT];
+
+        for (int i = 0; i < STRIPES_COUNT; ++i) {
+            stripes[i] = new Stripe(buckets);
+        }
+
+        return stripes;
+    }
+
+    /**
+     * Histogram of a subset of the writers, allocated once first recorded into.
+     */
+    private static final class Stripe {
+        private final Base2ExponentialValueBuckets buckets;
+
+        private Base2ExponentialHistogram histogram;
+
+        private Stripe(Base2ExponentialValueBuckets buckets) {
+            this.buckets = buckets;
+        }
+
+        void record(double value, long samples) {
+            if (histogram == null) {
+                histogram = buckets.newHistogram();
+            }
+
+            histogram.record(value, samples);
+        }
+
+        void mergeInto(Base2ExponentialHistogram target) {
+            if (histogram != null) {
+                target.merge(histogram);
+            }
+        }
+
+        void clear() {
+            if (histogram != null) {
+                histogram.clear();
+            }
+        }
+    }
+}
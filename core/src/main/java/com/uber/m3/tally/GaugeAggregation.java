@@ -0,0 +1,59 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+/**
+ * How a {@link Gauge} aggregates the values it is updated to within a reporting interval.
+ */
+public enum GaugeAggregation {
+    /**
+     * Reports the last value, and keeps reporting it until the next update.
+     */
+    LAST,
+
+    /**
+     * Reports the maximum of the values of the interval.
+     */
+    MAX,
+
+    /**
+     * Reports the minimum of the values of the interval.
+     */
+    MIN,
+
+    /**
+     * Reports the sum of the values of the interval.
+     */
+    SUM;
+
+    double aggregate(double current, double value) {
+        switch (this) {
+            case MAX:
+                return Math.max(current, value);
+            case MIN:
+                return Math.min(current, value);
+            case SUM:
+                return current + value;
+            default:
+                return value;
+        }
+    }
+}
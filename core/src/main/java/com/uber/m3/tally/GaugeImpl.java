@@ -20,42 +20,37 @@
 
 package com.uber.m3.tally;
 
-import com.uber.m3.util.ImmutableMap;
-
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Default implementation of a {@link Gauge}.
  */
-class GaugeImpl extends MetricBase implements Gauge, Reportable {
-    private AtomicBoolean updated = new AtomicBoolean(false);
-    private AtomicLong curr = new AtomicLong(0);
+class GaugeImpl extends AbstractGauge {
+    private static final AtomicIntegerFieldUpdater<GaugeImpl> UPDATED_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(GaugeImpl.class, "updated");
 
-    protected GaugeImpl(ScopeImpl scope, String fqn) {
-        super(fqn);
+    // NOTE: Boolean flag, kept as an int to be usable with the field updater
+    private volatile int updated;
+    // Raw bits of the double value
+    private volatile long curr;
 
-        scope.addToReportingQueue(this);
+    protected GaugeImpl(String fqn) {
+        super(fqn);
     }
 
     @Override
     public void update(double value) {
-        curr.set(Double.doubleToLongBits(value));
-        updated.set(true);
+        curr = Double.doubleToLongBits(value);
+        updated = 1;
     }
 
+    @Override
     double value() {
-        return Double.longBitsToDouble(curr.get());
+        return Double.longBitsToDouble(curr);
     }
 
     @Override
-    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
-        if (updated.getAndSet(false)) {
-            reporter.reportGauge(getQualifiedName(), tags, value());
-        }
-    }
-
-    double snapshot() {
-        return value();
+    boolean consumeUpdated() {
+        return UPDATED_UPDATER.getAndSet(this, 0) != 0;
     }
 }
@@ -0,0 +1,283 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import java.util.Arrays;
+
+/**
+ * Chunk of a time series compressed the way Facebook's Gorilla does: delta-of-delta encoded
+ * timestamps (in milliseconds) and XOR encoded values, packed into a byte array. Points are
+ * appended in the order of their timestamps, and decoded by streaming through the bits.
+ *
+ * NOTE: This class is not thread-safe.
+ */
+final class GorillaChunk {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int bitLength;
+
+    private int count;
+
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long lastDelta;
+
+    private long lastValueBits;
+    private int lastLeadingZeros = -1;
+    private int lastTrailingZeros;
+
+    /**
+     * Appends a point, returning the number of bytes the chunk has grown by.
+     */
+    int append(long timestamp, double value) {
+        int capacity = bytes.length;
+        long valueBits = Double.doubleToRawLongBits(value);
+
+        if (count == 0) {
+            writeBits(timestamp, 64);
+            writeBits(valueBits, 64);
+
+            firstTimestamp = timestamp;
+        } else {
+            long delta = timestamp - lastTimestamp;
+
+            writeTimestampDelta(delta - lastDelta);
+            writeValueXor(valueBits ^ lastValueBits);
+
+            lastDelta = delta;
+        }
+
+        lastTimestamp = timestamp;
+        lastValueBits = valueBits;
+        ++count;
+
+        return bytes.length - capacity;
+    }
+
+    /**
+     * Trims the bytes to the ones in use, returning the number of bytes freed.
+     */
+    int seal() {
+        int capacity = bytes.length;
+
+        bytes = Arrays.copyOf(bytes, (bitLength + 7) >>> 3);
+
+        return capacity - bytes.length;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    int getSizeInBytes() {
+        return bytes.length;
+    }
+
+    /**
+     * Returns a copy of the chunk, safe to decode while points keep being appended to this one.
+     */
+    GorillaChunk copy() {
+        GorillaChunk copy = new GorillaChunk();
+
+        copy.bytes = Arrays.copyOf(bytes, (bitLength + 7) >>> 3);
+        copy.bitLength = bitLength;
+        copy.count = count;
+        copy.firstTimestamp = firstTimestamp;
+        copy.lastTimestamp = lastTimestamp;
+
+        return copy;
+    }
+
+    /**
+     * Decodes the points within [fromTimestamp, toTimestamp], in order.
+     */
+    void decode(long fromTimestamp, long toTimestamp, MetricRetention.PointConsumer consumer) {
+        if (count == 0 || lastTimestamp < fromTimestamp || firstTimestamp > toTimestamp) {
+            return;
+        }
+
+        new Decoder(bytes).decode(count, fromTimestamp, toTimestamp, consumer);
+    }
+
+    private void writeTimestampDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0b0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta + 2047, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValueXor(long xor) {
+        if (xor == 0) {
+            writeBits(0b0, 1);
+            return;
+        }
+
+        // NOTE: Capped to fit into 5 bits
+        int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+
+        if (lastLeadingZeros >= 0 && leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+            // Meaningful bits fit into the window of the previous value
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+            return;
+        }
+
+        int significantBits = 64 - leadingZeros - trailingZeros;
+
+        writeBits(0b11, 2);
+        writeBits(leadingZeros, 5);
+        writeBits(significantBits - 1, 6);
+        writeBits(xor >>> trailingZeros, significantBits);
+
+        lastLeadingZeros = leadingZeros;
+        lastTrailingZeros = trailingZeros;
+    }
+
+    /**
+     * Writes the lowest bits of the value, the most significant one first.
+     */
+    private void writeBits(long value, int bits) {
+        int required = (bitLength + bits + 7) >>> 3;
+
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+        }
+
+        while (bits > 0) {
+            int free = 8 - (bitLength & 7);
+            int written = Math.min(free, bits);
+            int chunk = (int) (value >>> (bits - written)) & ((1 << written) - 1);
+
+            bytes[bitLength >>> 3] |= (byte) (chunk << (free - written));
+
+            bitLength += written;
+            bits -= written;
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[] bytes;
+        private int position;
+
+        private long timestamp;
+        private long delta;
+
+        private long valueBits;
+        private int leadingZeros;
+        private int trailingZeros;
+
+        private Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        void decode(int count, long fromTimestamp, long toTimestamp, MetricRetention.PointConsumer consumer) {
+            timestamp = readBits(64);
+            valueBits = readBits(64);
+
+            for (int i = 0; i < count; ++i) {
+                if (i > 0) {
+                    delta += readTimestampDelta();
+                    timestamp += delta;
+                    valueBits ^= readValueXor();
+                }
+
+                if (timestamp > toTimestamp) {
+                    return;
+                }
+
+                if (timestamp >= fromTimestamp) {
+                    consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+                }
+            }
+        }
+
+        private long readTimestampDelta() {
+            if (readBits(1) == 0) {
+                return 0;
+            }
+
+            if (readBits(1) == 0) {
+                return readBits(7) - 63;
+            }
+
+            if (readBits(1) == 0) {
+                return readBits(9) - 255;
+            }
+
+            if (readBits(1) == 0) {
+                return readBits(12) - 2047;
+            }
+
+            return readBits(64);
+        }
+
+        private long readValueXor() {
+            if (readBits(1) == 0) {
+                return 0;
+            }
+
+            if (readBits(1) != 0) {
+                leadingZeros = (int) readBits(5);
+                trailingZeros = 64 - leadingZeros - ((int) readBits(6) + 1);
+            }
+
+            return readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+        }
+
+        private long readBits(int bits) {
+            long value = 0;
+
+            while (bits > 0) {
+                int available = 8 - (position & 7);
+                int read = Math.min(available, bits);
+                int chunk = (bytes[position >>> 3] >>> (available - read)) & ((1 << read) - 1);
+
+                value = (value << read) | chunk;
+
+                position += read;
+                bits -= read;
+            }
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+/**
+ * Log-linear mapping of non-negative integer magnitudes onto bucket indexes, in the fashion of
+ * HdrHistogram: every power of two is split into the same number of equally wide sub-buckets,
+ * bounding the relative error of every bucket, and any magnitude is mapped onto its bucket
+ * with a handful of bit operations rather than a search over the bounds.
+ *
+ * With {@code p} precision bits, magnitudes below {@code 2^p} get a bucket of their own, while every
+ * subsequent power of two {@code [2^k, 2^(k + 1))} is split into {@code 2^(p - 1)} sub-buckets,
+ * so that a bucket is never wider than {@code 2^-(p - 1)} of its lower bound.
+ */
+final class LogLinearBucketing {
+    static final int DEFAULT_PRECISION_BITS = 6;
+
+    static final int MIN_PRECISION_BITS = 1;
+    static final int MAX_PRECISION_BITS = 16;
+
+    private final int precisionBits;
+    private final long linearCount;
+    private final int subBucketBits;
+    private final long subBucketCount;
+
+    // Number of the buckets needed to cover the highest trackable magnitude
+    private final int bucketsCount;
+
+    LogLinearBucketing(int precisionBits, long highestTrackableMagnitude) {
+        if (precisionBits < MIN_PRECISION_BITS || precisionBits > MAX_PRECISION_BITS) {
+            throw new IllegalArgumentException(
+                String.format("Precision bits must be within [%d, %d]", MIN_PRECISION_BITS, MAX_PRECISION_BITS)
+            );
+        }
+
+        if (highestTrackableMagnitude < 1) {
+            throw new IllegalArgumentException("Highest trackable value must be at least one unit");
+        }
+
+        // Keeps upper bound of the last bucket from overflowing
+        if (highestTrackableMagnitude > Long.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Highest trackable value is too large for the given unit");
+        }
+
+        this.precisionBits = precisionBits;
+        this.linearCount = 1L << precisionBits;
+        this.subBucketBits = precisionBits - 1;
+        this.subBucketCount = 1L << subBucketBits;
+
+        long count = (long) indexOf(highestTrackableMagnitude) + 1;
+
+        if (count > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("Too many buckets needed for the given precision and range");
+        }
+
+        this.bucketsCount = (int) count;
+    }
+
+    int getBucketsCount() {
+        return bucketsCount;
+    }
+
+    /**
+     * Returns index of the bucket the given non-negative magnitude falls into, ignoring the highest
+     * trackable magnitude.
+     */
+    int indexOf(long magnitude) {
+        if (magnitude < linearCount) {
+            return (int) magnitude;
+        }
+
+        // Magnitude lies within [2^k, 2^(k + 1)), which is split into sub-buckets
+        // of the width of 2^shift
+        int k = 63 - Long.numberOfLeadingZeros(magnitude);
+        int shift = k - subBucketBits;
+
+        return (int) (linearCount + (long) (shift - 1) * subBucketCount + ((magnitude >>> shift) - subBucketCount));
+    }
+
+    /**
+     * Returns index of the bucket, in the {@link ImmutableBuckets} convention, the given
+     * magnitude falls into: negative magnitudes fall into the first bucket, and those beyond
+     * the highest trackable one into the last (overflow) bucket.
+     */
+    int bucketIndexOf(long magnitude) {
+        if (magnitude < 0) {
+            return 0;
+        }
+
+        return Math.min(indexOf(magnitude), bucketsCount);
+    }
+
+    /**
+     * Returns (exclusive) upper bound of the bucket with the given index.
+     */
+    long upperBoundOf(int index) {
+        if (index < linearCount) {
+            return index + 1;
+        }
+
+        long offset = index - linearCount;
+        int shift = (int) (offset >>> subBucketBits) + 1;
+        long subBucket = (offset & (subBucketCount - 1)) + subBucketCount;
+
+        return (subBucket + 1) << shift;
+    }
+
+    int getPrecisionBits() {
+        return precisionBits;
+    }
+}
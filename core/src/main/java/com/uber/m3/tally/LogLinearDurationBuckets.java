@@ -0,0 +1,76 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+
+/**
+ * {@link DurationBuckets} with log-linear bounds, locating the bucket of a duration with bit arithmetic
+ * instead of a binary search. See {@link DurationBuckets#logLinear(Duration, Duration, int)}.
+ */
+final class LogLinearDurationBuckets extends DurationBuckets {
+    // Microsecond resolution up to an hour
+    static final LogLinearDurationBuckets DEFAULT =
+        create(Duration.ofNanos(Duration.NANOS_PER_MICRO), Duration.ofHours(1), LogLinearBucketing.DEFAULT_PRECISION_BITS);
+
+    private final LogLinearBucketing bucketing;
+    private final long unitNanos;
+
+    private LogLinearDurationBuckets(Duration[] upperBounds, LogLinearBucketing bucketing, long unitNanos) {
+        super(upperBounds);
+
+        this.bucketing = bucketing;
+        this.unitNanos = unitNanos;
+    }
+
+    static LogLinearDurationBuckets create(Duration unit, Duration highestTrackableDuration, int precisionBits) {
+        if (unit.getNanos() <= 0) {
+            throw new IllegalArgumentException("Unit must be positive");
+        }
+
+        if (highestTrackableDuration.compareTo(unit) < 0) {
+            throw new IllegalArgumentException("Highest trackable duration must not be less than the unit");
+        }
+
+        // Keeps upper bound of the last bucket from overflowing
+        if (highestTrackableDuration.getNanos() > Long.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Highest trackable duration is too large");
+        }
+
+        long unitNanos = unit.getNanos();
+        LogLinearBucketing bucketing =
+            new LogLinearBucketing(precisionBits, highestTrackableDuration.getNanos() / unitNanos);
+
+        Duration[] upperBounds = new Duration[bucketing.getBucketsCount()];
+
+        for (int i = 0; i < upperBounds.length; ++i) {
+            upperBounds[i] = Duration.ofNanos(bucketing.upperBoundOf(i) * unitNanos);
+        }
+
+        return new LogLinearDurationBuckets(upperBounds, bucketing, unitNanos);
+    }
+
+    @Override
+    public int getBucketIndexFor(Duration value) {
+        // NOTE: Floor division keeps negative durations out of the [0, unit) bucket
+        return bucketing.bucketIndexOf(Math.floorDiv(value.getNanos(), unitNanos));
+    }
+}
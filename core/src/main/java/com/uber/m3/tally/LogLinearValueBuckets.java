@@ -0,0 +1,72 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+/**
+ * {@link ValueBuckets} with log-linear bounds, locating the bucket of a value with bit arithmetic
+ * instead of a binary search. See {@link ValueBuckets#logLinear(double, double, int)}.
+ */
+final class LogLinearValueBuckets extends ValueBuckets {
+    // Unit resolution up to a billion
+    static final LogLinearValueBuckets DEFAULT = create(1, 1e9, LogLinearBucketing.DEFAULT_PRECISION_BITS);
+
+    private final LogLinearBucketing bucketing;
+    private final double unit;
+
+    private LogLinearValueBuckets(Double[] upperBounds, LogLinearBucketing bucketing, double unit) {
+        super(upperBounds);
+
+        this.bucketing = bucketing;
+        this.unit = unit;
+    }
+
+    static LogLinearValueBuckets create(double unit, double highestTrackableValue, int precisionBits) {
+        if (!(unit > 0) || Double.isInfinite(unit)) {
+            throw new IllegalArgumentException("Unit must be positive and finite");
+        }
+
+        if (!(highestTrackableValue >= unit) || Double.isInfinite(highestTrackableValue)) {
+            throw new IllegalArgumentException("Highest trackable value must be finite and not less than the unit");
+        }
+
+        LogLinearBucketing bucketing = new LogLinearBucketing(precisionBits, (long) (highestTrackableValue / unit));
+
+        Double[] upperBounds = new Double[bucketing.getBucketsCount()];
+
+        for (int i = 0; i < upperBounds.length; ++i) {
+            upperBounds[i] = bucketing.upperBoundOf(i) * unit;
+        }
+
+        return new LogLinearValueBuckets(upperBounds, bucketing, unit);
+    }
+
+    @Override
+    public int getBucketIndexFor(double value) {
+        double magnitude = value / unit;
+
+        if (magnitude >= Long.MAX_VALUE) {
+            return bucketing.getBucketsCount();
+        }
+
+        // NOTE: Flooring (rather than truncating) keeps (-1, 0) out of the [0, 1) bucket
+        return bucketing.bucketIndexOf((long) Math.floor(magnitude));
+    }
+}
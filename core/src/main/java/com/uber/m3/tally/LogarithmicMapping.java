@@ -0,0 +1,87 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+/**
+ * Logarithmic mapping of positive values onto integer indexes, such that every value within
+ * {@code (gamma^(i - 1), gamma^i]} maps onto index {@code i}, and index {@code i} maps back
+ * onto a value within the relative accuracy of any of those.
+ */
+final class LogarithmicMapping {
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    // Values of lower magnitude are considered zero
+    private final double minIndexableValue;
+
+    private final int minIndex;
+    private final int maxIndex;
+
+    LogarithmicMapping(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be within (0, 1)");
+        }
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.minIndexableValue = Double.MIN_NORMAL * gamma;
+
+        this.minIndex = indexOf(minIndexableValue);
+        this.maxIndex = indexOf(Double.MAX_VALUE);
+    }
+
+    double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    double getMinIndexableValue() {
+        return minIndexableValue;
+    }
+
+    int getMinIndex() {
+        return minIndex;
+    }
+
+    int getMaxIndex() {
+        return maxIndex;
+    }
+
+    /**
+     * Returns index of the given value, which must not be less than {@link #getMinIndexableValue()}.
+     */
+    int indexOf(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Returns the value representative of the given index, within relative accuracy of any of
+     * the values mapped onto it.
+     */
+    double valueOf(int index) {
+        return 2 * Math.pow(gamma, index) / (1 + gamma);
+    }
+
+    boolean isCompatible(LogarithmicMapping other) {
+        return gamma == other.gamma;
+    }
+}
@@ -0,0 +1,52 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+/**
+ * A meter metric, tracking exponentially-weighted moving average rates of events per second
+ * over the last 1, 5 and 15 minutes. The rates are updated whenever the meter is reported,
+ * and are reported as {@link Gauge}s tagged with their {@code window}.
+ */
+public interface Meter {
+    /**
+     * Marks the occurrence of events.
+     * @param events number of events that occurred
+     */
+    void mark(long events);
+
+    /**
+     * Returns the moving average rate of events per second over the last minute.
+     * @return rate of events per second
+     */
+    double getOneMinuteRate();
+
+    /**
+     * Returns the moving average rate of events per second over the last 5 minutes.
+     * @return rate of events per second
+     */
+    double getFiveMinuteRate();
+
+    /**
+     * Returns the moving average rate of events per second over the last 15 minutes.
+     * @return rate of events per second
+     */
+    double getFifteenMinuteRate();
+}
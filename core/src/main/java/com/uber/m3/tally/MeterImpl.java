@@ -0,0 +1,148 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default implementation of a {@link Meter}.
+ *
+ * Events are counted in striped cells, which are summed up and reset on every report,
+ * updating the moving averages by the time elapsed since the previous one. Rates are
+ * kept in volatile fields, so reading them takes neither locks nor atomic operations.
+ */
+class MeterImpl extends MetricBase implements Meter, Reportable {
+    static final String WINDOW_TAG = "window";
+
+    private static final double ONE_MINUTE_SECONDS = 60;
+    private static final double FIVE_MINUTES_SECONDS = 5 * 60;
+    private static final double FIFTEEN_MINUTES_SECONDS = 15 * 60;
+
+    private final LongAdder uncounted = new LongAdder();
+
+    private volatile double oneMinuteRate;
+    private volatile double fiveMinuteRate;
+    private volatile double fifteenMinuteRate;
+
+    // NOTE: Guarded by this
+    private long lastTickNanos;
+    private boolean initialized;
+
+    /**
+     * NOTE: The meter is not added to the reporting queue, which is up to the caller once
+     *       the construction completes, so that it's never reported before being fully initialized
+     */
+    MeterImpl(String fqn) {
+        this(fqn, System.nanoTime());
+    }
+
+    MeterImpl(String fqn, long startNanos) {
+        super(fqn);
+
+        this.lastTickNanos = startNanos;
+    }
+
+    @Override
+    public void mark(long events) {
+        uncounted.add(events);
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        return oneMinuteRate;
+    }
+
+    @Override
+    public double getFiveMinuteRate() {
+        return fiveMinuteRate;
+    }
+
+    @Override
+    public double getFifteenMinuteRate() {
+        return fifteenMinuteRate;
+    }
+
+    @Override
+    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        tick(System.nanoTime());
+
+        reportRate(tags, reporter, "1m", oneMinuteRate);
+        reportRate(tags, reporter, "5m", fiveMinuteRate);
+        reportRate(tags, reporter, "15m", fifteenMinuteRate);
+    }
+
+    /**
+     * Updates the moving averages with the events counted since the last tick.
+     */
+    synchronized void tick(long nowNanos) {
+        long elapsedNanos = nowNanos - lastTickNanos;
+
+        if (elapsedNanos <= 0) {
+            return;
+        }
+
+        double elapsedSeconds = (double) elapsedNanos / Duration.NANOS_PER_SECOND;
+        double instantRate = uncounted.sumThenReset() / elapsedSeconds;
+
+        if (initialized) {
+            oneMinuteRate = ewma(oneMinuteRate, instantRate, elapsedSeconds, ONE_MINUTE_SECONDS);
+            fiveMinuteRate = ewma(fiveMinuteRate, instantRate, elapsedSeconds, FIVE_MINUTES_SECONDS);
+            fifteenMinuteRate = ewma(fifteenMinuteRate, instantRate, elapsedSeconds, FIFTEEN_MINUTES_SECONDS);
+        } else {
+            // Starts off with the rate of the first interval, rather than ramping up from zero
+            oneMinuteRate = instantRate;
+            fiveMinuteRate = instantRate;
+            fifteenMinuteRate = instantRate;
+            initialized = true;
+        }
+
+        lastTickNanos = nowNanos;
+    }
+
+    private void reportRate(
+        ImmutableMap<String, String> tags,
+        StatsReporter reporter,
+        String window,
+        double rate
+    ) {
+        Map<String, String> windowTags = new HashMap<>();
+
+        if (tags != null) {
+            windowTags.putAll(tags);
+        }
+
+        windowTags.put(WINDOW_TAG, window);
+
+        reporter.reportGauge(getQualifiedName(), windowTags, rate);
+    }
+
+    private static double ewma(double rate, double instantRate, double elapsedSeconds, double windowSeconds) {
+        // Decays the previous average by the time elapsed, making the rates independent of the reporting interval
+        double alpha = 1 - Math.exp(-elapsedSeconds / windowSeconds);
+
+        return rate + alpha * (instantRate - rate);
+    }
+}
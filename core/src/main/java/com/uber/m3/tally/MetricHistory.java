@@ -0,0 +1,537 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link StatsReporter} keeping the values of the last reporting intervals in memory, for decisions
+ * taken within the process (e.g. by autoscalers or circuit breakers), while passing every value
+ * through to the delegate reporter.
+ *
+ * Counter deltas, gauge values and histogram bucket counts of every series are kept in fixed-size
+ * primitive ring buffers, holding the given number of intervals. Queries over a window cost
+ * proportionally to the number of intervals within the window. Timers and sketches are only
+ * passed through.
+ *
+ * Intervals are delimited by {@link #beginInterval(long)} and {@link #flush()}, as called by
+ * the reporting loop of the root {@link Scope}, and queries only take completed intervals into account.
+ * An interval is keyed by the timestamp it begins at: only a later timestamp begins a new one, while
+ * the same (or an earlier) one keeps reporting into the current interval. Hence a history is meant
+ * to be the reporter of a single root {@link Scope}, as roots sharing it would begin intervals of
+ * their own, unless reporting at the very same timestamps.
+ *
+ * Usage example:
+ * <pre>
+ * {@code
+ *   MetricHistory history = new MetricHistory(reporter, 60);
+ *   Scope scope = new RootScopeBuilder()
+ *       .reporter(history)
+ *       .reportEvery(Duration.ofSeconds(5));
+ *   ...
+ *   double errorsPerSecond = history.rate("errors", tags, Duration.ofSeconds(60));
+ * }
+ * </pre>
+ */
+public final class MetricHistory implements StatsReporter {
+    private final StatsReporter delegate;
+    private final int capacity;
+
+    private final ConcurrentHashMap<ScopeKey, CounterSeries> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ScopeKey, GaugeSeries> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ScopeKey, HistogramSeries> histograms = new ConcurrentHashMap<>();
+
+    // Timestamps (in nanoseconds since the epoch) of the intervals, each of which covers the time
+    // since the previous one. One more than the capacity is kept, for the start of the oldest interval
+    // NOTE: Guarded by this
+    private final long[] intervalTimestamps;
+
+    private volatile long currentInterval;
+
+    // NOTE: Guarded by this
+    private long completedInterval;
+
+    /**
+     * Creates a history passing values through to the delegate.
+     * @param delegate  reporter to pass every value through to
+     * @param intervals number of the last intervals to keep the values of
+     */
+    public MetricHistory(StatsReporter delegate, int intervals) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate reporter must be provided");
+        }
+
+        if (intervals <= 0) {
+            throw new IllegalArgumentException("Must keep a positive number of intervals");
+        }
+
+        this.delegate = delegate;
+        this.capacity = intervals;
+        this.intervalTimestamps = new long[intervals + 1];
+        this.intervalTimestamps[0] = System.currentTimeMillis() * Duration.NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the sum of the deltas of a {@link Counter} over the window.
+     * @param name   name of the {@link Counter}
+     * @param tags   tags the {@link Counter} is reported with
+     * @param window window to sum up the deltas over
+     * @return sum of the deltas, or 0 if none were reported
+     */
+    public long sum(String name, Map<String, String> tags, Duration window) {
+        CounterSeries series = counters.get(keyOf(name, tags));
+        Window intervals = window(window);
+
+        return series == null || intervals == null ? 0 : series.sum(intervals.from, intervals.to);
+    }
+
+    /**
+     * Returns the rate per second of a {@link Counter} over the window.
+     * @param name   name of the {@link Counter}
+     * @param tags   tags the {@link Counter} is reported with
+     * @param window window to compute the rate over
+     * @return rate per second, or 0 if no deltas were reported
+     */
+    public double rate(String name, Map<String, String> tags, Duration window) {
+        CounterSeries series = counters.get(keyOf(name, tags));
+        Window intervals = window(window);
+
+        if (series == null || intervals == null) {
+            return 0;
+        }
+
+        return series.sum(intervals.from, intervals.to) * (double) Duration.NANOS_PER_SECOND / intervals.nanos;
+    }
+
+    /**
+     * Returns the average of the values of a {@link Gauge} over the window. As gauges are only
+     * reported once updated, the intervals with no updates hold the last value reported before them.
+     * @param name   name of the {@link Gauge}
+     * @param tags   tags the {@link Gauge} is reported with
+     * @param window window to average the values over
+     * @return average of the values, or {@code NaN} if the {@link Gauge} has not been reported
+     *         within or before the window
+     */
+    public double average(String name, Map<String, String> tags, Duration window) {
+        GaugeSeries series = gauges.get(keyOf(name, tags));
+        Window intervals = window(window);
+
+        return series == null || intervals == null ? Double.NaN : series.average(intervals.from, intervals.to);
+    }
+
+    /**
+     * Returns the quantile of a {@link Histogram} over the window, interpolated linearly within
+     * the bucket it falls into. Durations are returned in seconds.
+     * @param name     name of the {@link Histogram}
+     * @param tags     tags the {@link Histogram} is reported with
+     * @param quantile quantile to compute, within [0, 1]
+     * @param window   window to compute the quantile over
+     * @return the quantile, or {@code NaN} if no samples were reported
+     */
+    public double quantile(String name, Map<String, String> tags, double quantile, Duration window) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be within [0, 1]");
+        }
+
+        HistogramSeries series = histograms.get(keyOf(name, tags));
+        Window intervals = window(window);
+
+        return series == null || intervals == null ? Double.NaN : series.quantile(quantile, intervals.from, intervals.to);
+    }
+
+    @Override
+    public Capabilities capabilities() {
+        return delegate.capabilities();
+    }
+
+    @Override
+    public synchronized void beginInterval(long intervalTimestampNanos) {
+        // NOTE: The initial interval only holds the start of the first one, hence is always left
+        if (currentInterval == 0 || intervalTimestampNanos > timestampOf(currentInterval)) {
+            long interval = currentInterval + 1;
+
+            intervalTimestamps[(int) (interval % intervalTimestamps.length)] = intervalTimestampNanos;
+            currentInterval = interval;
+        }
+
+        delegate.beginInterval(intervalTimestampNanos);
+    }
+
+    @Override
+    public void flush() {
+        synchronized (this) {
+            completedInterval = currentInterval;
+        }
+
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public void reportCounter(String name, Map<String, String> tags, long value) {
+        counters.computeIfAbsent(keyOf(name, tags), ignored -> new CounterSeries(capacity))
+            .add(currentInterval, value);
+
+        delegate.reportCounter(name, tags, value);
+    }
+
+    @Override
+    public void reportGauge(String name, Map<String, String> tags, double value) {
+        gauges.computeIfAbsent(keyOf(name, tags), ignored -> new GaugeSeries(capacity))
+            .set(currentInterval, value);
+
+        delegate.reportGauge(name, tags, value);
+    }
+
+    @Override
+    public void reportTimer(String name, Map<String, String> tags, Duration interval) {
+        delegate.reportTimer(name, tags, interval);
+    }
+
+    @Override
+    public void reportTimer(String name, Map<String, String> tags, Duration interval, double sampleRate) {
+        delegate.reportTimer(name, tags, interval, sampleRate);
+    }
+
+    @Override
+    public void reportHistogramValueSamples(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        double bucketLowerBound,
+        double bucketUpperBound,
+        long samples
+    ) {
+        recordHistogramSamples(name, tags, buckets, bucketUpperBound, samples);
+
+        delegate.reportHistogramValueSamples(name, tags, buckets, bucketLowerBound, bucketUpperBound, samples);
+    }
+
+    @Override
+    public void reportHistogramDurationSamples(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        Duration bucketLowerBound,
+        Duration bucketUpperBound,
+        long samples
+    ) {
+        recordHistogramSamples(
+            name,
+            tags,
+            buckets,
+            Duration.MAX_VALUE.equals(bucketUpperBound) ? Double.MAX_VALUE : bucketUpperBound.getSeconds(),
+            samples
+        );
+
+        delegate.reportHistogramDurationSamples(name, tags, buckets, bucketLowerBound, bucketUpperBound, samples);
+    }
+
+    @Override
+    public void reportExponentialHistogram(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        Base2ExponentialHistogram histogram
+    ) {
+        long[] counts = histogram.toBucketCounts(buckets);
+
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] != 0) {
+                recordHistogramSamples(name, tags, buckets, buckets.getValueUpperBoundFor(i), counts[i]);
+            }
+        }
+
+        delegate.reportExponentialHistogram(name, tags, buckets, histogram);
+    }
+
+    @Override
+    public void reportSketch(String name, Map<String, String> tags, DDSketch sketch) {
+        delegate.reportSketch(name, tags, sketch);
+    }
+
+    private void recordHistogramSamples(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        double bucketUpperBound,
+        long samples
+    ) {
+        histograms.computeIfAbsent(keyOf(name, tags), ignored -> new HistogramSeries(capacity, upperBoundsOf(buckets)))
+            .add(currentInterval, bucketUpperBound, samples);
+    }
+
+    /**
+     * Returns the completed intervals within the window, ending with the last completed one,
+     * or null if none were completed.
+     */
+    private synchronized Window window(Duration window) {
+        long to = completedInterval;
+
+        if (to == 0) {
+            return null;
+        }
+
+        long end = timestampOf(to);
+        long from = to;
+
+        // NOTE: The first interval covers the time since the history was created
+        while (from > 1 && from > to - capacity + 1 && timestampOf(from - 1) > end - window.getNanos()) {
+            --from;
+        }
+
+        return new Window(from, to, Math.max(1, end - timestampOf(from - 1)));
+    }
+
+    private long timestampOf(long interval) {
+        return intervalTimestamps[(int) (interval % intervalTimestamps.length)];
+    }
+
+    private static ScopeKey keyOf(String name, Map<String, String> tags) {
+        if (tags == null || tags instanceof ImmutableMap) {
+            return new ScopeKey(name, (ImmutableMap<String, String>) tags);
+        }
+
+        return new ScopeKey(name, new ImmutableMap<>(tags));
+    }
+
+    private static double[] upperBoundsOf(Buckets buckets) {
+        if (buckets instanceof DurationBuckets) {
+            List<Duration> bounds = buckets.getDurationUpperBounds();
+
+            return bounds.stream().mapToDouble(Duration::getSeconds).toArray();
+        }
+
+        List<Double> bounds = buckets.getValueUpperBounds();
+
+        return bounds.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private static final class Window {
+        private final long from;
+        private final long to;
+        private final long nanos;
+
+        private Window(long from, long to, long nanos) {
+            this.from = from;
+            this.to = to;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * Ring of the values of a single series, of the last intervals it has been reported in.
+     */
+    private abstract static class Series {
+        protected final int capacity;
+
+        // NOTE: Guarded by this
+        private long lastInterval = -1;
+
+        protected Series(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Moves the series to the interval, clearing the slots of the intervals skipped since
+         * the last report, and returns the slot of the interval.
+         */
+        protected final int advance(long interval) {
+            if (interval > lastInterval) {
+                for (long i = Math.max(lastInterval + 1, interval - capacity + 1); i <= interval; ++i) {
+                    clear(slotOf(i));
+                }
+
+                lastInterval = interval;
+            }
+
+            return slotOf(interval);
+        }
+
+        /**
+         * Returns whether the slot of the interval holds its values.
+         */
+        protected final boolean retains(long interval) {
+            return interval <= lastInterval && interval > lastInterval - capacity;
+        }
+
+        protected final int slotOf(long interval) {
+            return (int) (interval % capacity);
+        }
+
+        protected abstract void clear(int slot);
+    }
+
+    private static final class CounterSeries extends Series {
+        private final long[] deltas;
+
+        private CounterSeries(int capacity) {
+            super(capacity);
+
+            this.deltas = new long[capacity];
+        }
+
+        synchronized void add(long interval, long delta) {
+            deltas[advance(interval)] += delta;
+        }
+
+        synchronized long sum(long from, long to) {
+            long sum = 0;
+
+            for (long i = from; i <= to; ++i) {
+                if (retains(i)) {
+                    sum += deltas[slotOf(i)];
+                }
+            }
+
+            return sum;
+        }
+
+        @Override
+        protected void clear(int slot) {
+            deltas[slot] = 0;
+        }
+    }
+
+    private static final class GaugeSeries extends Series {
+        private final double[] values;
+
+        // NOTE: Guarded by this
+        private double lastValue = Double.NaN;
+
+        private GaugeSeries(int capacity) {
+            super(capacity);
+
+            this.values = new double[capacity];
+        }
+
+        synchronized void set(long interval, double value) {
+            values[advance(interval)] = value;
+            lastValue = value;
+        }
+
+        synchronized double average(long from, long to) {
+            // Carries the last value forward through the intervals since the last report
+            advance(to);
+
+            double sum = 0;
+            int count = 0;
+
+            for (long i = from; i <= to; ++i) {
+                if (retains(i) && !Double.isNaN(values[slotOf(i)])) {
+                    sum += values[slotOf(i)];
+                    ++count;
+                }
+            }
+
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        @Override
+        protected void clear(int slot) {
+            // Gauges are not reported in intervals without updates, hence hold the last value,
+            // with NaN left for the intervals before the first report
+            values[slot] = lastValue;
+        }
+    }
+
+    private static final class HistogramSeries extends Series {
+        private final double[] upperBounds;
+        private final int bucketsCount;
+
+        // Counts of every bucket of an interval are adjacent
+        private final long[] counts;
+
+        private HistogramSeries(int capacity, double[] upperBounds) {
+            super(capacity);
+
+            this.upperBounds = upperBounds;
+            this.bucketsCount = upperBounds.length + 1;
+            this.counts = new long[capacity * bucketsCount];
+        }
+
+        synchronized void add(long interval, double bucketUpperBound, long samples) {
+            int index = Arrays.binarySearch(upperBounds, bucketUpperBound);
+
+            // Upper bound of the overflow bucket is not among the bounds
+            int bucket = index >= 0 ? index : upperBounds.length;
+
+            counts[advance(interval) * bucketsCount + bucket] += samples;
+        }
+
+        synchronized double quantile(double quantile, long from, long to) {
+            long[] merged = new long[bucketsCount];
+            long total = 0;
+
+            for (long i = from; i <= to; ++i) {
+                if (retains(i)) {
+                    int offset = slotOf(i) * bucketsCount;
+
+                    for (int b = 0; b < bucketsCount; ++b) {
+                        merged[b] += counts[offset + b];
+                        total += counts[offset + b];
+                    }
+                }
+            }
+
+            if (total == 0) {
+                return Double.NaN;
+            }
+
+            double rank = quantile * total;
+            long cumulative = 0;
+
+            for (int b = 0; b < bucketsCount; ++b) {
+                if (merged[b] == 0 || cumulative + merged[b] < rank) {
+                    cumulative += merged[b];
+                    continue;
+                }
+
+                if (b == upperBounds.length) {
+                    // Overflow bucket has no upper bound to interpolate towards
+                    return upperBounds[upperBounds.length - 1];
+                }
+
+                double upper = upperBounds[b];
+                double lower = b == 0 ? Math.min(0, upper) : upperBounds[b - 1];
+
+                return lower + (upper - lower) * (rank - cumulative) / merged[b];
+            }
+
+            return upperBounds[upperBounds.length - 1];
+        }
+
+        @Override
+        protected void clear(int slot) {
+            Arrays.fill(counts, slot * bucketsCount, (slot + 1) * bucketsCount, 0);
+        }
+    }
+}
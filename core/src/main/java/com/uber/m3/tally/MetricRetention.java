@@ -0,0 +1,489 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link StatsReporter} retaining the values of every reporting interval in memory, compressed,
+ * while passing every value through to the delegate reporter. Meant for a long history of
+ * recent values at a high cardinality, e.g. to be served by debugging endpoints.
+ *
+ * Counter deltas and gauge values of every series are compressed into chunks of
+ * {@link GorillaChunk delta-of-delta encoded timestamps and XOR encoded values}, each
+ * holding up to a fixed number of intervals. Whenever the compressed size, including the capacity
+ * of the chunks still being appended to, exceeds the memory budget, the oldest sealed chunks are
+ * evicted, and once there are none left, the chunks being appended to are sealed early to be evicted
+ * in turn. Series left with no values, or with none reported for a number of intervals, are removed
+ * altogether. Histograms, timers and sketches are only passed through.
+ *
+ * Every interval's values are appended once the interval is flushed, with the timestamp
+ * (in milliseconds since the epoch) passed to {@link #beginInterval(long)}.
+ */
+public final class MetricRetention implements StatsReporter {
+    public static final int DEFAULT_POINTS_PER_CHUNK = 120;
+    public static final int DEFAULT_MAX_IDLE_INTERVALS = 720;
+
+    private final StatsReporter delegate;
+    private final long memoryBudgetBytes;
+    private final int pointsPerChunk;
+    private final int maxIdleIntervals;
+
+    private final ConcurrentHashMap<ScopeKey, Series> series = new ConcurrentHashMap<>();
+
+    // Sealed chunks in the order they were sealed in, the oldest first
+    private final ConcurrentLinkedQueue<SealedChunk> sealedChunks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong sizeInBytes = new AtomicLong();
+
+    private volatile long intervalTimestampMillis = System.currentTimeMillis();
+
+    /**
+     * Creates a retention store passing values through to the delegate.
+     * @param delegate          reporter to pass every value through to
+     * @param memoryBudgetBytes number of bytes the compressed values may take up
+     */
+    public MetricRetention(StatsReporter delegate, long memoryBudgetBytes) {
+        this(delegate, memoryBudgetBytes, DEFAULT_POINTS_PER_CHUNK);
+    }
+
+    /**
+     * Creates a retention store passing values through to the delegate.
+     * @param delegate          reporter to pass every value through to
+     * @param memoryBudgetBytes number of bytes the compressed values may take up
+     * @param pointsPerChunk    number of intervals each chunk holds, and is evicted as a whole
+     */
+    public MetricRetention(StatsReporter delegate, long memoryBudgetBytes, int pointsPerChunk) {
+        this(delegate, memoryBudgetBytes, pointsPerChunk, DEFAULT_MAX_IDLE_INTERVALS);
+    }
+
+    /**
+     * Creates a retention store passing values through to the delegate.
+     * @param delegate          reporter to pass every value through to
+     * @param memoryBudgetBytes number of bytes the compressed values may take up
+     * @param pointsPerChunk    number of intervals each chunk holds, and is evicted as a whole
+     * @param maxIdleIntervals  number of consecutive intervals with no value reported,
+     *                          after which the series is removed along with its values
+     */
+    public MetricRetention(StatsReporter delegate, long memoryBudgetBytes, int pointsPerChunk, int maxIdleIntervals) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate reporter must be provided");
+        }
+
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+
+        if (pointsPerChunk <= 0) {
+            throw new IllegalArgumentException("Chunks must hold a positive number of points");
+        }
+
+        if (maxIdleIntervals <= 0) {
+            throw new IllegalArgumentException("Series must be retained for a positive number of idle intervals");
+        }
+
+        this.delegate = delegate;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.pointsPerChunk = pointsPerChunk;
+        this.maxIdleIntervals = maxIdleIntervals;
+    }
+
+    /**
+     * Streams the retained values of a series within the range, in the order of their timestamps.
+     * Values are decompressed as they are consumed, with no lock held.
+     * @param name                name of the {@link Counter} or {@link Gauge}
+     * @param tags                tags the series is reported with
+     * @param fromTimestampMillis start of the range (inclusive), in milliseconds since the epoch
+     * @param toTimestampMillis   end of the range (inclusive), in milliseconds since the epoch
+     * @param consumer            consumer of the values
+     */
+    public void read(
+        String name,
+        Map<String, String> tags,
+        long fromTimestampMillis,
+        long toTimestampMillis,
+        PointConsumer consumer
+    ) {
+        Series s = series.get(keyOf(name, tags));
+
+        if (s == null) {
+            return;
+        }
+
+        for (GorillaChunk chunk : s.chunks()) {
+            if (chunk.getFirstTimestamp() > toTimestampMillis) {
+                return;
+            }
+
+            chunk.decode(fromTimestampMillis, toTimestampMillis, consumer);
+        }
+    }
+
+    /**
+     * Returns the number of bytes the compressed values currently take up, including the capacity
+     * of the chunks still being appended to.
+     * @return number of bytes of the compressed values
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes.get();
+    }
+
+    /**
+     * Returns the number of series currently retained.
+     * @return number of series
+     */
+    public int getSeriesCount() {
+        return series.size();
+    }
+
+    @Override
+    public Capabilities capabilities() {
+        return delegate.capabilities();
+    }
+
+    @Override
+    public void beginInterval(long intervalTimestampNanos) {
+        intervalTimestampMillis = intervalTimestampNanos / Duration.NANOS_PER_MILLI;
+
+        delegate.beginInterval(intervalTimestampNanos);
+    }
+
+    @Override
+    public void flush() {
+        for (Series s : series.values()) {
+            s.append();
+        }
+
+        evict();
+
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public void reportCounter(String name, Map<String, String> tags, long value) {
+        ScopeKey key = keyOf(name, tags);
+        Series s;
+
+        do {
+            s = seriesOf(key);
+        } while (!s.add(value));
+
+        delegate.reportCounter(name, tags, value);
+    }
+
+    @Override
+    public void reportGauge(String name, Map<String, String> tags, double value) {
+        ScopeKey key = keyOf(name, tags);
+        Series s;
+
+        do {
+            s = seriesOf(key);
+        } while (!s.set(value));
+
+        delegate.reportGauge(name, tags, value);
+    }
+
+    @Override
+    public void reportTimer(String name, Map<String, String> tags, Duration interval) {
+        delegate.reportTimer(name, tags, interval);
+    }
+
+    @Override
+    public void reportTimer(String name, Map<String, String> tags, Duration interval, double sampleRate) {
+        delegate.reportTimer(name, tags, interval, sampleRate);
+    }
+
+    @Override
+    public void reportHistogramValueSamples(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        double bucketLowerBound,
+        double bucketUpperBound,
+        long samples
+    ) {
+        delegate.reportHistogramValueSamples(name, tags, buckets, bucketLowerBound, bucketUpperBound, samples);
+    }
+
+    @Override
+    public void reportHistogramDurationSamples(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        Duration bucketLowerBound,
+        Duration bucketUpperBound,
+        long samples
+    ) {
+        delegate.reportHistogramDurationSamples(name, tags, buckets, bucketLowerBound, bucketUpperBound, samples);
+    }
+
+    @Override
+    public void reportExponentialHistogram(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        Base2ExponentialHistogram histogram
+    ) {
+        delegate.reportExponentialHistogram(name, tags, buckets, histogram);
+    }
+
+    @Override
+    public void reportSketch(String name, Map<String, String> tags, DDSketch sketch) {
+        delegate.reportSketch(name, tags, sketch);
+    }
+
+    private Series seriesOf(ScopeKey key) {
+        return series.computeIfAbsent(key, Series::new);
+    }
+
+    private void evict() {
+        while (sizeInBytes.get() > memoryBudgetBytes) {
+            SealedChunk oldest = sealedChunks.poll();
+
+            if (oldest != null) {
+                oldest.series.evict(oldest.chunk);
+            } else if (!sealOpenChunks()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Seals the chunks still being appended to, the ones with the oldest values first,
+     * returning whether there were any.
+     */
+    private boolean sealOpenChunks() {
+        List<Series> appendedTo = new ArrayList<>();
+
+        for (Series s : series.values()) {
+            if (s.getOpenFirstTimestamp() != Long.MAX_VALUE) {
+                appendedTo.add(s);
+            }
+        }
+
+        if (appendedTo.isEmpty()) {
+            return false;
+        }
+
+        appendedTo.sort(Comparator.comparingLong(Series::getOpenFirstTimestamp));
+
+        for (Series s : appendedTo) {
+            s.sealOpen();
+        }
+
+        return true;
+    }
+
+    private static ScopeKey keyOf(String name, Map<String, String> tags) {
+        if (tags == null || tags instanceof ImmutableMap) {
+            return new ScopeKey(name, (ImmutableMap<String, String>) tags);
+        }
+
+        return new ScopeKey(name, new ImmutableMap<>(tags));
+    }
+
+    /**
+     * Consumer of the values of a series.
+     */
+    public interface PointConsumer {
+        /**
+         * Accepts a single value.
+         * @param timestampMillis timestamp of the interval, in milliseconds since the epoch
+         * @param value           value of the interval
+         */
+        void accept(long timestampMillis, double value);
+    }
+
+    private static final class SealedChunk {
+        private final Series series;
+        private final GorillaChunk chunk;
+
+        private SealedChunk(Series series, GorillaChunk chunk) {
+            this.series = series;
+            this.chunk = chunk;
+        }
+    }
+
+    /**
+     * Chunks of a single series, and the value of the interval being reported.
+     */
+    private final class Series {
+        private final ScopeKey key;
+
+        // NOTE: Guarded by this
+        private final ArrayDeque<GorillaChunk> sealed = new ArrayDeque<>();
+        private GorillaChunk open;
+
+        private boolean pending;
+        private double pendingValue;
+
+        private int idleIntervals;
+        private boolean removed;
+
+        Series(ScopeKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Adds the delta to the value of the interval, returning false if the series
+         * has been removed in the meantime.
+         */
+        synchronized boolean add(long delta) {
+            if (removed) {
+                return false;
+            }
+
+            pendingValue = pending ? pendingValue + delta : delta;
+            pending = true;
+
+            return true;
+        }
+
+        /**
+         * Sets the value of the interval, returning false if the series
+         * has been removed in the meantime.
+         */
+        synchronized boolean set(double value) {
+            if (removed) {
+                return false;
+            }
+
+            pendingValue = value;
+            pending = true;
+
+            return true;
+        }
+
+        synchronized void append() {
+            if (!pending) {
+                if (++idleIntervals >= maxIdleIntervals || (sealed.isEmpty() && open == null)) {
+                    remove();
+                }
+
+                return;
+            }
+
+            idleIntervals = 0;
+
+            if (open == null) {
+                open = new GorillaChunk();
+                sizeInBytes.addAndGet(open.getSizeInBytes());
+            }
+
+            sizeInBytes.addAndGet(open.append(intervalTimestampMillis, pendingValue));
+            pending = false;
+
+            if (open.getCount() >= pointsPerChunk) {
+                sealOpen();
+            }
+        }
+
+        /**
+         * Returns the timestamp of the first value of the chunk being appended to,
+         * or {@link Long#MAX_VALUE} if there's none.
+         */
+        synchronized long getOpenFirstTimestamp() {
+            return open == null ? Long.MAX_VALUE : open.getFirstTimestamp();
+        }
+
+        synchronized void sealOpen() {
+            if (open == null) {
+                return;
+            }
+
+            sizeInBytes.addAndGet(-open.seal());
+
+            sealed.addLast(open);
+            sealedChunks.add(new SealedChunk(this, open));
+
+            open = null;
+        }
+
+        synchronized void evict(GorillaChunk chunk) {
+            if (sealed.remove(chunk)) {
+                sizeInBytes.addAndGet(-chunk.getSizeInBytes());
+            }
+
+            if (sealed.isEmpty() && open == null && !pending) {
+                remove();
+            }
+        }
+
+        /**
+         * Removes the series along with all of its values, with the subsequent
+         * reports of it going to a new one.
+         */
+        private void remove() {
+            // NOTE: Guarded by this
+            if (removed) {
+                return;
+            }
+
+            removed = true;
+            series.remove(key, this);
+
+            long freed = open == null ? 0 : open.getSizeInBytes();
+
+            for (GorillaChunk chunk : sealed) {
+                freed += chunk.getSizeInBytes();
+            }
+
+            if (!sealed.isEmpty()) {
+                sealedChunks.removeIf(sealedChunk -> sealedChunk.series == this);
+            }
+
+            sealed.clear();
+            open = null;
+
+            sizeInBytes.addAndGet(-freed);
+        }
+
+        /**
+         * Returns the chunks to decode, the oldest first.
+         */
+        synchronized List<GorillaChunk> chunks() {
+            List<GorillaChunk> chunks = new ArrayList<>(sealed.size() + 1);
+
+            chunks.addAll(sealed);
+
+            if (open != null) {
+                chunks.add(open.copy());
+            }
+
+            return chunks;
+        }
+    }
+}
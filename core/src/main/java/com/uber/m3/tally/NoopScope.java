@@ -37,6 +37,30 @@ public class NoopScope implements Scope {
     static final Gauge NOOP_GAUGE = (value) -> {
     };
 
+    static final UpDownCounter NOOP_UP_DOWN_COUNTER = (delta) -> {
+    };
+
+    static final Meter NOOP_METER = new Meter() {
+        @Override
+        public void mark(long events) {
+        }
+
+        @Override
+        public double getOneMinuteRate() {
+            return 0;
+        }
+
+        @Override
+        public double getFiveMinuteRate() {
+            return 0;
+        }
+
+        @Override
+        public double getFifteenMinuteRate() {
+            return 0;
+        }
+    };
+
     static final Stopwatch NOOP_STOPWATCH = new Stopwatch(0L, (s) -> {
     });
 
@@ -66,6 +90,21 @@ public class NoopScope implements Scope {
         }
     };
 
+    static final Sketch NOOP_SKETCH = new Sketch() {
+        @Override
+        public void recordValue(double value) {
+        }
+
+        @Override
+        public void recordDuration(Duration value) {
+        }
+
+        @Override
+        public Stopwatch start() {
+            return NOOP_STOPWATCH;
+        }
+    };
+
     static final Capabilities NOOP_CAPABILITIES = new Capabilities() {
         @Override
         public boolean reporting() {
@@ -88,6 +127,16 @@ public class NoopScope implements Scope {
         return NOOP_GAUGE;
     }
 
+    @Override
+    public UpDownCounter upDownCounter(String name) {
+        return NOOP_UP_DOWN_COUNTER;
+    }
+
+    @Override
+    public Meter meter(String name) {
+        return NOOP_METER;
+    }
+
     @Override
 
     public Timer timer(String name) {
@@ -100,6 +149,11 @@ public class NoopScope implements Scope {
         return NOOP_HISTOGRAM;
     }
 
+    @Override
+    public Sketch sketch(String name, double relativeAccuracy) {
+        return NOOP_SKETCH;
+    }
+
     @Override
     public Scope tagged(Map<String, String> tags) {
         return this;
@@ -0,0 +1,65 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+
+/**
+ * {@link Histogram} recording only the samples picked by its {@link Sampler}, each counted
+ * as many times as the number of events it stands for.
+ */
+class SampledHistogram implements Histogram, StopwatchRecorder {
+    private final AbstractHistogram histogram;
+    private final Sampler sampler;
+
+    SampledHistogram(AbstractHistogram histogram, Sampler sampler) {
+        this.histogram = histogram;
+        this.sampler = sampler;
+    }
+
+    @Override
+    public void recordValue(double value) {
+        long events = sampler.sample();
+
+        if (events != 0) {
+            histogram.recordValue(value, events);
+        }
+    }
+
+    @Override
+    public void recordDuration(Duration duration) {
+        long events = sampler.sample();
+
+        if (events != 0) {
+            histogram.recordDuration(duration, events);
+        }
+    }
+
+    @Override
+    public Stopwatch start() {
+        return new Stopwatch(System.nanoTime(), this);
+    }
+
+    @Override
+    public void recordStopwatch(long stopwatchStart) {
+        recordDuration(Duration.between(stopwatchStart, System.nanoTime()));
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+
+/**
+ * {@link Timer} reporting only the intervals picked by its {@link Sampler}, along with
+ * their sample rate.
+ */
+class SampledTimer implements Timer, StopwatchRecorder {
+    private final TimerImpl timer;
+    private final Sampler sampler;
+
+    SampledTimer(TimerImpl timer, Sampler sampler) {
+        this.timer = timer;
+        this.sampler = sampler;
+    }
+
+    @Override
+    public void record(Duration interval) {
+        long events = sampler.sample();
+
+        if (events != 0) {
+            timer.record(interval, 1d / events);
+        }
+    }
+
+    @Override
+    public Stopwatch start() {
+        return new Stopwatch(System.nanoTime(), this);
+    }
+
+    @Override
+    public void recordStopwatch(long stopwatchStart) {
+        record(Duration.between(stopwatchStart, System.nanoTime()));
+    }
+}
@@ -0,0 +1,84 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+/**
+ * How a {@link Timer} or {@link Histogram} samples the events it records. Every event is recorded
+ * with probability {@code 1/N}, and a recorded one stands for {@code N} events, keeping counts
+ * unbiased. Sampled timers report their sample rate along with every interval, which is only
+ * accounted for by the reporters supporting sample rates, such as the StatsD one. See
+ * {@link Scope#timer(String, SamplingPolicy)} and {@link Scope#histogram(String, Buckets, SamplingPolicy)}.
+ */
+public final class SamplingPolicy {
+    private final double rate;
+    private final double targetEventsPerSecond;
+
+    private SamplingPolicy(double rate, double targetEventsPerSecond) {
+        this.rate = rate;
+        this.targetEventsPerSecond = targetEventsPerSecond;
+    }
+
+    /**
+     * Creates a policy recording events at a fixed rate, rounded to one in {@code N} events.
+     * @param rate the fraction of the events to record, within (0, 1]
+     * @return {@link SamplingPolicy} of the specified rate
+     */
+    public static SamplingPolicy fixedRate(double rate) {
+        if (!(rate > 0 && rate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be within (0, 1]");
+        }
+
+        return new SamplingPolicy(rate, Double.NaN);
+    }
+
+    /**
+     * Creates a policy adapting the rate to record about the target number of events per second.
+     * The rate is adjusted on every report, based on the number of events of the last interval,
+     * and every event is recorded until the first report.
+     * @param targetEventsPerSecond the number of events per second to record
+     * @return {@link SamplingPolicy} of the specified target
+     */
+    public static SamplingPolicy adaptive(double targetEventsPerSecond) {
+        if (!(targetEventsPerSecond > 0) || Double.isInfinite(targetEventsPerSecond)) {
+            throw new IllegalArgumentException("Target events per second must be positive and finite");
+        }
+
+        return new SamplingPolicy(Double.NaN, targetEventsPerSecond);
+    }
+
+    /**
+     * Creates a sampler of a single metric of the scope.
+     */
+    Sampler newSampler(ScopeImpl scope) {
+        if (Double.isNaN(rate)) {
+            return scope.addToReportingQueue(new AdaptiveSampler(targetEventsPerSecond));
+        }
+
+        return new FixedRateSampler(Math.max(1, Math.round(1 / rate)));
+    }
+
+    @Override
+    public String toString() {
+        return Double.isNaN(rate)
+            ? String.format("SamplingPolicy{targetEventsPerSecond=%s}", targetEventsPerSecond)
+            : String.format("SamplingPolicy{rate=%s}", rate);
+    }
+}
@@ -22,6 +22,7 @@ package com.uber.m3.tally;
 
 import javax.annotation.Nullable;
 import java.util.Map;
+import java.util.function.DoubleSupplier;
 
 /**
  * A namespace wrapper around a stats reporter, ensuring that
@@ -36,12 +37,61 @@ public interface Scope extends AutoCloseable {
     Counter counter(String name);
 
     /**
-     * Creates and returns a {@link Gauge} with the specified name.
+     * Creates and returns a {@link Gauge} with the specified name. Gauges of every kind share the
+     * namespace: should the name be already taken by an aggregating {@link Gauge}, it is returned,
+     * while any other kind (e.g. an {@link UpDownCounter}) makes the returned {@link Gauge} ignore updates.
      * @param name the name of this {@link Gauge}
      * @return a {@link Gauge} with the specified name
      */
     Gauge gauge(String name);
 
+    /**
+     * Creates and returns a {@link Gauge} with the specified name, aggregating the values of every
+     * reporting interval. Scopes with no support of aggregation return a {@link GaugeAggregation#LAST} one.
+     * @param name the name of this {@link Gauge}
+     * @param aggregation how this {@link Gauge} aggregates its values
+     * @return a {@link Gauge} with the specified name
+     * @throws IllegalArgumentException if a {@link Gauge} with the specified name already exists
+     *                                  with a different aggregation, or of a different kind
+     */
+    default Gauge gauge(String name, GaugeAggregation aggregation) {
+        return gauge(name);
+    }
+
+    /**
+     * Registers a {@link Gauge} with the specified name, whose value is supplied by the callback
+     * whenever the gauge is reported, rather than updated by the application. Only the first
+     * callback registered under the name takes effect. Scopes with no support of callback gauges
+     * never invoke the callback.
+     * @param name the name of this {@link Gauge}
+     * @param supplier the callback supplying the value of this {@link Gauge}
+     * @throws IllegalArgumentException if a different kind of {@link Gauge} with the specified
+     *                                  name already exists
+     */
+    default void gauge(String name, DoubleSupplier supplier) {
+    }
+
+    /**
+     * Creates and returns an {@link UpDownCounter} with the specified name. Scopes with no support
+     * of up/down counters return a no-op {@link UpDownCounter}.
+     * @param name the name of this {@link UpDownCounter}
+     * @return an {@link UpDownCounter} with the specified name
+     * @throws IllegalArgumentException if a {@link Gauge} with the specified name already exists
+     */
+    default UpDownCounter upDownCounter(String name) {
+        return NoopScope.NOOP_UP_DOWN_COUNTER;
+    }
+
+    /**
+     * Creates and returns a {@link Meter} with the specified name. Scopes with no support
+     * of meters return a no-op {@link Meter}, whose rates are always zero.
+     * @param name the name of this {@link Meter}
+     * @return a {@link Meter} with the specified name
+     */
+    default Meter meter(String name) {
+        return NoopScope.NOOP_METER;
+    }
+
     /**
      * Creates and returns a {@link Timer} with the specified name.
      * @param name the name of this {@link Timer}
@@ -49,6 +99,20 @@ public interface Scope extends AutoCloseable {
      */
     Timer timer(String name);
 
+    /**
+     * Creates and returns a {@link Timer} with the specified name, reporting only the intervals
+     * sampled by the policy. Scopes with no support of sampling, or with a reporter that isn't
+     * capable of {@link Capabilities#sampleRates() sample rates}, return a {@link Timer} reporting
+     * every interval.
+     * @param name the name of this {@link Timer}
+     * @param samplingPolicy how this {@link Timer} samples the intervals. Only takes effect when
+     *                       the {@link Timer} is first requested with a policy.
+     * @return a {@link Timer} with the specified name
+     */
+    default Timer timer(String name, SamplingPolicy samplingPolicy) {
+        return timer(name);
+    }
+
     /**
      * Creates and returns a {@link Histogram} with specified name and buckets.
      * @param name the name of this {@link Histogram}
@@ -57,6 +121,41 @@ public interface Scope extends AutoCloseable {
      */
     Histogram histogram(String name, @Nullable Buckets buckets);
 
+    /**
+     * Creates and returns a {@link Histogram} with specified name and buckets, recording only the
+     * samples picked by the policy, scaled by the number of samples each stands for. Scopes
+     * with no support of sampling return a {@link Histogram} recording every sample.
+     * @param name the name of this {@link Histogram}
+     * @param buckets the buckets of this {@link Histogram}. If null, default buckets will be used.
+     * @param samplingPolicy how this {@link Histogram} samples the values. Only takes effect when
+     *                       the {@link Histogram} is first requested with a policy.
+     * @return a {@link Histogram} with the specified name and buckets
+     */
+    default Histogram histogram(String name, @Nullable Buckets buckets, SamplingPolicy samplingPolicy) {
+        return histogram(name, buckets);
+    }
+
+    /**
+     * Creates and returns a {@link Sketch} with the specified name, of the default relative accuracy.
+     * @param name the name of this {@link Sketch}
+     * @return a {@link Sketch} with the specified name
+     */
+    default Sketch sketch(String name) {
+        return sketch(name, DDSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Creates and returns a {@link Sketch} with the specified name and relative accuracy. Scopes
+     * with no support of sketches return a no-op {@link Sketch}.
+     * @param name the name of this {@link Sketch}
+     * @param relativeAccuracy the relative accuracy of this {@link Sketch}'s quantiles, within (0, 1).
+     *                         Only takes effect when the {@link Sketch} is created.
+     * @return a {@link Sketch} with the specified name
+     */
+    default Sketch sketch(String name, double relativeAccuracy) {
+        return NoopScope.NOOP_SKETCH;
+    }
+
     /**
      * Returns a child scope with the given and current tags.
      * @param tags tags of subscope
@@ -24,6 +24,7 @@ import com.uber.m3.util.Duration;
 import com.uber.m3.util.ImmutableMap;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -32,6 +33,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class ScopeBuilder {
     private static final String DEFAULT_SEPARATOR = ".";
+    private static final Duration DEFAULT_CALLBACK_GAUGE_TIMEOUT = Duration.ofMillis(100);
     private static final Buckets DEFAULT_SCOPE_BUCKETS = new DurationBuckets(new Duration[] {
         Duration.ZERO,
         Duration.ofMillis(10),
@@ -55,6 +57,10 @@ public class ScopeBuilder {
     protected String separator = DEFAULT_SEPARATOR;
     protected ImmutableMap<String, String> tags;
     protected Buckets defaultBuckets = DEFAULT_SCOPE_BUCKETS;
+    protected boolean threadLocalRecording = false;
+    protected boolean doubleBufferedHistograms = false;
+    protected ExecutorService callbackGaugeExecutor = null;
+    protected Duration callbackGaugeTimeout = DEFAULT_CALLBACK_GAUGE_TIMEOUT;
 
     private ScheduledExecutorService scheduler;
     private ScopeImpl.Registry registry;
@@ -128,6 +134,57 @@ public class ScopeBuilder {
         return this;
     }
 
+    /**
+     * Update whether counters and histograms accumulate values in per-thread cells, free of atomic
+     * read-modify-write operations, which are merged when reported. Lowers the recording cost on
+     * hot paths contended by many threads, at the expense of memory per recording thread
+     * @param threadLocalRecording value to update to
+     * @return Builder with new param updated
+     */
+    public ScopeBuilder threadLocalRecording(boolean threadLocalRecording) {
+        this.threadLocalRecording = threadLocalRecording;
+        return this;
+    }
+
+    /**
+     * Update whether histograms record into an active array of bucket counts swapped with a spare
+     * one on every report, so that reporting never contends with the recording threads
+     * @param doubleBufferedHistograms value to update to
+     * @return Builder with new param updated
+     */
+    public ScopeBuilder doubleBufferedHistograms(boolean doubleBufferedHistograms) {
+        this.doubleBufferedHistograms = doubleBufferedHistograms;
+        return this;
+    }
+
+    /**
+     * Update the executor the callbacks of gauges registered with {@link Scope#gauge(String, java.util.function.DoubleSupplier)}
+     * are invoked on, isolating the reporting loop from slow callbacks. Slow callbacks occupy its threads
+     * until they complete, so it should not be shared with other tasks. If null (the default), callbacks
+     * are invoked on the reporting thread
+     * @param callbackGaugeExecutor value to update to
+     * @return Builder with new param updated
+     */
+    public ScopeBuilder callbackGaugeExecutor(ExecutorService callbackGaugeExecutor) {
+        this.callbackGaugeExecutor = callbackGaugeExecutor;
+        return this;
+    }
+
+    /**
+     * Update how long reporting waits for the callback of a gauge invoked on the callback gauge
+     * executor, before skipping the gauge until its callback completes
+     * @param callbackGaugeTimeout value to update to
+     * @return Builder with new param updated
+     */
+    public ScopeBuilder callbackGaugeTimeout(Duration callbackGaugeTimeout) {
+        if (callbackGaugeTimeout.compareTo(Duration.ZERO) <= 0) {
+            throw new IllegalArgumentException("Callback gauge timeout must be a positive Duration");
+        }
+
+        this.callbackGaugeTimeout = callbackGaugeTimeout;
+        return this;
+    }
+
     // Private build method - clients should rely on `reportEvery` to create root scopes, and
     // a root scope's `tagged` and `subScope` functions to create subscopes.
     ScopeImpl build() {
@@ -147,7 +204,8 @@ public class ScopeBuilder {
      * Creates a root scope and starts reporting with the specified interval
      * @param interval duration between each report
      * @param uncaughtExceptionHandler an  {@link java.lang.Thread.UncaughtExceptionHandler} that's
-     *                                 called when there's an uncaught exception in the report loop
+     *                                 called when there's an uncaught exception in the report loop,
+     *                                 or a failure of a gauge callback
      * @return the root scope created
      */
     public Scope reportEvery(Duration interval,
@@ -157,6 +215,7 @@ public class ScopeBuilder {
         }
 
         ScopeImpl scope = build();
+        registry.uncaughtExceptionHandler = uncaughtExceptionHandler;
         registry.subscopes.put(ScopeImpl.keyForPrefixedStringMap(prefix, tags), scope);
 
         scheduler.scheduleWithFixedDelay(scope.new ReportLoop(uncaughtExceptionHandler), 0, interval.toMillis(), TimeUnit.MILLISECONDS);
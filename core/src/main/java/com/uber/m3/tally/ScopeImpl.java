@@ -20,6 +20,7 @@
 
 package com.uber.m3.tally;
 
+import com.uber.m3.util.Duration;
 import com.uber.m3.util.ImmutableMap;
 
 import javax.annotation.Nullable;
@@ -29,7 +30,9 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.DoubleSupplier;
 
 /**
  * Default {@link Scope} implementation.
@@ -44,13 +47,26 @@ class ScopeImpl implements Scope, TestScope {
     private ScheduledExecutorService scheduler;
     private Registry registry;
 
-    private final ConcurrentHashMap<String, CounterImpl> counters = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, GaugeImpl> gauges = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, HistogramImpl> histograms = new ConcurrentHashMap<>();
+    private final boolean threadLocalRecording;
+    private final boolean doubleBufferedHistograms;
+
+    // NOTE: Null unless callback gauges are isolated from the reporting thread
+    private final ExecutorService callbackGaugeExecutor;
+    private final Duration callbackGaugeTimeout;
+
+    private final ConcurrentHashMap<String, AbstractCounter> counters = new ConcurrentHashMap<>();
+    // NOTE: Gauges of every kind (incl. callback ones and up/down counters) share the namespace,
+    //       as all of them are reported as gauges
+    private final ConcurrentHashMap<String, Reportable> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, MeterImpl> meters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AbstractHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SketchImpl> sketches = new ConcurrentHashMap<>();
 
     private final CopyOnWriteArrayList<Reportable> reportingList = new CopyOnWriteArrayList<>();
 
     private final ConcurrentHashMap<String, TimerImpl> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SampledTimer> sampledTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SampledHistogram> sampledHistograms = new ConcurrentHashMap<>();
 
     // Private ScopeImpl constructor. Root scopes should be built using the RootScopeBuilder class
     ScopeImpl(ScheduledExecutorService scheduler, Registry registry, ScopeBuilder builder) {
@@ -62,21 +78,143 @@ class ScopeImpl implements Scope, TestScope {
         this.separator = builder.separator;
         this.tags = builder.tags;
         this.defaultBuckets = builder.defaultBuckets;
+        this.threadLocalRecording = builder.threadLocalRecording;
+        this.doubleBufferedHistograms = builder.doubleBufferedHistograms;
+        this.callbackGaugeExecutor = builder.callbackGaugeExecutor;
+        this.callbackGaugeTimeout = builder.callbackGaugeTimeout;
     }
 
     @Override
     public Counter counter(String name) {
         return counters.computeIfAbsent(name, ignored ->
                 // NOTE: This will called at most once
-                new CounterImpl(this, fullyQualifiedName(name))
+                newCounter(fullyQualifiedName(name))
         );
     }
 
+    private AbstractCounter newCounter(String fqn) {
+        // NOTE: Added to the reporting queue only once fully constructed
+        if (threadLocalRecording) {
+            return addToReportingQueue(new ThreadLocalCounterImpl(fqn));
+        }
+
+        return addToReportingQueue(new CounterImpl(fqn));
+    }
+
+    boolean isThreadLocalRecording() {
+        return threadLocalRecording;
+    }
+
     @Override
     public Gauge gauge(String name) {
-        return gauges.computeIfAbsent(name, ignored ->
-                // NOTE: This will called at most once
-                new GaugeImpl(this, fullyQualifiedName(name)));
+        Reportable gauge = gauges.computeIfAbsent(name, ignored ->
+                // NOTE: This will called at most once, and the gauge is added to
+                //       the reporting queue only once fully constructed
+                addToReportingQueue(new GaugeImpl(fullyQualifiedName(name))));
+
+        // Gauges requested without aggregation never fail, sharing the gauge
+        // the name's been registered with, regardless of its aggregation
+        if (gauge instanceof AbstractGauge) {
+            return (AbstractGauge) gauge;
+        }
+
+        // Otherwise, the name is taken by a different kind of gauge, which
+        // updates of the returned one may not interfere with
+        handleUncaughtException(newConflictException(name, gauge, GaugeAggregation.LAST + " gauge"));
+
+        return NoopScope.NOOP_GAUGE;
+    }
+
+    @Override
+    public Gauge gauge(String name, GaugeAggregation aggregation) {
+        Reportable gauge = gauges.computeIfAbsent(name, ignored ->
+                // NOTE: This will called at most once, and the gauge is added to
+                //       the reporting queue only once fully constructed
+                addToReportingQueue(newGauge(fullyQualifiedName(name), aggregation)));
+
+        if (gauge instanceof AbstractGauge && ((AbstractGauge) gauge).getAggregation() == aggregation) {
+            return (AbstractGauge) gauge;
+        }
+
+        throw newConflictException(name, gauge, aggregation + " gauge");
+    }
+
+    private static AbstractGauge newGauge(String fqn, GaugeAggregation aggregation) {
+        if (aggregation == GaugeAggregation.LAST) {
+            return new GaugeImpl(fqn);
+        }
+
+        return new AggregatingGaugeImpl(fqn, aggregation);
+    }
+
+    @Override
+    public void gauge(String name, DoubleSupplier supplier) {
+        Reportable gauge = gauges.computeIfAbsent(name, ignored ->
+                // NOTE: This will called at most once, and the gauge is added to
+                //       the reporting queue only once fully constructed
+                addToReportingQueue(
+                    new CallbackGaugeImpl(
+                        fullyQualifiedName(name),
+                        supplier,
+                        this::handleUncaughtException,
+                        callbackGaugeExecutor,
+                        callbackGaugeTimeout
+                    )));
+
+        if (!(gauge instanceof CallbackGaugeImpl)) {
+            throw newConflictException(name, gauge, "callback gauge");
+        }
+    }
+
+    @Override
+    public UpDownCounter upDownCounter(String name) {
+        Reportable gauge = gauges.computeIfAbsent(name, ignored ->
+                // NOTE: This will called at most once, and the counter is added to
+                //       the reporting queue only once fully constructed
+                addToReportingQueue(new UpDownCounterImpl(fullyQualifiedName(name))));
+
+        if (!(gauge instanceof UpDownCounterImpl)) {
+            throw newConflictException(name, gauge, "up/down counter");
+        }
+
+        return (UpDownCounterImpl) gauge;
+    }
+
+    private static IllegalArgumentException newConflictException(String name, Reportable existing, String requested) {
+        String kind;
+
+        if (existing instanceof AbstractGauge) {
+            kind = ((AbstractGauge) existing).getAggregation() + " gauge";
+        } else if (existing instanceof CallbackGaugeImpl) {
+            kind = "callback gauge";
+        } else {
+            kind = "up/down counter";
+        }
+
+        return new IllegalArgumentException(
+            String.format("Gauge %s already exists as %s, requested %s", name, kind, requested)
+        );
+    }
+
+    // Returns the value to snapshot of any kind of gauge
+    private static double snapshotOf(Reportable gauge) {
+        if (gauge instanceof AbstractGauge) {
+            return ((AbstractGauge) gauge).snapshot();
+        }
+
+        if (gauge instanceof CallbackGaugeImpl) {
+            return ((CallbackGaugeImpl) gauge).snapshot();
+        }
+
+        return ((UpDownCounterImpl) gauge).snapshot();
+    }
+
+    @Override
+    public Meter meter(String name) {
+        return meters.computeIfAbsent(name, ignored ->
+                // NOTE: This will called at most once, and the meter is added to
+                //       the reporting queue only once fully constructed
+                addToReportingQueue(new MeterImpl(fullyQualifiedName(name))));
     }
 
     @Override
@@ -86,20 +224,62 @@ class ScopeImpl implements Scope, TestScope {
         return timers.computeIfAbsent(name, ignored -> new TimerImpl(fullyQualifiedName(name), tags, reporter));
     }
 
+    @Override
+    public Timer timer(String name, SamplingPolicy samplingPolicy) {
+        if (!capabilities().sampleRates()) {
+            // Counts of the intervals would not be scaled by the sample rate, hence nothing is sampled
+            return timer(name);
+        }
+
+        return sampledTimers.computeIfAbsent(name, ignored ->
+                // NOTE: This will be called at most once
+                new SampledTimer((TimerImpl) timer(name), samplingPolicy.newSampler(this)));
+    }
+
     @Override
     public Histogram histogram(String name, @Nullable Buckets buckets) {
         return histograms.computeIfAbsent(name, ignored ->
                 // NOTE: This will be called at most once
-                new HistogramImpl(
-                        this,
+                newHistogram(
                         fullyQualifiedName(name),
-                        tags,
                         Optional.ofNullable(buckets)
                                 .orElse(defaultBuckets)
                 )
         );
     }
 
+    @Override
+    public Histogram histogram(String name, @Nullable Buckets buckets, SamplingPolicy samplingPolicy) {
+        return sampledHistograms.computeIfAbsent(name, ignored ->
+                // NOTE: This will be called at most once
+                new SampledHistogram((AbstractHistogram) histogram(name, buckets), samplingPolicy.newSampler(this)));
+    }
+
+    private AbstractHistogram newHistogram(String fqn, Buckets buckets) {
+        // NOTE: Added to the reporting queue only once fully constructed
+        if (buckets instanceof Base2ExponentialValueBuckets) {
+            return addToReportingQueue(new ExponentialHistogramImpl(fqn, tags, (Base2ExponentialValueBuckets) buckets));
+        }
+
+        // NOTE: Log-linear buckets are too many to be backed by dedicated counters
+        if (doubleBufferedHistograms
+            || buckets instanceof LogLinearValueBuckets
+            || buckets instanceof LogLinearDurationBuckets) {
+            return addToReportingQueue(new DoubleBufferedHistogramImpl(fqn, tags, buckets));
+        }
+
+        return new HistogramImpl(this, fqn, tags, buckets);
+    }
+
+    @Override
+    public Sketch sketch(String name, double relativeAccuracy) {
+        return sketches.computeIfAbsent(name, ignored ->
+                // NOTE: This will be called at most once, and the sketch is added to
+                //       the reporting queue only once fully constructed
+                addToReportingQueue(new SketchImpl(fullyQualifiedName(name), relativeAccuracy))
+        );
+    }
+
     @Override
     public Scope tagged(Map<String, String> tags) {
         return subScopeHelper(prefix, tags);
@@ -135,8 +315,27 @@ class ScopeImpl implements Scope, TestScope {
         }
     }
 
-    <T extends Reportable> void addToReportingQueue(T metric) {
+    <T extends Reportable> T addToReportingQueue(T metric) {
         reportingList.add(metric);
+        return metric;
+    }
+
+    /**
+     * Hands an exception of a single metric, which is not allowed to abort the report of
+     * the remaining ones, to the uncaught exception handler of the report loop, if any.
+     */
+    void handleUncaughtException(Exception exception) {
+        Thread.UncaughtExceptionHandler handler = registry.uncaughtExceptionHandler;
+
+        if (handler == null) {
+            return;
+        }
+
+        try {
+            handler.uncaughtException(Thread.currentThread(), exception);
+        } catch (Exception ignored) {
+            // ignore exception
+        }
     }
 
     /**
@@ -183,7 +382,7 @@ class ScopeImpl implements Scope, TestScope {
                     .putAll(subscope.tags)
                     .build();
 
-            for (Map.Entry<String, CounterImpl> counter : subscope.counters.entrySet()) {
+            for (Map.Entry<String, AbstractCounter> counter : subscope.counters.entrySet()) {
                 String name = subscope.fullyQualifiedName(counter.getKey());
 
                 ScopeKey scopeKey = keyForPrefixedStringMap(name, tags);
@@ -198,7 +397,7 @@ class ScopeImpl implements Scope, TestScope {
                 );
             }
 
-            for (Map.Entry<String, GaugeImpl> gauge : subscope.gauges.entrySet()) {
+            for (Map.Entry<String, Reportable> gauge : subscope.gauges.entrySet()) {
                 String name = subscope.fullyQualifiedName(gauge.getKey());
 
                 ScopeKey scopeKey = keyForPrefixedStringMap(name, tags);
@@ -208,7 +407,7 @@ class ScopeImpl implements Scope, TestScope {
                         new GaugeSnapshotImpl(
                                 name,
                                 tags,
-                                gauge.getValue().snapshot()
+                                snapshotOf(gauge.getValue())
                         )
                 );
             }
@@ -228,7 +427,7 @@ class ScopeImpl implements Scope, TestScope {
                 );
             }
 
-            for (Map.Entry<String, HistogramImpl> histogram : subscope.histograms.entrySet()) {
+            for (Map.Entry<String, AbstractHistogram> histogram : subscope.histograms.entrySet()) {
                 String name = subscope.fullyQualifiedName(histogram.getKey());
 
                 ScopeKey scopeKey = keyForPrefixedStringMap(name, tags);
@@ -243,11 +442,57 @@ class ScopeImpl implements Scope, TestScope {
                         )
                 );
             }
+
+            for (Map.Entry<String, MeterImpl> meter : subscope.meters.entrySet()) {
+                String name = subscope.fullyQualifiedName(meter.getKey());
+
+                // Rates are snapshot as gauges tagged by their window, the same way they're reported
+                snapshotMeterRate(snap, name, tags, "1m", meter.getValue().getOneMinuteRate());
+                snapshotMeterRate(snap, name, tags, "5m", meter.getValue().getFiveMinuteRate());
+                snapshotMeterRate(snap, name, tags, "15m", meter.getValue().getFifteenMinuteRate());
+            }
+
+            for (Map.Entry<String, SketchImpl> sketch : subscope.sketches.entrySet()) {
+                String name = subscope.fullyQualifiedName(sketch.getKey());
+
+                ScopeKey scopeKey = keyForPrefixedStringMap(name, tags);
+
+                snap.sketches().put(
+                        scopeKey,
+                        new SketchSnapshotImpl(
+                                name,
+                                tags,
+                                sketch.getValue().snapshot()
+                        )
+                );
+            }
         }
 
         return snap;
     }
 
+    private static void snapshotMeterRate(
+        Snapshot snap,
+        String name,
+        ImmutableMap<String, String> tags,
+        String window,
+        double rate
+    ) {
+        ImmutableMap<String, String> windowTags = new ImmutableMap.Builder<String, String>()
+                .putAll(tags)
+                .put(MeterImpl.WINDOW_TAG, window)
+                .build();
+
+        snap.gauges().put(
+                keyForPrefixedStringMap(name, windowTags),
+                new GaugeSnapshotImpl(
+                        name,
+                        windowTags,
+                        rate
+                )
+        );
+    }
+
     // Helper function used to create subscopes
     private Scope subScopeHelper(String prefix, Map<String, String> tags) {
         ImmutableMap.Builder<String, String> mapBuilder = new ImmutableMap.Builder<>();
@@ -282,6 +527,10 @@ class ScopeImpl implements Scope, TestScope {
                 .separator(separator)
                 .tags(mergedTags)
                 .defaultBuckets(defaultBuckets)
+                .threadLocalRecording(threadLocalRecording)
+                .doubleBufferedHistograms(doubleBufferedHistograms)
+                .callbackGaugeExecutor(callbackGaugeExecutor)
+                .callbackGaugeTimeout(callbackGaugeTimeout)
                 .build()
         );
     }
@@ -291,6 +540,8 @@ class ScopeImpl implements Scope, TestScope {
         Collection<ScopeImpl> subscopes = registry.subscopes.values();
 
         if (reporter != null) {
+            reporter.beginInterval(System.currentTimeMillis() * Duration.NANOS_PER_MILLI);
+
             for (ScopeImpl subscope : subscopes) {
                 subscope.report(reporter);
             }
@@ -327,6 +578,9 @@ class ScopeImpl implements Scope, TestScope {
 
     static class Registry {
         Map<ScopeKey, ScopeImpl> subscopes = new ConcurrentHashMap<>();
+
+        // Handler of the report loop, shared by the root scope with all its subscopes
+        volatile Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
     }
 
 }
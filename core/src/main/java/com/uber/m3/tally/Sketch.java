@@ -0,0 +1,48 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+
+/**
+ * A quantile sketch metric, tracking the distribution of the recorded values with a bounded
+ * relative error, rather than within a fixed list of buckets. Sketches of every reporting
+ * interval are reported as {@link DDSketch}es, which can be merged exactly across processes.
+ */
+public interface Sketch {
+    /**
+     * Record using a {@code double}.
+     * @param value value to record
+     */
+    void recordValue(double value);
+
+    /**
+     * Record using a {@link Duration}, which is recorded in seconds.
+     * @param value {@link Duration} to record
+     */
+    void recordDuration(Duration value);
+
+    /**
+     * Starts the {@link Sketch}.
+     * @return the {@link Stopwatch} for this {@link Sketch}
+     */
+    Stopwatch start();
+}
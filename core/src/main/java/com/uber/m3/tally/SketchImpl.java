@@ -0,0 +1,288 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Default implementation of a {@link Sketch}.
+ *
+ * Values are recorded lock-free into an active set of bins, which is swapped with a spare one
+ * on every report, the same way {@link DoubleBufferedHistogramImpl} does, so that the {@link DDSketch}
+ * of every interval is extracted exactly and without contention with the recording threads.
+ */
+class SketchImpl extends MetricBase implements Sketch, Reportable, StopwatchRecorder {
+    private final LogarithmicMapping mapping;
+
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+
+    private volatile ConcurrentBins activeBins;
+
+    // NOTE: Only accessed while holding the reader lock of the phaser
+    private ConcurrentBins inactiveBins;
+
+    /**
+     * NOTE: The sketch is not added to the reporting queue, which is up to the caller once
+     *       the construction completes, so that it's never reported before being fully initialized
+     */
+    SketchImpl(String fqn, double relativeAccuracy) {
+        super(fqn);
+
+        this.mapping = new LogarithmicMapping(relativeAccuracy);
+        this.activeBins = new ConcurrentBins(mapping);
+        this.inactiveBins = new ConcurrentBins(mapping);
+    }
+
+    @Override
+    public void recordValue(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // Can't be sketched
+            return;
+        }
+
+        long token = phaser.writerCriticalSectionEnter();
+
+        try {
+            activeBins.record(value);
+        } finally {
+            phaser.writerCriticalSectionExit(token);
+        }
+    }
+
+    @Override
+    public void recordDuration(Duration value) {
+        recordValue(value.getSeconds());
+    }
+
+    @Override
+    public Stopwatch start() {
+        return new Stopwatch(System.nanoTime(), this);
+    }
+
+    @Override
+    public void recordStopwatch(long stopwatchStart) {
+        recordDuration(Duration.between(stopwatchStart, System.nanoTime()));
+    }
+
+    @Override
+    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        DDSketch sketch = extract();
+
+        if (!sketch.isEmpty()) {
+            reporter.reportSketch(getQualifiedName(), tags, sketch);
+        }
+    }
+
+    /**
+     * Returns the sketch of the values recorded since the previous extraction.
+     */
+    DDSketch extract() {
+        phaser.readerLock();
+
+        try {
+            ConcurrentBins bins = activeBins;
+
+            activeBins = inactiveBins;
+            inactiveBins = bins;
+
+            // Once flipped, no writer could still be updating the swapped out bins
+            phaser.flipPhase();
+
+            return bins.drain();
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+
+    /**
+     * Returns the sketch of the values recorded since the previous extraction, leaving them
+     * to be extracted still.
+     */
+    DDSketch snapshot() {
+        phaser.readerLock();
+
+        try {
+            return activeBins.copy();
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+
+    double getRelativeAccuracy() {
+        return mapping.getRelativeAccuracy();
+    }
+
+    /**
+     * Bins updated concurrently, allocated lazily in chunks covering the whole range of indexes.
+     */
+    private static final class ConcurrentBins {
+        private static final int CHUNK_SHIFT = 7;
+        private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        private static final long POSITIVE_INFINITY_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        private static final long NEGATIVE_INFINITY_BITS = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+
+        private final LogarithmicMapping mapping;
+        private final int minIndex;
+
+        private final AtomicReferenceArray<AtomicLongArray> positiveChunks;
+        private final AtomicReferenceArray<AtomicLongArray> negativeChunks;
+
+        private final AtomicLong zeroCount = new AtomicLong();
+
+        private final DoubleAdder sum = new DoubleAdder();
+        private final AtomicLong minBits = new AtomicLong(POSITIVE_INFINITY_BITS);
+        private final AtomicLong maxBits = new AtomicLong(NEGATIVE_INFINITY_BITS);
+
+        ConcurrentBins(LogarithmicMapping mapping) {
+            this.mapping = mapping;
+            this.minIndex = mapping.getMinIndex();
+
+            int chunksCount = ((mapping.getMaxIndex() - minIndex) >>> CHUNK_SHIFT) + 1;
+
+            this.positiveChunks = new AtomicReferenceArray<>(chunksCount);
+            this.negativeChunks = new AtomicReferenceArray<>(chunksCount);
+        }
+
+        void record(double value) {
+            if (value >= mapping.getMinIndexableValue()) {
+                increment(positiveChunks, mapping.indexOf(value));
+            } else if (value <= -mapping.getMinIndexableValue()) {
+                increment(negativeChunks, mapping.indexOf(-value));
+            } else {
+                zeroCount.incrementAndGet();
+            }
+
+            sum.add(value);
+
+            long min = minBits.get();
+            while (value < Double.longBitsToDouble(min) && !minBits.compareAndSet(min, Double.doubleToRawLongBits(value))) {
+                min = minBits.get();
+            }
+
+            long max = maxBits.get();
+            while (value > Double.longBitsToDouble(max) && !maxBits.compareAndSet(max, Double.doubleToRawLongBits(value))) {
+                max = maxBits.get();
+            }
+        }
+
+        /**
+         * Moves the counts into a new {@link DDSketch}, leaving these bins empty. Must only be
+         * called while there are no concurrent writers.
+         */
+        DDSketch drain() {
+            return collect(true);
+        }
+
+        /**
+         * Copies the counts into a new {@link DDSketch}, as of the moment (i.e. not necessarily
+         * consistent with the concurrent writers).
+         */
+        DDSketch copy() {
+            return collect(false);
+        }
+
+        private DDSketch collect(boolean reset) {
+            DDSketch sketch = new DDSketch(mapping);
+
+            collect(positiveChunks, false, reset, sketch);
+            collect(negativeChunks, true, reset, sketch);
+
+            long zeros;
+            double intervalSum;
+            double intervalMin;
+            double intervalMax;
+
+            if (reset) {
+                zeros = zeroCount.getAndSet(0);
+                intervalSum = sum.sumThenReset();
+                intervalMin = Double.longBitsToDouble(minBits.getAndSet(POSITIVE_INFINITY_BITS));
+                intervalMax = Double.longBitsToDouble(maxBits.getAndSet(NEGATIVE_INFINITY_BITS));
+            } else {
+                zeros = zeroCount.get();
+                intervalSum = sum.sum();
+                intervalMin = Double.longBitsToDouble(minBits.get());
+                intervalMax = Double.longBitsToDouble(maxBits.get());
+            }
+
+            if (zeros != 0) {
+                sketch.addZeros(zeros);
+            }
+
+            if (!sketch.isEmpty()) {
+                sketch.updateStats(intervalSum, intervalMin, intervalMax);
+            }
+
+            return sketch;
+        }
+
+        private void increment(AtomicReferenceArray<AtomicLongArray> chunks, int index) {
+            int offset = index - minIndex;
+            int chunkIndex = offset >>> CHUNK_SHIFT;
+
+            AtomicLongArray chunk = chunks.get(chunkIndex);
+
+            if (chunk == null) {
+                chunk = new AtomicLongArray(CHUNK_SIZE);
+
+                if (!chunks.compareAndSet(chunkIndex, null, chunk)) {
+                    chunk = chunks.get(chunkIndex);
+                }
+            }
+
+            chunk.incrementAndGet(offset & CHUNK_MASK);
+        }
+
+        private void collect(
+            AtomicReferenceArray<AtomicLongArray> chunks,
+            boolean negative,
+            boolean reset,
+            DDSketch sketch
+        ) {
+            for (int i = 0; i < chunks.length(); ++i) {
+                AtomicLongArray chunk = chunks.get(i);
+
+                if (chunk == null) {
+                    continue;
+                }
+
+                for (int j = 0; j < CHUNK_SIZE; ++j) {
+                    long count = chunk.get(j);
+
+                    if (count != 0) {
+                        if (reset) {
+                            chunk.set(j, 0);
+                        }
+
+                        sketch.addBin(negative, minIndex + (i << CHUNK_SHIFT) + j, count);
+                    }
+                }
+            }
+        }
+    }
+}
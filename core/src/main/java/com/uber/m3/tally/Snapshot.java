@@ -20,6 +20,7 @@
 
 package com.uber.m3.tally;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -33,7 +34,8 @@ public interface Snapshot {
     Map<ScopeKey, CounterSnapshot> counters();
 
     /**
-     * Returns a {@link GaugeSnapshot} of {@link Gauge} last values since last report execution.
+     * Returns a {@link GaugeSnapshot} of {@link Gauge} last values since last report execution,
+     * including the rates of every {@link Meter} (tagged by their window, as reported).
      * @return a {@link GaugeSnapshot} of {@link Gauge} last values since last report execution
      */
     Map<ScopeKey, GaugeSnapshot> gauges();
@@ -49,4 +51,12 @@ public interface Snapshot {
      * @return a {@link HistogramSnapshot} of {@link Histogram} samples since last report execution
      */
     Map<ScopeKey, HistogramSnapshot> histograms();
+
+    /**
+     * Returns a {@link SketchSnapshot} of {@link Sketch} values since last report execution.
+     * @return a {@link SketchSnapshot} of {@link Sketch} values since last report execution
+     */
+    default Map<ScopeKey, SketchSnapshot> sketches() {
+        return Collections.emptyMap();
+    }
 }
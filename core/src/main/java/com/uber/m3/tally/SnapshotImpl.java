@@ -31,6 +31,7 @@ class SnapshotImpl implements Snapshot {
     Map<ScopeKey, GaugeSnapshot> gauges = new ConcurrentHashMap<>();
     Map<ScopeKey, TimerSnapshot> timers = new ConcurrentHashMap<>();
     Map<ScopeKey, HistogramSnapshot> histograms = new ConcurrentHashMap<>();
+    Map<ScopeKey, SketchSnapshot> sketches = new ConcurrentHashMap<>();
 
     @Override
     public Map<ScopeKey, CounterSnapshot> counters() {
@@ -51,4 +52,9 @@ class SnapshotImpl implements Snapshot {
     public Map<ScopeKey, HistogramSnapshot> histograms() {
         return histograms;
     }
+
+    @Override
+    public Map<ScopeKey, SketchSnapshot> sketches() {
+        return sketches;
+    }
 }
@@ -22,6 +22,7 @@ package com.uber.m3.tally;
 
 import com.uber.m3.util.Duration;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -64,6 +65,26 @@ public interface StatsReporter extends BaseStatsReporter {
             Duration interval
     );
 
+    /**
+     * Report a {@link Timer} interval, sampled at the given rate by the {@link Timer}.
+     *
+     * Only called by the scopes for reporters declaring {@link Capabilities#sampleRates()},
+     * which have to scale the count of the {@link Timer} by the sample rate. Others report
+     * the interval once, as if it was not sampled.
+     * @param name       name of {@link Timer} to report
+     * @param tags       tags to report on
+     * @param interval   interval to report
+     * @param sampleRate rate the interval has been sampled at, within (0, 1]
+     */
+    default void reportTimer(
+            String name,
+            Map<String, String> tags,
+            Duration interval,
+            double sampleRate
+    ) {
+        reportTimer(name, tags, interval);
+    }
+
     /**
      * Report a {@link Histogram}.
      * @param name             name of {@link Histogram} to report
@@ -99,4 +120,63 @@ public interface StatsReporter extends BaseStatsReporter {
             Duration bucketUpperBound,
             long samples
     );
+
+    /**
+     * Report a {@link Histogram} of {@link ValueBuckets#base2Exponential()} buckets.
+     *
+     * Reporters with no native support of exponential histograms report the histogram
+     * converted to its explicit {@link Buckets}, the same way as any other {@link Histogram}.
+     * @param name      name of {@link Histogram} to report
+     * @param tags      tags to report on
+     * @param buckets   {@link Buckets} of the {@link Histogram}
+     * @param histogram histogram of the values recorded over the interval
+     */
+    default void reportExponentialHistogram(
+            String name,
+            Map<String, String> tags,
+            Buckets buckets,
+            Base2ExponentialHistogram histogram
+    ) {
+        long[] counts = histogram.toBucketCounts(buckets);
+
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] != 0) {
+                reportHistogramValueSamples(
+                    name,
+                    tags,
+                    buckets,
+                    buckets.getValueLowerBoundFor(i),
+                    buckets.getValueUpperBoundFor(i),
+                    counts[i]
+                );
+            }
+        }
+    }
+
+    /**
+     * Report the {@link DDSketch} of a {@link Sketch} over the last interval.
+     *
+     * Reporters with no native support of sketches report the 0.5, 0.99 and 0.999 quantiles
+     * of the sketch as {@link Gauge}s, tagged with the {@code quantile}.
+     * @param name   name of {@link Sketch} to report
+     * @param tags   tags to report on
+     * @param sketch sketch of the values recorded over the interval
+     */
+    default void reportSketch(
+            String name,
+            Map<String, String> tags,
+            DDSketch sketch
+    ) {
+        for (double quantile : new double[] {0.5, 0.99, 0.999}) {
+            Map<String, String> quantileTags = new HashMap<>();
+
+            if (tags != null) {
+                quantileTags.putAll(tags);
+            }
+
+            quantileTags.put("quantile", String.valueOf(quantile));
+
+            reportGauge(name, quantileTags, sketch.getValueAtQuantile(quantile));
+        }
+    }
 }
@@ -0,0 +1,126 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link Counter} accumulating increments in per-thread cells, which are only ever written
+ * by their owning thread and hence require no atomic read-modify-write operations.
+ *
+ * Every cell holds a monotonic running total of its thread, published with an ordered store,
+ * so that the reporting thread can harvest consistent totals at any time without any
+ * coordination with the writers. Cells of terminated threads are folded into a retired total
+ * when harvested, so that none of their counts are lost.
+ */
+class ThreadLocalCounterImpl extends AbstractCounter {
+    private final ThreadLocal<Cell> localCell = ThreadLocal.withInitial(this::registerCell);
+
+    // NOTE: Guarded by this
+    private final List<Cell> cells = new ArrayList<>();
+
+    // Sum of the cells of the terminated threads, guarded by this
+    private long retired;
+
+    // NOTE: Only ever written by the reporting thread
+    private volatile long prev;
+
+    protected ThreadLocalCounterImpl(String fqn) {
+        super(fqn);
+    }
+
+    @Override
+    public void inc(long delta) {
+        localCell.get().add(delta);
+    }
+
+    @Override
+    long value() {
+        long current = harvest();
+        long previous = prev;
+
+        if (current == previous) {
+            return 0;
+        }
+
+        prev = current;
+
+        return current - previous;
+    }
+
+    @Override
+    long snapshot() {
+        return harvest() - prev;
+    }
+
+    /**
+     * Returns running total of all the cells, retiring those of terminated threads.
+     */
+    private synchronized long harvest() {
+        long total = retired;
+
+        Iterator<Cell> iterator = cells.iterator();
+        while (iterator.hasNext()) {
+            Cell cell = iterator.next();
+
+            // NOTE: Thread's termination happens-before it's observed by {@link Thread#isAlive},
+            //       hence the value read subsequently is the final one
+            boolean terminated = !cell.owner.isAlive();
+            long value = cell.value;
+
+            total += value;
+
+            if (terminated) {
+                retired += value;
+                iterator.remove();
+            }
+        }
+
+        return total;
+    }
+
+    private synchronized Cell registerCell() {
+        Cell cell = new Cell(Thread.currentThread());
+        cells.add(cell);
+        return cell;
+    }
+
+    private static final class Cell {
+        private static final AtomicLongFieldUpdater<Cell> VALUE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(Cell.class, "value");
+
+        private final Thread owner;
+
+        private volatile long value;
+
+        Cell(Thread owner) {
+            this.owner = owner;
+        }
+
+        void add(long delta) {
+            // NOTE: Single writer, hence plain read and an ordered (lazy) store suffice
+            VALUE_UPDATER.lazySet(this, value + delta);
+        }
+    }
+}
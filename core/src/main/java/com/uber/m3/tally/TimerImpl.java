@@ -55,6 +55,13 @@ class TimerImpl implements Timer, StopwatchRecorder {
         reporter.reportTimer(name, tags, interval);
     }
 
+    /**
+     * Records an interval sampled at the given rate.
+     */
+    void record(Duration interval, double sampleRate) {
+        reporter.reportTimer(name, tags, interval, sampleRate);
+    }
+
     @Override
     public Stopwatch start() {
         return new Stopwatch(System.nanoTime(), this);
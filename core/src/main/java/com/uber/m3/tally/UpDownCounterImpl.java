@@ -0,0 +1,56 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.ImmutableMap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default implementation of an {@link UpDownCounter}, backed by a {@link LongAdder}, which
+ * spreads contended updates over striped cells summed up when reported.
+ */
+class UpDownCounterImpl extends MetricBase implements UpDownCounter, Reportable {
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * NOTE: The counter is not added to the reporting queue, which is up to the caller once
+     *       the construction completes, so that it's never reported before being fully initialized
+     */
+    UpDownCounterImpl(String fqn) {
+        super(fqn);
+    }
+
+    @Override
+    public void add(long delta) {
+        total.add(delta);
+    }
+
+    @Override
+    public void report(ImmutableMap<String, String> tags, StatsReporter reporter) {
+        // NOTE: Reported on every interval, as the total is not reset
+        reporter.reportGauge(getQualifiedName(), tags, total.sum());
+    }
+
+    long snapshot() {
+        return total.sum();
+    }
+}
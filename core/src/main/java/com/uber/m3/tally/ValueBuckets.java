@@ -151,6 +151,55 @@ public class ValueBuckets extends AbstractBuckets<Double> {
         return new ValueBuckets(buckets);
     }
 
+    /**
+     * Helper function to create {@link ValueBuckets} of log-linear spacing, with unit resolution
+     * for values up to a billion and a relative error of under 4% per bucket. Histograms using these
+     * locate buckets with bit arithmetic, and keep bucket counts in a single packed array.
+     * @return {@link ValueBuckets} of log-linear spacing
+     */
+    public static ValueBuckets logLinear() {
+        return LogLinearValueBuckets.DEFAULT;
+    }
+
+    /**
+     * Helper function to create {@link ValueBuckets} of log-linear spacing: every power of two
+     * is split into {@code 2^(precisionBits - 1)} buckets of equal width, bounding the relative
+     * error of each bucket by {@code 2^-(precisionBits - 1)}.
+     * @param unit                  the width of the narrowest bucket
+     * @param highestTrackableValue the highest value to be tracked; the ones beyond fall into the overflow bucket
+     * @param precisionBits         the precision of the buckets, within [1, 16]
+     * @return {@link ValueBuckets} of the specified parameters
+     */
+    public static ValueBuckets logLinear(double unit, double highestTrackableValue, int precisionBits) {
+        return LogLinearValueBuckets.create(unit, highestTrackableValue, precisionBits);
+    }
+
+    /**
+     * Helper function to create {@link ValueBuckets} of base-2 exponential histograms, as defined by
+     * OpenTelemetry and Prometheus native histograms, of up to 160 buckets. Histograms using these
+     * pick the finest resolution their range of values allows, and are converted to two buckets
+     * per power of two within [2^-20, 2^20] for reporters with no native support of them.
+     * Unlike the other histograms, recording briefly locks a histogram shared by a stripe of threads.
+     * @return {@link ValueBuckets} of base-2 exponential histograms
+     */
+    public static ValueBuckets base2Exponential() {
+        return Base2ExponentialValueBuckets.DEFAULT;
+    }
+
+    /**
+     * Helper function to create {@link ValueBuckets} of base-2 exponential histograms. Their
+     * explicit bounds, which reporters with no native support of exponential histograms convert
+     * them to, are {@code 2^(k / 2^exportScale)} within [2^lowestExponent, 2^highestExponent].
+     * @param maxSize         the maximum number of buckets of the positive (and the negative) values
+     * @param exportScale     the scale of the explicit bounds, within [0, 4]
+     * @param lowestExponent  the power of two of the lowest explicit bound
+     * @param highestExponent the power of two of the highest explicit bound
+     * @return {@link ValueBuckets} of the specified parameters
+     */
+    public static ValueBuckets base2Exponential(int maxSize, int exportScale, int lowestExponent, int highestExponent) {
+        return Base2ExponentialValueBuckets.create(maxSize, exportScale, lowestExponent, highestExponent);
+    }
+
     /**
      * Helper function to create {@link ValueBuckets} with custom buckets.
      *
@@ -0,0 +1,109 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Synchronization primitive letting any number of wait-free writers update a shared data structure,
+ * while a (blocking) reader periodically swaps it for a spare one, and then waits for all the writers
+ * that could still be using the swapped out structure to leave, before reading it.
+ *
+ * Writers wrap their updates with {@link #writerCriticalSectionEnter()} and
+ * {@link #writerCriticalSectionExit(long)}. Reader, holding {@link #readerLock()}, swaps the
+ * structures and then calls {@link #flipPhase()}, after which it has exclusive access to
+ * the swapped out one.
+ *
+ * Follows the design of HdrHistogram's {@code WriterReaderPhaser}.
+ */
+final class WriterReaderPhaser {
+    private static final AtomicLongFieldUpdater<WriterReaderPhaser> START_EPOCH_UPDATER =
+        AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "startEpoch");
+    private static final AtomicLongFieldUpdater<WriterReaderPhaser> EVEN_END_EPOCH_UPDATER =
+        AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "evenEndEpoch");
+    private static final AtomicLongFieldUpdater<WriterReaderPhaser> ODD_END_EPOCH_UPDATER =
+        AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "oddEndEpoch");
+
+    // NOTE: Sign of the start epoch designates the current phase: non-negative for even, negative for odd
+    private volatile long startEpoch = 0;
+    private volatile long evenEndEpoch = 0;
+    private volatile long oddEndEpoch = Long.MIN_VALUE;
+
+    private final ReentrantLock readerLock = new ReentrantLock();
+
+    /**
+     * Enters writer's critical section.
+     *
+     * @return token to be passed to the matching {@link #writerCriticalSectionExit(long)}
+     */
+    long writerCriticalSectionEnter() {
+        return START_EPOCH_UPDATER.getAndIncrement(this);
+    }
+
+    /**
+     * Leaves writer's critical section.
+     *
+     * @param token value returned by the matching {@link #writerCriticalSectionEnter()}
+     */
+    void writerCriticalSectionExit(long token) {
+        if (token < 0) {
+            ODD_END_EPOCH_UPDATER.getAndIncrement(this);
+        } else {
+            EVEN_END_EPOCH_UPDATER.getAndIncrement(this);
+        }
+    }
+
+    void readerLock() {
+        readerLock.lock();
+    }
+
+    void readerUnlock() {
+        readerLock.unlock();
+    }
+
+    /**
+     * Flips the phase, waiting for all the writers that entered their critical sections
+     * in the previous phase to leave them. Must only be called while holding {@link #readerLock()}.
+     */
+    void flipPhase() {
+        if (!readerLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("flipPhase() may only be called while holding the reader lock");
+        }
+
+        boolean nextPhaseIsEven = startEpoch < 0;
+        long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+
+        // Reset the end epoch of the next phase before any writers could enter it
+        if (nextPhaseIsEven) {
+            evenEndEpoch = initialStartValue;
+        } else {
+            oddEndEpoch = initialStartValue;
+        }
+
+        long startValueAtFlip = START_EPOCH_UPDATER.getAndSet(this, initialStartValue);
+
+        // Wait for all the writers of the previous phase to leave
+        while ((nextPhaseIsEven ? oddEndEpoch : evenEndEpoch) != startValueAtFlip) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AggregatingGaugeImplTest {
+    private TestStatsReporter reporter;
+    private ScopeImpl scope;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+    }
+
+    @Test
+    public void max() {
+        Gauge gauge = scope.gauge("gauge", GaugeAggregation.MAX);
+
+        gauge.update(3);
+        gauge.update(-1);
+        gauge.update(7.5);
+        gauge.update(2);
+
+        scope.report(reporter);
+        assertEquals(7.5, reporter.nextGaugeVal(), 0);
+
+        // Reset on report
+        gauge.update(1);
+        scope.report(reporter);
+        assertEquals(1, reporter.nextGaugeVal(), 0);
+    }
+
+    @Test
+    public void min() {
+        Gauge gauge = scope.gauge("gauge", GaugeAggregation.MIN);
+
+        gauge.update(3);
+        gauge.update(-1);
+        gauge.update(7.5);
+
+        scope.report(reporter);
+        assertEquals(-1, reporter.nextGaugeVal(), 0);
+
+        gauge.update(5);
+        scope.report(reporter);
+        assertEquals(5, reporter.nextGaugeVal(), 0);
+    }
+
+    @Test
+    public void sum() {
+        Gauge gauge = scope.gauge("gauge", GaugeAggregation.SUM);
+
+        gauge.update(3);
+        gauge.update(-1);
+        gauge.update(7.5);
+
+        scope.report(reporter);
+        assertEquals(9.5, reporter.nextGaugeVal(), 0);
+
+        // Intervals without updates are not reported
+        scope.report(reporter);
+        assertNoGauges();
+    }
+
+    @Test
+    public void last() {
+        Gauge gauge = scope.gauge("gauge", GaugeAggregation.LAST);
+
+        assertTrue(gauge instanceof GaugeImpl);
+        assertSame(gauge, scope.gauge("gauge"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mismatchedAggregation() {
+        Gauge gauge = scope.gauge("gauge", GaugeAggregation.MAX);
+        assertSame(gauge, scope.gauge("gauge", GaugeAggregation.MAX));
+
+        scope.gauge("gauge", GaugeAggregation.SUM);
+    }
+
+    @Test
+    public void lastAfterAggregation() {
+        Gauge gauge = scope.gauge("gauge", GaugeAggregation.MAX);
+
+        // Gauges requested without aggregation share the existing one
+        assertSame(gauge, scope.gauge("gauge"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void explicitLastAfterAggregation() {
+        scope.gauge("gauge", GaugeAggregation.MAX);
+        scope.gauge("gauge", GaugeAggregation.LAST);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aggregationAfterLast() {
+        scope.gauge("gauge");
+        scope.gauge("gauge", GaugeAggregation.MIN);
+    }
+
+    @Test
+    public void snapshot() {
+        Gauge gauge = scope.gauge("gauge", GaugeAggregation.MAX);
+
+        gauge.update(4);
+        gauge.update(2);
+
+        Snapshot snapshot = scope.snapshot();
+        assertEquals(4, snapshot.gauges().get(ScopeImpl.keyForPrefixedStringMap("gauge", null)).value(), 0);
+    }
+
+    @Test
+    public void concurrentUpdates() throws InterruptedException {
+        final int threadsCount = 4;
+        final int updatesPerThread = 100_000;
+
+        Gauge max = scope.gauge("max", GaugeAggregation.MAX);
+        Gauge sum = scope.gauge("sum", GaugeAggregation.SUM);
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < threadsCount; ++i) {
+            final int thread = i;
+
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < updatesPerThread; ++j) {
+                    max.update(thread * updatesPerThread + j);
+                    sum.update(1);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        scope.report(reporter);
+
+        assertEquals(threadsCount * updatesPerThread - 1, reporter.nextGaugeVal(), 0);
+        assertEquals(threadsCount * updatesPerThread, reporter.nextGaugeVal(), 0);
+    }
+
+    private void assertNoGauges() {
+        try {
+            reporter.nextGauge();
+            fail("No gauge is expected to be reported");
+        } catch (NoSuchElementException expected) {
+            // Nothing reported
+        }
+    }
+}
@@ -0,0 +1,246 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Base2ExponentialHistogramTest {
+    @Test
+    public void indexOf() {
+        Base2ExponentialHistogram histogram = new Base2ExponentialHistogram(160, 0);
+
+        // Buckets are inclusive of their upper bounds: (2^i, 2^(i + 1)]
+        assertEquals(-1, histogram.indexOf(1));
+        assertEquals(0, histogram.indexOf(1.5));
+        assertEquals(0, histogram.indexOf(2));
+        assertEquals(1, histogram.indexOf(3));
+        assertEquals(1, histogram.indexOf(4));
+        assertEquals(-2, histogram.indexOf(0.5));
+        assertEquals(-2, histogram.indexOf(0.3));
+        assertEquals(-3, histogram.indexOf(0.25));
+
+        histogram = new Base2ExponentialHistogram(160, 1);
+
+        assertEquals(-1, histogram.indexOf(1));
+        assertEquals(0, histogram.indexOf(1.2));
+        assertEquals(1, histogram.indexOf(1.5));
+        assertEquals(1, histogram.indexOf(2));
+
+        histogram = new Base2ExponentialHistogram(160, -1);
+
+        assertEquals(-1, histogram.indexOf(1));
+        assertEquals(0, histogram.indexOf(2));
+        assertEquals(0, histogram.indexOf(4));
+        assertEquals(1, histogram.indexOf(5));
+    }
+
+    @Test
+    public void valuesWithinBucketBounds() {
+        for (int scale = -4; scale <= Base2ExponentialHistogram.MAX_SCALE; scale += 4) {
+            Base2ExponentialHistogram histogram = new Base2ExponentialHistogram(160, scale);
+
+            for (double value = 1e-6; value < 1e6; value *= 1.37) {
+                int index = histogram.indexOf(value);
+
+                assertTrue(value > histogram.getLowerBound(index) * (1 - 1e-12));
+                assertTrue(value <= histogram.getLowerBound(index + 1) * (1 + 1e-12));
+            }
+        }
+    }
+
+    @Test
+    public void downscale() {
+        Base2ExponentialHistogram histogram = new Base2ExponentialHistogram(4, Base2ExponentialHistogram.MAX_SCALE);
+
+        histogram.record(1);
+        assertEquals(Base2ExponentialHistogram.MAX_SCALE, histogram.getScale());
+
+        // [1, 2] only fits into 4 buckets at the scale of 1
+        histogram.record(2);
+        assertEquals(1, histogram.getScale());
+        assertEquals(1, histogram.getPositive().get(-1));
+        assertEquals(1, histogram.getPositive().get(1));
+
+        histogram.record(4);
+        assertEquals(0, histogram.getScale());
+        assertEquals(-1, histogram.getPositive().getStartIndex());
+        assertEquals(1, histogram.getPositive().getEndIndex());
+        assertEquals(1, histogram.getPositive().get(-1));
+        assertEquals(1, histogram.getPositive().get(0));
+        assertEquals(1, histogram.getPositive().get(1));
+
+        // Values within the range do not change the scale
+        histogram.record(3);
+        histogram.record(0.75);
+        assertEquals(0, histogram.getScale());
+        assertEquals(2, histogram.getPositive().get(1));
+        assertEquals(2, histogram.getPositive().get(-1));
+        assertEquals(5, histogram.getCount());
+    }
+
+    @Test
+    public void downscaleWrappedAround() {
+        Base2ExponentialHistogram histogram = new Base2ExponentialHistogram(8, 0);
+
+        // Lower indexes than the first one wrap around the circular array
+        for (double value = 64; value >= 0.5; value /= 2) {
+            histogram.record(value);
+        }
+
+        assertEquals(0, histogram.getScale());
+        assertEquals(-2, histogram.getPositive().getStartIndex());
+        assertEquals(5, histogram.getPositive().getEndIndex());
+
+        histogram.record(0.25);
+
+        assertEquals(-1, histogram.getScale());
+
+        long total = 0;
+
+        for (int index = histogram.getPositive().getStartIndex(); index <= histogram.getPositive().getEndIndex(); ++index) {
+            total += histogram.getPositive().get(index);
+        }
+
+        assertEquals(9, total);
+        assertEquals(2, histogram.getPositive().get(2));
+    }
+
+    @Test
+    public void zerosAndNegatives() {
+        Base2ExponentialHistogram histogram = new Base2ExponentialHistogram(160, 3);
+
+        histogram.record(0);
+        histogram.record(Double.MIN_VALUE);
+        histogram.record(-3);
+        histogram.record(-3);
+        histogram.record(5);
+        histogram.record(Double.NaN);
+        histogram.record(Double.POSITIVE_INFINITY);
+
+        assertEquals(5, histogram.getCount());
+        assertEquals(2, histogram.getZeroCount());
+        assertEquals(2, histogram.getNegative().get(histogram.indexOf(3)));
+        assertEquals(1, histogram.getPositive().get(histogram.indexOf(5)));
+        assertEquals(-1, histogram.getSum(), 1e-9);
+        assertEquals(-3, histogram.getMin(), 0);
+        assertEquals(5, histogram.getMax(), 0);
+    }
+
+    @Test
+    public void empty() {
+        Base2ExponentialHistogram histogram = new Base2ExponentialHistogram(160, 20);
+
+        assertTrue(histogram.isEmpty());
+        assertTrue(histogram.getPositive().isEmpty());
+        assertTrue(Double.isNaN(histogram.getMin()));
+        assertTrue(Double.isNaN(histogram.getMax()));
+        assertEquals(0, histogram.getPositive().get(0));
+    }
+
+    @Test
+    public void toBucketCounts() {
+        ValueBuckets buckets = ValueBuckets.base2Exponential(160, 1, -2, 2);
+
+        Base2ExponentialHistogram histogram = new Base2ExponentialHistogram(160, Base2ExponentialHistogram.MAX_SCALE);
+
+        histogram.record(-1);
+        histogram.record(0);
+        histogram.record(0.75);
+        histogram.record(1);
+        histogram.record(1.2);
+        histogram.record(3);
+        histogram.record(100);
+
+        // Bounds: 0.25, 0.35, 0.5, 0.71, 1, 1.41, 2, 2.83, 4
+        assertArrayEquals(
+            new long[] {2, 0, 0, 0, 2, 1, 0, 0, 1, 1},
+            histogram.toBucketCounts(buckets)
+        );
+    }
+
+    @Test
+    public void merge() {
+        Base2ExponentialHistogram merged = new Base2ExponentialHistogram(16, Base2ExponentialHistogram.MAX_SCALE);
+        Base2ExponentialHistogram expected = new Base2ExponentialHistogram(16, Base2ExponentialHistogram.MAX_SCALE);
+
+        Base2ExponentialHistogram narrow = new Base2ExponentialHistogram(16, Base2ExponentialHistogram.MAX_SCALE);
+        Base2ExponentialHistogram wide = new Base2ExponentialHistogram(16, Base2ExponentialHistogram.MAX_SCALE);
+
+        for (double value : new double[] {1.1, 1.2, -1.3, 0}) {
+            narrow.record(value);
+            expected.record(value);
+        }
+
+        for (double value : new double[] {0.01, 3, 100, -1000}) {
+            wide.record(value);
+            expected.record(value);
+        }
+
+        merged.merge(narrow);
+        merged.merge(new Base2ExponentialHistogram(16, 0));
+        merged.merge(wide);
+
+        assertEquals(expected.getScale(), merged.getScale());
+        assertEquals(expected.getCount(), merged.getCount());
+        assertEquals(expected.getZeroCount(), merged.getZeroCount());
+        assertEquals(expected.getSum(), merged.getSum(), 1e-9);
+        assertEquals(-1000, merged.getMin(), 0);
+        assertEquals(100, merged.getMax(), 0);
+
+        for (int index = -200; index <= 200; ++index) {
+            assertEquals(expected.getPositive().get(index), merged.getPositive().get(index));
+            assertEquals(expected.getNegative().get(index), merged.getNegative().get(index));
+        }
+    }
+
+    @Test
+    public void clear() {
+        Base2ExponentialHistogram histogram = new Base2ExponentialHistogram(4, Base2ExponentialHistogram.MAX_SCALE);
+
+        histogram.record(1);
+        histogram.record(-100);
+        histogram.record(100);
+        histogram.clear();
+
+        assertTrue(histogram.isEmpty());
+        assertTrue(histogram.getPositive().isEmpty());
+        assertTrue(histogram.getNegative().isEmpty());
+        assertEquals(Base2ExponentialHistogram.MAX_SCALE, histogram.getScale());
+
+        histogram.record(3);
+        assertEquals(1, histogram.getPositive().get(histogram.indexOf(3)));
+        assertEquals(3, histogram.getSum(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidScale() {
+        new Base2ExponentialHistogram(160, 21);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSize() {
+        new Base2ExponentialHistogram(1, 0);
+    }
+}
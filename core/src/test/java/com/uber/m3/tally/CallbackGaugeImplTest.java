@@ -0,0 +1,243 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CallbackGaugeImplTest {
+    private TestStatsReporter reporter;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void invokedOnReport() {
+        ScopeImpl scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+
+        AtomicInteger invocations = new AtomicInteger();
+
+        scope.gauge("gauge", () -> invocations.incrementAndGet() * 1.5);
+        // Only the first callback takes effect
+        scope.gauge("gauge", () -> -1);
+
+        assertEquals(0, invocations.get());
+
+        scope.report(reporter);
+        assertEquals(1.5, reporter.nextGaugeVal(), 0);
+
+        scope.report(reporter);
+        assertEquals(3, reporter.nextGaugeVal(), 0);
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    public void snapshot() {
+        ScopeImpl scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+
+        scope.gauge("gauge", () -> 42);
+
+        Snapshot snapshot = scope.snapshot();
+        assertEquals(42, snapshot.gauges().get(ScopeImpl.keyForPrefixedStringMap("gauge", null)).value(), 0);
+    }
+
+    @Test
+    public void isolatedSlowCallback() throws InterruptedException {
+        ScopeImpl scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .callbackGaugeExecutor(executor)
+                .callbackGaugeTimeout(Duration.ofMillis(200))
+                .build();
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger invocations = new AtomicInteger();
+
+        scope.gauge("slow-gauge", () -> {
+            invocations.incrementAndGet();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return 7;
+        });
+
+        Scope subScope = scope.subScope("sub");
+        subScope.gauge("fast-gauge", () -> 1);
+
+        // The slow callback is skipped, without holding up the rest
+        scope.report(reporter);
+        assertNoGauges();
+
+        ((ScopeImpl) subScope).report(reporter);
+        assertEquals(1, reporter.nextGaugeVal(), 0);
+
+        // Callback that has already exceeded the timeout is polled, rather than awaited again
+        long start = System.nanoTime();
+        scope.report(reporter);
+        assertNoGauges();
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(200).getNanos());
+
+        release.countDown();
+
+        // The pending callback is completed rather than invoked again
+        assertEquals(7, awaitGaugeVal(scope), 0);
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void isolatedFailingCallbacks() {
+        ScopeImpl.Registry registry = new ScopeImpl.Registry();
+        ScopeImpl scope =
+            new ScopeBuilder(null, registry)
+                .reporter(reporter)
+                .build();
+        ScopeImpl isolatedScope =
+            new ScopeBuilder(null, registry)
+                .reporter(reporter)
+                .callbackGaugeExecutor(executor)
+                .build();
+
+        List<Throwable> failures = new ArrayList<>();
+        registry.uncaughtExceptionHandler = (thread, e) -> failures.add(e.getCause());
+
+        IllegalArgumentException failure = new IllegalArgumentException();
+
+        scope.gauge("failing-gauge", () -> {
+            throw failure;
+        });
+        scope.gauge("gauge", () -> 1);
+
+        isolatedScope.gauge("failing-gauge", () -> {
+            throw failure;
+        });
+        isolatedScope.gauge("gauge", () -> 2);
+
+        // Failing callbacks only skip their own gauges
+        scope.report(reporter);
+        assertEquals(1, reporter.nextGaugeVal(), 0);
+        assertNoGauges();
+
+        isolatedScope.report(reporter);
+        assertEquals(2, reporter.nextGaugeVal(), 0);
+        assertNoGauges();
+
+        assertEquals(Arrays.asList(failure, failure), failures);
+    }
+
+    @Test
+    public void sharedNamespace() {
+        ScopeImpl.Registry registry = new ScopeImpl.Registry();
+        ScopeImpl scope =
+            new ScopeBuilder(null, registry)
+                .reporter(reporter)
+                .build();
+
+        List<Throwable> failures = new ArrayList<>();
+        registry.uncaughtExceptionHandler = (thread, e) -> failures.add(e);
+
+        scope.gauge("gauge", () -> 1);
+
+        // Gauge of the same name ignores updates, rather than being reported as a duplicate series
+        scope.gauge("gauge").update(2);
+
+        scope.report(reporter);
+        assertEquals(1, reporter.nextGaugeVal(), 0);
+        assertNoGauges();
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof IllegalArgumentException);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nameTakenByUpDownCounter() {
+        ScopeImpl scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+
+        scope.upDownCounter("gauge");
+        scope.gauge("gauge", () -> 1);
+    }
+
+    @Test
+    public void noopScope() {
+        new NoopScope().gauge("gauge", () -> {
+            throw new AssertionError();
+        });
+    }
+
+    private double awaitGaugeVal(ScopeImpl scope) throws InterruptedException {
+        for (int i = 0; i < 100; ++i) {
+            scope.report(reporter);
+
+            try {
+                return reporter.nextGaugeVal();
+            } catch (NoSuchElementException e) {
+                Thread.sleep(10);
+            }
+        }
+
+        throw new AssertionError("No gauge reported");
+    }
+
+    private void assertNoGauges() {
+        try {
+            reporter.nextGauge();
+            fail("No gauge is expected to be reported");
+        } catch (NoSuchElementException expected) {
+            // Nothing reported
+        }
+    }
+}
@@ -28,17 +28,11 @@ import static org.junit.Assert.assertEquals;
 public class CounterImplTest {
     private TestStatsReporter reporter;
     private CounterImpl counter;
-    private ScopeImpl scope;
 
     @Before
     public void setUp() {
         reporter = new TestStatsReporter();
-        scope =
-            new ScopeBuilder(null, new ScopeImpl.Registry())
-                .reporter(reporter)
-                .build();
-
-        counter = new CounterImpl(scope, "counter");
+        counter = new CounterImpl("counter");
     }
 
     @Test
@@ -0,0 +1,150 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DDSketchTest {
+    private static final double RELATIVE_ACCURACY = 0.01;
+
+    @Test
+    public void quantilesWithinRelativeAccuracy() {
+        DDSketch sketch = new DDSketch(RELATIVE_ACCURACY);
+
+        Random random = new Random(1);
+        double[] values = new double[10_000];
+
+        for (int i = 0; i < values.length; ++i) {
+            // Log-normal, spanning several orders of magnitude
+            values[i] = Math.exp(random.nextGaussian() * 3);
+            sketch.add(values[i]);
+        }
+
+        assertQuantiles(values, sketch);
+        assertEquals(values.length, sketch.getCount());
+    }
+
+    @Test
+    public void negativeAndZeroValues() {
+        DDSketch sketch = new DDSketch(RELATIVE_ACCURACY);
+        double[] values = new double[2001];
+
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = i - 1000;
+            sketch.add(values[i]);
+        }
+
+        assertQuantiles(values, sketch);
+        assertEquals(-1000, sketch.getMinValue(), 0);
+        assertEquals(1000, sketch.getMaxValue(), 0);
+        assertEquals(0, sketch.getSum(), 0);
+    }
+
+    @Test
+    public void mergeIsExact() {
+        Random random = new Random(2);
+
+        DDSketch merged = new DDSketch(RELATIVE_ACCURACY);
+        DDSketch all = new DDSketch(RELATIVE_ACCURACY);
+
+        for (int s = 0; s < 5; ++s) {
+            DDSketch sketch = new DDSketch(RELATIVE_ACCURACY);
+
+            for (int i = 0; i < 1000; ++i) {
+                double value = random.nextDouble() * Math.pow(10, s);
+                sketch.add(value);
+                all.add(value);
+            }
+
+            merged.merge(sketch);
+        }
+
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getMinValue(), merged.getMinValue(), 0);
+        assertEquals(all.getMaxValue(), merged.getMaxValue(), 0);
+
+        for (double q = 0; q <= 1; q += 0.001) {
+            assertEquals(all.getValueAtQuantile(q), merged.getValueAtQuantile(q), 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergeOfIncompatibleSketches() {
+        new DDSketch(0.01).merge(new DDSketch(0.02));
+    }
+
+    @Test
+    public void serializationRoundTrip() {
+        DDSketch sketch = new DDSketch(RELATIVE_ACCURACY);
+
+        for (int i = -50; i < 500; ++i) {
+            sketch.add(i * 1.5, 1 + (i & 3));
+        }
+
+        DDSketch deserialized = DDSketch.deserialize(sketch.serialize());
+
+        assertEquals(sketch.getRelativeAccuracy(), deserialized.getRelativeAccuracy(), 0);
+        assertEquals(sketch.getCount(), deserialized.getCount());
+        assertEquals(sketch.getSum(), deserialized.getSum(), 0);
+
+        for (double q = 0; q <= 1; q += 0.01) {
+            assertEquals(sketch.getValueAtQuantile(q), deserialized.getValueAtQuantile(q), 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedSerializedSketch() {
+        byte[] bytes = new DDSketch(RELATIVE_ACCURACY).serialize();
+        bytes[0] = 42;
+
+        DDSketch.deserialize(bytes);
+    }
+
+    @Test
+    public void emptySketch() {
+        DDSketch sketch = new DDSketch(RELATIVE_ACCURACY);
+
+        assertTrue(sketch.isEmpty());
+        assertTrue(Double.isNaN(sketch.getValueAtQuantile(0.5)));
+        assertTrue(DDSketch.deserialize(sketch.serialize()).isEmpty());
+    }
+
+    private static void assertQuantiles(double[] values, DDSketch sketch) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        for (double q : new double[] {0, 0.1, 0.5, 0.9, 0.99, 0.999, 1}) {
+            double expected = sorted[(int) Math.floor(q * (sorted.length - 1))];
+            double actual = sketch.getValueAtQuantile(q);
+
+            assertTrue(
+                String.format("q=%s expected=%s actual=%s", q, expected, actual),
+                Math.abs(actual - expected) <= RELATIVE_ACCURACY * Math.abs(expected)
+            );
+        }
+    }
+}
@@ -0,0 +1,131 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DoubleBufferedHistogramImplTest {
+    private TestStatsReporter reporter;
+    private ScopeImpl scope;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .doubleBufferedHistograms(true)
+                .build();
+    }
+
+    @Test
+    public void recordValue() {
+        Histogram histogram = scope.histogram("histogram", ValueBuckets.linear(0, 10, 10));
+        assertTrue(histogram instanceof DoubleBufferedHistogramImpl);
+
+        for (int i = 0; i < 3; i++) {
+            histogram.recordValue(Math.random() * 10);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            histogram.recordValue(50 + Math.random() * 10);
+        }
+
+        scope.report(reporter);
+
+        assertEquals(new Long(3L), reporter.getValueSamples().get(10d));
+        assertEquals(new Long(5L), reporter.getValueSamples().get(60d));
+
+        histogram.recordValue(5);
+        scope.report(reporter);
+
+        // Counts are per interval
+        assertEquals(new Long(1L), reporter.getValueSamples().get(10d));
+        assertEquals(new Long(5L), reporter.getCumulativeValueSamples().get(60d));
+    }
+
+    @Test
+    public void recordDuration() {
+        Histogram histogram =
+            scope.histogram("histogram", DurationBuckets.linear(Duration.ZERO, Duration.ofMillis(10), 5));
+
+        histogram.recordDuration(Duration.ofMillis(5));
+        histogram.recordDuration(Duration.ofMillis(25));
+        histogram.recordDuration(Duration.ofMillis(25));
+
+        scope.report(reporter);
+
+        assertEquals(new Long(1L), reporter.getDurationSamples().get(Duration.ofMillis(10)));
+        assertEquals(new Long(2L), reporter.getDurationSamples().get(Duration.ofMillis(30)));
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final int threadsCount = 4;
+        final int samplesPerThread = 100_000;
+
+        Histogram histogram = scope.histogram("histogram", ValueBuckets.linear(0, 10, 10));
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < threadsCount; ++i) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < samplesPerThread; ++j) {
+                    histogram.recordValue(j % 100);
+                }
+            });
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        // Report concurrently with the writers, none of the samples may be lost or double counted
+        while (!done.get()) {
+            scope.report(reporter);
+
+            done.set(threads.stream().noneMatch(Thread::isAlive));
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        scope.report(reporter);
+
+        long total = reporter.getCumulativeValueSamples().values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(threadsCount * samplesPerThread, total);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void flipPhaseRequiresReaderLock() {
+        new WriterReaderPhaser().flipPhase();
+    }
+}
@@ -0,0 +1,175 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExponentialHistogramImplTest {
+    private TestStatsReporter reporter;
+    private ScopeImpl scope;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+    }
+
+    @Test
+    public void recordValue() {
+        ValueBuckets buckets = ValueBuckets.base2Exponential();
+
+        Histogram histogram = scope.histogram("histogram", buckets);
+        assertTrue(histogram instanceof ExponentialHistogramImpl);
+
+        histogram.recordValue(0.75);
+        histogram.recordValue(1);
+        histogram.recordValue(3);
+
+        scope.report(reporter);
+
+        assertEquals(new Long(2L), reporter.getValueSamples().get(1d));
+        assertEquals(new Long(1L), reporter.getValueSamples().get(4d));
+
+        histogram.recordValue(1);
+        scope.report(reporter);
+
+        // Counts are per interval
+        assertEquals(new Long(1L), reporter.getValueSamples().get(1d));
+        assertEquals(new Long(3L), reporter.getCumulativeValueSamples().get(1d));
+        assertEquals(new Long(1L), reporter.getCumulativeValueSamples().get(4d));
+    }
+
+    @Test
+    public void recordDuration() {
+        Histogram histogram = scope.histogram("histogram", ValueBuckets.base2Exponential());
+
+        histogram.recordDuration(Duration.ofMillis(1500));
+        histogram.recordDuration(Duration.ofSeconds(2));
+
+        scope.report(reporter);
+
+        assertEquals(new Long(2L), reporter.getValueSamples().get(2d));
+    }
+
+    @Test
+    public void snapshot() {
+        Histogram histogram = scope.histogram("histogram", ValueBuckets.base2Exponential());
+
+        histogram.recordValue(3);
+        histogram.recordValue(1e9);
+
+        Map<Double, Long> values = scope.snapshot().histograms().get(ScopeImpl.keyForPrefixedStringMap("histogram", null)).values();
+
+        assertEquals(new Long(1L), values.get(4d));
+        assertEquals(new Long(1L), values.get(Double.MAX_VALUE));
+        assertEquals(new Long(0L), values.get(2d));
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        Histogram histogram = scope.histogram("histogram", ValueBuckets.base2Exponential());
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 8; ++i) {
+            int offset = i;
+
+            threads.add(new Thread(() -> {
+                for (int j = 1; j <= 1000; ++j) {
+                    histogram.recordValue(j * (offset + 1));
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Base2ExponentialHistogram[] reported = new Base2ExponentialHistogram[1];
+
+        scope.report(new TestStatsReporter() {
+            @Override
+            public void reportExponentialHistogram(
+                String name,
+                Map<String, String> tags,
+                Buckets buckets,
+                Base2ExponentialHistogram histogram
+            ) {
+                reported[0] = histogram;
+            }
+        });
+
+        assertEquals(8000, reported[0].getCount());
+        assertEquals(500500 * 36, reported[0].getSum(), 0);
+        assertEquals(1, reported[0].getMin(), 0);
+        assertEquals(8000, reported[0].getMax(), 0);
+    }
+
+    @Test
+    public void reportedExponentialHistogram() {
+        Base2ExponentialHistogram[] reported = new Base2ExponentialHistogram[1];
+
+        StatsReporter nativeReporter = new TestStatsReporter() {
+            @Override
+            public void reportExponentialHistogram(
+                String name,
+                Map<String, String> tags,
+                Buckets buckets,
+                Base2ExponentialHistogram histogram
+            ) {
+                reported[0] = histogram;
+            }
+        };
+
+        Histogram histogram = scope.histogram("histogram", ValueBuckets.base2Exponential());
+
+        // Nothing to report
+        scope.report(nativeReporter);
+        assertEquals(null, reported[0]);
+
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.recordValue(i);
+        }
+
+        scope.report(nativeReporter);
+
+        assertEquals(1000, reported[0].getCount());
+        assertEquals(500500, reported[0].getSum(), 0);
+        assertTrue(reported[0].getScale() < Base2ExponentialHistogram.MAX_SCALE);
+        assertTrue(reported[0].getPositive().getEndIndex() - reported[0].getPositive().getStartIndex() < 160);
+    }
+}
@@ -31,17 +31,10 @@ public class GaugeImplTest {
     private TestStatsReporter reporter;
     private GaugeImpl gauge;
 
-    private ScopeImpl scope;
-
     @Before
     public void setUp() {
         reporter = new TestStatsReporter();
-        scope =
-            new ScopeBuilder(null, new ScopeImpl.Registry())
-                .reporter(reporter)
-                .build();
-
-        gauge = new GaugeImpl(scope, "gauge");
+        gauge = new GaugeImpl("gauge");
     }
 
     @Test
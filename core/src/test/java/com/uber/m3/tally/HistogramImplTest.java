@@ -131,6 +131,37 @@ public class HistogramImplTest {
         assertEquals(buckets, reporter.getBuckets());
     }
 
+    @Test
+    public void recordValueThreadLocal() throws InterruptedException {
+        ScopeImpl threadLocalScope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .threadLocalRecording(true)
+                .build();
+
+        Buckets buckets = ValueBuckets.linear(0, 10, 10);
+
+        histogram = new HistogramImpl(threadLocalScope, "", null, buckets);
+
+        Thread recorder = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                histogram.recordValue(Math.random() * 10);
+            }
+        });
+
+        recorder.start();
+        recorder.join();
+
+        for (int i = 0; i < 5; i++) {
+            histogram.recordValue(50 + Math.random() * 10);
+        }
+
+        threadLocalScope.report(reporter);
+
+        assertEquals(new Long(3L), reporter.getValueSamples().get(10d));
+        assertEquals(new Long(5L), reporter.getValueSamples().get(60d));
+    }
+
     @Test
     public void recordDuration() {
         Buckets buckets = DurationBuckets.linear(Duration.ZERO, Duration.ofMillis(10), 10);
@@ -0,0 +1,137 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogLinearBucketsTest {
+    @Test
+    public void valueBucketIndexMatchesBounds() {
+        ValueBuckets buckets = ValueBuckets.logLinear(1, 1e6, 4);
+        List<Double> upperBounds = buckets.getValueUpperBounds();
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100_000; ++i) {
+            double value = Math.floor(random.nextDouble() * 2e6) - 10;
+            int expected = HistogramImpl.toBucketIndex(Collections.binarySearch(upperBounds, value));
+
+            assertEquals("value " + value, expected, buckets.getBucketIndexFor(value));
+        }
+    }
+
+    @Test
+    public void durationBucketIndexMatchesBounds() {
+        DurationBuckets buckets = DurationBuckets.logLinear();
+        List<Duration> upperBounds = buckets.getDurationUpperBounds();
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100_000; ++i) {
+            // Spans from sub-microsecond durations to well beyond the highest trackable one
+            Duration value = Duration.ofNanos((long) Math.pow(10, random.nextDouble() * 13));
+            int expected = HistogramImpl.toBucketIndex(Collections.binarySearch(upperBounds, value));
+
+            assertEquals("duration " + value, expected, buckets.getBucketIndexFor(value));
+        }
+
+        assertEquals(0, buckets.getBucketIndexFor(Duration.ofNanos(-1)));
+        assertEquals(upperBounds.size(), buckets.getBucketIndexFor(Duration.ofHours(2)));
+    }
+
+    @Test
+    public void relativeError() {
+        int precisionBits = 6;
+        ValueBuckets buckets = ValueBuckets.logLinear(1, 1e9, precisionBits);
+        double maxError = Math.pow(2, -(precisionBits - 1));
+
+        // Beyond the linear range, made of buckets a unit wide
+        for (int i = 1 << precisionBits; i < buckets.size(); ++i) {
+            double lower = buckets.getValueLowerBoundFor(i);
+            double upper = buckets.getValueUpperBoundFor(i);
+
+            assertTrue((upper - lower) / lower <= maxError);
+        }
+
+        assertTrue(buckets.getValueUpperBoundFor(buckets.size() - 1) >= 1e9);
+    }
+
+    @Test
+    public void linearRange() {
+        ValueBuckets buckets = ValueBuckets.logLinear(0.5, 100, 3);
+
+        // First 2^3 buckets are a unit wide, the following powers of two are split in 4
+        assertEquals(0.5, buckets.getValueUpperBoundFor(0), 0);
+        assertEquals(4.0, buckets.getValueUpperBoundFor(7), 0);
+        assertEquals(5.0, buckets.getValueUpperBoundFor(8), 0);
+        assertEquals(8.0, buckets.getValueUpperBoundFor(11), 0);
+        assertEquals(10.0, buckets.getValueUpperBoundFor(12), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPrecision() {
+        ValueBuckets.logLinear(1, 1000, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRange() {
+        DurationBuckets.logLinear(Duration.ofMillis(1), Duration.ofNanos(1), 4);
+    }
+
+    @Test
+    public void histogram() {
+        TestStatsReporter reporter = new TestStatsReporter();
+        ScopeImpl scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+
+        Histogram histogram = scope.histogram("latency", DurationBuckets.logLinear());
+        assertTrue(histogram instanceof DoubleBufferedHistogramImpl);
+
+        histogram.recordDuration(Duration.ofMillis(250));
+        histogram.recordDuration(Duration.ofMillis(250));
+        histogram.recordDuration(Duration.ofHours(3));
+
+        scope.report(reporter);
+
+        assertEquals(2, reporter.getDurationSamples().size());
+        assertEquals(new Long(1L), reporter.getDurationSamples().get(Duration.MAX_VALUE));
+
+        Duration upperBound =
+            reporter.getDurationSamples().keySet().stream()
+                .filter(d -> !d.equals(Duration.MAX_VALUE))
+                .findFirst()
+                .get();
+
+        assertEquals(new Long(2L), reporter.getDurationSamples().get(upperBound));
+        assertTrue(upperBound.compareTo(Duration.ofMillis(250)) > 0);
+        assertTrue(upperBound.compareTo(Duration.ofMillis(260)) < 0);
+    }
+}
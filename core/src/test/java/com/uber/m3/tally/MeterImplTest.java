@@ -0,0 +1,135 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MeterImplTest {
+    private TestStatsReporter reporter;
+    private ScopeImpl scope;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+    }
+
+    @Test
+    public void movingAverages() {
+        MeterImpl meter = new MeterImpl("meter", 0);
+
+        meter.mark(400);
+        meter.mark(200);
+        meter.tick(Duration.ofSeconds(10).getNanos());
+
+        // The first interval's rate is taken as is
+        assertEquals(60, meter.getOneMinuteRate(), 1e-9);
+        assertEquals(60, meter.getFiveMinuteRate(), 1e-9);
+        assertEquals(60, meter.getFifteenMinuteRate(), 1e-9);
+
+        // No events for a minute decay the averages by e^(-1 minute / window)
+        meter.tick(Duration.ofSeconds(70).getNanos());
+
+        assertEquals(60 * Math.exp(-1), meter.getOneMinuteRate(), 1e-9);
+        assertEquals(60 * Math.exp(-1d / 5), meter.getFiveMinuteRate(), 1e-9);
+        assertEquals(60 * Math.exp(-1d / 15), meter.getFifteenMinuteRate(), 1e-9);
+
+        // Steady rate is converged to regardless of the interval
+        for (int i = 1; i <= 600; ++i) {
+            meter.mark(70);
+            meter.tick(Duration.ofSeconds(70 + 7 * i).getNanos());
+        }
+
+        assertEquals(10, meter.getOneMinuteRate(), 1e-6);
+        assertEquals(10, meter.getFiveMinuteRate(), 1e-3);
+    }
+
+    @Test
+    public void noElapsedTime() {
+        MeterImpl meter = new MeterImpl("meter", 100);
+
+        meter.mark(10);
+        meter.tick(100);
+
+        assertEquals(0, meter.getOneMinuteRate(), 0);
+
+        meter.tick(100 + Duration.ofSeconds(1).getNanos());
+        assertEquals(10, meter.getOneMinuteRate(), 1e-9);
+    }
+
+    @Test
+    public void report() {
+        Meter meter = scope.meter("meter");
+        assertSame(meter, scope.meter("meter"));
+
+        meter.mark(5);
+        scope.report(reporter);
+
+        TestStatsReporter.MetricStruct<Double> oneMinute = reporter.nextGauge();
+        assertEquals("meter", oneMinute.getName());
+        assertEquals("1m", oneMinute.getTags().get(MeterImpl.WINDOW_TAG));
+        assertEquals(meter.getOneMinuteRate(), oneMinute.getValue(), 0);
+
+        assertEquals("5m", reporter.nextGauge().getTags().get(MeterImpl.WINDOW_TAG));
+        assertEquals("15m", reporter.nextGauge().getTags().get(MeterImpl.WINDOW_TAG));
+    }
+
+    @Test
+    public void snapshot() {
+        Meter meter = scope.meter("meter");
+
+        meter.mark(5);
+        scope.report(reporter);
+
+        Map<ScopeKey, GaugeSnapshot> gauges = scope.snapshot().gauges();
+        assertEquals(3, gauges.size());
+
+        GaugeSnapshot oneMinute =
+            gauges.get(ScopeImpl.keyForPrefixedStringMap("meter", ImmutableMap.of(MeterImpl.WINDOW_TAG, "1m")));
+        assertEquals("meter", oneMinute.name());
+        assertEquals(meter.getOneMinuteRate(), oneMinute.value(), 0);
+
+        assertEquals(
+            meter.getFifteenMinuteRate(),
+            gauges.get(ScopeImpl.keyForPrefixedStringMap("meter", ImmutableMap.of(MeterImpl.WINDOW_TAG, "15m"))).value(),
+            0
+        );
+    }
+
+    @Test
+    public void noopScope() {
+        Meter meter = new NoopScope().meter("meter");
+
+        meter.mark(5);
+        assertEquals(0, meter.getOneMinuteRate(), 0);
+    }
+}
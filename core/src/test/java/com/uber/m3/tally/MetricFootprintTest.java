@@ -0,0 +1,50 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Guards the per-metric memory footprint, which matters for processes holding millions of series.
+ */
+public class MetricFootprintTest {
+    // The metric itself, plus its fully qualified name String and the String's backing array
+    private static final long EXPECTED_OBJECTS_PER_METRIC = 3;
+
+    @Test
+    public void counterFootprint() {
+        CounterImpl counter = new CounterImpl("counter");
+        counter.inc(1);
+
+        assertEquals(EXPECTED_OBJECTS_PER_METRIC, GraphLayout.parseInstance(counter).totalCount());
+    }
+
+    @Test
+    public void gaugeFootprint() {
+        GaugeImpl gauge = new GaugeImpl("gauge");
+        gauge.update(1);
+
+        assertEquals(EXPECTED_OBJECTS_PER_METRIC, GraphLayout.parseInstance(gauge).totalCount());
+    }
+}
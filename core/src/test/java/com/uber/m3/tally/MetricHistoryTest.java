@@ -0,0 +1,273 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricHistoryTest {
+    private static final long START_NANOS = System.currentTimeMillis() * Duration.NANOS_PER_MILLI;
+
+    private static final ImmutableMap<String, String> TAGS = ImmutableMap.of("env", "test");
+
+    private TestStatsReporter delegate;
+    private MetricHistory history;
+
+    @Before
+    public void setUp() {
+        delegate = new TestStatsReporter();
+        history = new MetricHistory(delegate, 6);
+    }
+
+    @Test
+    public void counters() {
+        // Intervals of 10s with 1, 2, ..., 10 errors
+        for (int i = 1; i <= 10; ++i) {
+            beginInterval(i);
+            history.reportCounter("errors", TAGS, i);
+            history.flush();
+        }
+
+        assertEquals(10, history.sum("errors", TAGS, Duration.ofSeconds(10)));
+        assertEquals(10 + 9 + 8, history.sum("errors", TAGS, Duration.ofSeconds(30)));
+        assertEquals((10 + 9 + 8) / 30d, history.rate("errors", TAGS, Duration.ofSeconds(30)), 1e-9);
+
+        // Only the last 6 intervals are kept
+        assertEquals(10 + 9 + 8 + 7 + 6 + 5, history.sum("errors", TAGS, Duration.ofMinutes(10)));
+        assertEquals((10 + 9 + 8 + 7 + 6 + 5) / 60d, history.rate("errors", TAGS, Duration.ofMinutes(10)), 1e-9);
+
+        // Tags are part of the series
+        assertEquals(0, history.sum("errors", null, Duration.ofSeconds(30)));
+
+        Map<String, String> tags = new HashMap<>();
+        tags.put("env", "test");
+        assertEquals(10, history.sum("errors", tags, Duration.ofSeconds(10)));
+
+        // Values are passed through
+        assertEquals(1, delegate.nextCounterVal());
+    }
+
+    @Test
+    public void skippedIntervals() {
+        beginInterval(1);
+        history.reportCounter("errors", null, 5);
+        history.reportGauge("queue", null, 3);
+        history.flush();
+
+        // Not reported for a while
+        for (int i = 2; i <= 4; ++i) {
+            beginInterval(i);
+            history.flush();
+        }
+
+        assertEquals(0, history.sum("errors", null, Duration.ofSeconds(30)));
+        assertEquals(5, history.sum("errors", null, Duration.ofSeconds(40)));
+
+        // Gauges hold the last value reported
+        assertEquals(3, history.average("queue", null, Duration.ofSeconds(30)), 0);
+
+        // Slots of the skipped intervals are cleared once reported again, after wrapping around
+        for (int i = 5; i <= 7; ++i) {
+            beginInterval(i);
+            history.flush();
+        }
+
+        beginInterval(8);
+        history.reportCounter("errors", null, 1);
+        history.reportGauge("queue", null, 5);
+        history.flush();
+
+        assertEquals(1, history.sum("errors", null, Duration.ofMinutes(10)));
+        assertEquals((3 * 5 + 5) / 6d, history.average("queue", null, Duration.ofMinutes(10)), 1e-9);
+    }
+
+    @Test
+    public void sharedInterval() {
+        // Roots sharing the history, reporting at the same timestamp
+        for (int i = 1; i <= 2; ++i) {
+            beginInterval(1);
+            history.reportCounter("errors", null, i);
+            history.flush();
+        }
+
+        // Root lagging behind keeps reporting into the current interval
+        beginInterval(2);
+        history.reportCounter("errors", null, 3);
+        history.flush();
+
+        history.beginInterval(START_NANOS + Duration.ofSeconds(15).getNanos());
+        history.reportCounter("errors", null, 4);
+        history.flush();
+
+        assertEquals(7, history.sum("errors", null, Duration.ofSeconds(10)));
+        assertEquals(1 + 2 + 3 + 4, history.sum("errors", null, Duration.ofSeconds(20)));
+        assertEquals(7 / 10d, history.rate("errors", null, Duration.ofSeconds(10)), 1e-9);
+    }
+
+    @Test
+    public void incompleteInterval() {
+        assertEquals(0, history.sum("errors", null, Duration.ofSeconds(30)));
+
+        beginInterval(1);
+        history.reportCounter("errors", null, 5);
+
+        assertEquals(0, history.sum("errors", null, Duration.ofSeconds(30)));
+
+        history.flush();
+        assertEquals(5, history.sum("errors", null, Duration.ofSeconds(30)));
+    }
+
+    @Test
+    public void gauges() {
+        for (int i = 1; i <= 4; ++i) {
+            beginInterval(i);
+            history.reportGauge("queue", TAGS, i * 10);
+            history.flush();
+        }
+
+        assertEquals(40, history.average("queue", TAGS, Duration.ofSeconds(10)), 0);
+        assertEquals(35, history.average("queue", TAGS, Duration.ofSeconds(20)), 0);
+        assertTrue(Double.isNaN(history.average("missing", TAGS, Duration.ofSeconds(20))));
+    }
+
+    @Test
+    public void gaugesCarriedForward() {
+        beginInterval(1);
+        history.reportCounter("errors", null, 1);
+        history.flush();
+
+        // Intervals before the first report have no value
+        beginInterval(2);
+        history.reportGauge("queue", null, 10);
+        history.flush();
+
+        assertEquals(10, history.average("queue", null, Duration.ofSeconds(20)), 0);
+
+        // Unchanged gauges aren't reported
+        for (int i = 3; i <= 4; ++i) {
+            beginInterval(i);
+            history.flush();
+        }
+
+        beginInterval(5);
+        history.reportGauge("queue", null, 40);
+        history.flush();
+
+        assertEquals((10 + 10 + 10 + 40) / 4d, history.average("queue", null, Duration.ofMinutes(1)), 1e-9);
+
+        // Last value is held past the capacity of the history
+        for (int i = 6; i <= 20; ++i) {
+            beginInterval(i);
+            history.flush();
+        }
+
+        assertEquals(40, history.average("queue", null, Duration.ofMinutes(1)), 0);
+    }
+
+    @Test
+    public void histogramQuantiles() {
+        ValueBuckets buckets = ValueBuckets.linear(10, 10, 9);
+
+        // 100 samples uniformly spread over [0, 100), over two intervals
+        for (int i = 1; i <= 2; ++i) {
+            beginInterval(i);
+
+            for (int b = 0; b < 10; ++b) {
+                history.reportHistogramValueSamples(
+                    "latency",
+                    TAGS,
+                    buckets,
+                    buckets.getValueLowerBoundFor(b),
+                    buckets.getValueUpperBoundFor(b),
+                    5
+                );
+            }
+
+            history.flush();
+        }
+
+        assertEquals(50, history.quantile("latency", TAGS, 0.5, Duration.ofSeconds(20)), 1e-9);
+        assertEquals(25, history.quantile("latency", TAGS, 0.25, Duration.ofSeconds(10)), 1e-9);
+        assertEquals(5, history.quantile("latency", TAGS, 0.05, Duration.ofSeconds(20)), 1e-9);
+
+        // Overflow bucket has no upper bound
+        assertEquals(90, history.quantile("latency", TAGS, 0.99, Duration.ofSeconds(20)), 1e-9);
+
+        assertTrue(Double.isNaN(history.quantile("missing", TAGS, 0.5, Duration.ofSeconds(20))));
+    }
+
+    @Test
+    public void durationHistogramQuantiles() {
+        DurationBuckets buckets = DurationBuckets.linear(Duration.ofMillis(10), Duration.ofMillis(10), 4);
+
+        beginInterval(1);
+        history.reportHistogramDurationSamples(
+            "latency",
+            null,
+            buckets,
+            buckets.getDurationLowerBoundFor(2),
+            buckets.getDurationUpperBoundFor(2),
+            10
+        );
+        history.flush();
+
+        // [20ms, 30ms)
+        assertEquals(0.025, history.quantile("latency", null, 0.5, Duration.ofSeconds(10)), 1e-9);
+    }
+
+    @Test
+    public void scopeReporting() {
+        ScopeImpl scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(history)
+                .build();
+
+        scope.counter("errors").inc(3);
+        scope.histogram("latency", ValueBuckets.base2Exponential()).recordValue(3);
+
+        history.beginInterval(System.currentTimeMillis() * Duration.NANOS_PER_MILLI);
+        scope.report(history);
+        history.flush();
+
+        assertEquals(3, history.sum("errors", null, Duration.ofMinutes(1)));
+
+        // Bucket of (2.83, 4]
+        double median = history.quantile("latency", null, 0.5, Duration.ofMinutes(1));
+        assertTrue(median > 2.8 && median < 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidIntervals() {
+        new MetricHistory(delegate, 0);
+    }
+
+    private void beginInterval(int interval) {
+        history.beginInterval(START_NANOS + Duration.ofSeconds(10 * interval).getNanos());
+    }
+}
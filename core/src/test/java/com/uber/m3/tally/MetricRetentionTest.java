@@ -0,0 +1,306 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricRetentionTest {
+    private static final long START_MILLIS = 1_600_000_000_000L;
+
+    private static final ImmutableMap<String, String> TAGS = ImmutableMap.of("env", "test");
+
+    private TestStatsReporter delegate;
+
+    @Before
+    public void setUp() {
+        delegate = new TestStatsReporter();
+    }
+
+    @Test
+    public void roundTrip() {
+        MetricRetention retention = new MetricRetention(delegate, Long.MAX_VALUE, 16);
+
+        long[] timestamps = new long[100];
+        double[] values = new double[100];
+        long timestamp = START_MILLIS;
+
+        for (int i = 0; i < timestamps.length; ++i) {
+            // Mostly regular intervals with some jitter, and an occasional long gap
+            timestamp += i % 17 == 0 ? 3_600_000 : 10_000 + (i % 5) * 7 - (i % 3) * 300;
+
+            timestamps[i] = timestamp;
+            values[i] = valueOf(i);
+
+            retention.beginInterval(timestamp * Duration.NANOS_PER_MILLI);
+            retention.reportGauge("queue", TAGS, values[i]);
+            retention.flush();
+        }
+
+        List<double[]> points = read(retention, "queue", TAGS, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(timestamps.length, points.size());
+
+        for (int i = 0; i < timestamps.length; ++i) {
+            assertEquals(timestamps[i], (long) points.get(i)[0]);
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(points.get(i)[1]));
+        }
+
+        // Range reads
+        List<double[]> range = read(retention, "queue", TAGS, timestamps[20], timestamps[49]);
+
+        assertEquals(30, range.size());
+        assertEquals(timestamps[20], (long) range.get(0)[0]);
+        assertEquals(timestamps[49], (long) range.get(29)[0]);
+
+        assertEquals(0, read(retention, "queue", TAGS, 0, START_MILLIS).size());
+        assertEquals(0, read(retention, "queue", null, Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+        // Tags are part of the series
+        Map<String, String> tags = new HashMap<>();
+        tags.put("env", "test");
+        assertEquals(timestamps.length, read(retention, "queue", tags, Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+        // Values are passed through
+        assertEquals(values[0], delegate.nextGaugeVal(), 0);
+    }
+
+    @Test
+    public void counters() {
+        MetricRetention retention = new MetricRetention(delegate, Long.MAX_VALUE);
+
+        for (int i = 1; i <= 3; ++i) {
+            retention.beginInterval((START_MILLIS + i * 10_000) * Duration.NANOS_PER_MILLI);
+            retention.reportCounter("errors", null, i);
+            retention.reportCounter("errors", null, 10);
+            retention.flush();
+        }
+
+        // Intervals with nothing reported are skipped
+        retention.beginInterval((START_MILLIS + 40_000) * Duration.NANOS_PER_MILLI);
+        retention.flush();
+
+        List<double[]> points = read(retention, "errors", null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(3, points.size());
+
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(START_MILLIS + (i + 1) * 10_000, (long) points.get(i)[0]);
+            assertEquals(i + 1 + 10, points.get(i)[1], 0);
+        }
+    }
+
+    @Test
+    public void compression() {
+        MetricRetention retention = new MetricRetention(delegate, Long.MAX_VALUE, 120);
+
+        for (int i = 0; i < 120; ++i) {
+            retention.beginInterval((START_MILLIS + i * 10_000) * Duration.NANOS_PER_MILLI);
+            retention.reportGauge("constant", null, 42);
+            retention.flush();
+        }
+
+        // 16 bytes for the first point and 9 for the first delta,
+        // then 2 bits for each one of the regular, unchanged points
+        long size = retention.getSizeInBytes();
+        assertTrue("unexpected size: " + size, size <= 16 + 9 + 2 * 120 / 8 + 1);
+    }
+
+    @Test
+    public void eviction() {
+        MetricRetention retention = new MetricRetention(delegate, 2_048, 10);
+
+        for (int i = 0; i < 1_000; ++i) {
+            retention.beginInterval((START_MILLIS + i * 10_000) * Duration.NANOS_PER_MILLI);
+
+            for (int j = 0; j < 4; ++j) {
+                retention.reportGauge("gauge" + j, null, valueOf(i * 4 + j));
+            }
+
+            retention.flush();
+        }
+
+        assertTrue("over budget: " + retention.getSizeInBytes(), retention.getSizeInBytes() <= 2_048);
+
+        // The oldest values are evicted, the latest ones are kept intact
+        for (int j = 0; j < 4; ++j) {
+            List<double[]> points = read(retention, "gauge" + j, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+            assertTrue(points.size() > 0);
+            assertTrue(points.size() < 1_000);
+
+            for (int k = 0; k < points.size(); ++k) {
+                int i = 1_000 - points.size() + k;
+
+                assertEquals(START_MILLIS + i * 10_000, (long) points.get(k)[0]);
+                assertEquals(valueOf(i * 4 + j), points.get(k)[1], 0);
+            }
+        }
+    }
+
+    @Test
+    public void evictionOfChunksBeingAppendedTo() {
+        MetricRetention retention = new MetricRetention(delegate, 2_048, 1_000);
+
+        for (int i = 0; i < 100; ++i) {
+            retention.beginInterval((START_MILLIS + i * 10_000) * Duration.NANOS_PER_MILLI);
+
+            for (int j = 0; j < 32; ++j) {
+                retention.reportGauge("gauge" + j, null, valueOf(i * 32 + j));
+            }
+
+            retention.flush();
+
+            // No chunk is ever full, yet their capacity is kept within the budget
+            assertTrue("over budget: " + retention.getSizeInBytes(), retention.getSizeInBytes() <= 2_048);
+        }
+
+        // Latest values are retained
+        for (int j = 0; j < 32; ++j) {
+            List<double[]> points = read(retention, "gauge" + j, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+            assertTrue(points.size() > 0);
+            assertEquals(START_MILLIS + 99 * 10_000, (long) points.get(points.size() - 1)[0]);
+        }
+    }
+
+    @Test
+    public void idleSeriesRemoval() {
+        MetricRetention retention = new MetricRetention(delegate, Long.MAX_VALUE, 4, 3);
+
+        for (int i = 0; i < 10; ++i) {
+            retention.beginInterval((START_MILLIS + i * 10_000) * Duration.NANOS_PER_MILLI);
+            retention.reportGauge("idle", null, i);
+            retention.reportGauge("active", null, i);
+            retention.flush();
+        }
+
+        long activeSize = retention.getSizeInBytes() / 2;
+
+        for (int i = 10; i < 13; ++i) {
+            retention.beginInterval((START_MILLIS + i * 10_000) * Duration.NANOS_PER_MILLI);
+            retention.reportGauge("active", null, i);
+            retention.flush();
+
+            assertEquals(i < 12 ? 2 : 1, retention.getSeriesCount());
+        }
+
+        assertEquals(0, read(retention, "idle", null, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(13, read(retention, "active", null, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertTrue("size not released: " + retention.getSizeInBytes(), retention.getSizeInBytes() < 2 * activeSize);
+
+        // Series reported again starts over
+        retention.beginInterval((START_MILLIS + 130_000) * Duration.NANOS_PER_MILLI);
+        retention.reportGauge("idle", null, 42);
+        retention.flush();
+
+        List<double[]> points = read(retention, "idle", null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(1, points.size());
+        assertEquals(42, points.get(0)[1], 0);
+    }
+
+    @Test
+    public void evictedSeriesRemoval() {
+        MetricRetention retention = new MetricRetention(delegate, 512, 10, Integer.MAX_VALUE);
+
+        for (int i = 0; i < 10; ++i) {
+            retention.beginInterval((START_MILLIS + i * 10_000) * Duration.NANOS_PER_MILLI);
+            retention.reportGauge("stopped", null, valueOf(i));
+            retention.flush();
+        }
+
+        for (int i = 10; i < 1_000; ++i) {
+            retention.beginInterval((START_MILLIS + i * 10_000) * Duration.NANOS_PER_MILLI);
+            retention.reportGauge("gauge", null, valueOf(i));
+            retention.flush();
+        }
+
+        // Once all of its values are evicted, the series is removed
+        assertEquals(1, retention.getSeriesCount());
+        assertEquals(0, read(retention, "stopped", null, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertTrue(read(retention, "gauge", null, Long.MIN_VALUE, Long.MAX_VALUE).size() > 0);
+    }
+
+    @Test
+    public void scope() {
+        MetricRetention retention = new MetricRetention(delegate, Long.MAX_VALUE);
+        ScopeImpl scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(retention)
+                .build();
+
+        scope.counter("requests").inc(5);
+        scope.gauge("queue").update(3);
+
+        retention.beginInterval(START_MILLIS * Duration.NANOS_PER_MILLI);
+        scope.report(retention);
+        retention.flush();
+
+        assertEquals(5, read(retention, "requests", null, Long.MIN_VALUE, Long.MAX_VALUE).get(0)[1], 0);
+        assertEquals(3, read(retention, "queue", null, Long.MIN_VALUE, Long.MAX_VALUE).get(0)[1], 0);
+    }
+
+    private static double valueOf(int i) {
+        switch (i % 7) {
+            case 0:
+                return Double.NaN;
+            case 1:
+                return i;
+            case 2:
+                return -i * 0.1;
+            case 3:
+                return 0;
+            default:
+                return Math.sin(i) * 1e6;
+        }
+    }
+
+    private static List<double[]> read(
+        MetricRetention retention,
+        String name,
+        Map<String, String> tags,
+        long fromTimestampMillis,
+        long toTimestampMillis
+    ) {
+        List<double[]> points = new ArrayList<>();
+
+        retention.read(
+            name,
+            tags,
+            fromTimestampMillis,
+            toTimestampMillis,
+            (timestampMillis, value) -> points.add(new double[] {timestampMillis, value})
+        );
+
+        return points;
+    }
+}
@@ -0,0 +1,205 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SamplingPolicyTest {
+    private TestStatsReporter reporter;
+    private ScopeImpl scope;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+    }
+
+    @Test
+    public void fixedRate() {
+        FixedRateSampler sampler = (FixedRateSampler) SamplingPolicy.fixedRate(0.3).newSampler(scope);
+        assertEquals(3, sampler.getInterval());
+
+        final int events = 300_000;
+
+        long sampled = 0;
+        long scaled = 0;
+
+        for (int i = 0; i < events; ++i) {
+            long weight = sampler.sample();
+
+            if (weight != 0) {
+                assertEquals(3, weight);
+
+                ++sampled;
+                scaled += weight;
+            }
+        }
+
+        // Within ~6 standard deviations
+        assertEquals(events / 3, sampled, 2_000);
+        assertEquals(events, scaled, 6_000);
+
+        sampler = (FixedRateSampler) SamplingPolicy.fixedRate(1).newSampler(scope);
+        assertEquals(1, sampler.sample());
+    }
+
+    @Test
+    public void adaptive() {
+        AdaptiveSampler sampler = (AdaptiveSampler) SamplingPolicy.adaptive(100).newSampler(scope);
+
+        // Every event is recorded until the first adjustment
+        assertEquals(1, sampler.sample());
+
+        sampler.adjust(10_000, Duration.ofSeconds(2).getNanos());
+        assertEquals(50, sampler.getInterval());
+
+        sampler.adjust(10, Duration.ofSeconds(1).getNanos());
+        assertEquals(1, sampler.getInterval());
+
+        for (int i = 0; i < 100_000; ++i) {
+            sampler.sample();
+        }
+
+        // Adjusted by reporting the scope
+        scope.report(reporter);
+        assertTrue(sampler.getInterval() > 1);
+    }
+
+    @Test
+    public void sampledTimer() {
+        AtomicLong reported = new AtomicLong();
+        AtomicLong sampleRates = new AtomicLong();
+
+        StatsReporter rateAwareReporter = new TestStatsReporter() {
+            @Override
+            public Capabilities capabilities() {
+                return CapableOf.REPORTING_TAGGING_SAMPLE_RATES;
+            }
+
+            @Override
+            public void reportTimer(String name, Map<String, String> tags, Duration interval, double sampleRate) {
+                reported.incrementAndGet();
+
+                if (sampleRate == 0.25) {
+                    sampleRates.incrementAndGet();
+                }
+            }
+        };
+
+        ScopeImpl rateAwareScope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(rateAwareReporter)
+                .build();
+
+        Timer rateAwareTimer = rateAwareScope.timer("timer", SamplingPolicy.fixedRate(0.25));
+        assertSame(rateAwareTimer, rateAwareScope.timer("timer", SamplingPolicy.fixedRate(0.5)));
+
+        for (int i = 0; i < 40_000; ++i) {
+            rateAwareTimer.record(Duration.ofMillis(1));
+        }
+
+        assertEquals(10_000, reported.get(), 600);
+        assertEquals(reported.get(), sampleRates.get());
+    }
+
+    @Test
+    public void sampledTimerWithoutSampleRates() {
+        Timer timer = scope.timer("timer", SamplingPolicy.fixedRate(0.01));
+
+        for (int i = 0; i < 1000; ++i) {
+            timer.record(Duration.ofMillis(1));
+        }
+
+        // Reporter can't scale the counts by the sample rate, hence every interval is reported
+        assertSame(scope.timer("timer"), timer);
+
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(Duration.ofMillis(1), reporter.nextTimerVal());
+        }
+    }
+
+    @Test
+    public void sampledTimerWithoutReporter() {
+        ScopeImpl scope = new ScopeBuilder(null, new ScopeImpl.Registry()).build();
+
+        Timer timer = scope.timer("timer", SamplingPolicy.fixedRate(0.5));
+
+        for (int i = 0; i < 1000; ++i) {
+            timer.record(Duration.ofMillis(1));
+        }
+
+        // Intervals are not sampled, with no reporter capable of sample rates
+        Duration[] intervals = ((TimerImpl) scope.timer("timer")).snapshot();
+        assertEquals(1000, intervals.length);
+    }
+
+    @Test
+    public void sampledHistogram() {
+        Histogram histogram = scope.histogram("histogram", ValueBuckets.linear(0, 10, 10), SamplingPolicy.fixedRate(0.1));
+
+        for (int i = 0; i < 100_000; ++i) {
+            histogram.recordValue(5);
+        }
+
+        scope.report(reporter);
+
+        long samples = reporter.getValueSamples().get(10d);
+        assertEquals(0, samples % 10);
+        assertEquals(100_000, samples, 6_000);
+    }
+
+    @Test
+    public void sampledExponentialHistogram() {
+        Histogram histogram = scope.histogram("histogram", ValueBuckets.base2Exponential(), SamplingPolicy.fixedRate(0.5));
+
+        for (int i = 0; i < 10_000; ++i) {
+            histogram.recordValue(3);
+        }
+
+        scope.report(reporter);
+
+        long samples = reporter.getValueSamples().get(4d);
+        assertEquals(0, samples % 2);
+        assertEquals(10_000, samples, 600);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRate() {
+        SamplingPolicy.fixedRate(1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTarget() {
+        SamplingPolicy.adaptive(0);
+    }
+}
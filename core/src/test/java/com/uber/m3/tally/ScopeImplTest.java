@@ -27,11 +27,15 @@ import static org.junit.Assert.assertTrue;
 import com.uber.m3.util.Duration;
 import com.uber.m3.util.ImmutableMap;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Test;
 
 public class ScopeImplTest {
@@ -121,6 +125,46 @@ public class ScopeImplTest {
         assertEquals(123, reporter.nextGaugeVal(), EPSILON);
     }
 
+    @Test
+    public void reportLoopBeginsInterval() throws InterruptedException {
+        List<String> events = new CopyOnWriteArrayList<>();
+        AtomicLong intervalTimestamp = new AtomicLong();
+
+        TestStatsReporter reporter = new TestStatsReporter() {
+            @Override
+            public void beginInterval(long intervalTimestampNanos) {
+                intervalTimestamp.set(intervalTimestampNanos);
+                events.add("begin");
+            }
+
+            @Override
+            public void reportGauge(String name, Map<String, String> tags, double value) {
+                super.reportGauge(name, tags, value);
+                events.add("gauge");
+            }
+
+            @Override
+            public void flush() {
+                events.add("flush");
+            }
+        };
+
+        long before = System.currentTimeMillis() * Duration.NANOS_PER_MILLI;
+
+        ScopeImpl scope = (ScopeImpl) new RootScopeBuilder().reporter(reporter).reportEvery(Duration.ofMinutes(1));
+
+        // Let the first (scheduled) iteration of the report loop complete
+        Thread.sleep(SLEEP_MILLIS);
+        events.clear();
+
+        scope.gauge("gauge").update(1);
+        scope.reportLoopIteration();
+
+        assertEquals(Arrays.asList("begin", "gauge", "flush"), events);
+        assertTrue(intervalTimestamp.get() >= before);
+        assertTrue(intervalTimestamp.get() <= System.currentTimeMillis() * Duration.NANOS_PER_MILLI);
+    }
+
     @Test
     public void closeWithoutReporter() throws ScopeCloseException {
         try (Scope scope = new RootScopeBuilder().reportEvery(Duration.ofMinutes(1))) {
@@ -0,0 +1,141 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import com.uber.m3.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SketchImplTest {
+    private TestStatsReporter reporter;
+    private ScopeImpl scope;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+    }
+
+    @Test
+    public void reportPerInterval() {
+        Sketch sketch = scope.sketch("latency");
+        assertSame(sketch, scope.sketch("latency"));
+
+        sketch.recordDuration(Duration.ofMillis(10));
+        sketch.recordDuration(Duration.ofMillis(20));
+        sketch.recordValue(0);
+
+        scope.report(reporter);
+
+        TestStatsReporter.MetricStruct<DDSketch> reported = reporter.nextSketch();
+        assertEquals("latency", reported.getName());
+
+        DDSketch intervalSketch = reported.getValue();
+        assertEquals(3, intervalSketch.getCount());
+        assertEquals(0, intervalSketch.getMinValue(), 0);
+        assertEquals(0.02, intervalSketch.getMaxValue(), 0);
+        assertEquals(0.01, intervalSketch.getValueAtQuantile(0.5), 0.01 * DDSketch.DEFAULT_RELATIVE_ACCURACY);
+
+        // Nothing recorded since
+        scope.report(reporter);
+        assertNull(reporter.nextSketch());
+
+        sketch.recordValue(-5);
+        scope.report(reporter);
+
+        intervalSketch = reporter.nextSketch().getValue();
+        assertEquals(1, intervalSketch.getCount());
+        assertEquals(-5, intervalSketch.getValueAtQuantile(0.5), 0);
+    }
+
+    @Test
+    public void snapshot() {
+        Sketch sketch = scope.sketch("latency");
+        sketch.recordValue(1);
+        sketch.recordValue(3);
+
+        SketchSnapshot snapshot = scope.snapshot().sketches().get(ScopeImpl.keyForPrefixedStringMap("latency", null));
+        assertEquals("latency", snapshot.name());
+        assertEquals(2, snapshot.sketch().getCount());
+        assertEquals(1, snapshot.sketch().getMinValue(), 0);
+        assertEquals(3, snapshot.sketch().getMaxValue(), 0);
+
+        // Values are still reported, once snapshot
+        scope.report(reporter);
+        assertEquals(2, reporter.nextSketch().getValue().getCount());
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final int threadsCount = 4;
+        final int valuesPerThread = 100_000;
+
+        SketchImpl sketch = (SketchImpl) scope.sketch("sketch", 0.02);
+        DDSketch total = new DDSketch(0.02);
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < threadsCount; ++i) {
+            Thread thread = new Thread(() -> {
+                for (int j = 1; j <= valuesPerThread; ++j) {
+                    sketch.recordValue(j);
+                }
+            });
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        // Extract concurrently with the writers, none of the values may be lost or double counted
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            total.merge(sketch.extract());
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        total.merge(sketch.extract());
+
+        assertEquals(threadsCount * valuesPerThread, total.getCount());
+        assertEquals(1, total.getMinValue(), 0);
+        assertEquals(valuesPerThread, total.getMaxValue(), 0);
+        assertTrue(Math.abs(total.getValueAtQuantile(0.5) - valuesPerThread / 2) <= 0.02 * valuesPerThread / 2 + 1);
+    }
+
+    @Test
+    public void noopScope() {
+        Sketch sketch = new NoopScope().sketch("sketch");
+        sketch.recordValue(1);
+        sketch.start().stop();
+    }
+}
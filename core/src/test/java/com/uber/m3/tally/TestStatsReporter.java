@@ -32,6 +32,7 @@ public class TestStatsReporter implements StatsReporter {
     private Queue<MetricStruct<Long>> counters = new ConcurrentLinkedQueue<>();
     private Queue<MetricStruct<Double>> gauges = new ConcurrentLinkedQueue<>();
     private Queue<MetricStruct<Duration>> timers = new ConcurrentLinkedQueue<>();
+    private Queue<MetricStruct<DDSketch>> sketches = new ConcurrentLinkedQueue<>();
     private Buckets buckets;
     private Map<Double, Long> valueSamples = new HashMap<>();
     private Map<Duration, Long> durationSamples = new HashMap<>();
@@ -106,6 +107,15 @@ public class TestStatsReporter implements StatsReporter {
         this.buckets = buckets;
     }
 
+    @Override
+    public void reportSketch(String name, Map<String, String> tags, DDSketch sketch) {
+        sketches.add(new MetricStruct<>(name, tags, sketch));
+    }
+
+    public MetricStruct<DDSketch> nextSketch() {
+        return sketches.poll();
+    }
+
     @Override
     public Capabilities capabilities() {
         return CapableOf.REPORTING;
@@ -0,0 +1,122 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThreadLocalCounterImplTest {
+    private TestStatsReporter reporter;
+    private ThreadLocalCounterImpl counter;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        counter = new ThreadLocalCounterImpl("counter");
+    }
+
+    @Test
+    public void reportedByScope() {
+        ScopeImpl scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .threadLocalRecording(true)
+                .build();
+
+        scope.counter("counter").inc(2);
+        scope.histogram("histogram", ValueBuckets.linear(0, 10, 2)).recordValue(5);
+        scope.report(reporter);
+
+        assertEquals(2, reporter.nextCounterVal());
+        assertEquals(1, (long) reporter.getValueSamples().get(10d));
+    }
+
+    @Test
+    public void inc() {
+        counter.inc(1);
+        counter.report(null, reporter);
+        assertEquals(1, reporter.nextCounterVal());
+
+        counter.inc(1);
+        counter.inc(2);
+        counter.report(null, reporter);
+        assertEquals(3, reporter.nextCounterVal());
+
+        assertEquals(0, counter.value());
+    }
+
+    @Test
+    public void concurrentInc() throws InterruptedException {
+        final int threadsCount = 8;
+        final int incsPerThread = 100_000;
+
+        CountDownLatch started = new CountDownLatch(threadsCount);
+        CountDownLatch proceed = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < threadsCount; ++i) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < incsPerThread; ++j) {
+                    counter.inc(1);
+                }
+
+                started.countDown();
+
+                try {
+                    // Keeps the thread alive until the first harvest
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                counter.inc(1);
+            });
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        started.await();
+
+        assertEquals(threadsCount * incsPerThread, counter.value());
+
+        proceed.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Counts of the terminated threads are retained
+        assertEquals(threadsCount, counter.value());
+        assertEquals(0, counter.value());
+
+        counter.inc(5);
+        assertEquals(5, counter.snapshot());
+        assertEquals(5, counter.value());
+    }
+}
@@ -0,0 +1,110 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class UpDownCounterImplTest {
+    private TestStatsReporter reporter;
+    private ScopeImpl scope;
+
+    @Before
+    public void setUp() {
+        reporter = new TestStatsReporter();
+        scope =
+            new ScopeBuilder(null, new ScopeImpl.Registry())
+                .reporter(reporter)
+                .build();
+    }
+
+    @Test
+    public void add() {
+        UpDownCounter counter = scope.upDownCounter("inflight");
+        assertSame(counter, scope.upDownCounter("inflight"));
+
+        counter.add(5);
+        counter.add(-2);
+
+        scope.report(reporter);
+        TestStatsReporter.MetricStruct<Double> gauge = reporter.nextGauge();
+        assertEquals("inflight", gauge.getName());
+        assertEquals(3, gauge.getValue(), 0);
+
+        // The total is reported on every interval, updated or not
+        scope.report(reporter);
+        assertEquals(3, reporter.nextGaugeVal(), 0);
+
+        counter.add(-4);
+        scope.report(reporter);
+        assertEquals(-1, reporter.nextGaugeVal(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nameTakenByGauge() {
+        scope.gauge("inflight");
+        scope.upDownCounter("inflight");
+    }
+
+    @Test
+    public void snapshot() {
+        scope.upDownCounter("inflight").add(7);
+
+        Snapshot snapshot = scope.snapshot();
+        assertEquals(7, snapshot.gauges().get(ScopeImpl.keyForPrefixedStringMap("inflight", null)).value(), 0);
+    }
+
+    @Test
+    public void concurrentUpdates() throws InterruptedException {
+        final int threadsCount = 4;
+        final int updatesPerThread = 100_000;
+
+        UpDownCounter counter = scope.upDownCounter("inflight");
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < threadsCount; ++i) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < updatesPerThread; ++j) {
+                    counter.add(1);
+                    counter.add(j % 2 == 0 ? -1 : 0);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        scope.report(reporter);
+        assertEquals(threadsCount * updatesPerThread / 2, reporter.nextGaugeVal(), 0);
+    }
+}
@@ -0,0 +1,186 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.aggregator;
+
+import com.uber.m3.tally.StatsReporter;
+import com.uber.m3.thrift.gen.Metric;
+import com.uber.m3.thrift.gen.MetricTag;
+import com.uber.m3.thrift.gen.MetricValue;
+import com.uber.m3.util.Duration;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Aggregates metrics received within a single interval across all the sending processes,
+ * keyed by the metric's name and its full set of tags (batch's common tags included):
+ * <ul>
+ *     <li>Counters are summed up (histogram buckets, being reported as counters, are summed up per bucket)</li>
+ *     <li>Gauges retain the last value received</li>
+ *     <li>Timers can't be aggregated without losing samples, and are forwarded as is</li>
+ * </ul>
+ */
+final class IntervalAggregator {
+    private final StatsReporter reporter;
+    private final Set<String> dropTags;
+
+    // NOTE: Guarded by this
+    private Map<Series, Aggregate> aggregates = new HashMap<>();
+
+    IntervalAggregator(StatsReporter reporter, Set<String> dropTags) {
+        this.reporter = reporter;
+        this.dropTags = dropTags;
+    }
+
+    /**
+     * Returns the tags shared by all the metrics of the batch, to be passed to {@link #record}.
+     */
+    Map<String, String> commonTags(Collection<MetricTag> commonTags) {
+        Map<String, String> tags = new HashMap<>();
+
+        if (commonTags != null) {
+            putTags(tags, commonTags);
+        }
+
+        return tags;
+    }
+
+    /**
+     * Records the metric into the current interval.
+     *
+     * @return false if the metric doesn't carry any value, true otherwise
+     */
+    boolean record(Metric metric, Map<String, String> commonTags) {
+        MetricValue value = metric.getMetricValue();
+
+        if (value == null || metric.getName() == null) {
+            return false;
+        }
+
+        Map<String, String> tags = new HashMap<>(commonTags);
+
+        if (metric.isSetTags()) {
+            putTags(tags, metric.getTags());
+        }
+
+        if (value.isSetTimer()) {
+            reporter.reportTimer(metric.getName(), tags, Duration.ofNanos(value.getTimer().getI64Value()));
+            return true;
+        }
+
+        Series series = new Series(metric.getName(), tags);
+
+        synchronized (this) {
+            if (value.isSetCount()) {
+                aggregates.computeIfAbsent(series, key -> new Aggregate(false)).count += value.getCount().getI64Value();
+            } else if (value.isSetGauge()) {
+                aggregates.computeIfAbsent(series, key -> new Aggregate(true)).gauge = gaugeValue(value);
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Forwards all the aggregates of the current interval to the reporter, starting the new one.
+     *
+     * @return number of the series forwarded
+     */
+    int drain() {
+        Map<Series, Aggregate> drained;
+
+        synchronized (this) {
+            drained = aggregates;
+            aggregates = new HashMap<>(Math.max(16, drained.size() * 4 / 3 + 1));
+        }
+
+        for (Map.Entry<Series, Aggregate> entry : drained.entrySet()) {
+            Series series = entry.getKey();
+            Aggregate aggregate = entry.getValue();
+
+            if (aggregate.isGauge) {
+                reporter.reportGauge(series.name, series.tags, aggregate.gauge);
+            } else {
+                reporter.reportCounter(series.name, series.tags, aggregate.count);
+            }
+        }
+
+        return drained.size();
+    }
+
+    private void putTags(Map<String, String> target, Collection<MetricTag> tags) {
+        for (MetricTag tag : tags) {
+            if (!dropTags.contains(tag.getTagName())) {
+                target.put(tag.getTagName(), tag.getTagValue());
+            }
+        }
+    }
+
+    private static double gaugeValue(MetricValue value) {
+        return value.getGauge().isSetDValue() ? value.getGauge().getDValue() : value.getGauge().getI64Value();
+    }
+
+    private static final class Series {
+        private final String name;
+        private final Map<String, String> tags;
+        private final int hashCode;
+
+        Series(String name, Map<String, String> tags) {
+            this.name = name;
+            this.tags = tags;
+            this.hashCode = Objects.hash(name, tags);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Series)) {
+                return false;
+            }
+
+            Series that = (Series) other;
+
+            return name.equals(that.name) && tags.equals(that.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Aggregate {
+        private final boolean isGauge;
+        private long count;
+        private double gauge;
+
+        Aggregate(boolean isGauge) {
+            this.isGauge = isGauge;
+        }
+    }
+}
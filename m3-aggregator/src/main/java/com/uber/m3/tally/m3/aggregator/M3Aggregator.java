@@ -0,0 +1,268 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.aggregator;
+
+import com.uber.m3.tally.StatsReporter;
+import com.uber.m3.tally.m3.thrift.TUdpServer;
+import com.uber.m3.thrift.gen.M3;
+import com.uber.m3.thrift.gen.Metric;
+import com.uber.m3.thrift.gen.MetricBatch;
+import com.uber.m3.util.Duration;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Host-local aggregator of the metrics emitted by the M3 reporters of the processes co-located on the host.
+ *
+ * Receives {@code emitMetricBatch} frames over UDP, aggregates them per interval across all
+ * the sending processes (see {@link IntervalAggregator} for the semantic of the aggregation)
+ * and forwards the compacted result through the provided reporter (typically {@code M3Reporter}
+ * pointed at the remote collector), making remote traffic scale with the number of series
+ * rather than the number of processes.
+ *
+ * Tags distinguishing individual processes (eg instance ids) should be configured to be dropped
+ * (see {@link Builder#dropTags(Set)}), otherwise series of different processes won't be aggregated together.
+ */
+public class M3Aggregator implements AutoCloseable {
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(1);
+
+    private static final Logger LOG = LoggerFactory.getLogger(M3Aggregator.class);
+
+    private final StatsReporter reporter;
+    private final IntervalAggregator aggregator;
+    private final Duration interval;
+
+    private final TUdpServer server;
+    private final Thread receiver;
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private final AtomicLong batchesReceived = new AtomicLong();
+    private final AtomicLong metricsReceived = new AtomicLong();
+    private final AtomicLong seriesForwarded = new AtomicLong();
+    private final AtomicLong decodeErrors = new AtomicLong();
+
+    private M3Aggregator(Builder builder) {
+        reporter = builder.reporter;
+        aggregator = new IntervalAggregator(builder.reporter, builder.dropTags);
+        interval = builder.interval;
+
+        try {
+            server = new TUdpServer(builder.listenAddress);
+            server.open();
+        } catch (SocketException | TTransportException e) {
+            throw new RuntimeException("Unable to open socket", e);
+        }
+
+        receiver = new Thread(this::receive, "m3-aggregator-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "m3-aggregator-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduledExecutorService.scheduleAtFixedRate(
+            this::flushInterval,
+            interval.toMillis(),
+            interval.toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    public long getBatchesReceived() {
+        return batchesReceived.get();
+    }
+
+    public long getMetricsReceived() {
+        return metricsReceived.get();
+    }
+
+    /**
+     * Returns the number of aggregated series forwarded so far, that is excluding timers
+     * which are forwarded as is.
+     */
+    public long getSeriesForwarded() {
+        return seriesForwarded.get();
+    }
+
+    /**
+     * Returns the number of packets or metrics that couldn't be decoded.
+     */
+    public long getDecodeErrors() {
+        return decodeErrors.get();
+    }
+
+    /**
+     * Stops receiving and forwards whatever has been aggregated so far. Doesn't close the reporter.
+     */
+    @Override
+    public void close() {
+        if (!server.isOpen()) {
+            return;
+        }
+
+        server.close();
+        scheduledExecutorService.shutdownNow();
+
+        try {
+            receiver.join(interval.toMillis());
+            scheduledExecutorService.awaitTermination(interval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flushInterval();
+    }
+
+    private void receive() {
+        TProtocol protocol = new TCompactProtocol.Factory().getProtocol(server);
+        M3.Processor<M3.Iface> processor = new M3.Processor<>(this::onBatch);
+
+        while (server.isOpen()) {
+            try {
+                processor.process(protocol, protocol);
+            } catch (TException | RuntimeException e) {
+                if (!server.isOpen()) {
+                    // Socket has been closed
+                    return;
+                }
+
+                decodeErrors.incrementAndGet();
+
+                // Skips the rest of the malformed packet, to resume decoding from the next one
+                server.consumeBuffer(server.getBytesRemainingInBuffer());
+
+                LOG.debug("Failed to decode metrics batch", e);
+            }
+        }
+    }
+
+    private void onBatch(MetricBatch batch) {
+        batchesReceived.incrementAndGet();
+
+        List<Metric> metrics = batch.getMetrics();
+
+        if (metrics == null) {
+            return;
+        }
+
+        Map<String, String> commonTags = aggregator.commonTags(batch.getCommonTags());
+
+        for (Metric metric : metrics) {
+            if (aggregator.record(metric, commonTags)) {
+                metricsReceived.incrementAndGet();
+            } else {
+                decodeErrors.incrementAndGet();
+            }
+        }
+    }
+
+    private void flushInterval() {
+        try {
+            reporter.beginInterval(System.currentTimeMillis() * Duration.NANOS_PER_MILLI);
+
+            seriesForwarded.addAndGet(aggregator.drain());
+
+            reporter.flush();
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to forward aggregated metrics", e);
+        }
+    }
+
+    /**
+     * Builder pattern to construct an {@link M3Aggregator}.
+     */
+    public static class Builder {
+        protected SocketAddress listenAddress;
+        protected StatsReporter reporter;
+        protected Duration interval = DEFAULT_INTERVAL;
+        protected Set<String> dropTags = Collections.emptySet();
+
+        /**
+         * Constructs a {@link Builder}.
+         *
+         * @param listenAddress the address to receive metrics from local processes at
+         * @param reporter      the reporter to forward aggregated metrics through
+         */
+        public Builder(SocketAddress listenAddress, StatsReporter reporter) {
+            this.listenAddress = listenAddress;
+            this.reporter = reporter;
+        }
+
+        /**
+         * Configures the aggregation interval of this {@link Builder}.
+         *
+         * @param interval the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder interval(Duration interval) {
+            this.interval = interval;
+
+            return this;
+        }
+
+        /**
+         * Configures the tags to be dropped from received metrics before aggregating of this {@link Builder}.
+         *
+         * @param dropTags the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder dropTags(Set<String> dropTags) {
+            this.dropTags = new HashSet<>(dropTags);
+
+            return this;
+        }
+
+        /**
+         * Builds and starts an {@link M3Aggregator}, that is receiving once this method returns.
+         *
+         * @return the started {@link M3Aggregator}
+         */
+        public M3Aggregator build() {
+            if (listenAddress == null || reporter == null) {
+                throw new IllegalArgumentException("Listen address and reporter are required");
+            }
+            if (interval.toMillis() <= 0) {
+                throw new IllegalArgumentException("Interval has to be positive");
+            }
+
+            return new M3Aggregator(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.aggregator;
+
+import com.uber.m3.tally.m3.M3Reporter;
+import com.uber.m3.util.Duration;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs {@link M3Aggregator} as a standalone process.
+ *
+ * Usage: {@code M3AggregatorMain <listen-port> <collector-host:port> <env> [interval-millis] [drop-tags]},
+ * where {@code drop-tags} is a comma-separated list of tags to be dropped before aggregating.
+ */
+public final class M3AggregatorMain {
+    private static final String SERVICE = "m3-aggregator";
+
+    private M3AggregatorMain() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 3) {
+            System.err.println(
+                "Usage: M3AggregatorMain <listen-port> <collector-host:port> <env> [interval-millis] [drop-tags]"
+            );
+            System.exit(1);
+        }
+
+        InetSocketAddress listenAddress = new InetSocketAddress("127.0.0.1", Integer.parseInt(args[0]));
+        InetSocketAddress collectorAddress = parseAddress(args[1]);
+        String env = args[2];
+
+        Duration interval = args.length > 3
+            ? Duration.ofMillis(Long.parseLong(args[3]))
+            : M3Aggregator.DEFAULT_INTERVAL;
+
+        Set<String> dropTags = args.length > 4
+            ? new HashSet<>(Arrays.asList(args[4].split(",")))
+            : Collections.emptySet();
+
+        M3Reporter reporter = new M3Reporter.Builder(collectorAddress)
+            .service(SERVICE)
+            .env(env)
+            .build();
+
+        M3Aggregator aggregator = new M3Aggregator.Builder(listenAddress, reporter)
+            .interval(interval)
+            .dropTags(dropTags)
+            .build();
+
+        CountDownLatch shutdownLatch = new CountDownLatch(1);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            aggregator.close();
+            reporter.close();
+            shutdownLatch.countDown();
+        }));
+
+        shutdownLatch.await();
+    }
+
+    private static InetSocketAddress parseAddress(String hostPort) {
+        int separator = hostPort.lastIndexOf(':');
+
+        if (separator < 0) {
+            throw new IllegalArgumentException("Expected address in the form of host:port, got: " + hostPort);
+        }
+
+        String host = hostPort.substring(0, separator);
+        int port = Integer.parseInt(hostPort.substring(separator + 1));
+
+        return new InetSocketAddress(host, port);
+    }
+}
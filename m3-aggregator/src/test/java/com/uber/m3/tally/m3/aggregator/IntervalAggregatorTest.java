@@ -0,0 +1,224 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.aggregator;
+
+import com.uber.m3.tally.Buckets;
+import com.uber.m3.tally.Capabilities;
+import com.uber.m3.tally.CapableOf;
+import com.uber.m3.tally.StatsReporter;
+import com.uber.m3.thrift.gen.CountValue;
+import com.uber.m3.thrift.gen.GaugeValue;
+import com.uber.m3.thrift.gen.Metric;
+import com.uber.m3.thrift.gen.MetricTag;
+import com.uber.m3.thrift.gen.MetricValue;
+import com.uber.m3.thrift.gen.TimerValue;
+import com.uber.m3.util.Duration;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntervalAggregatorTest {
+    private static final double EPSILON = 1e-9;
+
+    private final RecordingReporter reporter = new RecordingReporter();
+
+    private final IntervalAggregator aggregator =
+        new IntervalAggregator(reporter, Collections.singleton("instance"));
+
+    @Test
+    public void sumsCountersAcrossProcesses() {
+        Map<String, String> first = aggregator.commonTags(tags("service", "foo", "instance", "1"));
+        Map<String, String> second = aggregator.commonTags(tags("service", "foo", "instance", "2"));
+
+        assertTrue(aggregator.record(counter("requests", 3, tags("endpoint", "bar")), first));
+        assertTrue(aggregator.record(counter("requests", 4, tags("endpoint", "bar")), second));
+        assertTrue(aggregator.record(counter("requests", 5, tags("endpoint", "baz")), second));
+
+        assertEquals(2, aggregator.drain());
+
+        assertEquals(7L, (long) reporter.counters.get(tagsMap("service", "foo", "endpoint", "bar")));
+        assertEquals(5L, (long) reporter.counters.get(tagsMap("service", "foo", "endpoint", "baz")));
+    }
+
+    @Test
+    public void retainsLastGaugeValue() {
+        Map<String, String> commonTags = aggregator.commonTags(tags("service", "foo"));
+
+        assertTrue(aggregator.record(gauge("queue-length", 10), commonTags));
+        assertTrue(aggregator.record(gauge("queue-length", 20), commonTags));
+
+        assertEquals(1, aggregator.drain());
+        assertEquals(20, reporter.gauges.get(tagsMap("service", "foo")), EPSILON);
+    }
+
+    @Test
+    public void forwardsTimersAsIs() {
+        Map<String, String> commonTags = aggregator.commonTags(null);
+
+        assertTrue(aggregator.record(timer("latency", 100), commonTags));
+        assertTrue(aggregator.record(timer("latency", 200), commonTags));
+
+        assertEquals(2, reporter.timers);
+        assertEquals(0, aggregator.drain());
+    }
+
+    @Test
+    public void startsNewIntervalOnDrain() {
+        Map<String, String> commonTags = aggregator.commonTags(null);
+
+        aggregator.record(counter("requests", 3, null), commonTags);
+
+        assertEquals(1, aggregator.drain());
+        assertEquals(0, aggregator.drain());
+    }
+
+    @Test
+    public void rejectsMetricsWithoutValue() {
+        assertFalse(aggregator.record(new Metric("empty"), aggregator.commonTags(null)));
+        assertEquals(0, aggregator.drain());
+    }
+
+    private static Metric counter(String name, long value, Set<MetricTag> tags) {
+        CountValue countValue = new CountValue();
+        countValue.setI64Value(value);
+
+        MetricValue metricValue = new MetricValue();
+        metricValue.setCount(countValue);
+
+        Metric metric = new Metric(name);
+        metric.setTags(tags);
+        metric.setMetricValue(metricValue);
+
+        return metric;
+    }
+
+    private static Metric gauge(String name, double value) {
+        GaugeValue gaugeValue = new GaugeValue();
+        gaugeValue.setDValue(value);
+
+        MetricValue metricValue = new MetricValue();
+        metricValue.setGauge(gaugeValue);
+
+        Metric metric = new Metric(name);
+        metric.setMetricValue(metricValue);
+
+        return metric;
+    }
+
+    private static Metric timer(String name, long nanos) {
+        TimerValue timerValue = new TimerValue();
+        timerValue.setI64Value(nanos);
+
+        MetricValue metricValue = new MetricValue();
+        metricValue.setTimer(timerValue);
+
+        Metric metric = new Metric(name);
+        metric.setMetricValue(metricValue);
+
+        return metric;
+    }
+
+    private static Set<MetricTag> tags(String... keyValues) {
+        Set<MetricTag> tags = new HashSet<>();
+
+        for (int i = 0; i < keyValues.length; i += 2) {
+            tags.add(new MetricTag(keyValues[i]).setTagValue(keyValues[i + 1]));
+        }
+
+        return tags;
+    }
+
+    private static Map<String, String> tagsMap(String... keyValues) {
+        Map<String, String> tags = new HashMap<>();
+
+        for (int i = 0; i < keyValues.length; i += 2) {
+            tags.put(keyValues[i], keyValues[i + 1]);
+        }
+
+        return tags;
+    }
+
+    private static class RecordingReporter implements StatsReporter {
+        private final Map<Map<String, String>, Long> counters = new HashMap<>();
+        private final Map<Map<String, String>, Double> gauges = new HashMap<>();
+        private int timers;
+
+        @Override
+        public void reportCounter(String name, Map<String, String> tags, long value) {
+            counters.put(tags, value);
+        }
+
+        @Override
+        public void reportGauge(String name, Map<String, String> tags, double value) {
+            gauges.put(tags, value);
+        }
+
+        @Override
+        public void reportTimer(String name, Map<String, String> tags, Duration interval) {
+            timers++;
+        }
+
+        @Override
+        public void reportHistogramValueSamples(
+            String name,
+            Map<String, String> tags,
+            Buckets buckets,
+            double bucketLowerBound,
+            double bucketUpperBound,
+            long samples
+        ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void reportHistogramDurationSamples(
+            String name,
+            Map<String, String> tags,
+            Buckets buckets,
+            Duration bucketLowerBound,
+            Duration bucketUpperBound,
+            long samples
+        ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Capabilities capabilities() {
+            return CapableOf.REPORTING;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,164 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.testing;
+
+import com.uber.m3.tally.m3.M3Reporter;
+import com.uber.m3.util.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end benchmark of the {@link M3Reporter} delivering metrics over loopback
+ * to the {@link M3CollectorStub}.
+ *
+ * The score is the rate at which metrics are accepted by the reporter; the rate at which those
+ * are actually delivered to the collector, along with the loss rate, is logged after every iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-server", "-XX:+UseG1GC"})
+@State(Scope.Benchmark)
+public class M3ReporterDeliveryBenchmark {
+    private static final ImmutableMap<String, String> TAGS = ImmutableMap.of("workload", "benchmark");
+
+    private static final java.time.Duration QUIET_PERIOD = java.time.Duration.ofMillis(500);
+    private static final java.time.Duration MAX_WAIT_TIMEOUT = java.time.Duration.ofSeconds(30);
+
+    @Param({"1", "1000"})
+    public int series;
+
+    @Param({"false", "true"})
+    public boolean nioTransport;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final LongAdder sent = new LongAdder();
+
+    private String[] names;
+
+    private M3CollectorStub collector;
+    private M3Reporter reporter;
+
+    private long iterationStartNanos;
+
+    @Benchmark
+    public void reportCounter(Sequence sequence) {
+        reporter.reportCounter(names[sequence.next(series)], TAGS, 1);
+        sent.increment();
+    }
+
+    @Threads(4)
+    @Benchmark
+    public void reportCounterParallel(Sequence sequence) {
+        reporter.reportCounter(names[sequence.next(series)], TAGS, 1);
+        sent.increment();
+    }
+
+    @Setup(Level.Trial)
+    public void setupCollector() {
+        names = new String[series];
+
+        for (int i = 0; i < series; ++i) {
+            names[i] = "counter-" + i;
+        }
+
+        collector = new M3CollectorStub.Builder()
+            .receiverThreads(Runtime.getRuntime().availableProcessors())
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdownCollector() {
+        collector.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        collector.reset();
+        sent.reset();
+
+        reporter = new M3Reporter.Builder(collector.getLocalAddress())
+            .service("test-service")
+            .env("test")
+            .nioTransport(nioTransport)
+            .maxQueueSize(Integer.MAX_VALUE)
+            .build();
+
+        iterationStartNanos = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() throws InterruptedException {
+        // Closing awaits for the processors to flush whatever has been enqueued
+        reporter.close();
+
+        collector.awaitQuiescence(QUIET_PERIOD, MAX_WAIT_TIMEOUT);
+
+        // NOTE: Quiet period is excluded, since nothing is being delivered over it
+        double elapsedSeconds = (System.nanoTime() - iterationStartNanos - QUIET_PERIOD.toNanos()) / 1e9;
+
+        long sentMetrics = sent.sum();
+        long deliveredMetrics = collector.getMetricsReceived();
+
+        logger.info(
+            "Delivered {} out of {} metrics ({} metrics/sec, loss rate {}%, {} packets, {} decode errors)",
+            deliveredMetrics,
+            sentMetrics,
+            String.format("%.0f", deliveredMetrics / elapsedSeconds),
+            String.format("%.3f", sentMetrics == 0 ? 0 : 100.0 * (sentMetrics - deliveredMetrics) / sentMetrics),
+            collector.getPacketsReceived(),
+            collector.getDecodeErrors()
+        );
+
+        reporter = null;
+    }
+
+    @State(Scope.Thread)
+    public static class Sequence {
+        private int x;
+
+        int next(int bound) {
+            if (++x >= bound) {
+                x = 0;
+            }
+            return x;
+        }
+    }
+}
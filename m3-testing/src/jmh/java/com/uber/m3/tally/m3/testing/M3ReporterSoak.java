@@ -0,0 +1,156 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.testing;
+
+import com.uber.m3.tally.m3.M3Reporter;
+import com.uber.m3.util.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Soak test of the {@link M3Reporter} running against the {@link M3CollectorStub} over loopback
+ * at a constant target rate, periodically logging delivered metrics/sec and loss rates.
+ *
+ * Every series is a gauge publishing a monotonically increasing sequence number, so that besides
+ * the overall loss, gaps are detected per series at the end of the run.
+ *
+ * Usage: {@code M3ReporterSoak [durationSeconds] [metricsPerSecond] [series]}
+ */
+public final class M3ReporterSoak {
+    private static final Logger LOG = LoggerFactory.getLogger(M3ReporterSoak.class);
+
+    private static final ImmutableMap<String, String> TAGS = ImmutableMap.of("workload", "soak");
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long REPORT_EVERY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final java.time.Duration QUIET_PERIOD = java.time.Duration.ofSeconds(1);
+    private static final java.time.Duration MAX_WAIT_TIMEOUT = java.time.Duration.ofSeconds(60);
+
+    private M3ReporterSoak() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long durationSeconds = args.length > 0 ? Long.parseLong(args[0]) : 60;
+        long metricsPerSecond = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        int seriesCount = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        String[] names = new String[seriesCount];
+        long[] sequences = new long[seriesCount];
+
+        for (int i = 0; i < seriesCount; ++i) {
+            names[i] = "soak-" + i;
+        }
+
+        long metricsPerTick = Math.max(1, metricsPerSecond * TICK_NANOS / TimeUnit.SECONDS.toNanos(1));
+
+        try (M3CollectorStub collector = new M3CollectorStub.Builder()
+                .receiverThreads(Runtime.getRuntime().availableProcessors())
+                .build()) {
+            M3Reporter reporter = new M3Reporter.Builder(collector.getLocalAddress())
+                .service("soak")
+                .env("soak")
+                .maxQueueSize(Integer.MAX_VALUE)
+                .build();
+
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+            long nextTick = start;
+            long nextReport = start + REPORT_EVERY_NANOS;
+
+            long sent = 0;
+            long lastSent = 0;
+            long lastDelivered = 0;
+            int next = 0;
+
+            while (System.nanoTime() < end) {
+                for (long i = 0; i < metricsPerTick; ++i) {
+                    reporter.reportGauge(names[next], TAGS, sequences[next]++);
+
+                    if (++next == seriesCount) {
+                        next = 0;
+                    }
+                }
+
+                sent += metricsPerTick;
+                nextTick += TICK_NANOS;
+
+                long now = System.nanoTime();
+
+                if (now >= nextReport) {
+                    long delivered = collector.getMetricsReceived();
+
+                    logProgress(sent - lastSent, delivered - lastDelivered, REPORT_EVERY_NANOS);
+
+                    lastSent = sent;
+                    lastDelivered = delivered;
+                    nextReport += REPORT_EVERY_NANOS;
+                }
+
+                LockSupport.parkNanos(nextTick - now);
+            }
+
+            // Closing awaits for the processors to flush whatever has been enqueued
+            reporter.close();
+
+            collector.awaitQuiescence(QUIET_PERIOD, MAX_WAIT_TIMEOUT);
+
+            long delivered = collector.getMetricsReceived();
+            long missing = 0;
+            long duplicates = 0;
+
+            for (ReceivedSeries series : collector.snapshotSeries()) {
+                missing += series.getMissingSequences();
+                duplicates += series.getDuplicateSequences();
+            }
+
+            LOG.info(
+                "Sent {} metrics, delivered {} ({} metrics/sec, loss rate {}%), "
+                    + "{} missing and {} duplicate sequence numbers, {} packets ({} bytes), {} decode errors",
+                sent,
+                delivered,
+                String.format("%.0f", delivered * 1e9 / (System.nanoTime() - start)),
+                String.format("%.3f", lossRatePercent(sent, delivered)),
+                missing,
+                duplicates,
+                collector.getPacketsReceived(),
+                collector.getBytesReceived(),
+                collector.getDecodeErrors()
+            );
+        }
+    }
+
+    private static void logProgress(long sent, long delivered, long periodNanos) {
+        LOG.info(
+            "Sent {} metrics/sec, delivered {} metrics/sec (loss rate {}%)",
+            String.format("%.0f", sent * 1e9 / periodNanos),
+            String.format("%.0f", delivered * 1e9 / periodNanos),
+            String.format("%.3f", lossRatePercent(sent, delivered))
+        );
+    }
+
+    private static double lossRatePercent(long sent, long delivered) {
+        return sent == 0 ? 0 : 100.0 * (sent - delivered) / sent;
+    }
+}
@@ -0,0 +1,442 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.testing;
+
+import com.uber.m3.thrift.gen.M3;
+import com.uber.m3.thrift.gen.Metric;
+import com.uber.m3.thrift.gen.MetricBatch;
+import com.uber.m3.thrift.gen.MetricTag;
+import com.uber.m3.thrift.gen.MetricValue;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for an M3 collector, meant for integration and load testing of the M3 reporter.
+ *
+ * Unlike a real collector it doesn't forward anything: every {@code emitMetricBatch} frame received
+ * over UDP is decoded by one of the receiving threads and accounted for, so that tests can assert
+ * on the received series and load tests can compare the number of metrics delivered against the
+ * number of metrics sent (see {@link #getMetricsReceived()}, {@link #getDecodeErrors()} and
+ * {@link ReceivedSeries#getMissingSequences()}).
+ *
+ * All the receiving threads share the same socket, hence receiving itself is serialized by the
+ * socket, while decoding and accounting happens concurrently.
+ */
+public class M3CollectorStub implements AutoCloseable {
+    public static final int DEFAULT_RECEIVER_THREADS = 2;
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE_BYTES = 16 * 1024 * 1024;
+
+    // Largest payload of a single UDP datagram
+    private static final int MAX_PACKET_SIZE_BYTES = 65535;
+
+    private static final long AWAIT_POLL_INTERVAL_MILLIS = 5;
+
+    private static final Logger LOG = LoggerFactory.getLogger(M3CollectorStub.class);
+
+    private final DatagramSocket socket;
+    private final Thread[] receivers;
+
+    private final ConcurrentHashMap<SeriesId, ReceivedSeries> series = new ConcurrentHashMap<>();
+
+    private final LongAdder packetsReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder batchesReceived = new LongAdder();
+    private final LongAdder metricsReceived = new LongAdder();
+    private final LongAdder decodeErrors = new LongAdder();
+
+    private volatile boolean closed;
+
+    private M3CollectorStub(Builder builder) {
+        try {
+            socket = new DatagramSocket(builder.address);
+            socket.setReceiveBufferSize(builder.receiveBufferSizeBytes);
+        } catch (SocketException e) {
+            throw new RuntimeException("Unable to open socket", e);
+        }
+
+        receivers = new Thread[builder.receiverThreads];
+
+        for (int i = 0; i < receivers.length; ++i) {
+            receivers[i] = new Thread(new Receiver(), "m3-collector-stub-" + i);
+            receivers[i].setDaemon(true);
+            receivers[i].start();
+        }
+    }
+
+    /**
+     * Returns the address this collector is receiving at, to be handed to the reporter.
+     */
+    public SocketAddress getLocalAddress() {
+        return socket.getLocalSocketAddress();
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long getBatchesReceived() {
+        return batchesReceived.sum();
+    }
+
+    public long getMetricsReceived() {
+        return metricsReceived.sum();
+    }
+
+    /**
+     * Returns the number of packets that couldn't be decoded as an {@code emitMetricBatch} frame.
+     */
+    public long getDecodeErrors() {
+        return decodeErrors.sum();
+    }
+
+    /**
+     * Returns the point-in-time copies of all the series received so far.
+     */
+    public List<ReceivedSeries> snapshotSeries() {
+        List<ReceivedSeries> snapshot = new ArrayList<>(series.size());
+
+        for (ReceivedSeries received : series.values()) {
+            snapshot.add(received.copy());
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns the point-in-time copy of the series with the given name and tags
+     * (including common tags), or null if it has not been received.
+     */
+    public ReceivedSeries getSeries(String name, Map<String, String> tags) {
+        ReceivedSeries received = series.get(new SeriesId(name, tags));
+
+        return received == null ? null : received.copy();
+    }
+
+    /**
+     * Awaits until at least the given number of metrics have been received.
+     *
+     * @param expectedMetrics number of metrics to wait for
+     * @param timeout         maximum time to wait for
+     * @return true if all the expected metrics have been received, false if the timeout elapsed first
+     */
+    public boolean awaitMetrics(long expectedMetrics, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        while (getMetricsReceived() < expectedMetrics) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+
+            TimeUnit.MILLISECONDS.sleep(AWAIT_POLL_INTERVAL_MILLIS);
+        }
+
+        return true;
+    }
+
+    /**
+     * Awaits until no new packets have been received over the given period of time, ie until
+     * whatever was in flight has either been delivered or lost.
+     *
+     * @param quietPeriod period of time without any packets received
+     * @param timeout     maximum time to wait for
+     * @return true if the collector went quiet, false if the timeout elapsed first
+     */
+    public boolean awaitQuiescence(Duration quietPeriod, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long lastPackets = getPacketsReceived();
+        long lastChange = System.nanoTime();
+
+        while (System.nanoTime() - lastChange < quietPeriod.toNanos()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+
+            TimeUnit.MILLISECONDS.sleep(AWAIT_POLL_INTERVAL_MILLIS);
+
+            long packets = getPacketsReceived();
+
+            if (packets != lastPackets) {
+                lastPackets = packets;
+                lastChange = System.nanoTime();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Drops all the series and resets all the counters, eg in between load test iterations.
+     */
+    public void reset() {
+        series.clear();
+
+        packetsReceived.reset();
+        bytesReceived.reset();
+        batchesReceived.reset();
+        metricsReceived.reset();
+        decodeErrors.reset();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        // Unblocks the receiving threads
+        socket.close();
+
+        for (Thread receiver : receivers) {
+            try {
+                receiver.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void onBatch(MetricBatch batch) {
+        batchesReceived.increment();
+
+        Map<String, String> commonTags = new HashMap<>();
+
+        if (batch.isSetCommonTags()) {
+            putTags(commonTags, batch.getCommonTags());
+        }
+
+        List<Metric> metrics = batch.getMetrics();
+
+        if (metrics == null) {
+            return;
+        }
+
+        for (Metric metric : metrics) {
+            onMetric(metric, commonTags);
+        }
+    }
+
+    private void onMetric(Metric metric, Map<String, String> commonTags) {
+        Map<String, String> tags = new HashMap<>(commonTags);
+
+        if (metric.isSetTags()) {
+            putTags(tags, metric.getTags());
+        }
+
+        MetricValue value = metric.getMetricValue();
+
+        if (value == null) {
+            decodeErrors.increment();
+            return;
+        }
+
+        SeriesId id = new SeriesId(metric.getName(), tags);
+        long timestamp = metric.getTimestamp();
+
+        if (value.isSetCount()) {
+            getOrCreate(id, ReceivedSeries.Type.COUNTER)
+                .recordCount(value.getCount().getI64Value(), timestamp);
+        } else if (value.isSetGauge()) {
+            getOrCreate(id, ReceivedSeries.Type.GAUGE)
+                .recordGauge(
+                    value.getGauge().isSetDValue() ? value.getGauge().getDValue() : value.getGauge().getI64Value(),
+                    timestamp
+                );
+        } else if (value.isSetTimer()) {
+            getOrCreate(id, ReceivedSeries.Type.TIMER)
+                .recordTimer(
+                    value.getTimer().isSetDValue() ? value.getTimer().getDValue() : value.getTimer().getI64Value(),
+                    timestamp
+                );
+        } else {
+            decodeErrors.increment();
+            return;
+        }
+
+        metricsReceived.increment();
+    }
+
+    private ReceivedSeries getOrCreate(SeriesId id, ReceivedSeries.Type type) {
+        ReceivedSeries received = series.get(id);
+
+        if (received == null) {
+            received = series.computeIfAbsent(id, key -> new ReceivedSeries(key.name, key.tags, type));
+        }
+
+        return received;
+    }
+
+    private static void putTags(Map<String, String> target, Iterable<MetricTag> tags) {
+        for (MetricTag tag : tags) {
+            target.put(tag.getTagName(), tag.getTagValue());
+        }
+    }
+
+    private class Receiver implements Runnable, M3.Iface {
+        private final byte[] buffer = new byte[MAX_PACKET_SIZE_BYTES];
+        private final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        private final M3.Processor<M3.Iface> processor = new M3.Processor<>(this);
+
+        @Override
+        public void run() {
+            while (!closed) {
+                try {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+                } catch (Exception e) {
+                    if (!closed) {
+                        LOG.warn("Failed to receive packet", e);
+                    }
+                    continue;
+                }
+
+                packetsReceived.increment();
+                bytesReceived.add(packet.getLength());
+
+                TProtocol protocol =
+                    new TCompactProtocol(new TMemoryInputTransport(buffer, 0, packet.getLength()));
+
+                try {
+                    processor.process(protocol, protocol);
+                } catch (TException | RuntimeException e) {
+                    decodeErrors.increment();
+                }
+            }
+        }
+
+        @Override
+        public void emitMetricBatch(MetricBatch batch) {
+            onBatch(batch);
+        }
+    }
+
+    private static final class SeriesId {
+        private final String name;
+        private final Map<String, String> tags;
+        private final int hashCode;
+
+        SeriesId(String name, Map<String, String> tags) {
+            this.name = name;
+            this.tags = tags;
+            this.hashCode = Objects.hash(name, tags);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof SeriesId)) {
+                return false;
+            }
+
+            SeriesId that = (SeriesId) other;
+
+            return name.equals(that.name) && tags.equals(that.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Builder pattern to construct an {@link M3CollectorStub}.
+     */
+    public static class Builder {
+        protected SocketAddress address = new InetSocketAddress("127.0.0.1", 0);
+        protected int receiverThreads = DEFAULT_RECEIVER_THREADS;
+        protected int receiveBufferSizeBytes = DEFAULT_RECEIVE_BUFFER_SIZE_BYTES;
+
+        /**
+         * Configures the address to receive at of this {@link Builder}.
+         * Defaults to an ephemeral port on the loopback interface.
+         *
+         * @param address the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder address(SocketAddress address) {
+            this.address = address;
+
+            return this;
+        }
+
+        /**
+         * Configures the number of receiving threads of this {@link Builder}.
+         *
+         * @param receiverThreads the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder receiverThreads(int receiverThreads) {
+            this.receiverThreads = receiverThreads;
+
+            return this;
+        }
+
+        /**
+         * Configures the requested socket's receive buffer size of this {@link Builder}.
+         * Note that the OS may cap it (eg at {@code net.core.rmem_max} on Linux).
+         *
+         * @param receiveBufferSizeBytes the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder receiveBufferSizeBytes(int receiveBufferSizeBytes) {
+            this.receiveBufferSizeBytes = receiveBufferSizeBytes;
+
+            return this;
+        }
+
+        /**
+         * Builds and starts an {@link M3CollectorStub}, that is receiving once this method returns.
+         *
+         * @return the started {@link M3CollectorStub}
+         */
+        public M3CollectorStub build() {
+            if (receiverThreads < 1) {
+                throw new IllegalArgumentException("At least one receiver thread is required");
+            }
+
+            return new M3CollectorStub(this);
+        }
+    }
+}
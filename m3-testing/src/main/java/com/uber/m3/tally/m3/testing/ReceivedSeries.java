@@ -0,0 +1,173 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.testing;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * All the datapoints of a single series (name and the full set of tags, including batch's
+ * common tags) received by the {@link M3CollectorStub}.
+ *
+ * Besides the running aggregates, gauges carrying non-negative integral values are treated as
+ * sequence numbers: load generators publishing a monotonically increasing sequence per series
+ * can use {@link #getMissingSequences()} to detect gaps (ie dropped or never sent datapoints)
+ * and {@link #getDuplicateSequences()} to detect re-deliveries.
+ */
+public class ReceivedSeries {
+    private final String name;
+    private final Map<String, String> tags;
+    private final Type type;
+
+    private long datapoints;
+    private long countSum;
+    private double lastValue;
+    private long lastTimestamp;
+
+    private final BitSet sequences;
+    private long highestSequence;
+    private long duplicateSequences;
+
+    ReceivedSeries(String name, Map<String, String> tags, Type type) {
+        this.name = name;
+        this.tags = Collections.unmodifiableMap(tags);
+        this.type = type;
+        this.sequences = new BitSet();
+        this.highestSequence = -1;
+    }
+
+    private ReceivedSeries(ReceivedSeries other) {
+        this.name = other.name;
+        this.tags = other.tags;
+        this.type = other.type;
+        this.datapoints = other.datapoints;
+        this.countSum = other.countSum;
+        this.lastValue = other.lastValue;
+        this.lastTimestamp = other.lastTimestamp;
+        this.sequences = (BitSet) other.sequences.clone();
+        this.highestSequence = other.highestSequence;
+        this.duplicateSequences = other.duplicateSequences;
+    }
+
+    synchronized void recordCount(long value, long timestamp) {
+        record(value, timestamp);
+        countSum += value;
+    }
+
+    synchronized void recordGauge(double value, long timestamp) {
+        record(value, timestamp);
+
+        long sequence = (long) value;
+
+        if (sequence != value || sequence < 0 || sequence >= Integer.MAX_VALUE) {
+            return;
+        }
+
+        if (sequences.get((int) sequence)) {
+            duplicateSequences++;
+        } else {
+            sequences.set((int) sequence);
+        }
+
+        highestSequence = Math.max(highestSequence, sequence);
+    }
+
+    synchronized void recordTimer(double value, long timestamp) {
+        record(value, timestamp);
+    }
+
+    private void record(double value, long timestamp) {
+        datapoints++;
+        lastValue = value;
+        lastTimestamp = timestamp;
+    }
+
+    synchronized ReceivedSeries copy() {
+        return new ReceivedSeries(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of datapoints received for this series.
+     */
+    public synchronized long getDatapoints() {
+        return datapoints;
+    }
+
+    /**
+     * Returns the sum of all the counter values received for this series.
+     */
+    public synchronized long getCountSum() {
+        return countSum;
+    }
+
+    public synchronized double getLastValue() {
+        return lastValue;
+    }
+
+    public synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the highest sequence number received as a gauge value, or -1 if none.
+     */
+    public synchronized long getHighestSequence() {
+        return highestSequence;
+    }
+
+    /**
+     * Returns the number of sequence numbers in {@code [0, highest]} that have never been received.
+     */
+    public synchronized long getMissingSequences() {
+        return highestSequence + 1 - sequences.cardinality();
+    }
+
+    public synchronized long getDuplicateSequences() {
+        return duplicateSequences;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceivedSeries{name='" + name + "', tags=" + tags + ", type=" + type + "}";
+    }
+
+    /**
+     * Type of the metric as it was sent over the wire.
+     */
+    public enum Type {
+        COUNTER,
+        GAUGE,
+        TIMER
+    }
+}
@@ -0,0 +1,144 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.testing;
+
+import com.uber.m3.tally.m3.M3Reporter;
+import com.uber.m3.util.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class M3CollectorStubTest {
+    private static final Duration MAX_WAIT_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final ImmutableMap<String, String> TAGS = ImmutableMap.of("env", "test");
+
+    private M3CollectorStub collector;
+
+    @Before
+    public void setUp() {
+        collector = new M3CollectorStub.Builder()
+            .receiverThreads(2)
+            .build();
+    }
+
+    @After
+    public void tearDown() {
+        collector.close();
+    }
+
+    @Test
+    public void receivesSeries() throws InterruptedException {
+        try (M3Reporter reporter = newReporter()) {
+            reporter.reportCounter("requests", TAGS, 3);
+            reporter.reportCounter("requests", TAGS, 4);
+            reporter.reportGauge("queue-length", TAGS, 42);
+            reporter.flush();
+
+            assertTrue(collector.awaitMetrics(3, MAX_WAIT_TIMEOUT));
+        }
+
+        ReceivedSeries requests = findSeries("requests");
+
+        assertEquals(ReceivedSeries.Type.COUNTER, requests.getType());
+        assertEquals(2, requests.getDatapoints());
+        assertEquals(7, requests.getCountSum());
+        assertEquals("test", requests.getTags().get("env"));
+        assertEquals("test-service", requests.getTags().get("service"));
+
+        ReceivedSeries queueLength = findSeries("queue-length");
+
+        assertEquals(ReceivedSeries.Type.GAUGE, queueLength.getType());
+        assertEquals(42, queueLength.getLastValue(), 0);
+
+        assertEquals(3, collector.getMetricsReceived());
+        assertTrue(collector.getPacketsReceived() >= 1);
+        assertTrue(collector.getBytesReceived() > 0);
+        assertEquals(0, collector.getDecodeErrors());
+    }
+
+    @Test
+    public void detectsSequenceGaps() throws InterruptedException {
+        try (M3Reporter reporter = newReporter()) {
+            reporter.reportGauge("sequence", TAGS, 0);
+            reporter.reportGauge("sequence", TAGS, 1);
+            reporter.reportGauge("sequence", TAGS, 3);
+            reporter.reportGauge("sequence", TAGS, 3);
+            reporter.flush();
+
+            assertTrue(collector.awaitMetrics(4, MAX_WAIT_TIMEOUT));
+        }
+
+        ReceivedSeries sequence = findSeries("sequence");
+
+        assertEquals(3, sequence.getHighestSequence());
+        assertEquals(1, sequence.getMissingSequences());
+        assertEquals(1, sequence.getDuplicateSequences());
+    }
+
+    @Test
+    public void countsDecodeErrors() throws Exception {
+        byte[] garbage = new byte[] {0x00, 0x01, 0x02, 0x03};
+
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.send(new DatagramPacket(garbage, garbage.length, collector.getLocalAddress()));
+        }
+
+        assertTrue(collector.awaitQuiescence(Duration.ofMillis(100), MAX_WAIT_TIMEOUT));
+
+        assertEquals(1, collector.getPacketsReceived());
+        assertEquals(1, collector.getDecodeErrors());
+        assertEquals(0, collector.getMetricsReceived());
+
+        collector.reset();
+
+        assertEquals(0, collector.getPacketsReceived());
+        assertEquals(0, collector.getDecodeErrors());
+        assertTrue(collector.snapshotSeries().isEmpty());
+    }
+
+    private M3Reporter newReporter() {
+        return new M3Reporter.Builder(collector.getLocalAddress())
+            .service("test-service")
+            .env("test")
+            .build();
+    }
+
+    private ReceivedSeries findSeries(String name) {
+        List<ReceivedSeries> found = collector.snapshotSeries()
+            .stream()
+            .filter(series -> series.getName().equals(name))
+            .collect(Collectors.toList());
+
+        assertEquals(1, found.size());
+
+        return found.get(0);
+    }
+}
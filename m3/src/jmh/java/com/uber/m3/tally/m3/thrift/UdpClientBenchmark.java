@@ -0,0 +1,116 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.thrift;
+
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TUdpClient} and {@link TNioUdpClient} sending datagrams to the local receiver,
+ * draining the socket in the background.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-server", "-XX:+UseG1GC"})
+@State(Scope.Benchmark)
+public class UdpClientBenchmark {
+    @Param({"TUdpClient", "TNioUdpClient"})
+    public String transportType;
+
+    @Param({"256", "1400", "16384"})
+    public int payloadSize;
+
+    private DatagramChannel receiver;
+    private Thread receiverThread;
+
+    private TTransport transport;
+
+    private byte[] payload;
+
+    @Benchmark
+    public void sendBenchmark() throws TTransportException {
+        transport.write(payload, 0, payload.length);
+        transport.flush();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException, TTransportException {
+        receiver = DatagramChannel.open();
+        receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+
+        receiverThread = new Thread(this::drain, "udp-benchmark-receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+
+        if ("TNioUdpClient".equals(transportType)) {
+            transport = new TNioUdpClient(receiver.getLocalAddress());
+        } else {
+            transport = new TUdpClient(receiver.getLocalAddress());
+        }
+
+        transport.open();
+
+        payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() throws IOException, InterruptedException {
+        transport.close();
+        receiver.close();
+        receiverThread.join();
+    }
+
+    private void drain() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TUdpTransport.PACKET_DATA_PAYLOAD_MAX_SIZE);
+
+        try {
+            while (receiver.isOpen()) {
+                buffer.clear();
+                receiver.receive(buffer);
+            }
+        } catch (IOException e) {
+            // no-op, receiver has been closed
+        }
+    }
+}
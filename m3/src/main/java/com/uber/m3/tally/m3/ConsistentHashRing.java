@@ -0,0 +1,157 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3;
+
+import java.util.Arrays;
+
+/**
+ * Consistent hash ring mapping 64-bit hashes onto a fixed set of endpoints.
+ *
+ * Every endpoint is placed onto the ring at a number of positions (virtual nodes) derived
+ * from the endpoint's key, such that hashes are spread evenly across the endpoints and
+ * adding/removing an endpoint only re-maps the hashes that used to belong to it.
+ */
+final class ConsistentHashRing {
+    static final int DEFAULT_VIRTUAL_NODES_PER_ENDPOINT = 160;
+
+    private static final long FNV_64_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_64_PRIME = 0x100000001b3L;
+
+    private final int endpointsCount;
+
+    // Positions of the virtual nodes on the ring (sorted), along with the
+    // indexes of the endpoints they belong to
+    private final long[] positions;
+    private final int[] endpoints;
+
+    ConsistentHashRing(String[] endpointKeys) {
+        this(endpointKeys, DEFAULT_VIRTUAL_NODES_PER_ENDPOINT);
+    }
+
+    ConsistentHashRing(String[] endpointKeys, int virtualNodesPerEndpoint) {
+        if (endpointKeys == null || endpointKeys.length == 0) {
+            throw new IllegalArgumentException("Must provide at least one endpoint");
+        }
+
+        if (virtualNodesPerEndpoint <= 0) {
+            throw new IllegalArgumentException("Number of virtual nodes must be positive");
+        }
+
+        endpointsCount = endpointKeys.length;
+
+        int nodesCount = endpointKeys.length * virtualNodesPerEndpoint;
+
+        long[] nodePositions = new long[nodesCount];
+        Integer[] order = new Integer[nodesCount];
+
+        for (int i = 0; i < endpointKeys.length; ++i) {
+            for (int v = 0; v < virtualNodesPerEndpoint; ++v) {
+                int node = i * virtualNodesPerEndpoint + v;
+                nodePositions[node] = hash(endpointKeys[i] + "#" + v);
+                order[node] = node;
+            }
+        }
+
+        // Sort nodes by their positions on the ring
+        Arrays.sort(order, (a, b) -> Long.compare(nodePositions[a], nodePositions[b]));
+
+        positions = new long[nodesCount];
+        endpoints = new int[nodesCount];
+
+        for (int i = 0; i < nodesCount; ++i) {
+            int node = order[i];
+            positions[i] = nodePositions[node];
+            endpoints[i] = node / virtualNodesPerEndpoint;
+        }
+    }
+
+    /**
+     * Returns the number of endpoints on the ring.
+     */
+    int size() {
+        return endpointsCount;
+    }
+
+    /**
+     * Returns index of the endpoint owning provided hash, ie the one whose virtual node
+     * is the first one following the hash (clockwise) on the ring.
+     */
+    int primaryFor(long hash) {
+        return endpoints[nodeFor(hash)];
+    }
+
+    /**
+     * Returns index of the endpoint following the owner of the provided hash on the ring,
+     * or -1 if there's only a single endpoint.
+     */
+    int secondaryFor(long hash) {
+        int node = nodeFor(hash);
+        int primary = endpoints[node];
+
+        for (int i = 1; i < endpoints.length; ++i) {
+            int endpoint = endpoints[(node + i) % endpoints.length];
+            if (endpoint != primary) {
+                return endpoint;
+            }
+        }
+
+        return -1;
+    }
+
+    private int nodeFor(long hash) {
+        int index = Arrays.binarySearch(positions, hash);
+        if (index < 0) {
+            // Insertion point, ie index of the first position greater than the hash
+            index = -index - 1;
+        }
+
+        // Wrap around the ring
+        return index == positions.length ? 0 : index;
+    }
+
+    /**
+     * Hashes provided string with 64-bit FNV-1a, followed by a finalizing mix
+     * to spread the bits.
+     */
+    static long hash(String str) {
+        long hash = FNV_64_OFFSET_BASIS;
+
+        for (int i = 0; i < str.length(); ++i) {
+            hash ^= str.charAt(i);
+            hash *= FNV_64_PRIME;
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * Finalizing step of the MurmurHash3 (fmix64).
+     */
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
@@ -28,6 +28,8 @@ import com.uber.m3.tally.StatsReporter;
 import com.uber.m3.tally.ValueBuckets;
 import com.uber.m3.tally.m3.thrift.TCalcTransport;
 import com.uber.m3.tally.m3.thrift.TMultiUdpClient;
+import com.uber.m3.tally.m3.thrift.TNioUdpClient;
+import com.uber.m3.tally.m3.thrift.TPacingTransport;
 import com.uber.m3.tally.m3.thrift.TUdpClient;
 import com.uber.m3.tally.m3.thrift.TUdpTransport;
 import com.uber.m3.thrift.gen.CountValue;
@@ -52,9 +54,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.SocketAddress;
-import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.time.Clock;
 import java.time.Instant;
@@ -74,8 +76,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * An M3 implementation of a {@link StatsReporter}.
@@ -90,6 +91,10 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
     public static final String DEFAULT_HISTOGRAM_BUCKET_NAME = "bucket";
     public static final int DEFAULT_HISTOGRAM_BUCKET_TAG_PRECISION = 6;
 
+    public static final String UDP_SNDBUF_ERRORS_METRIC_NAME = "tally.internal.udp.sndbuf-errors";
+    public static final String UDP_RCVBUF_ERRORS_METRIC_NAME = "tally.internal.udp.rcvbuf-errors";
+    public static final String UDP_IN_ERRORS_METRIC_NAME = "tally.internal.udp.in-errors";
+
     /**
      * NOTE: DO NOT CHANGE THIS NUMBER!
      * Reporter architecture is not suited for multi-processor setup and might cause some disruption
@@ -99,6 +104,8 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
 
     static final Duration HEARTBEAT_PERIOD = Duration.ofSeconds(10);
 
+    static final Duration CLOCK_TICK_PERIOD = Duration.ofMillis(100);
+
     private static final Logger LOG = LoggerFactory.getLogger(M3Reporter.class);
 
     private static final int MAX_PROCESSOR_WAIT_TIMEOUT_MILLIS = 1_000;
@@ -114,6 +121,15 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
 
     private static final int MIN_METRIC_BUCKET_ID_TAG_LENGTH = 4;
 
+    private static final int DEFAULT_PACING_BURST_PACKETS = 4;
+
+    // Names of the metrics reporting respective {@link UdpErrorCounters#COUNTERS}
+    private static final String[] UDP_ERRORS_METRIC_NAMES = {
+        UDP_SNDBUF_ERRORS_METRIC_NAME,
+        UDP_RCVBUF_ERRORS_METRIC_NAME,
+        UDP_IN_ERRORS_METRIC_NAME,
+    };
+
     private static final ThreadLocal<SerializedPayloadSizeEstimator> PAYLOAD_SIZE_ESTIMATOR =
             ThreadLocal.withInitial(SerializedPayloadSizeEstimator::new);
 
@@ -147,15 +163,38 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
     // List of socket addresses for M3 collector endpoint
     private final SocketAddress[] collectorEndpointSockedAddresses;
 
-    // Condition serving to park/un-park processors whenever queue is empty/non-empty
-    private final ReentrantLock lock = new ReentrantLock();
-
-    private final Condition condition = lock.newCondition();
-
     private final Processor[] processors;
 
     private final TProtocolFactory protocolFactory;
 
+    private final boolean nioTransport;
+
+    private final boolean shardEndpoints;
+
+    private final boolean mirrorToSecondaryEndpoint;
+
+    private final boolean intervalTimestamps;
+
+    private final boolean preAggregation;
+
+    private final long pacingBytesPerSecond;
+
+    private final long pacingBurstBytes;
+
+    private final int sendBufferSizeBytes;
+
+    // UDP error counters reported as self-metrics, unless disabled (or unavailable)
+    @Nullable
+    private final UdpErrorCounters udpErrorCounters;
+
+    // Timestamp of the current reporting interval, set by the report loop (unless it's not been
+    // set yet, or the interval's been flushed already). Kept per thread, as every root scope sharing
+    // the reporter begins, reports and flushes its intervals on a report loop thread of its own
+    private final ThreadLocal<Long> intervalTimestampNanos = new ThreadLocal<>();
+
+    // Coarse clock, updated by the ticker
+    private volatile long cachedTimestampNanos;
+
     private final AtomicBoolean isShutdown = new AtomicBoolean(false);
 
     // Use inner Builder class to construct an M3Reporter
@@ -181,6 +220,18 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
 
         protocolFactory = thriftProtocolFactory;
 
+        nioTransport = builder.nioTransport;
+        shardEndpoints = builder.shardEndpoints;
+        mirrorToSecondaryEndpoint = builder.mirrorToSecondaryEndpoint;
+        intervalTimestamps = builder.intervalTimestamps;
+        preAggregation = builder.preAggregation;
+        pacingBytesPerSecond = builder.pacingBytesPerSecond;
+        pacingBurstBytes = builder.pacingBurstBytes > 0
+                ? builder.pacingBurstBytes
+                : (long) builder.maxPacketSizeBytes * DEFAULT_PACING_BURST_PACKETS;
+        sendBufferSizeBytes = builder.sendBufferSizeBytes;
+        udpErrorCounters = builder.reportUdpErrors ? createUdpErrorCounters() : null;
+
         processorsShutdownLatch = new CountDownLatch(NUM_PROCESSORS);
 
         collectorEndpointSockedAddresses = builder.endpointSocketAddresses;
@@ -192,6 +243,30 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
 
         // Schedule regular heartbeat up-keeping processors up and running
         scheduledExecutorService.scheduleAtFixedRate(this::heartbeat, 0, HEARTBEAT_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+
+        if (intervalTimestamps) {
+            // Schedule ticker updating coarse clock
+            tick();
+            scheduledExecutorService.scheduleAtFixedRate(this::tick, 0, CLOCK_TICK_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Nullable
+    private static UdpErrorCounters createUdpErrorCounters() {
+        UdpErrorCounters counters = new UdpErrorCounters();
+        if (!counters.isAvailable()) {
+            LOG.warn("UDP error counters are not available, those will not be reported");
+            return null;
+        }
+
+        // Read the counters for the first time, to establish the baseline
+        counters.poll();
+
+        return counters;
+    }
+
+    private void tick() {
+        cachedTimestampNanos = System.currentTimeMillis() * Duration.NANOS_PER_MILLI;
     }
 
     // NOTE: This method is not concurrent
@@ -234,7 +309,7 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
             Processor processor = new Processor(endpointSocketAddresses, protocolFactory);
             executorService.execute(processor);
             return processor;
-        } catch (TTransportException | SocketException e) {
+        } catch (TTransportException | IOException e) {
             LOG.error("Failed to boot processor", e);
             throw new RuntimeException(e);
         }
@@ -245,17 +320,40 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
         return CapableOf.REPORTING_TAGGING;
     }
 
+    @Override
+    public void beginInterval(long intervalTimestampNanos) {
+        this.intervalTimestampNanos.set(intervalTimestampNanos);
+    }
+
     @Override
     public void flush() {
+        // Values reported past the interval don't carry its timestamp anymore
+        intervalTimestampNanos.remove();
+
         if (isShutdown.get()) {
             return;
         }
 
+        if (udpErrorCounters != null) {
+            reportUdpErrors();
+        }
+
         for (Processor processor : processors) {
             processor.scheduleFlush();
         }
     }
 
+    private void reportUdpErrors() {
+        long[] increments = udpErrorCounters.poll();
+        if (increments == null) {
+            return;
+        }
+
+        for (int i = 0; i < increments.length; ++i) {
+            reportCounterInternal(UDP_ERRORS_METRIC_NAMES[i], null, increments[i]);
+        }
+    }
+
     @Override
     public void close() {
         if (!isShutdown.compareAndSet(false, true)) {
@@ -320,6 +418,29 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
         return metricTag;
     }
 
+    /**
+     * Computes hash identifying the series by its name and tags.
+     *
+     * NOTE: Tags are combined in an order-independent way, since the same series
+     *       could be reported with its tags being iterated in a different order
+     */
+    static long seriesHash(String name, Set<MetricTag> tags) {
+        long tagsHash = 0;
+
+        if (tags != null) {
+            for (MetricTag tag : tags) {
+                long tagHash = ConsistentHashRing.hash(tag.getTagName()) * 31;
+                if (tag.getTagValue() != null) {
+                    tagHash += ConsistentHashRing.hash(tag.getTagValue());
+                }
+
+                tagsHash += ConsistentHashRing.mix(tagHash);
+            }
+        }
+
+        return ConsistentHashRing.mix(ConsistentHashRing.hash(name) ^ tagsHash);
+    }
+
     private String valueBucketString(double bucketBound) {
         if (bucketBound == Double.MAX_VALUE) {
             return "infinity";
@@ -361,7 +482,7 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
         MetricValue metricValue = new MetricValue();
         metricValue.setGauge(gaugeValue);
 
-        Metric metric = newMetric(name, tags, metricValue);
+        Metric metric = newMetric(name, tags, metricValue, intervalTimestamp());
 
         enqueue(new SizedMetric(metric, PAYLOAD_SIZE_ESTIMATOR.get().evaluateByteSize(metric)));
     }
@@ -374,7 +495,7 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
         MetricValue metricValue = new MetricValue();
         metricValue.setTimer(timerValue);
 
-        Metric metric = newMetric(name, tags, metricValue);
+        Metric metric = newMetric(name, tags, metricValue, sampleTimestamp());
 
         enqueue(new SizedMetric(metric, PAYLOAD_SIZE_ESTIMATOR.get().evaluateByteSize(metric)));
     }
@@ -466,34 +587,52 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
         MetricValue metricValue = new MetricValue();
         metricValue.setCount(countValue);
 
-        Metric metric = newMetric(name, tags, metricValue);
+        Metric metric = newMetric(name, tags, metricValue, intervalTimestamp());
 
         enqueue(new SizedMetric(metric, PAYLOAD_SIZE_ESTIMATOR.get().evaluateByteSize(metric)));
     }
 
-    private Metric newMetric(String name, Map<String, String> tags, MetricValue metricValue) {
+    private Metric newMetric(String name, Map<String, String> tags, MetricValue metricValue, long timestampNanos) {
         Metric metric = new Metric(name);
         metric.setTags(toMetricTagSet(tags));
-        metric.setTimestamp(System.currentTimeMillis() * Duration.NANOS_PER_MILLI);
+        metric.setTimestamp(timestampNanos);
         metric.setMetricValue(metricValue);
 
         return metric;
     }
 
+    // Returns timestamp for the values reported by the report loop (counters, gauges, histograms)
+    private long intervalTimestamp() {
+        if (!intervalTimestamps) {
+            return System.currentTimeMillis() * Duration.NANOS_PER_MILLI;
+        }
+
+        Long timestampNanos = intervalTimestampNanos.get();
+
+        // Fallback to the coarse clock, in case values are reported outside of the report loop
+        return timestampNanos != null ? timestampNanos : cachedTimestampNanos;
+    }
+
+    // Returns timestamp for the individually reported samples (timers)
+    private long sampleTimestamp() {
+        if (!intervalTimestamps) {
+            return System.currentTimeMillis() * Duration.NANOS_PER_MILLI;
+        }
+
+        return cachedTimestampNanos;
+    }
+
     private void enqueue(SizedMetric sizedMetric) {
         // Short-circuit if already shutdown
         if (isShutdown.get()) {
             return;
         }
 
-        // Check whether queue was empty prior to enqueuing
-        boolean wasEmpty = queue.isEmpty();
-
         boolean enqueued = queue.offer(sizedMetric);
 
         if (!enqueued) {
             LOG.warn("Failed to enqueue metric for emission");
-        } else if (wasEmpty) {
+        } else {
             signalProcessors();
         }
     }
@@ -507,11 +646,12 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
     }
 
     private void signalProcessors() {
-        lock.lock();
-        try {
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+        for (Processor processor : processors) {
+            // NOTE: Only processors transitioning from idle (parked) to busy are un-parked,
+            //       therefore no synchronization is incurred on the hot-path while processors are busy
+            if (processor != null) {
+                processor.wakeUp();
+            }
         }
     }
 
@@ -526,38 +666,96 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
 
     private class Processor implements Runnable {
 
-        private final List<Metric> metricsBuffer =
-                new ArrayList<>(payloadCapacity / 10);
+        // NOTE: Unless endpoints are sharded, there's just a single one
+        //       (sending to all of the collectors at once)
+        private final Endpoint[] endpoints;
 
-        private Instant lastBufferFlushTimestamp = Instant.now(clock);
+        // Ring routing series to the endpoints, unless endpoints aren't sharded
+        @Nullable
+        private final ConsistentHashRing ring;
 
-        private int bufferedBytes = 0;
+        // Aggregator of the metrics reported within the aggregation window, unless
+        // pre-aggregation is disabled
+        @Nullable
+        private final MetricsAggregator aggregator;
 
-        private final M3.Client client;
-        private final TTransport transport;
+        private Instant aggregationWindowStartTimestamp = Instant.now(clock);
 
         private final AtomicReference<ProcessorState> state = new AtomicReference<>();
         private final AtomicBoolean shouldFlush = new AtomicBoolean(false);
 
-        Processor(SocketAddress[] socketAddresses, TProtocolFactory protocolFactory) throws TTransportException, SocketException {
-            if (socketAddresses.length > 1) {
-                transport = new TMultiUdpClient(socketAddresses);
+        // Flag designating whether processor is idle (ie is parked, or about to be, awaiting for
+        // the new metrics to be enqueued), along with the thread running it
+        private final AtomicBoolean idle = new AtomicBoolean(false);
+        private volatile Thread thread;
+
+        Processor(SocketAddress[] socketAddresses, TProtocolFactory protocolFactory) throws TTransportException, IOException {
+            if (shardEndpoints) {
+                endpoints = new Endpoint[socketAddresses.length];
+                String[] endpointKeys = new String[socketAddresses.length];
+
+                for (int i = 0; i < socketAddresses.length; ++i) {
+                    endpoints[i] = new Endpoint(createTransport(socketAddresses[i]), protocolFactory);
+                    endpointKeys[i] = socketAddresses[i].toString();
+                }
+
+                ring = new ConsistentHashRing(endpointKeys);
             } else {
-                transport = new TUdpClient(socketAddresses[0]);
-            }
+                TTransport transport;
+                if (socketAddresses.length > 1) {
+                    TTransport[] transports = new TTransport[socketAddresses.length];
+                    for (int i = 0; i < socketAddresses.length; ++i) {
+                        transports[i] = createTransport(socketAddresses[i]);
+                    }
 
-            // Open the socket
-            transport.open();
+                    transport = new TMultiUdpClient(transports);
+                } else {
+                    transport = createTransport(socketAddresses[0]);
+                }
 
-            client = new M3.Client(protocolFactory.getProtocol(transport));
+                endpoints = new Endpoint[] {new Endpoint(transport, protocolFactory)};
+                ring = null;
+            }
+
+            aggregator = preAggregation
+                    ? new MetricsAggregator(metric -> PAYLOAD_SIZE_ESTIMATOR.get().evaluateByteSize(metric))
+                    : null;
 
             state.set(ProcessorState.RUNNING);
 
             LOG.info("Booted reporting processor");
         }
 
+        private TTransport createTransport(SocketAddress socketAddress) throws IOException {
+            TTransport transport;
+
+            if (nioTransport) {
+                TNioUdpClient client = new TNioUdpClient(socketAddress);
+                if (sendBufferSizeBytes > 0) {
+                    client.setSendBufferSize(sendBufferSizeBytes);
+                }
+
+                transport = client;
+            } else {
+                TUdpClient client = new TUdpClient(socketAddress);
+                if (sendBufferSizeBytes > 0) {
+                    client.setSendBufferSize(sendBufferSizeBytes);
+                }
+
+                transport = client;
+            }
+
+            if (pacingBytesPerSecond > 0) {
+                transport = new TPacingTransport(transport, pacingBytesPerSecond, pacingBurstBytes);
+            }
+
+            return transport;
+        }
+
         @Override
         public void run() {
+            thread = Thread.currentThread();
+
             while (!isShutdown.get()) {
                 try {
                     // Check whether flush has been requested by the reporter
@@ -569,17 +767,16 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
                     // off the queue. If we get an item, we append it to the queue to be flushed,
                     // otherwise we flush what we have so far.
                     // When this reporter is closed, shutdownNow will be called on the executor,
-                    // which will interrupt this thread and proceed to the `InterruptedException`
-                    // catch block.
+                    // which will interrupt this thread, un-parking it.
                     SizedMetric sizedMetric = awaitingPoll();
 
                     if (sizedMetric != null) {
-                        process(sizedMetric);
+                        accept(sizedMetric);
                     } else {
                         // In case there's no more metrics, then
                         //  - Flush what we have processed so far,
-                        //  - Wait (on the lock), until either
-                        //      - Signalled
+                        //  - Park, until either
+                        //      - Un-parked
                         //      - Interrupted
                         //      - Specified timeout elapsed
                         flushBuffered();
@@ -607,14 +804,12 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
             // in case there's currently no elements available in the queue it
             // will park current thread awaiting for either it to get
             //      - Interrupted or
-            //      - Signalled (that there are new elements)
+            //      - Un-parked (when there are new elements)
             //      - Specified timeout elapses
             //
-            // Key difference is however, that this approach only takes locks
-            // upon thread parking/un-parking and doesn't take a locks on the
-            // either of the hot-paths of
-            //      - Enqueuing element into the queue (unless empty)
-            //      - Dequeuing elements from the queue (unless empty)
+            // Key difference is however, that this approach doesn't take any locks:
+            // producers only un-park the processor when it's idle, while the processor
+            // is only parked when the queue is empty
             SizedMetric metric = queue.poll();
             if (metric != null) {
                 return metric;
@@ -625,13 +820,26 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
         }
 
         private void await() {
-            lock.lock();
-            try {
-                boolean ignored = condition.await(maxBufferingDelay.toMillis(), TimeUnit.MILLISECONDS);
-            } catch (InterruptedException ignored) {
-                // no-op
-            } finally {
-                lock.unlock();
+            idle.set(true);
+
+            // NOTE: Queue has to be re-checked after the processor is marked idle: either the
+            //       producer enqueuing the metric observes the processor being idle (and un-parks it),
+            //       or the processor observes the enqueued metric here (and doesn't park)
+            if (queue.isEmpty()) {
+                LockSupport.parkNanos(this, maxBufferingDelay.getNanos());
+            }
+
+            idle.set(false);
+
+            // Clear the interruption status (if any), since it would otherwise
+            // prevent the processor from parking subsequently
+            boolean ignored = Thread.interrupted();
+        }
+
+        // Un-parks the processor, in case it's idle
+        private void wakeUp() {
+            if (idle.get() && idle.compareAndSet(true, false)) {
+                LockSupport.unpark(thread);
             }
         }
 
@@ -641,13 +849,119 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
             // Flush remaining buffers at last (best effort)
             runNoThrow(this::flushBuffered);
 
-            // Close transport
-            transport.close();
+            // Close transports
+            for (Endpoint endpoint : endpoints) {
+                endpoint.close();
+            }
 
             // Count down shutdown latch to notify reporter
             processorsShutdownLatch.countDown();
         }
 
+        private void accept(SizedMetric sizedMetric) throws TException {
+            if (aggregator == null) {
+                process(sizedMetric);
+                return;
+            }
+
+            boolean wasEmpty = aggregator.isEmpty();
+
+            if (!aggregator.add(sizedMetric)) {
+                // Metric couldn't be aggregated, hence is processed as is
+                process(sizedMetric);
+                return;
+            }
+
+            if (wasEmpty) {
+                aggregationWindowStartTimestamp = Instant.now(clock);
+            } else if (elapsedMaxDelaySinceAggregationWindowStart()) {
+                flushBuffered();
+            }
+        }
+
+        private boolean elapsedMaxDelaySinceAggregationWindowStart() {
+            return Instant.now(clock).isAfter(
+                    aggregationWindowStartTimestamp.plus(maxBufferingDelay.toMillis(), ChronoUnit.MILLIS)
+            );
+        }
+
+        private void process(SizedMetric sizedMetric) throws TException {
+            if (ring == null) {
+                endpoints[0].process(sizedMetric);
+                return;
+            }
+
+            Metric metric = sizedMetric.getMetric();
+
+            // Route series to the same endpoint every time, so that it's
+            // aggregated correctly by the collector
+            long hash = seriesHash(metric.getName(), metric.getTags());
+
+            endpoints[ring.primaryFor(hash)].process(sizedMetric);
+
+            if (mirrorToSecondaryEndpoint) {
+                int secondary = ring.secondaryFor(hash);
+                if (secondary >= 0) {
+                    endpoints[secondary].process(sizedMetric);
+                }
+            }
+        }
+
+        private void drainQueue() throws TException {
+            SizedMetric metrics;
+
+            while ((metrics = queue.poll()) != null) {
+                accept(metrics);
+            }
+        }
+
+        private void flushBuffered() throws TException {
+            // Close the aggregation window (if any), handing over aggregated metrics
+            if (aggregator != null && !aggregator.isEmpty()) {
+                for (SizedMetric sizedMetric : aggregator.drain()) {
+                    process(sizedMetric);
+                }
+            }
+
+            for (Endpoint endpoint : endpoints) {
+                endpoint.flushBuffered();
+            }
+        }
+
+        public void scheduleFlush() {
+            shouldFlush.set(true);
+        }
+
+        public ProcessorState getState() {
+            return state.get();
+        }
+    }
+
+    /**
+     * Collector endpoint (or a set of them) along with the buffer of metrics
+     * pending to be sent to it.
+     */
+    private class Endpoint {
+
+        private final List<Metric> metricsBuffer =
+                new ArrayList<>(payloadCapacity / 10);
+
+        private Instant lastBufferFlushTimestamp = Instant.now(clock);
+
+        private int bufferedBytes = 0;
+
+        private final M3.Client client;
+        private final TTransport transport;
+
+        Endpoint(TTransport transport, TProtocolFactory protocolFactory) throws TTransportException {
+            this.transport = transport;
+
+            // Open the socket
+            transport.open();
+
+            client = new M3.Client(protocolFactory.getProtocol(transport));
+        }
+
         private void process(SizedMetric sizedMetric) throws TException {
             int size = sizedMetric.getSize();
             if (bufferedBytes + size > payloadCapacity || elapsedMaxDelaySinceLastFlush()) {
@@ -666,14 +980,6 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
             );
         }
 
-        private void drainQueue() throws TException {
-            SizedMetric metrics;
-
-            while ((metrics = queue.poll()) != null) {
-                process(metrics);
-            }
-        }
-
         private void flushBuffered() throws TException {
             if (metricsBuffer.isEmpty()) {
                 return;
@@ -695,12 +1001,8 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
             lastBufferFlushTimestamp = Instant.now(clock);
         }
 
-        public void scheduleFlush() {
-            shouldFlush.set(true);
-        }
-
-        public ProcessorState getState() {
-            return state.get();
+        private void close() {
+            transport.close();
         }
     }
 
@@ -764,6 +1066,15 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
         protected String histogramBucketIdName = DEFAULT_HISTOGRAM_BUCKET_ID_NAME;
         protected String histogramBucketName = DEFAULT_HISTOGRAM_BUCKET_NAME;
         protected int histogramBucketTagPrecision = DEFAULT_HISTOGRAM_BUCKET_TAG_PRECISION;
+        protected boolean nioTransport = false;
+        protected boolean shardEndpoints = false;
+        protected boolean mirrorToSecondaryEndpoint = false;
+        protected boolean intervalTimestamps = false;
+        protected boolean preAggregation = false;
+        protected long pacingBytesPerSecond = 0;
+        protected long pacingBurstBytes = 0;
+        protected int sendBufferSizeBytes = 0;
+        protected boolean reportUdpErrors = false;
 
         private Set<MetricTag> metricTagSet;
 
@@ -921,12 +1232,146 @@ public class M3Reporter implements StatsReporter, AutoCloseable {
             return this;
         }
 
+        /**
+         * Configures whether to send metrics through the {@link TNioUdpClient} transport
+         * (backed by the non-blocking {@code DatagramChannel}) of this {@link Builder}.
+         *
+         * @param nioTransport the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder nioTransport(boolean nioTransport) {
+            this.nioTransport = nioTransport;
+
+            return this;
+        }
+
+        /**
+         * Configures whether to shard series across the endpoints of this {@link Builder}.
+         *
+         * By default, every metric is sent to each of the endpoints. When sharded, every series
+         * is instead sent to just one of them, picked by the consistent hash of series name and tags
+         * (therefore, each series is consistently routed to the same endpoint).
+         *
+         * @param shardEndpoints the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder shardEndpoints(boolean shardEndpoints) {
+            this.shardEndpoints = shardEndpoints;
+
+            return this;
+        }
+
+        /**
+         * Configures whether to additionally send every series to the secondary endpoint
+         * (the one following its primary on the hash ring) of this {@link Builder}.
+         * Requires endpoints to be sharded.
+         *
+         * @param mirrorToSecondaryEndpoint the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder mirrorToSecondaryEndpoint(boolean mirrorToSecondaryEndpoint) {
+            this.mirrorToSecondaryEndpoint = mirrorToSecondaryEndpoint;
+
+            return this;
+        }
+
+        /**
+         * Configures whether to use interval timestamps of this {@link Builder}.
+         *
+         * By default, every metric is timestamped when reported. Instead, values reported
+         * by the report loop (counters, gauges, histograms) could carry the timestamp of the
+         * reporting interval (see {@link StatsReporter#beginInterval(long)}), while the timers
+         * use coarse clock (ticking every 100ms).
+         *
+         * @param intervalTimestamps the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder intervalTimestamps(boolean intervalTimestamps) {
+            this.intervalTimestamps = intervalTimestamps;
+
+            return this;
+        }
+
+        /**
+         * Configures whether to pre-aggregate metrics of this {@link Builder}.
+         *
+         * When enabled, metrics of the same series (having the same name and tags) reported within
+         * the aggregation window (bounded by {@code maxProcessorWaitUntilFlushMillis}, or the reporter
+         * being flushed) are merged into a single one prior to being sent: counters are summed up,
+         * while gauges retain the last value. Timers are sent as is.
+         *
+         * @param preAggregation the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder preAggregation(boolean preAggregation) {
+            this.preAggregation = preAggregation;
+
+            return this;
+        }
+
+        /**
+         * Configures the rate (in bytes per second) sending to each of the endpoints
+         * is paced to of this {@link Builder}. Pacing is disabled unless the rate is positive.
+         *
+         * @param pacingBytesPerSecond the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder pacingBytesPerSecond(long pacingBytesPerSecond) {
+            this.pacingBytesPerSecond = pacingBytesPerSecond;
+
+            return this;
+        }
+
+        /**
+         * Configures the maximum number of bytes sent in a burst (without being paced)
+         * of this {@link Builder}. Defaults to 4 packets of the maximum size.
+         *
+         * @param pacingBurstBytes the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder pacingBurstBytes(long pacingBurstBytes) {
+            this.pacingBurstBytes = pacingBurstBytes;
+
+            return this;
+        }
+
+        /**
+         * Configures the size of the sockets' send buffer ({@code SO_SNDBUF}) of this {@link Builder}.
+         * System's default is used, unless the size is positive.
+         *
+         * @param sendBufferSizeBytes the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder sendBufferSizeBytes(int sendBufferSizeBytes) {
+            this.sendBufferSizeBytes = sendBufferSizeBytes;
+
+            return this;
+        }
+
+        /**
+         * Configures whether to report (host-wide) UDP error counters read from {@code /proc/net/snmp}
+         * of this {@link Builder}. Increments of the counters are reported upon every flush.
+         * Only supported on Linux.
+         *
+         * @param reportUdpErrors the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder reportUdpErrors(boolean reportUdpErrors) {
+            this.reportUdpErrors = reportUdpErrors;
+
+            return this;
+        }
+
         /**
          * Builds and returns an {@link M3Reporter} with the configured paramters.
          *
          * @return a new {@link M3Reporter} instance with the configured paramters
          */
         public M3Reporter build() {
+            if (mirrorToSecondaryEndpoint && !shardEndpoints) {
+                throw new IllegalArgumentException("Mirroring to secondary endpoint requires endpoints to be sharded");
+            }
+
             metricTagSet = toMetricTagSet(commonTags);
 
             // Set and ensure required tags
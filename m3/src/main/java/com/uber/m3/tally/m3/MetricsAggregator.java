@@ -0,0 +1,136 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3;
+
+import com.uber.m3.thrift.gen.CountValue;
+import com.uber.m3.thrift.gen.Metric;
+import com.uber.m3.thrift.gen.MetricValue;
+import org.apache.http.annotation.NotThreadSafe;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Aggregates metrics of the same series (ie having the same name and tags) reported
+ * within the aggregation window into a single one:
+ * <ul>
+ *     <li>Counters are summed up</li>
+ *     <li>Gauges retain the last value</li>
+ * </ul>
+ *
+ * NOTE: Timers could not be aggregated, since {@code TimerValue} only holds a single value,
+ *       and therefore are not accepted by the aggregator
+ */
+@NotThreadSafe
+final class MetricsAggregator {
+    // NOTE: Linked map is used to retain the order in which series were first reported
+    private final Map<SeriesKey, Aggregate> aggregates = new LinkedHashMap<>();
+
+    // Function re-evaluating the size of the metric, once its value changed
+    private final ToIntFunction<Metric> sizeEstimator;
+
+    MetricsAggregator(ToIntFunction<Metric> sizeEstimator) {
+        this.sizeEstimator = sizeEstimator;
+    }
+
+    /**
+     * Adds metric to the aggregator.
+     *
+     * @return true if metric has been aggregated, false if it couldn't be (and
+     *         has to be processed as is)
+     */
+    boolean add(SizedMetric sizedMetric) {
+        MetricValue value = sizedMetric.getMetric().getMetricValue();
+        if (value == null || !(value.isSetCount() || value.isSetGauge())) {
+            return false;
+        }
+
+        SeriesKey key = SeriesKey.of(sizedMetric.getMetric());
+        Aggregate aggregate = aggregates.get(key);
+
+        if (aggregate == null) {
+            aggregates.put(key, new Aggregate(sizedMetric));
+        } else if (value.isSetCount() && aggregate.isCounter()) {
+            aggregate.addCount(sizedMetric.getMetric());
+        } else {
+            // Gauges retain the last value
+            aggregates.put(key, new Aggregate(sizedMetric));
+        }
+
+        return true;
+    }
+
+    boolean isEmpty() {
+        return aggregates.isEmpty();
+    }
+
+    int size() {
+        return aggregates.size();
+    }
+
+    /**
+     * Returns aggregated metrics, resetting the aggregator.
+     */
+    List<SizedMetric> drain() {
+        List<SizedMetric> metrics = new ArrayList<>(aggregates.size());
+
+        for (Aggregate aggregate : aggregates.values()) {
+            SizedMetric sizedMetric = aggregate.sizedMetric;
+
+            // Size of the aggregated counter might have changed along with its value
+            if (aggregate.merged) {
+                sizedMetric.setSize(sizeEstimator.applyAsInt(sizedMetric.getMetric()));
+            }
+
+            metrics.add(sizedMetric);
+        }
+
+        aggregates.clear();
+
+        return metrics;
+    }
+
+    private static final class Aggregate {
+        private final SizedMetric sizedMetric;
+        private boolean merged;
+
+        Aggregate(SizedMetric sizedMetric) {
+            this.sizedMetric = sizedMetric;
+        }
+
+        boolean isCounter() {
+            return sizedMetric.getMetric().getMetricValue().isSetCount();
+        }
+
+        void addCount(Metric metric) {
+            Metric aggregated = sizedMetric.getMetric();
+            CountValue count = aggregated.getMetricValue().getCount();
+
+            count.setI64Value(count.getI64Value() + metric.getMetricValue().getCount().getI64Value());
+            aggregated.setTimestamp(metric.getTimestamp());
+
+            merged = true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3;
+
+import com.uber.m3.thrift.gen.Metric;
+import com.uber.m3.thrift.gen.MetricTag;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Key identifying the series by its name and tags, along with the
+ * series id (hash) precomputed upon creation.
+ */
+final class SeriesKey {
+    private final String name;
+    private final Set<MetricTag> tags;
+    private final long id;
+
+    SeriesKey(String name, Set<MetricTag> tags) {
+        this.name = name;
+        this.tags = tags != null ? tags : Collections.emptySet();
+        this.id = M3Reporter.seriesHash(name, tags);
+    }
+
+    static SeriesKey of(Metric metric) {
+        return new SeriesKey(metric.getName(), metric.getTags());
+    }
+
+    long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+
+        if (!(other instanceof SeriesKey)) {
+            return false;
+        }
+
+        SeriesKey that = (SeriesKey) other;
+
+        // NOTE: Tags are compared irrespective of their order
+        return id == that.id
+            && name.equals(that.name)
+            && tags.size() == that.tags.size()
+            && tags.containsAll(that.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+}
@@ -0,0 +1,147 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Reads (host-wide) UDP error counters exposed by Linux in {@code /proc/net/snmp},
+ * tracking their increments in between subsequent reads.
+ */
+final class UdpErrorCounters {
+    static final Path PROC_NET_SNMP = Paths.get("/proc/net/snmp");
+
+    static final String SNDBUF_ERRORS = "SndbufErrors";
+    static final String RCVBUF_ERRORS = "RcvbufErrors";
+    static final String IN_ERRORS = "InErrors";
+
+    // Counters being tracked
+    static final String[] COUNTERS = {SNDBUF_ERRORS, RCVBUF_ERRORS, IN_ERRORS};
+
+    private static final String UDP_PREFIX = "Udp:";
+
+    private final Path path;
+
+    @Nullable
+    private long[] last;
+
+    UdpErrorCounters() {
+        this(PROC_NET_SNMP);
+    }
+
+    UdpErrorCounters(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns whether the counters are available (ie this is Linux).
+     */
+    boolean isAvailable() {
+        return Files.isReadable(path);
+    }
+
+    /**
+     * Reads the counters, returning increments of each of the {@link #COUNTERS} since the previous
+     * read, or null if those are not available (or, it's the first read).
+     */
+    @Nullable
+    long[] poll() {
+        long[] current;
+        try {
+            current = parse(Files.readAllLines(path, StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (current == null) {
+            return null;
+        }
+
+        long[] previous = last;
+        last = current;
+
+        if (previous == null) {
+            return null;
+        }
+
+        long[] increments = new long[COUNTERS.length];
+        for (int i = 0; i < COUNTERS.length; ++i) {
+            // Guard against counters being reset
+            increments[i] = Math.max(0, current[i] - previous[i]);
+        }
+
+        return increments;
+    }
+
+    /**
+     * Parses values of the {@link #COUNTERS} from {@code /proc/net/snmp} formatted lines,
+     * where the "Udp:" line with the names of the counters is followed by the one with their values.
+     */
+    @Nullable
+    static long[] parse(List<String> lines) {
+        for (int i = 0; i + 1 < lines.size(); ++i) {
+            String header = lines.get(i);
+            String values = lines.get(i + 1);
+
+            if (!header.startsWith(UDP_PREFIX) || !values.startsWith(UDP_PREFIX)) {
+                continue;
+            }
+
+            String[] names = header.trim().split("\\s+");
+            String[] numbers = values.trim().split("\\s+");
+
+            long[] counters = new long[COUNTERS.length];
+
+            for (int c = 0; c < COUNTERS.length; ++c) {
+                int index = indexOf(names, COUNTERS[c]);
+                if (index < 0 || index >= numbers.length) {
+                    return null;
+                }
+
+                try {
+                    counters[c] = Long.parseLong(numbers[index]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+
+            return counters;
+        }
+
+        return null;
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; ++i) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -44,6 +44,18 @@ public class TMultiUdpClient extends TTransport implements AutoCloseable {
         }
     }
 
+    /**
+     * Constructs a transport sending to all of the given transports.
+     * @param transports the transports to send to
+     */
+    public TMultiUdpClient(TTransport[] transports) {
+        if (transports == null || transports.length == 0) {
+            throw new IllegalArgumentException("Must provide at least one TTransport");
+        }
+
+        this.transports = transports;
+    }
+
     @Override
     public boolean isOpen() {
         for (TTransport transport : transports) {
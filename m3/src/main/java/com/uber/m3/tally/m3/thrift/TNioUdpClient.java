@@ -0,0 +1,222 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.thrift;
+
+import org.apache.http.annotation.NotThreadSafe;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A client for sending data via Thrift UDP, backed by the connected non-blocking {@link DatagramChannel}.
+ *
+ * Unlike {@link TUdpClient}, written payload is accumulated in the direct {@link ByteBuffer} re-used
+ * for every datagram, sparing the allocation of the {@code DatagramPacket} as well as the copy
+ * of the heap buffer into the native one on every send.
+ *
+ * Since the channel is non-blocking, send might not succeed when the socket's send buffer is full:
+ * in that case it's retried up to the configured number of times (backing off between the attempts),
+ * after which the datagram is dropped. Both of these events are accounted for in the respective counters.
+ *
+ * NOTE: This transport is NOT thread-safe, and is expected to be used by a single thread
+ *       (like the {@code M3Reporter}'s processor)
+ */
+@NotThreadSafe
+public class TNioUdpClient extends TTransport implements AutoCloseable {
+    public static final int DEFAULT_MAX_SEND_RETRIES = 3;
+    public static final long DEFAULT_SEND_RETRY_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final Logger LOG = LoggerFactory.getLogger(TNioUdpClient.class);
+
+    private final SocketAddress socketAddress;
+    private final DatagramChannel channel;
+
+    private final int maxSendRetries;
+    private final long sendRetryBackoffNanos;
+
+    private final ByteBuffer writeBuffer;
+
+    private final AtomicLong sendQueueFullCount = new AtomicLong();
+    private final AtomicLong droppedPacketsCount = new AtomicLong();
+    private final AtomicLong sentPacketsCount = new AtomicLong();
+
+    // NOTE: We're using dedicated boolean flag to avoid invoking {@link DatagramChannel#isOpen} directly
+    //       on the hot-path, since it's checking the state of the channel under lock.
+    private volatile boolean open;
+
+    /**
+     * Constructs a UDP client with the given host and port, using default retry policy.
+     * @param socketAddress the {@code SocketAddress} for this transport
+     * @throws IOException if the underlying channel cannot be opened
+     */
+    public TNioUdpClient(SocketAddress socketAddress) throws IOException {
+        this(socketAddress, DEFAULT_MAX_SEND_RETRIES, DEFAULT_SEND_RETRY_BACKOFF_NANOS);
+    }
+
+    /**
+     * Constructs a UDP client with the given host and port.
+     * @param socketAddress the {@code SocketAddress} for this transport
+     * @param maxSendRetries number of times send is retried when the socket's send buffer is full,
+     *                       before the datagram is dropped
+     * @param sendRetryBackoffNanos duration (in nanoseconds) to back off for in between retries
+     * @throws IOException if the underlying channel cannot be opened
+     */
+    public TNioUdpClient(SocketAddress socketAddress, int maxSendRetries, long sendRetryBackoffNanos) throws IOException {
+        if (maxSendRetries < 0) {
+            throw new IllegalArgumentException("maxSendRetries must be non-negative");
+        }
+
+        this.socketAddress = socketAddress;
+        this.maxSendRetries = maxSendRetries;
+        this.sendRetryBackoffNanos = sendRetryBackoffNanos;
+
+        this.channel = DatagramChannel.open();
+        this.writeBuffer = ByteBuffer.allocateDirect(TUdpTransport.PACKET_DATA_PAYLOAD_MAX_SIZE);
+        this.open = false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void open() throws TTransportException {
+        try {
+            channel.configureBlocking(false);
+            channel.connect(socketAddress);
+            open = true;
+
+            LOG.info("UDP channel has been opened");
+        } catch (IOException e) {
+            throw new TTransportException("Error opening transport", e);
+        }
+    }
+
+    /**
+     * Sets the size of the underlying socket's send buffer ({@code SO_SNDBUF}).
+     * @param sendBufferSizeBytes the size of the buffer in bytes
+     * @throws IOException if the option cannot be set
+     */
+    public void setSendBufferSize(int sendBufferSizeBytes) throws IOException {
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSizeBytes);
+    }
+
+    @Override
+    public void close() {
+        open = false;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close UDP channel", e);
+        }
+
+        LOG.info("UDP channel has been closed");
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws TTransportException {
+        throw new UnsupportedOperationException("Reading from the client transport is not supported");
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws TTransportException {
+        if (!isOpen()) {
+            throw new TTransportException(TTransportException.NOT_OPEN);
+        }
+
+        if (length > writeBuffer.remaining()) {
+            throw new TTransportException(
+                String.format("Message size too large: %d is greater than available size %d",
+                    length,
+                    writeBuffer.remaining()
+                )
+            );
+        }
+
+        writeBuffer.put(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws TTransportException {
+        if (writeBuffer.position() == 0) {
+            return;
+        }
+
+        writeBuffer.flip();
+
+        try {
+            for (int attempt = 0; ; ++attempt) {
+                // NOTE: Datagram is sent atomically: either all of it or nothing
+                //       (when there's no room in the socket's send buffer)
+                if (channel.write(writeBuffer) > 0) {
+                    sentPacketsCount.incrementAndGet();
+                    return;
+                }
+
+                sendQueueFullCount.incrementAndGet();
+
+                if (attempt >= maxSendRetries) {
+                    droppedPacketsCount.incrementAndGet();
+                    return;
+                }
+
+                LockSupport.parkNanos(sendRetryBackoffNanos);
+            }
+        } catch (IOException e) {
+            throw new TTransportException(e);
+        } finally {
+            writeBuffer.clear();
+        }
+    }
+
+    /**
+     * Returns the number of times send has not succeeded due to the socket's send buffer being full.
+     */
+    public long getSendQueueFullCount() {
+        return sendQueueFullCount.get();
+    }
+
+    /**
+     * Returns the number of datagrams dropped after exhausting all of the send retries.
+     */
+    public long getDroppedPacketsCount() {
+        return droppedPacketsCount.get();
+    }
+
+    /**
+     * Returns the number of datagrams successfully sent.
+     */
+    public long getSentPacketsCount() {
+        return sentPacketsCount.get();
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.thrift;
+
+import org.apache.http.annotation.NotThreadSafe;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Thrift transport pacing datagrams sent through the underlying transport to the
+ * configured rate of bytes per second, to avoid overflowing socket's send buffer (or NIC queues)
+ * with the bursts of datagrams.
+ */
+@NotThreadSafe
+public class TPacingTransport extends TTransport implements AutoCloseable {
+    private final TTransport transport;
+    private final TokenBucketPacer pacer;
+
+    // Number of bytes written since the last flush
+    private long pendingBytes;
+
+    /**
+     * Constructs a pacing transport.
+     * @param transport the underlying transport
+     * @param bytesPerSecond the rate of bytes per second to pace sending to
+     * @param burstBytes the maximum number of bytes sent in a burst, at once
+     */
+    public TPacingTransport(TTransport transport, long bytesPerSecond, long burstBytes) {
+        this.transport = transport;
+        this.pacer = new TokenBucketPacer(bytesPerSecond, burstBytes);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    @Override
+    public void open() throws TTransportException {
+        transport.open();
+    }
+
+    @Override
+    public void close() {
+        transport.close();
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws TTransportException {
+        return transport.read(bytes, offset, length);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws TTransportException {
+        transport.write(bytes, offset, length);
+        pendingBytes += length;
+    }
+
+    @Override
+    public void flush() throws TTransportException {
+        if (pendingBytes > 0) {
+            pacer.acquire(pendingBytes);
+            pendingBytes = 0;
+        }
+
+        transport.flush();
+    }
+
+    /**
+     * Returns the total time (in milliseconds) sending has been delayed by.
+     */
+    public long getThrottledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(pacer.getThrottledNanos());
+    }
+}
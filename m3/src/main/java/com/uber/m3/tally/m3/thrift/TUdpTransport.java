@@ -88,6 +88,15 @@ public abstract class TUdpTransport extends TTransport implements AutoCloseable
     @Override
     public abstract void open() throws TTransportException;
 
+    /**
+     * Sets the size of the underlying socket's send buffer ({@code SO_SNDBUF}).
+     * @param sendBufferSizeBytes the size of the buffer in bytes
+     * @throws SocketException if the option cannot be set
+     */
+    public void setSendBufferSize(int sendBufferSizeBytes) throws SocketException {
+        socket.setSendBufferSize(sendBufferSizeBytes);
+    }
+
     @Override
     public void close() {
         socket.close();
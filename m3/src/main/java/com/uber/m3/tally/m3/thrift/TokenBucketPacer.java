@@ -0,0 +1,114 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.thrift;
+
+import org.apache.http.annotation.NotThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket pacing the sender to the configured rate (of bytes, or any other units
+ * per second), while allowing bursts of up to the bucket's capacity.
+ *
+ * NOTE: Acquiring more permits than there are tokens available puts the bucket into debt,
+ *       which subsequent acquisitions have to wait out. This way, permits exceeding the
+ *       bucket's capacity (ie packets larger than the burst) could still be acquired.
+ */
+@NotThreadSafe
+final class TokenBucketPacer {
+    private final double permitsPerNano;
+    private final double capacity;
+
+    private final LongSupplier nanoClock;
+    private final LongConsumer parker;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    private long throttledNanos;
+
+    TokenBucketPacer(long permitsPerSecond, long capacity) {
+        this(permitsPerSecond, capacity, System::nanoTime, LockSupport::parkNanos);
+    }
+
+    // NOTE: This is used in tests
+    TokenBucketPacer(long permitsPerSecond, long capacity, LongSupplier nanoClock, LongConsumer parker) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.permitsPerNano = (double) permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.nanoClock = nanoClock;
+        this.parker = parker;
+
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Acquires provided number of permits, blocking until the bucket is out of debt.
+     * Interrupted thread (e.g. once the reporter is closing) acquires them without waiting.
+     */
+    void acquire(long permits) {
+        refill();
+
+        while (tokens < 0) {
+            // NOTE: Parking returns right away once interrupted, hence would spin instead.
+            //       The interrupt status is preserved for the caller
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            long parkStartNanos = lastRefillNanos;
+
+            parker.accept((long) Math.ceil(-tokens / permitsPerNano));
+
+            refill();
+
+            // Parking may return early (or late), hence the time actually spent is accounted for
+            throttledNanos += lastRefillNanos - parkStartNanos;
+        }
+
+        tokens -= permits;
+    }
+
+    /**
+     * Returns total time (in nanoseconds) acquisitions have been waiting for.
+     */
+    long getThrottledNanos() {
+        return throttledNanos;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+    }
+}
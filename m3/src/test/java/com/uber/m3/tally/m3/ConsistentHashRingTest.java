@@ -0,0 +1,99 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+    private static final int KEYS_COUNT = 10_000;
+
+    private static final String[] ENDPOINTS = {
+        "10.0.0.1:9052",
+        "10.0.0.2:9052",
+        "10.0.0.3:9052",
+        "10.0.0.4:9052",
+    };
+
+    @Test
+    public void distributesEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(ENDPOINTS);
+
+        int[] counts = new int[ENDPOINTS.length];
+        for (int i = 0; i < KEYS_COUNT; ++i) {
+            counts[ring.primaryFor(ConsistentHashRing.hash("series-" + i))]++;
+        }
+
+        for (int count : counts) {
+            // Every endpoint should own 25% of the keys, give or take
+            assertTrue(count > KEYS_COUNT / 8);
+            assertTrue(count < KEYS_COUNT / 2);
+        }
+    }
+
+    @Test
+    public void remapsOnlyRemovedEndpointKeys() {
+        ConsistentHashRing ring = new ConsistentHashRing(ENDPOINTS);
+        ConsistentHashRing shrunkRing = new ConsistentHashRing(
+            new String[] {ENDPOINTS[0], ENDPOINTS[1], ENDPOINTS[2]}
+        );
+
+        for (int i = 0; i < KEYS_COUNT; ++i) {
+            long hash = ConsistentHashRing.hash("series-" + i);
+
+            int endpoint = ring.primaryFor(hash);
+            if (endpoint != 3) {
+                assertEquals(endpoint, shrunkRing.primaryFor(hash));
+            }
+        }
+    }
+
+    @Test
+    public void secondaryDiffersFromPrimary() {
+        ConsistentHashRing ring = new ConsistentHashRing(ENDPOINTS);
+
+        for (int i = 0; i < KEYS_COUNT; ++i) {
+            long hash = ConsistentHashRing.hash("series-" + i);
+
+            int secondary = ring.secondaryFor(hash);
+            assertTrue(secondary >= 0 && secondary < ENDPOINTS.length);
+            assertNotEquals(ring.primaryFor(hash), secondary);
+        }
+    }
+
+    @Test
+    public void singleEndpoint() {
+        ConsistentHashRing ring = new ConsistentHashRing(new String[] {ENDPOINTS[0]});
+
+        assertEquals(1, ring.size());
+        assertEquals(0, ring.primaryFor(Long.MIN_VALUE));
+        assertEquals(0, ring.primaryFor(Long.MAX_VALUE));
+        assertEquals(-1, ring.secondaryFor(42));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noEndpoints() {
+        new ConsistentHashRing(new String[0]);
+    }
+}
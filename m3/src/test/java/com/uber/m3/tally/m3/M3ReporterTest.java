@@ -45,9 +45,12 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -499,7 +502,205 @@ public class M3ReporterTest {
         assertEquals(CapableOf.REPORTING_TAGGING, reporter.capabilities());
     }
 
+    @Test
+    public void reporterIntervalTimestamps() throws InterruptedException {
+        long intervalTimestampNanos = 1_600_000_000L * Duration.NANOS_PER_SECOND;
+
+        M3Reporter.Builder reporterBuilder =
+                new M3Reporter.Builder(socketAddress)
+                    .service("test-service")
+                    .commonTags(DEFAULT_TAGS)
+                    .intervalTimestamps(true);
+
+        long before = System.currentTimeMillis() * Duration.NANOS_PER_MILLI;
+
+        List<Metric> receivedMetrics;
+
+        try (final MockM3Server server = bootM3Collector(5)) {
+            try (final M3Reporter reporter = reporterBuilder.build()) {
+                reporter.beginInterval(intervalTimestampNanos);
+
+                reporter.reportCounter("my-counter", null, 1);
+                reporter.reportGauge("my-gauge", null, 4.2);
+                reporter.reportTimer("my-timer", null, Duration.ofMillis(5));
+
+                // Another root scope sharing the reporter, within an interval of its own
+                Thread otherRoot = new Thread(() -> {
+                    reporter.beginInterval(intervalTimestampNanos + Duration.NANOS_PER_SECOND);
+                    reporter.reportCounter("other-counter", null, 2);
+                    reporter.flush();
+                });
+                otherRoot.start();
+                otherRoot.join();
+
+                reporter.flush();
+
+                reporter.reportCounter("late-counter", null, 3);
+
+                reporter.close();
+
+                server.awaitReceiving(MAX_WAIT_TIMEOUT);
+
+                receivedMetrics = server.getService().snapshotMetrics();
+            }
+        }
+
+        assertEquals(5, receivedMetrics.size());
+
+        Map<String, Long> timestamps = new HashMap<>();
+        for (Metric metric : receivedMetrics) {
+            timestamps.put(metric.getName(), metric.getTimestamp());
+        }
+
+        // Values reported by the report loop carry the interval's timestamp
+        assertEquals(intervalTimestampNanos, (long) timestamps.get("my-counter"));
+        assertEquals(intervalTimestampNanos, (long) timestamps.get("my-gauge"));
+        assertEquals(intervalTimestampNanos + Duration.NANOS_PER_SECOND, (long) timestamps.get("other-counter"));
+
+        // While the timers, as well as values reported past the interval, carry the timestamp of the coarse clock
+        long now = System.currentTimeMillis() * Duration.NANOS_PER_MILLI;
+
+        for (String name : Arrays.asList("my-timer", "late-counter")) {
+            long timestamp = timestamps.get(name);
+            assertTrue(timestamp >= before - M3Reporter.CLOCK_TICK_PERIOD.getNanos());
+            assertTrue(timestamp <= now);
+        }
+    }
+
+    @Test
+    public void reporterPreAggregation() throws InterruptedException {
+        M3Reporter.Builder reporterBuilder =
+                new M3Reporter.Builder(socketAddress)
+                    .service("test-service")
+                    .commonTags(DEFAULT_TAGS)
+                    .preAggregation(true)
+                    // Make sure aggregation window is only closed upon flush
+                    .maxProcessorWaitUntilFlushMillis(1_000_000);
+
+        List<Metric> receivedMetrics;
+
+        try (final MockM3Server server = bootM3Collector(2)) {
+            try (final M3Reporter reporter = reporterBuilder.build()) {
+                reporter.reportCounter("my-counter", ImmutableMap.of("a", "1"), 1);
+                reporter.reportCounter("my-counter", ImmutableMap.of("a", "1"), 2);
+                reporter.reportCounter("my-counter", ImmutableMap.of("a", "2"), 3);
+                reporter.reportCounter("my-counter", ImmutableMap.of("a", "1"), 4);
+
+                reporter.close();
+
+                server.awaitReceiving(MAX_WAIT_TIMEOUT);
+
+                receivedMetrics = server.getService().snapshotMetrics();
+            }
+        }
+
+        assertEquals(2, receivedMetrics.size());
+        assertEquals(7, receivedMetrics.get(0).getMetricValue().getCount().getI64Value());
+        assertEquals(3, receivedMetrics.get(1).getMetricValue().getCount().getI64Value());
+    }
+
+    @Test
+    public void reporterShardedEndpoints() throws InterruptedException {
+        SocketAddress[] endpoints = {
+            new InetSocketAddress("127.0.0.1", 12346),
+            new InetSocketAddress("127.0.0.1", 12347),
+        };
+
+        int seriesCount = 20;
+
+        M3Reporter.Builder reporterBuilder =
+                new M3Reporter.Builder(endpoints)
+                    .service("test-service")
+                    .commonTags(DEFAULT_TAGS)
+                    .shardEndpoints(true);
+
+        List<Metric> firstMetrics;
+        List<Metric> secondMetrics;
+
+        // NOTE: Since series are sharded, it's not known upfront how many of them each
+        //       of the collectors will receive, therefore we're awaiting for all of them
+        //       to be received in total
+        try (final MockM3Server first = bootM3Collector(0, endpoints[0]);
+             final MockM3Server second = bootM3Collector(0, endpoints[1])) {
+            try (final M3Reporter reporter = reporterBuilder.build()) {
+                for (int i = 0; i < seriesCount; ++i) {
+                    reporter.reportCounter("my-counter-" + i, ImmutableMap.of("shard", "test"), 1);
+                    reporter.reportCounter("my-counter-" + i, ImmutableMap.of("shard", "test"), 2);
+                }
+
+                reporter.close();
+            }
+
+            long deadline = System.nanoTime() + MAX_WAIT_TIMEOUT.toNanos();
+            do {
+                Thread.sleep(10);
+
+                firstMetrics = first.getService().snapshotMetrics();
+                secondMetrics = second.getService().snapshotMetrics();
+            } while (firstMetrics.size() + secondMetrics.size() < seriesCount * 2 && System.nanoTime() < deadline);
+        }
+
+        assertEquals(seriesCount * 2, firstMetrics.size() + secondMetrics.size());
+
+        // Every series should be routed to just one of the endpoints
+        List<String> secondNames = secondMetrics.stream()
+            .map(Metric::getName)
+            .collect(Collectors.toList());
+
+        for (Metric metric : firstMetrics) {
+            assertFalse(secondNames.contains(metric.getName()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderMirroringWithoutSharding() {
+        new M3Reporter.Builder(socketAddress)
+            .service("test-service")
+            .commonTags(DEFAULT_TAGS)
+            .mirrorToSecondaryEndpoint(true)
+            .build();
+    }
+
+    @Test
+    public void seriesHashIsTagsOrderIndependent() {
+        ImmutableMap<String, String> tags = new ImmutableMap.Builder<String, String>(2)
+                .put("a", "1")
+                .put("b", "2")
+                .build();
+        ImmutableMap<String, String> reorderedTags = new ImmutableMap.Builder<String, String>(2)
+                .put("b", "2")
+                .put("a", "1")
+                .build();
+
+        assertEquals(
+            M3Reporter.seriesHash("series", toMetricTags(tags)),
+            M3Reporter.seriesHash("series", toMetricTags(reorderedTags))
+        );
+        assertFalse(
+            M3Reporter.seriesHash("series", toMetricTags(tags))
+                == M3Reporter.seriesHash("other-series", toMetricTags(tags))
+        );
+        assertFalse(
+            M3Reporter.seriesHash("series", toMetricTags(tags))
+                == M3Reporter.seriesHash("series", toMetricTags(ImmutableMap.of("a", "2", "b", "1")))
+        );
+    }
+
+    private static Set<MetricTag> toMetricTags(Map<String, String> tags) {
+        Set<MetricTag> metricTags = new LinkedHashSet<>();
+
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            metricTags.add(new MetricTag(tag.getKey()).setTagValue(tag.getValue()));
+        }
+
+        return metricTags;
+    }
+
     private static MockM3Server bootM3Collector(int expectedMetricsCount) throws InterruptedException {
+        return bootM3Collector(expectedMetricsCount, socketAddress);
+    }
+
+    private static MockM3Server bootM3Collector(int expectedMetricsCount, SocketAddress socketAddress) throws InterruptedException {
         final MockM3Server server = new MockM3Server(expectedMetricsCount, socketAddress);
         new Thread(server::serve).start();
         server.awaitStarting();
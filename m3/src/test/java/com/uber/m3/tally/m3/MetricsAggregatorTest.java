@@ -0,0 +1,127 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3;
+
+import com.uber.m3.thrift.gen.CountValue;
+import com.uber.m3.thrift.gen.GaugeValue;
+import com.uber.m3.thrift.gen.Metric;
+import com.uber.m3.thrift.gen.MetricTag;
+import com.uber.m3.thrift.gen.MetricValue;
+import com.uber.m3.thrift.gen.TimerValue;
+import com.uber.m3.util.ListSet;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsAggregatorTest {
+    private static final double EPSILON = 1e-9;
+
+    private final MetricsAggregator aggregator = new MetricsAggregator(metric -> 42);
+
+    @Test
+    public void sumsCounters() {
+        assertTrue(aggregator.add(counter("counter", 1, tags("a", "1", "b", "2"))));
+        assertTrue(aggregator.add(counter("counter", 2, tags("b", "2", "a", "1"))));
+        assertTrue(aggregator.add(counter("counter", 3, tags("a", "1", "b", "3"))));
+
+        List<SizedMetric> metrics = aggregator.drain();
+
+        assertEquals(2, metrics.size());
+        assertEquals(3, metrics.get(0).getMetric().getMetricValue().getCount().getI64Value());
+        assertEquals(3, metrics.get(1).getMetric().getMetricValue().getCount().getI64Value());
+
+        // Size of the merged counter is re-evaluated
+        assertEquals(42, metrics.get(0).getSize());
+        assertEquals(1, metrics.get(1).getSize());
+
+        assertTrue(aggregator.isEmpty());
+    }
+
+    @Test
+    public void retainsLastGauge() {
+        assertTrue(aggregator.add(gauge("gauge", 1.5)));
+        assertTrue(aggregator.add(gauge("gauge", 2.5)));
+        assertTrue(aggregator.add(gauge("other-gauge", 3.5)));
+
+        List<SizedMetric> metrics = aggregator.drain();
+
+        assertEquals(2, metrics.size());
+        assertEquals(2.5, metrics.get(0).getMetric().getMetricValue().getGauge().getDValue(), EPSILON);
+        assertEquals(3.5, metrics.get(1).getMetric().getMetricValue().getGauge().getDValue(), EPSILON);
+    }
+
+    @Test
+    public void rejectsTimers() {
+        TimerValue timerValue = new TimerValue();
+        timerValue.setI64Value(10);
+
+        MetricValue metricValue = new MetricValue();
+        metricValue.setTimer(timerValue);
+
+        Metric metric = new Metric("timer");
+        metric.setMetricValue(metricValue);
+
+        assertFalse(aggregator.add(new SizedMetric(metric, 1)));
+        assertTrue(aggregator.isEmpty());
+    }
+
+    private static SizedMetric counter(String name, long value, Set<MetricTag> tags) {
+        CountValue countValue = new CountValue();
+        countValue.setI64Value(value);
+
+        MetricValue metricValue = new MetricValue();
+        metricValue.setCount(countValue);
+
+        Metric metric = new Metric(name);
+        metric.setTags(tags);
+        metric.setMetricValue(metricValue);
+
+        return new SizedMetric(metric, 1);
+    }
+
+    private static SizedMetric gauge(String name, double value) {
+        GaugeValue gaugeValue = new GaugeValue();
+        gaugeValue.setDValue(value);
+
+        MetricValue metricValue = new MetricValue();
+        metricValue.setGauge(gaugeValue);
+
+        Metric metric = new Metric(name);
+        metric.setMetricValue(metricValue);
+
+        return new SizedMetric(metric, 1);
+    }
+
+    private static Set<MetricTag> tags(String... keyValues) {
+        Set<MetricTag> tags = new ListSet<>();
+
+        for (int i = 0; i < keyValues.length; i += 2) {
+            tags.add(new MetricTag(keyValues[i]).setTagValue(keyValues[i + 1]));
+        }
+
+        return tags;
+    }
+}
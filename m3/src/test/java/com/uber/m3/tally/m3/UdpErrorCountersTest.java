@@ -0,0 +1,91 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UdpErrorCountersTest {
+    private static final String IP_HEADER = "Ip: Forwarding DefaultTTL InReceives";
+    private static final String IP_VALUES = "Ip: 1 64 12345";
+    private static final String UDP_HEADER =
+        "Udp: InDatagrams NoPorts InErrors OutDatagrams RcvbufErrors SndbufErrors InCsumErrors IgnoredMulti";
+
+    @Test
+    public void parse() {
+        long[] counters = UdpErrorCounters.parse(Arrays.asList(
+            IP_HEADER,
+            IP_VALUES,
+            UDP_HEADER,
+            "Udp: 100 0 3 200 2 1 0 0"
+        ));
+
+        // SndbufErrors, RcvbufErrors, InErrors
+        assertArrayEquals(new long[] {1, 2, 3}, counters);
+    }
+
+    @Test
+    public void parseMissing() {
+        assertNull(UdpErrorCounters.parse(Collections.emptyList()));
+        assertNull(UdpErrorCounters.parse(Arrays.asList(IP_HEADER, IP_VALUES)));
+        assertNull(UdpErrorCounters.parse(Arrays.asList("Udp: InDatagrams NoPorts", "Udp: 1 2")));
+    }
+
+    @Test
+    public void poll() throws IOException {
+        Path path = Files.createTempFile("snmp", null);
+
+        try {
+            UdpErrorCounters counters = new UdpErrorCounters(path);
+            assertTrue(counters.isAvailable());
+
+            write(path, "Udp: 100 0 3 200 2 1 0 0");
+
+            // First read only establishes the baseline
+            assertNull(counters.poll());
+
+            write(path, "Udp: 150 0 4 300 2 11 0 0");
+            assertArrayEquals(new long[] {10, 0, 1}, counters.poll());
+
+            write(path, "Udp: 150 0 4 300 2 11 0 0");
+            assertArrayEquals(new long[] {0, 0, 0}, counters.poll());
+        } finally {
+            Files.delete(path);
+        }
+
+        assertFalse(new UdpErrorCounters(path).isAvailable());
+    }
+
+    private static void write(Path path, String udpValues) throws IOException {
+        Files.write(path, Arrays.asList(IP_HEADER, IP_VALUES, UDP_HEADER, udpValues), StandardCharsets.US_ASCII);
+    }
+}
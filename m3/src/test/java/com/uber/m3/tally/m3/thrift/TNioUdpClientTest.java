@@ -0,0 +1,105 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.thrift;
+
+import org.apache.thrift.transport.TTransportException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TNioUdpClientTest {
+    private DatagramChannel receiver;
+    private TNioUdpClient client;
+
+    @Before
+    public void setUp() throws IOException, TTransportException {
+        receiver = DatagramChannel.open();
+        receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+
+        client = new TNioUdpClient(receiver.getLocalAddress());
+        client.open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        receiver.close();
+    }
+
+    @Test
+    public void testWritingAfterFlushingSequence() throws TTransportException, IOException {
+        String[] payloads = {"0xDEEDDEED", "0xABBAABBA"};
+
+        for (String payload : payloads) {
+            // Write payload in several chunks, to make sure they're accumulated into a single datagram
+            byte[] bytes = payload.getBytes(StandardCharsets.US_ASCII);
+            client.write(bytes, 0, 4);
+            client.write(bytes, 4, bytes.length - 4);
+            client.flush();
+
+            assertEquals(payload, receive());
+        }
+
+        assertEquals(payloads.length, client.getSentPacketsCount());
+        assertEquals(0, client.getSendQueueFullCount());
+        assertEquals(0, client.getDroppedPacketsCount());
+    }
+
+    @Test
+    public void testFlushingEmptyBuffer() throws TTransportException {
+        client.flush();
+
+        assertEquals(0, client.getSentPacketsCount());
+    }
+
+    @Test(expected = TTransportException.class)
+    public void testWritingTooLargeMessage() throws TTransportException {
+        client.write(new byte[TUdpTransport.PACKET_DATA_PAYLOAD_MAX_SIZE + 1]);
+    }
+
+    @Test(expected = TTransportException.class)
+    public void testWritingAfterClose() throws TTransportException {
+        client.close();
+
+        assertFalse(client.isOpen());
+
+        client.write(new byte[1]);
+    }
+
+    private String receive() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TUdpTransport.PACKET_DATA_PAYLOAD_MAX_SIZE);
+
+        assertTrue(receiver.receive(buffer) != null);
+        buffer.flip();
+
+        return StandardCharsets.US_ASCII.decode(buffer).toString();
+    }
+}
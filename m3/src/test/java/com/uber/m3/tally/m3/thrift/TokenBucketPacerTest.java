@@ -0,0 +1,120 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.m3.thrift;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketPacerTest {
+    private long nanos = 0;
+
+    @Test
+    public void pacesToRate() {
+        // 1000 bytes per second, with burst of 100 bytes
+        TokenBucketPacer pacer = new TokenBucketPacer(1_000, 100, () -> nanos, this::park);
+
+        // Burst is let through right away
+        pacer.acquire(100);
+        assertEquals(0, nanos);
+
+        // Subsequent acquisitions are paced
+        pacer.acquire(100);
+        pacer.acquire(100);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), nanos);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), pacer.getThrottledNanos());
+    }
+
+    @Test
+    public void acquiresMoreThanCapacity() {
+        TokenBucketPacer pacer = new TokenBucketPacer(1_000, 100, () -> nanos, this::park);
+
+        // Acquiring more than the capacity puts bucket into debt...
+        pacer.acquire(500);
+        assertEquals(0, nanos);
+
+        // ... which has to be waited out by the subsequent acquisition
+        pacer.acquire(1);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(400), nanos);
+    }
+
+    @Test
+    public void refillsUpToCapacity() {
+        TokenBucketPacer pacer = new TokenBucketPacer(1_000, 100, () -> nanos, this::park);
+
+        pacer.acquire(100);
+
+        // Idling for a long time doesn't accumulate tokens above the capacity
+        nanos += TimeUnit.SECONDS.toNanos(10);
+
+        pacer.acquire(100);
+        pacer.acquire(100);
+        pacer.acquire(1);
+
+        assertEquals(TimeUnit.SECONDS.toNanos(10) + TimeUnit.MILLISECONDS.toNanos(100), nanos);
+    }
+
+    @Test
+    public void accountsForTimeActuallyParked() {
+        // Parking returns early, after 30ms no matter the time requested
+        long parkNanos = TimeUnit.MILLISECONDS.toNanos(30);
+        TokenBucketPacer pacer = new TokenBucketPacer(1_000, 100, () -> nanos, waitNanos -> nanos += parkNanos);
+
+        pacer.acquire(200);
+        pacer.acquire(1);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(120), nanos);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(120), pacer.getThrottledNanos());
+    }
+
+    @Test
+    public void interruptedAcquisitionIsNotPaced() {
+        TokenBucketPacer pacer = new TokenBucketPacer(1_000, 100, () -> nanos, this::park);
+
+        pacer.acquire(500);
+
+        Thread.currentThread().interrupt();
+
+        try {
+            pacer.acquire(1);
+
+            assertEquals(0, nanos);
+            assertEquals(0, pacer.getThrottledNanos());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            // Clears the interrupt status
+            Thread.interrupted();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRate() {
+        new TokenBucketPacer(0, 100);
+    }
+
+    private void park(long waitNanos) {
+        nanos += waitNanos;
+    }
+}
@@ -68,6 +68,10 @@ import java.util.stream.Collectors;
  *       <li>{@link Builder#defaultBuckets(double[])} sets
  *       {@link io.prometheus.client.Histogram.Builder#buckets(double...)} </li>
  *   </ul>
+ * Histograms of {@link com.uber.m3.tally.ValueBuckets#base2Exponential()} buckets are exported as
+ * {@link io.prometheus.client.Histogram}s of their explicit buckets, as the client does not support
+ * native histograms.
+ * <p>
  * Use {@link PrometheusReporter.Builder} to construct {@link PrometheusReporter}.
  * <p>
  * Usage example:
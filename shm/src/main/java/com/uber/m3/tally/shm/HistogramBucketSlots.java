@@ -0,0 +1,157 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.shm;
+
+import com.uber.m3.tally.ImmutableBuckets;
+import com.uber.m3.util.Duration;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Slots of every bucket of a single histogram series, for the particular {@link ImmutableBuckets}
+ * instance, with the bucket's {@link ShmStatsReporter#BUCKET_TAG} labels precomputed and
+ * the slots themselves allocated upon the first report of the bucket.
+ */
+final class HistogramBucketSlots {
+    static final long UNALLOCATED = Long.MIN_VALUE;
+
+    private static final double[] NO_VALUE_BOUNDS = new double[0];
+    private static final long[] NO_DURATION_BOUNDS = new long[0];
+
+    private final ImmutableBuckets buckets;
+
+    // NOTE: Only one pair of the bounds is populated, depending on the type of the buckets
+    private final double[] valueLowerBounds;
+    private final double[] valueUpperBounds;
+
+    private final long[] durationLowerBounds;
+    private final long[] durationUpperBounds;
+
+    private final String[] upperBoundLabels;
+    private final AtomicLongArray offsets;
+
+    private HistogramBucketSlots(
+        ImmutableBuckets buckets,
+        double[] valueLowerBounds,
+        double[] valueUpperBounds,
+        long[] durationLowerBounds,
+        long[] durationUpperBounds,
+        String[] upperBoundLabels
+    ) {
+        this.buckets = buckets;
+        this.valueLowerBounds = valueLowerBounds;
+        this.valueUpperBounds = valueUpperBounds;
+        this.durationLowerBounds = durationLowerBounds;
+        this.durationUpperBounds = durationUpperBounds;
+        this.upperBoundLabels = upperBoundLabels;
+
+        offsets = new AtomicLongArray(upperBoundLabels.length);
+
+        for (int i = 0; i < upperBoundLabels.length; ++i) {
+            offsets.lazySet(i, UNALLOCATED);
+        }
+    }
+
+    static HistogramBucketSlots ofValues(ImmutableBuckets buckets) {
+        int bucketsCount;
+        try {
+            // One extra bucket for [last, +inf)
+            bucketsCount = buckets.getValueUpperBounds().size() + 1;
+        } catch (UnsupportedOperationException e) {
+            return new HistogramBucketSlots(buckets, NO_VALUE_BOUNDS, NO_VALUE_BOUNDS, null, null, new String[0]);
+        }
+
+        double[] lowerBounds = new double[bucketsCount];
+        double[] upperBounds = new double[bucketsCount];
+        String[] labels = new String[bucketsCount];
+
+        for (int i = 0; i < bucketsCount; ++i) {
+            lowerBounds[i] = buckets.getValueLowerBoundFor(i);
+            upperBounds[i] = buckets.getValueUpperBoundFor(i);
+            labels[i] = String.valueOf(upperBounds[i]);
+        }
+
+        return new HistogramBucketSlots(buckets, lowerBounds, upperBounds, null, null, labels);
+    }
+
+    static HistogramBucketSlots ofDurations(ImmutableBuckets buckets) {
+        int bucketsCount;
+        try {
+            bucketsCount = buckets.getDurationUpperBounds().size() + 1;
+        } catch (UnsupportedOperationException e) {
+            return new HistogramBucketSlots(buckets, null, null, NO_DURATION_BOUNDS, NO_DURATION_BOUNDS, new String[0]);
+        }
+
+        long[] lowerBounds = new long[bucketsCount];
+        long[] upperBounds = new long[bucketsCount];
+        String[] labels = new String[bucketsCount];
+
+        for (int i = 0; i < bucketsCount; ++i) {
+            Duration upperBound = buckets.getDurationUpperBoundFor(i);
+
+            lowerBounds[i] = buckets.getDurationLowerBoundFor(i).getNanos();
+            upperBounds[i] = upperBound.getNanos();
+            labels[i] = upperBound.toString();
+        }
+
+        return new HistogramBucketSlots(buckets, null, null, lowerBounds, upperBounds, labels);
+    }
+
+    boolean isFor(ImmutableBuckets buckets) {
+        return this.buckets == buckets;
+    }
+
+    /**
+     * Returns the index of the bucket with the given bounds,
+     * or -1 if those don't designate any of the buckets.
+     */
+    int indexOf(double lowerBound, double upperBound) {
+        int index = Arrays.binarySearch(valueUpperBounds, upperBound);
+
+        return index < 0 || valueLowerBounds[index] != lowerBound ? -1 : index;
+    }
+
+    /**
+     * Returns the index of the bucket with the given bounds,
+     * or -1 if those don't designate any of the buckets.
+     */
+    int indexOf(Duration lowerBound, Duration upperBound) {
+        int index = Arrays.binarySearch(durationUpperBounds, upperBound.getNanos());
+
+        return index < 0 || durationLowerBounds[index] != lowerBound.getNanos() ? -1 : index;
+    }
+
+    String upperBoundLabel(int index) {
+        return upperBoundLabels[index];
+    }
+
+    /**
+     * Returns the offset of the bucket's slot, or {@link #UNALLOCATED} if it's yet to be allocated.
+     */
+    long offset(int index) {
+        return offsets.get(index);
+    }
+
+    void setOffset(int index, long offset) {
+        offsets.set(index, offset);
+    }
+}
@@ -0,0 +1,140 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.shm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Memory-mapped file accessed at absolute offsets, so that it can be concurrently read by
+ * another process.
+ *
+ * Plain accesses to the buffer carry no ordering guarantees, hence writers and readers order
+ * them with {@link #fence()}, e.g. to publish a value only once it's fully written
+ * (see the per-slot sequence in {@link ShmLayout}).
+ */
+final class MappedRegion {
+    // NOTE: Holding on to the buffer keeps the mapping alive
+    private final MappedByteBuffer buffer;
+    private final long size;
+
+    // Written and then read by fence, never holding anything meaningful
+    private volatile int fence;
+
+    private MappedRegion(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.capacity();
+
+        buffer.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates (or truncates an existing) file of the given size and maps it for writing.
+     */
+    static MappedRegion create(Path path, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region can't exceed 2GB, requested: " + size);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            // Truncating first guarantees that the region is zeroed
+            file.setLength(0);
+            file.setLength(size);
+
+            return new MappedRegion(file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    /**
+     * Maps the existing file for reading.
+     */
+    static MappedRegion open(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            return new MappedRegion(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Keeps the accesses preceding the fence from being reordered with the ones following it.
+     */
+    void fence() {
+        // A volatile write followed by a volatile read of the same field orders both the preceding
+        // and the following accesses, as there's no fence of its own in Java 8's public API
+        fence = 0;
+
+        if (fence != 0) {
+            throw new IllegalStateException("Fence is never written but zero");
+        }
+    }
+
+    void putInt(long offset, int value) {
+        buffer.putInt(index(offset, Integer.BYTES), value);
+    }
+
+    int getInt(long offset) {
+        return buffer.getInt(index(offset, Integer.BYTES));
+    }
+
+    void putLong(long offset, long value) {
+        buffer.putLong(index(offset, Long.BYTES), value);
+    }
+
+    long getLong(long offset) {
+        return buffer.getLong(index(offset, Long.BYTES));
+    }
+
+    void putBytes(long offset, byte[] bytes) {
+        int index = index(offset, bytes.length);
+
+        for (int i = 0; i < bytes.length; ++i) {
+            buffer.put(index + i, bytes[i]);
+        }
+    }
+
+    byte[] getBytes(long offset, int length) {
+        int index = index(offset, length);
+        byte[] bytes = new byte[length];
+
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = buffer.get(index + i);
+        }
+
+        return bytes;
+    }
+
+    private int index(long offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IndexOutOfBoundsException(
+                String.format("Access of %d bytes at offset %d is out of region's bounds (%d)", length, offset, size)
+            );
+        }
+
+        return (int) offset;
+    }
+}
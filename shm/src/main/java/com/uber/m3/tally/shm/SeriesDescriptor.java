@@ -0,0 +1,78 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.shm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding of the series' name and tags stored in the slot, see {@link ShmLayout}.
+ */
+final class SeriesDescriptor {
+    private SeriesDescriptor() {
+    }
+
+    static String encode(String name, Map<String, String> tags) {
+        StringBuilder builder = new StringBuilder(name);
+
+        if (tags == null || tags.isEmpty()) {
+            return builder.toString();
+        }
+
+        List<String> keys = new ArrayList<>(tags.keySet());
+        Collections.sort(keys);
+
+        for (String key : keys) {
+            builder.append(ShmLayout.DESCRIPTOR_SEPARATOR)
+                .append(key)
+                .append(ShmLayout.DESCRIPTOR_SEPARATOR)
+                .append(tags.get(key));
+        }
+
+        return builder.toString();
+    }
+
+    static byte[] toBytes(String descriptor) {
+        return descriptor.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String name(byte[] bytes) {
+        String descriptor = new String(bytes, StandardCharsets.UTF_8);
+        int end = descriptor.indexOf(ShmLayout.DESCRIPTOR_SEPARATOR);
+
+        return end < 0 ? descriptor : descriptor.substring(0, end);
+    }
+
+    static Map<String, String> tags(byte[] bytes) {
+        String[] parts = new String(bytes, StandardCharsets.UTF_8).split(String.valueOf(ShmLayout.DESCRIPTOR_SEPARATOR), -1);
+        Map<String, String> tags = new LinkedHashMap<>();
+
+        for (int i = 1; i + 1 < parts.length; i += 2) {
+            tags.put(parts[i], parts[i + 1]);
+        }
+
+        return Collections.unmodifiableMap(tags);
+    }
+}
@@ -0,0 +1,86 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.shm;
+
+/**
+ * Fixed layout of the shared metrics region, consisting of the header followed by fixed-size slots.
+ *
+ * <pre>
+ * Header (64 bytes):
+ *   0: magic (long)          -- written last (after a fence), once the header is fully initialized
+ *   8: version (int)
+ *  12: slot count (int)
+ *  16: slot size (int)
+ *  20: allocated slots (int) -- slots [0, allocated) are published (after a fence) and safe to read
+ *  24: creation timestamp, millis since the epoch (long)
+ *  32: writer's process id (long)
+ *
+ * Slot (slot size bytes, multiple of 64):
+ *   0: metric type (int)
+ *   4: descriptor length (int)
+ *   8: sequence (long)       -- odd while the values are being written, even once those are consistent
+ *  16: value (long)          -- counter/bucket samples, timer's total nanos, or gauge's raw double bits
+ *  24: count (long)          -- number of timer samples
+ *  32: descriptor            -- UTF-8 name and tags, each separated by NUL, tags sorted by key
+ * </pre>
+ *
+ * The value and the count are read the way a seqlock is: the values read in between two reads of
+ * the same even sequence (each separated from the values by a fence) are consistent, otherwise
+ * the read is retried.
+ *
+ * All the values are stored in the native byte order.
+ */
+final class ShmLayout {
+    static final long MAGIC = 0x54414c4c59534d31L;
+    static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 64;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 8;
+    static final int SLOT_COUNT_OFFSET = 12;
+    static final int SLOT_SIZE_OFFSET = 16;
+    static final int ALLOCATED_SLOTS_OFFSET = 20;
+    static final int CREATED_MILLIS_OFFSET = 24;
+    static final int PID_OFFSET = 32;
+
+    static final int SLOT_ALIGNMENT = 64;
+
+    static final int TYPE_OFFSET = 0;
+    static final int DESCRIPTOR_LENGTH_OFFSET = 4;
+    static final int SEQUENCE_OFFSET = 8;
+    static final int VALUE_OFFSET = 16;
+    static final int COUNT_OFFSET = 24;
+    static final int DESCRIPTOR_OFFSET = 32;
+
+    static final char DESCRIPTOR_SEPARATOR = '\0';
+
+    private ShmLayout() {
+    }
+
+    static long regionSize(int slotCount, int slotSize) {
+        return HEADER_SIZE + (long) slotCount * slotSize;
+    }
+
+    static long slotOffset(int slot, int slotSize) {
+        return HEADER_SIZE + (long) slot * slotSize;
+    }
+}
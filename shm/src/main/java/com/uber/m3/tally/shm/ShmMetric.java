@@ -0,0 +1,111 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.shm;
+
+import java.util.Map;
+
+/**
+ * Point-in-time value of a single series read from the shared metrics region.
+ */
+public final class ShmMetric {
+    private final String name;
+    private final Map<String, String> tags;
+    private final Type type;
+    private final long value;
+    private final long count;
+
+    ShmMetric(String name, Map<String, String> tags, Type type, long value, long count) {
+        this.name = name;
+        this.tags = tags;
+        this.type = type;
+        this.value = value;
+        this.count = count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the cumulative value of the series: total of the counter, total samples of the histogram
+     * bucket or total duration of the timer in nanoseconds. For gauges see {@link #getGaugeValue()}.
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the last value of the gauge.
+     */
+    public double getGaugeValue() {
+        return Double.longBitsToDouble(value);
+    }
+
+    /**
+     * Returns the total number of the timer's samples.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "ShmMetric{name='" + name + "', tags=" + tags + ", type=" + type
+            + ", value=" + (type == Type.GAUGE ? getGaugeValue() : value) + ", count=" + count + "}";
+    }
+
+    /**
+     * Type of the series, as stored in the slot.
+     */
+    public enum Type {
+        COUNTER(1),
+        GAUGE(2),
+        TIMER(3),
+        HISTOGRAM_BUCKET(4);
+
+        private final int code;
+
+        Type(int code) {
+            this.code = code;
+        }
+
+        static Type ofCode(int code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        int getCode() {
+            return code;
+        }
+    }
+}
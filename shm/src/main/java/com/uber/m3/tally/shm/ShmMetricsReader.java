@@ -0,0 +1,176 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.shm;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the shared metrics region written by {@link ShmStatsReporter}, possibly from another process.
+ *
+ * Snapshots never block the writer: published slots' descriptors are immutable, and values
+ * are read in between the reads of the slot's sequence, retried while being written. Descriptors are decoded once and cached, making repeated
+ * snapshots cost proportional to the number of series only.
+ *
+ * Instances are not thread-safe.
+ */
+public class ShmMetricsReader implements AutoCloseable {
+    private final MappedRegion region;
+    private final int slotCount;
+    private final int slotSize;
+
+    private final long createdMillis;
+    private final long processId;
+
+    private final List<Slot> slots = new ArrayList<>();
+
+    private ShmMetricsReader(MappedRegion region) {
+        this.region = region;
+
+        if (region.size() < ShmLayout.HEADER_SIZE || region.getLong(ShmLayout.MAGIC_OFFSET) != ShmLayout.MAGIC) {
+            throw new IllegalStateException("Not a shared metrics region, or not initialized yet");
+        }
+
+        // Header is read only once the magic is
+        region.fence();
+
+        int version = region.getInt(ShmLayout.VERSION_OFFSET);
+
+        if (version != ShmLayout.VERSION) {
+            throw new IllegalStateException("Unsupported shared metrics region version: " + version);
+        }
+
+        slotCount = region.getInt(ShmLayout.SLOT_COUNT_OFFSET);
+        slotSize = region.getInt(ShmLayout.SLOT_SIZE_OFFSET);
+        createdMillis = region.getLong(ShmLayout.CREATED_MILLIS_OFFSET);
+        processId = region.getLong(ShmLayout.PID_OFFSET);
+
+        if (region.size() < ShmLayout.regionSize(slotCount, slotSize)) {
+            throw new IllegalStateException("Shared metrics region is truncated");
+        }
+    }
+
+    /**
+     * Opens the region at the given path for reading.
+     *
+     * @param path path of the file backing the region
+     * @return the reader of the region
+     * @throws IOException if the file can't be mapped
+     * @throws IllegalStateException if the file isn't an initialized shared metrics region
+     */
+    public static ShmMetricsReader open(Path path) throws IOException {
+        return new ShmMetricsReader(MappedRegion.open(path));
+    }
+
+    /**
+     * Returns the id of the process writing the region, or -1 if unknown.
+     */
+    public long getProcessId() {
+        return processId;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * Returns current values of all the series published so far.
+     */
+    public List<ShmMetric> snapshot() {
+        int allocatedSlots = Math.min(region.getInt(ShmLayout.ALLOCATED_SLOTS_OFFSET), slotCount);
+
+        // Slots are read only once those are published
+        region.fence();
+
+        for (int i = slots.size(); i < allocatedSlots; ++i) {
+            slots.add(readSlot(ShmLayout.slotOffset(i, slotSize)));
+        }
+
+        List<ShmMetric> snapshot = new ArrayList<>(allocatedSlots);
+
+        for (int i = 0; i < allocatedSlots; ++i) {
+            Slot slot = slots.get(i);
+
+            if (slot.type == null) {
+                continue;
+            }
+
+            snapshot.add(readValues(slot));
+        }
+
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        // No-op: the mapping is released once the reader is garbage-collected
+    }
+
+    private ShmMetric readValues(Slot slot) {
+        while (true) {
+            long sequence = region.getLong(slot.offset + ShmLayout.SEQUENCE_OFFSET);
+            region.fence();
+
+            long value = region.getLong(slot.offset + ShmLayout.VALUE_OFFSET);
+            long count = region.getLong(slot.offset + ShmLayout.COUNT_OFFSET);
+
+            region.fence();
+
+            if ((sequence & 1) == 0 && sequence == region.getLong(slot.offset + ShmLayout.SEQUENCE_OFFSET)) {
+                return new ShmMetric(slot.name, slot.tags, slot.type, value, count);
+            }
+
+            // Values are being written, to be retried once those are consistent
+            Thread.yield();
+        }
+    }
+
+    private Slot readSlot(long offset) {
+        ShmMetric.Type type = ShmMetric.Type.ofCode(region.getInt(offset + ShmLayout.TYPE_OFFSET));
+        int length = region.getInt(offset + ShmLayout.DESCRIPTOR_LENGTH_OFFSET);
+
+        if (length < 0 || length > slotSize - ShmLayout.DESCRIPTOR_OFFSET) {
+            // Corrupted slot, skipped in snapshots
+            return new Slot(offset, null, null, null);
+        }
+
+        byte[] descriptor = region.getBytes(offset + ShmLayout.DESCRIPTOR_OFFSET, length);
+
+        return new Slot(offset, type, SeriesDescriptor.name(descriptor), SeriesDescriptor.tags(descriptor));
+    }
+
+    private static final class Slot {
+        private final long offset;
+        private final ShmMetric.Type type;
+        private final String name;
+        private final Map<String, String> tags;
+
+        Slot(long offset, ShmMetric.Type type, String name, Map<String, String> tags) {
+            this.offset = offset;
+            this.type = type;
+            this.name = name;
+            this.tags = tags;
+        }
+    }
+}
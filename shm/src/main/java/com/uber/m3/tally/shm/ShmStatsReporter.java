@@ -0,0 +1,491 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.shm;
+
+import com.uber.m3.tally.Buckets;
+import com.uber.m3.tally.Capabilities;
+import com.uber.m3.tally.CapableOf;
+import com.uber.m3.tally.StatsReporter;
+import com.uber.m3.util.Duration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link StatsReporter} keeping metrics in a memory-mapped file (by default under {@code /dev/shm}),
+ * to be read by a co-located agent with {@link ShmMetricsReader}, in the spirit of hsperfdata.
+ *
+ * Every series gets a fixed-size slot (see {@link ShmLayout}) allocated the first time it's reported,
+ * and every subsequent report is a single update of the slot, bracketed by its sequence for
+ * the readers to only observe consistent values, with no exporting work left for the application. Counters, histogram buckets and timers
+ * are accumulated since the start of the process, gauges hold the last value reported.
+ *
+ * Slots are looked up by the series' name and tags, with the descriptor only encoded upon
+ * allocation, hence the tags are expected to be immutable, as the scopes' ones are.
+ *
+ * Once all the slots are allocated, reports of the new series are dropped
+ * (see {@link #getDroppedSeriesCount()}).
+ */
+public class ShmStatsReporter implements StatsReporter {
+    public static final Path DEFAULT_DIRECTORY = Paths.get("/dev/shm");
+    public static final int DEFAULT_SLOT_COUNT = 4096;
+    public static final int DEFAULT_SLOT_SIZE_BYTES = 256;
+
+    public static final String BUCKET_TAG = "le";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path path;
+    private final boolean deleteOnClose;
+
+    private final MappedRegion region;
+    private final int slotCount;
+    private final int slotSize;
+
+    // Writes of the slots are serialized by the stripe of the slot
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Map<String, String>, Long>> counterSlots =
+        new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Map<String, String>, Long>> gaugeSlots =
+        new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Map<String, String>, Long>> timerSlots =
+        new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Map<String, String>, HistogramBucketSlots>> bucketSlots =
+        new ConcurrentHashMap<>();
+
+    // NOTE: Keyed by the type's code followed by the descriptor, guarded by itself
+    private final Map<String, Long> allocatedOffsets = new HashMap<>();
+    private int allocatedSlots;
+
+    private final AtomicLong droppedSeries = new AtomicLong();
+
+    private ShmStatsReporter(Builder builder) {
+        path = builder.path != null
+            ? builder.path
+            : DEFAULT_DIRECTORY.resolve("tally-" + processId() + ".metrics");
+        deleteOnClose = builder.deleteOnClose;
+        slotCount = builder.slotCount;
+        slotSize = builder.slotSizeBytes;
+
+        for (int i = 0; i < locks.length; ++i) {
+            locks[i] = new Object();
+        }
+
+        try {
+            region = MappedRegion.create(path, ShmLayout.regionSize(slotCount, slotSize));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to map shared metrics region at " + path, e);
+        }
+
+        region.putInt(ShmLayout.VERSION_OFFSET, ShmLayout.VERSION);
+        region.putInt(ShmLayout.SLOT_COUNT_OFFSET, slotCount);
+        region.putInt(ShmLayout.SLOT_SIZE_OFFSET, slotSize);
+        region.putLong(ShmLayout.CREATED_MILLIS_OFFSET, System.currentTimeMillis());
+        region.putLong(ShmLayout.PID_OFFSET, processId());
+
+        // Publishes the header
+        region.fence();
+        region.putLong(ShmLayout.MAGIC_OFFSET, ShmLayout.MAGIC);
+    }
+
+    /**
+     * Returns the path of the file backing the region, to be handed to the reader.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of reports dropped due to the region being out of slots,
+     * or the series' descriptor not fitting into the slot.
+     */
+    public long getDroppedSeriesCount() {
+        return droppedSeries.get();
+    }
+
+    @Override
+    public void reportCounter(String name, Map<String, String> tags, long value) {
+        long slot = slotFor(counterSlots, ShmMetric.Type.COUNTER, name, tags);
+
+        if (slot >= 0) {
+            add(slot, value, 0);
+        }
+    }
+
+    @Override
+    public void reportGauge(String name, Map<String, String> tags, double value) {
+        long slot = slotFor(gaugeSlots, ShmMetric.Type.GAUGE, name, tags);
+
+        if (slot >= 0) {
+            set(slot, Double.doubleToRawLongBits(value));
+        }
+    }
+
+    @Override
+    public void reportTimer(String name, Map<String, String> tags, Duration interval) {
+        long slot = slotFor(timerSlots, ShmMetric.Type.TIMER, name, tags);
+
+        if (slot >= 0) {
+            add(slot, interval.getNanos(), 1);
+        }
+    }
+
+    @Override
+    public void reportHistogramValueSamples(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        double bucketLowerBound,
+        double bucketUpperBound,
+        long samples
+    ) {
+        HistogramBucketSlots slots = bucketSlotsFor(name, tags, buckets);
+
+        if (slots == null) {
+            slots = HistogramBucketSlots.ofValues(buckets);
+            cacheBucketSlots(name, tags, slots);
+        }
+
+        int index = slots.indexOf(bucketLowerBound, bucketUpperBound);
+
+        reportBucketSamples(name, tags, slots, index, String.valueOf(bucketUpperBound), samples);
+    }
+
+    @Override
+    public void reportHistogramDurationSamples(
+        String name,
+        Map<String, String> tags,
+        Buckets buckets,
+        Duration bucketLowerBound,
+        Duration bucketUpperBound,
+        long samples
+    ) {
+        HistogramBucketSlots slots = bucketSlotsFor(name, tags, buckets);
+
+        if (slots == null) {
+            slots = HistogramBucketSlots.ofDurations(buckets);
+            cacheBucketSlots(name, tags, slots);
+        }
+
+        int index = slots.indexOf(bucketLowerBound, bucketUpperBound);
+
+        reportBucketSamples(name, tags, slots, index, bucketUpperBound.toString(), samples);
+    }
+
+    private void reportBucketSamples(
+        String name,
+        Map<String, String> tags,
+        HistogramBucketSlots slots,
+        int index,
+        String upperBound,
+        long samples
+    ) {
+        long slot;
+
+        if (index < 0) {
+            // Bounds do not match any of the buckets
+            slot = allocate(ShmMetric.Type.HISTOGRAM_BUCKET, bucketDescriptor(name, tags, upperBound));
+        } else {
+            slot = slots.offset(index);
+
+            if (slot == HistogramBucketSlots.UNALLOCATED) {
+                slot = allocate(
+                    ShmMetric.Type.HISTOGRAM_BUCKET,
+                    bucketDescriptor(name, tags, slots.upperBoundLabel(index))
+                );
+                slots.setOffset(index, slot);
+            }
+        }
+
+        if (slot >= 0) {
+            add(slot, samples, 0);
+        } else {
+            droppedSeries.incrementAndGet();
+        }
+    }
+
+    @Override
+    public Capabilities capabilities() {
+        return CapableOf.REPORTING_TAGGING;
+    }
+
+    @Override
+    public void flush() {
+        // No-op: every report is immediately visible to the readers
+    }
+
+    /**
+     * Closes the reporter, deleting the file backing the region unless configured otherwise.
+     *
+     * @throws UncheckedIOException if the file couldn't be deleted
+     */
+    @Override
+    public void close() {
+        if (!deleteOnClose) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to delete shared metrics region at " + path, e);
+        }
+    }
+
+    /**
+     * Returns the offset of the slot of the given series, allocating it if necessary,
+     * or -1 (counted as a dropped report) if it couldn't be allocated.
+     */
+    private long slotFor(
+        ConcurrentHashMap<String, ConcurrentHashMap<Map<String, String>, Long>> slots,
+        ShmMetric.Type type,
+        String name,
+        Map<String, String> tags
+    ) {
+        Map<String, String> tagsKey = tags == null ? Collections.emptyMap() : tags;
+        ConcurrentHashMap<Map<String, String>, Long> slotsByTags = slots.get(name);
+        Long offset = slotsByTags == null ? null : slotsByTags.get(tagsKey);
+
+        if (offset == null) {
+            offset = allocate(type, SeriesDescriptor.encode(name, tags));
+
+            // NOTE: Failed allocations are cached as well, so that dropped series aren't encoded over and over
+            slots.computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+                .putIfAbsent(copyOf(tagsKey), offset);
+        }
+
+        if (offset < 0) {
+            droppedSeries.incrementAndGet();
+        }
+
+        return offset;
+    }
+
+    private HistogramBucketSlots bucketSlotsFor(String name, Map<String, String> tags, Buckets buckets) {
+        ConcurrentHashMap<Map<String, String>, HistogramBucketSlots> slotsByTags = bucketSlots.get(name);
+        HistogramBucketSlots slots = slotsByTags == null
+            ? null
+            : slotsByTags.get(tags == null ? Collections.emptyMap() : tags);
+
+        return slots != null && slots.isFor(buckets) ? slots : null;
+    }
+
+    private void cacheBucketSlots(String name, Map<String, String> tags, HistogramBucketSlots slots) {
+        // NOTE: Replaces the slots of the previously reported buckets, if any, as those are
+        //       not expected to change for the same series, while the slots themselves are
+        //       deduplicated by the descriptors upon allocation anyway
+        bucketSlots.computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+            .put(copyOf(tags == null ? Collections.emptyMap() : tags), slots);
+    }
+
+    private static String bucketDescriptor(String name, Map<String, String> tags, String upperBound) {
+        Map<String, String> bucketTags = tags == null ? new HashMap<>() : new HashMap<>(tags);
+        bucketTags.put(BUCKET_TAG, upperBound);
+
+        return SeriesDescriptor.encode(name, bucketTags);
+    }
+
+    private static Map<String, String> copyOf(Map<String, String> tags) {
+        // Keys the caches by a copy, in case the reported tags are modified afterwards
+        return tags.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(tags));
+    }
+
+    /**
+     * Returns the offset of the newly allocated or already existing slot of the given series,
+     * or -1 if it couldn't be allocated.
+     */
+    private long allocate(ShmMetric.Type type, String descriptor) {
+        String key = type.getCode() + descriptor;
+
+        synchronized (allocatedOffsets) {
+            Long existing = allocatedOffsets.get(key);
+
+            if (existing != null) {
+                return existing;
+            }
+
+            byte[] descriptorBytes = SeriesDescriptor.toBytes(descriptor);
+
+            if (allocatedSlots == slotCount || descriptorBytes.length > slotSize - ShmLayout.DESCRIPTOR_OFFSET) {
+                return -1;
+            }
+
+            long offset = ShmLayout.slotOffset(allocatedSlots, slotSize);
+
+            region.putInt(offset + ShmLayout.TYPE_OFFSET, type.getCode());
+            region.putInt(offset + ShmLayout.DESCRIPTOR_LENGTH_OFFSET, descriptorBytes.length);
+            region.putBytes(offset + ShmLayout.DESCRIPTOR_OFFSET, descriptorBytes);
+
+            // Publishes the slot to the readers
+            region.fence();
+            region.putInt(ShmLayout.ALLOCATED_SLOTS_OFFSET, ++allocatedSlots);
+
+            allocatedOffsets.put(key, offset);
+
+            return offset;
+        }
+    }
+
+    private void add(long slot, long value, long count) {
+        synchronized (lockOf(slot)) {
+            long sequence = beginWrite(slot);
+
+            region.putLong(slot + ShmLayout.VALUE_OFFSET, region.getLong(slot + ShmLayout.VALUE_OFFSET) + value);
+
+            if (count != 0) {
+                region.putLong(slot + ShmLayout.COUNT_OFFSET, region.getLong(slot + ShmLayout.COUNT_OFFSET) + count);
+            }
+
+            endWrite(slot, sequence);
+        }
+    }
+
+    private void set(long slot, long value) {
+        synchronized (lockOf(slot)) {
+            long sequence = beginWrite(slot);
+
+            region.putLong(slot + ShmLayout.VALUE_OFFSET, value);
+
+            endWrite(slot, sequence);
+        }
+    }
+
+    private Object lockOf(long slot) {
+        return locks[(int) ((slot - ShmLayout.HEADER_SIZE) / slotSize) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Marks the slot's values as being written, returning the sequence they were consistent at.
+     */
+    private long beginWrite(long slot) {
+        long sequence = region.getLong(slot + ShmLayout.SEQUENCE_OFFSET);
+
+        region.putLong(slot + ShmLayout.SEQUENCE_OFFSET, sequence + 1);
+        region.fence();
+
+        return sequence;
+    }
+
+    private void endWrite(long slot, long sequence) {
+        region.fence();
+        region.putLong(slot + ShmLayout.SEQUENCE_OFFSET, sequence + 2);
+    }
+
+    private static long processId() {
+        // NOTE: Java 8 has no API for it, while runtime's name is conventionally "<pid>@<host>"
+        String runtimeName = ManagementFactory.getRuntimeMXBean().getName();
+        int separator = runtimeName.indexOf('@');
+
+        try {
+            return Long.parseLong(separator < 0 ? runtimeName : runtimeName.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Builder pattern to construct a {@link ShmStatsReporter}.
+     */
+    public static class Builder {
+        protected Path path;
+        protected int slotCount = DEFAULT_SLOT_COUNT;
+        protected int slotSizeBytes = DEFAULT_SLOT_SIZE_BYTES;
+        protected boolean deleteOnClose = true;
+
+        /**
+         * Configures the path of the file backing the region of this {@link Builder}.
+         * Defaults to {@code /dev/shm/tally-<pid>.metrics}.
+         *
+         * @param path the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder path(Path path) {
+            this.path = path;
+
+            return this;
+        }
+
+        /**
+         * Configures the number of slots, ie the maximum number of series of this {@link Builder}.
+         *
+         * @param slotCount the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder slotCount(int slotCount) {
+            this.slotCount = slotCount;
+
+            return this;
+        }
+
+        /**
+         * Configures the size of a single slot of this {@link Builder}, bounding the length of the
+         * series' name and tags. Has to be a multiple of 64, to keep slots cache-line aligned.
+         *
+         * @param slotSizeBytes the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder slotSizeBytes(int slotSizeBytes) {
+            this.slotSizeBytes = slotSizeBytes;
+
+            return this;
+        }
+
+        /**
+         * Configures whether the file backing the region is deleted on close of this {@link Builder}.
+         *
+         * @param deleteOnClose the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder deleteOnClose(boolean deleteOnClose) {
+            this.deleteOnClose = deleteOnClose;
+
+            return this;
+        }
+
+        /**
+         * Builds and returns a {@link ShmStatsReporter} with the configured parameters.
+         *
+         * @return a new {@link ShmStatsReporter} instance with the configured parameters
+         */
+        public ShmStatsReporter build() {
+            if (slotCount < 1) {
+                throw new IllegalArgumentException("At least one slot is required");
+            }
+            if (slotSizeBytes <= ShmLayout.DESCRIPTOR_OFFSET || slotSizeBytes % ShmLayout.SLOT_ALIGNMENT != 0) {
+                throw new IllegalArgumentException(
+                    String.format("Slot size has to be a positive multiple of %d", ShmLayout.SLOT_ALIGNMENT)
+                );
+            }
+
+            return new ShmStatsReporter(this);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.shm;
+
+import com.uber.m3.tally.DurationBuckets;
+import com.uber.m3.tally.ValueBuckets;
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShmStatsReporterTest {
+    private static final double EPSILON = 1e-9;
+
+    private static final ImmutableMap<String, String> TAGS = ImmutableMap.of("env", "test", "host", "localhost");
+
+    private Path path;
+    private ShmStatsReporter reporter;
+
+    @Before
+    public void setUp() throws IOException {
+        path = Files.createTempFile("tally", ".metrics");
+        reporter = new ShmStatsReporter.Builder()
+            .path(path)
+            .slotCount(4)
+            .slotSizeBytes(128)
+            .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reporter.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void readsReportedSeries() throws IOException {
+        reporter.reportCounter("requests", TAGS, 3);
+        reporter.reportCounter("requests", TAGS, 4);
+        reporter.reportGauge("queue-length", null, 42.5);
+        reporter.reportTimer("latency", TAGS, Duration.ofMillis(10));
+        reporter.reportTimer("latency", TAGS, Duration.ofMillis(20));
+
+        try (ShmMetricsReader reader = ShmMetricsReader.open(path)) {
+            List<ShmMetric> snapshot = reader.snapshot();
+
+            assertEquals(3, snapshot.size());
+
+            ShmMetric requests = find(snapshot, "requests");
+            assertEquals(ShmMetric.Type.COUNTER, requests.getType());
+            assertEquals(7, requests.getValue());
+            assertEquals(new HashMap<>(TAGS), requests.getTags());
+
+            ShmMetric queueLength = find(snapshot, "queue-length");
+            assertEquals(ShmMetric.Type.GAUGE, queueLength.getType());
+            assertEquals(42.5, queueLength.getGaugeValue(), EPSILON);
+            assertTrue(queueLength.getTags().isEmpty());
+
+            ShmMetric latency = find(snapshot, "latency");
+            assertEquals(ShmMetric.Type.TIMER, latency.getType());
+            assertEquals(Duration.ofMillis(30).getNanos(), latency.getValue());
+            assertEquals(2, latency.getCount());
+        }
+    }
+
+    @Test
+    public void snapshotsReflectSubsequentReports() throws IOException {
+        try (ShmMetricsReader reader = ShmMetricsReader.open(path)) {
+            assertTrue(reader.snapshot().isEmpty());
+
+            reporter.reportCounter("requests", TAGS, 1);
+            assertEquals(1, find(reader.snapshot(), "requests").getValue());
+
+            reporter.reportCounter("requests", TAGS, 1);
+            assertEquals(2, find(reader.snapshot(), "requests").getValue());
+        }
+    }
+
+    @Test
+    public void histogramBucketsAreTagged() throws IOException {
+        ValueBuckets buckets = ValueBuckets.linear(0, 10, 2);
+
+        reporter.reportHistogramValueSamples("sizes", TAGS, buckets, 0, 10, 5);
+        reporter.reportHistogramValueSamples("sizes", TAGS, buckets, 0, 10, 1);
+        reporter.reportHistogramValueSamples("sizes", TAGS, buckets, 10, 20, 2);
+
+        try (ShmMetricsReader reader = ShmMetricsReader.open(path)) {
+            List<ShmMetric> snapshot = reader.snapshot();
+
+            assertEquals(2, snapshot.size());
+
+            for (ShmMetric bucket : snapshot) {
+                assertEquals(ShmMetric.Type.HISTOGRAM_BUCKET, bucket.getType());
+                String upperBound = bucket.getTags().get(ShmStatsReporter.BUCKET_TAG);
+
+                assertEquals(upperBound.equals("10.0") ? 6 : 2, bucket.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void durationHistogramBucketsAreTagged() throws IOException {
+        DurationBuckets buckets = DurationBuckets.linear(Duration.ZERO, Duration.ofMillis(10), 2);
+
+        reporter.reportHistogramDurationSamples("latencies", TAGS, buckets, Duration.ZERO, Duration.ofMillis(10), 3);
+        reporter.reportHistogramDurationSamples("latencies", TAGS, buckets, Duration.ZERO, Duration.ofMillis(10), 4);
+
+        try (ShmMetricsReader reader = ShmMetricsReader.open(path)) {
+            ShmMetric bucket = find(reader.snapshot(), "latencies");
+
+            assertEquals(Duration.ofMillis(10).toString(), bucket.getTags().get(ShmStatsReporter.BUCKET_TAG));
+            assertEquals(7, bucket.getValue());
+        }
+    }
+
+    @Test
+    public void histogramBoundsNotMatchingBuckets() throws IOException {
+        ValueBuckets buckets = ValueBuckets.linear(0, 10, 2);
+
+        reporter.reportHistogramValueSamples("sizes", TAGS, buckets, 0, 15, 5);
+        reporter.reportHistogramValueSamples("sizes", TAGS, buckets, 0, 15, 1);
+
+        try (ShmMetricsReader reader = ShmMetricsReader.open(path)) {
+            ShmMetric bucket = find(reader.snapshot(), "sizes");
+
+            assertEquals("15.0", bucket.getTags().get(ShmStatsReporter.BUCKET_TAG));
+            assertEquals(6, bucket.getValue());
+        }
+    }
+
+    @Test
+    public void equalTagsShareSlot() throws IOException {
+        HashMap<String, String> tags = new HashMap<>(TAGS);
+
+        reporter.reportCounter("requests", TAGS, 1);
+        reporter.reportCounter("requests", tags, 2);
+
+        // Modifying the reported tags afterwards doesn't affect the series
+        tags.put("env", "other");
+        reporter.reportCounter("requests", tags, 4);
+        reporter.reportCounter("requests", TAGS, 8);
+
+        try (ShmMetricsReader reader = ShmMetricsReader.open(path)) {
+            List<ShmMetric> snapshot = reader.snapshot();
+
+            assertEquals(2, snapshot.size());
+
+            for (ShmMetric requests : snapshot) {
+                assertEquals(requests.getTags().get("env").equals("test") ? 11 : 4, requests.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void readsConsistentTimerValues() throws Exception {
+        Thread[] writers = new Thread[4];
+
+        for (int i = 0; i < writers.length; ++i) {
+            writers[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; ++j) {
+                    reporter.reportTimer("latency", TAGS, Duration.ofMillis(1));
+                }
+            });
+            writers[i].start();
+        }
+
+        try (ShmMetricsReader reader = ShmMetricsReader.open(path)) {
+            boolean done = false;
+
+            while (!done) {
+                done = true;
+
+                for (Thread writer : writers) {
+                    done &= !writer.isAlive();
+                }
+
+                // Total and count are never observed apart
+                for (ShmMetric latency : reader.snapshot()) {
+                    assertEquals(latency.getCount() * Duration.ofMillis(1).getNanos(), latency.getValue());
+                }
+            }
+
+            ShmMetric latency = find(reader.snapshot(), "latency");
+            assertEquals(writers.length * 10_000, latency.getCount());
+        }
+
+        for (Thread writer : writers) {
+            writer.join();
+        }
+    }
+
+    @Test
+    public void dropsSeriesOnceOutOfSlots() throws IOException {
+        for (int i = 0; i < 6; ++i) {
+            reporter.reportCounter("counter-" + i, null, 1);
+        }
+
+        assertEquals(2, reporter.getDroppedSeriesCount());
+
+        // Every report of the dropped series is counted
+        reporter.reportCounter("counter-5", null, 1);
+        assertEquals(3, reporter.getDroppedSeriesCount());
+
+        try (ShmMetricsReader reader = ShmMetricsReader.open(path)) {
+            assertEquals(4, reader.snapshot().size());
+        }
+    }
+
+    @Test
+    public void dropsSeriesNotFittingIntoSlot() {
+        StringBuilder name = new StringBuilder();
+
+        for (int i = 0; i < 128; ++i) {
+            name.append('x');
+        }
+
+        reporter.reportCounter(name.toString(), null, 1);
+
+        assertEquals(1, reporter.getDroppedSeriesCount());
+    }
+
+    @Test
+    public void deletesRegionOnClose() {
+        assertTrue(Files.exists(path));
+
+        reporter.close();
+
+        assertFalse(Files.exists(path));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsForeignFiles() throws IOException {
+        Path foreign = Files.createTempFile("foreign", ".metrics");
+
+        try {
+            Files.write(foreign, new byte[ShmLayout.HEADER_SIZE]);
+
+            ShmMetricsReader.open(foreign);
+        } finally {
+            Files.delete(foreign);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnalignedSlots() {
+        new ShmStatsReporter.Builder()
+            .path(path)
+            .slotSizeBytes(100)
+            .build();
+    }
+
+    private static ShmMetric find(List<ShmMetric> snapshot, String name) {
+        ShmMetric found = null;
+
+        for (ShmMetric metric : snapshot) {
+            if (metric.getName().equals(name)) {
+                assertNull(found);
+                found = metric;
+            }
+        }
+
+        assertNotNull(found);
+
+        return found;
+    }
+}
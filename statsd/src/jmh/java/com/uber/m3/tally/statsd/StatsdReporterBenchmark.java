@@ -23,13 +23,57 @@ package com.uber.m3.tally.statsd;
 import com.timgroup.statsd.NonBlockingStatsDClient;
 import com.timgroup.statsd.StatsDClient;
 import com.uber.m3.tally.AbstractReporterBenchmark;
+import com.uber.m3.tally.DurationBuckets;
+import com.uber.m3.tally.ValueBuckets;
+import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
 
 public class StatsdReporterBenchmark extends AbstractReporterBenchmark<StatsdReporter> {
+    private static final ImmutableMap<String, String> TAGS = ImmutableMap.of("env", "test");
+
+    private static final int BUCKETS_COUNT = 128;
+
+    private static final ValueBuckets VALUE_BUCKETS = ValueBuckets.linear(0.1, 100d, BUCKETS_COUNT);
+    private static final DurationBuckets DURATION_BUCKETS =
+        DurationBuckets.linear(Duration.ofMillis(1), Duration.ofMillis(10), BUCKETS_COUNT);
+
+    private StatsdReporter reporter;
+
+    // Reports every bucket of the histogram, the same way a single flush would
+    @Benchmark
+    public void reportAllHistogramValueBucketsBenchmark() {
+        for (int i = 0; i <= BUCKETS_COUNT; ++i) {
+            reporter.reportHistogramValueSamples(
+                "histogram_value_all",
+                TAGS,
+                VALUE_BUCKETS,
+                VALUE_BUCKETS.getValueLowerBoundFor(i),
+                VALUE_BUCKETS.getValueUpperBoundFor(i),
+                1
+            );
+        }
+    }
+
+    @Benchmark
+    public void reportAllHistogramDurationBucketsBenchmark() {
+        for (int i = 0; i <= BUCKETS_COUNT; ++i) {
+            reporter.reportHistogramDurationSamples(
+                "histogram_duration_all",
+                TAGS,
+                DURATION_BUCKETS,
+                DURATION_BUCKETS.getDurationLowerBoundFor(i),
+                DURATION_BUCKETS.getDurationUpperBoundFor(i),
+                1
+            );
+        }
+    }
 
     @Override
     public StatsdReporter bootReporter() {
         StatsDClient statsd = new NonBlockingStatsDClient("statsd-test", "localhost", 1235);
-        return new StatsdReporter(statsd);
+        reporter = new StatsdReporter(statsd);
+        return reporter;
     }
 
 }
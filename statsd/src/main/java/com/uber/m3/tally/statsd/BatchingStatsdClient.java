@@ -0,0 +1,384 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.statsd;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tag-aware (DogStatsD) StatsD client packing multiple lines into a single datagram.
+ *
+ * Reporting threads only ever enqueue samples into a bounded queue: whenever the queue
+ * is full the sample is dropped (and accounted for in {@link #getDroppedMetricsCount()})
+ * instead of blocking the caller. A dedicated sender thread drains the queue, encodes samples
+ * into a re-used buffer and writes them through a connected {@link DatagramChannel} once either
+ * the packet is full, or there are no more samples awaiting in the queue. Samples failing
+ * to be encoded are skipped (and accounted for in {@link #getFailedMetricsCount()}), keeping
+ * the sender thread alive for the subsequent ones.
+ */
+public class BatchingStatsdClient implements AutoCloseable {
+    public static final int DEFAULT_MAX_PACKET_SIZE_BYTES = 1432;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 4096;
+
+    private static final int SENDER_POLL_TIMEOUT_MILLIS = 100;
+    private static final int SENDER_SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+
+    private final BlockingQueue<StatsdMetric> queue;
+
+    private final DatagramChannel channel;
+
+    private final StatsdLineEncoder encoder;
+
+    // NOTE: Both buffers are only accessed from the sender thread
+    private final ByteBuffer packetBuffer;
+    private final ByteBuffer lineBuffer;
+
+    private final Thread sender;
+
+    private final AtomicBoolean isShutdown = new AtomicBoolean(false);
+
+    private final AtomicLong droppedMetrics = new AtomicLong(0);
+    private final AtomicLong oversizedMetrics = new AtomicLong(0);
+    private final AtomicLong failedMetrics = new AtomicLong(0);
+    private final AtomicLong sentPackets = new AtomicLong(0);
+    private final AtomicLong sentBytes = new AtomicLong(0);
+    private final AtomicLong sendErrors = new AtomicLong(0);
+
+    // Use inner Builder class to construct a BatchingStatsdClient
+    BatchingStatsdClient(Builder builder) throws IOException {
+        queue = new ArrayBlockingQueue<>(builder.maxQueueSize);
+        encoder = new StatsdLineEncoder(builder.prefix);
+
+        packetBuffer = ByteBuffer.allocateDirect(builder.maxPacketSizeBytes);
+        lineBuffer = ByteBuffer.allocate(builder.maxPacketSizeBytes);
+
+        channel = DatagramChannel.open();
+        channel.connect(builder.socketAddress);
+
+        sender = new Thread(this::runSender, "tally-statsd-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Enqueues a counter sample.
+     * @param name       name of the counter
+     * @param value      delta to report
+     * @param sampleRate the sample rate
+     * @param tags       tags to report on (could be null)
+     */
+    public void count(String name, long value, double sampleRate, Map<String, String> tags) {
+        if (isSampled(sampleRate)) {
+            enqueue(StatsdMetric.count(name, value, sampleRate, tags));
+        }
+    }
+
+    /**
+     * Enqueues a gauge sample, unless its value is not finite (which StatsD can't represent).
+     * @param name       name of the gauge
+     * @param value      value to report
+     * @param sampleRate the sample rate
+     * @param tags       tags to report on (could be null)
+     */
+    public void gauge(String name, double value, double sampleRate, Map<String, String> tags) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            failedMetrics.incrementAndGet();
+            return;
+        }
+
+        if (isSampled(sampleRate)) {
+            enqueue(StatsdMetric.gauge(name, value, sampleRate, tags));
+        }
+    }
+
+    /**
+     * Enqueues a timer sample.
+     * @param name       name of the timer
+     * @param millis     duration to report in milliseconds
+     * @param sampleRate the sample rate
+     * @param tags       tags to report on (could be null)
+     */
+    public void time(String name, long millis, double sampleRate, Map<String, String> tags) {
+        if (isSampled(sampleRate)) {
+            enqueue(StatsdMetric.timer(name, millis, sampleRate, tags));
+        }
+    }
+
+    /**
+     * Enqueues a timer sample, which has already been sampled at the given rate when recorded,
+     * sampling it at the client's rate on top of that.
+     * @param name          name of the timer
+     * @param millis        duration to report in milliseconds
+     * @param sampleRate    the sample rate of the client
+     * @param recordingRate the sample rate the duration has been recorded at
+     * @param tags          tags to report on (could be null)
+     */
+    public void time(String name, long millis, double sampleRate, double recordingRate, Map<String, String> tags) {
+        if (isSampled(sampleRate)) {
+            enqueue(StatsdMetric.timer(name, millis, Math.min(sampleRate, 1) * recordingRate, tags));
+        }
+    }
+
+    /**
+     * Returns number of samples dropped because the queue was full (or the client was closed).
+     * @return number of samples dropped
+     */
+    public long getDroppedMetricsCount() {
+        return droppedMetrics.get();
+    }
+
+    /**
+     * Returns number of samples dropped because their encoded size exceeded maximum packet size.
+     * @return number of oversized samples
+     */
+    public long getOversizedMetricsCount() {
+        return oversizedMetrics.get();
+    }
+
+    /**
+     * Returns number of samples dropped because they failed to be encoded (e.g. missing name,
+     * or non-finite gauge value).
+     * @return number of failed samples
+     */
+    public long getFailedMetricsCount() {
+        return failedMetrics.get();
+    }
+
+    /**
+     * Returns number of datagrams sent.
+     * @return number of datagrams sent
+     */
+    public long getSentPacketsCount() {
+        return sentPackets.get();
+    }
+
+    /**
+     * Returns number of payload bytes sent.
+     * @return number of bytes sent
+     */
+    public long getSentBytesCount() {
+        return sentBytes.get();
+    }
+
+    /**
+     * Returns number of datagrams that failed to be sent.
+     * @return number of failed sends
+     */
+    public long getSendErrorsCount() {
+        return sendErrors.get();
+    }
+
+    /**
+     * Stops accepting new samples, sends out everything enqueued so far and closes the channel.
+     */
+    @Override
+    public void close() {
+        if (!isShutdown.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            sender.join(SENDER_SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (sender.isAlive()) {
+            // Sender did not manage to drain the queue in time, abandon what's left
+            sender.interrupt();
+        }
+    }
+
+    private static boolean isSampled(double sampleRate) {
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private void enqueue(StatsdMetric metric) {
+        if (isShutdown.get() || !queue.offer(metric)) {
+            droppedMetrics.incrementAndGet();
+        }
+    }
+
+    private void runSender() {
+        try {
+            while (!isShutdown.get() || !queue.isEmpty()) {
+                StatsdMetric metric = queue.poll(SENDER_POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+                // Drain whatever is available before sending out partially filled packet
+                while (metric != null) {
+                    try {
+                        append(metric);
+                    } catch (RuntimeException e) {
+                        // Skip the malformed sample, rather than letting it take the sender down
+                        failedMetrics.incrementAndGet();
+                    }
+
+                    metric = queue.poll();
+                }
+
+                sendPacket();
+            }
+        } catch (InterruptedException e) {
+            // Interrupted upon close, proceed to shut down
+        } finally {
+            sendPacket();
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore, nothing else could be done at this point
+            }
+        }
+    }
+
+    private void append(StatsdMetric metric) {
+        lineBuffer.clear();
+
+        if (!encoder.encode(lineBuffer, metric)) {
+            oversizedMetrics.incrementAndGet();
+            return;
+        }
+
+        lineBuffer.flip();
+
+        int separatorSize = packetBuffer.position() > 0 ? 1 : 0;
+
+        if (lineBuffer.remaining() + separatorSize > packetBuffer.remaining()) {
+            sendPacket();
+            separatorSize = 0;
+        }
+
+        if (separatorSize > 0) {
+            packetBuffer.put((byte) '\n');
+        }
+
+        packetBuffer.put(lineBuffer);
+    }
+
+    private void sendPacket() {
+        if (packetBuffer.position() == 0) {
+            return;
+        }
+
+        packetBuffer.flip();
+
+        try {
+            int written = channel.write(packetBuffer);
+
+            sentPackets.incrementAndGet();
+            sentBytes.addAndGet(written);
+        } catch (IOException e) {
+            // NOTE: Connected channel will surface ICMP errors (e.g. port unreachable) of the
+            //       previous datagrams upon subsequent writes, hence only accounting for those
+            sendErrors.incrementAndGet();
+        } finally {
+            packetBuffer.clear();
+        }
+    }
+
+    /**
+     * Builder pattern to construct a {@link BatchingStatsdClient}.
+     */
+    public static class Builder {
+        protected SocketAddress socketAddress;
+        protected String prefix;
+        protected int maxPacketSizeBytes = DEFAULT_MAX_PACKET_SIZE_BYTES;
+        protected int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+
+        /**
+         * Constructs a {@link Builder}.
+         * @param socketAddress the {@code SocketAddress} of the StatsD agent
+         */
+        public Builder(SocketAddress socketAddress) {
+            if (socketAddress == null) {
+                throw new IllegalArgumentException("Must specify a SocketAddress");
+            }
+
+            this.socketAddress = socketAddress;
+        }
+
+        /**
+         * Constructs a {@link Builder}.
+         * @param hostname hostname of the StatsD agent
+         * @param port     port of the StatsD agent
+         */
+        public Builder(String hostname, int port) {
+            this(new InetSocketAddress(hostname, port));
+        }
+
+        /**
+         * Configures the prefix prepended to every metric name.
+         * @param prefix the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder prefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        /**
+         * Configures the maximum size of a single datagram's payload (should not exceed path's MTU).
+         * @param maxPacketSizeBytes the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder maxPacketSizeBytes(int maxPacketSizeBytes) {
+            this.maxPacketSizeBytes = maxPacketSizeBytes;
+            return this;
+        }
+
+        /**
+         * Configures the maximum number of samples awaiting to be sent.
+         * @param maxQueueSize the value to set
+         * @return this {@link Builder} with the new value set
+         */
+        public Builder maxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Builds and returns a {@link BatchingStatsdClient} with the configured parameters.
+         * @return a new {@link BatchingStatsdClient} instance
+         * @throws IOException if the underlying channel could not be opened
+         */
+        public BatchingStatsdClient build() throws IOException {
+            if (maxPacketSizeBytes <= 0) {
+                throw new IllegalArgumentException("Maximum packet size must be positive");
+            }
+
+            if (maxQueueSize <= 0) {
+                throw new IllegalArgumentException("Maximum queue size must be positive");
+            }
+
+            return new BatchingStatsdClient(this);
+        }
+    }
+}
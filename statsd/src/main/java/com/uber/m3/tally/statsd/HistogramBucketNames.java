@@ -0,0 +1,134 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.statsd;
+
+import com.uber.m3.tally.ImmutableBuckets;
+import com.uber.m3.util.Duration;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Fully qualified per-bucket metric names ({@code <name>.<lower>-<upper>}) of a single
+ * histogram, precomputed for every bucket of the {@link ImmutableBuckets}.
+ */
+final class HistogramBucketNames {
+    private static final double[] NO_VALUE_BOUNDS = new double[0];
+    private static final long[] NO_DURATION_BOUNDS = new long[0];
+
+    // NOTE: Only one pair of the bounds is populated, depending on the type of the buckets
+    private final double[] valueLowerBounds;
+    private final double[] valueUpperBounds;
+
+    private final long[] durationLowerBounds;
+    private final long[] durationUpperBounds;
+
+    private final String[] names;
+
+    private HistogramBucketNames(
+        double[] valueLowerBounds,
+        double[] valueUpperBounds,
+        long[] durationLowerBounds,
+        long[] durationUpperBounds,
+        String[] names
+    ) {
+        this.valueLowerBounds = valueLowerBounds;
+        this.valueUpperBounds = valueUpperBounds;
+        this.durationLowerBounds = durationLowerBounds;
+        this.durationUpperBounds = durationUpperBounds;
+        this.names = names;
+    }
+
+    static HistogramBucketNames ofValues(String name, ImmutableBuckets buckets, Function<Double, String> bucketNameFn) {
+        int bucketsCount;
+        try {
+            // Each bucket bound serves as the upper bound for the one to the left of it
+            // and as the lower bound for the one to the right, with one extra bucket for [last, +inf)
+            bucketsCount = buckets.getValueUpperBounds().size() + 1;
+        } catch (UnsupportedOperationException e) {
+            return new HistogramBucketNames(NO_VALUE_BOUNDS, NO_VALUE_BOUNDS, null, null, new String[0]);
+        }
+
+        double[] lowerBounds = new double[bucketsCount];
+        double[] upperBounds = new double[bucketsCount];
+        String[] names = new String[bucketsCount];
+
+        for (int i = 0; i < bucketsCount; ++i) {
+            lowerBounds[i] = buckets.getValueLowerBoundFor(i);
+            upperBounds[i] = buckets.getValueUpperBoundFor(i);
+            names[i] = name + "." + bucketNameFn.apply(lowerBounds[i]) + "-" + bucketNameFn.apply(upperBounds[i]);
+        }
+
+        return new HistogramBucketNames(lowerBounds, upperBounds, null, null, names);
+    }
+
+    static HistogramBucketNames ofDurations(String name, ImmutableBuckets buckets, Function<Duration, String> bucketNameFn) {
+        int bucketsCount;
+        try {
+            bucketsCount = buckets.getDurationUpperBounds().size() + 1;
+        } catch (UnsupportedOperationException e) {
+            return new HistogramBucketNames(null, null, NO_DURATION_BOUNDS, NO_DURATION_BOUNDS, new String[0]);
+        }
+
+        long[] lowerBounds = new long[bucketsCount];
+        long[] upperBounds = new long[bucketsCount];
+        String[] names = new String[bucketsCount];
+
+        for (int i = 0; i < bucketsCount; ++i) {
+            Duration lowerBound = buckets.getDurationLowerBoundFor(i);
+            Duration upperBound = buckets.getDurationUpperBoundFor(i);
+
+            lowerBounds[i] = lowerBound.getNanos();
+            upperBounds[i] = upperBound.getNanos();
+            names[i] = name + "." + bucketNameFn.apply(lowerBound) + "-" + bucketNameFn.apply(upperBound);
+        }
+
+        return new HistogramBucketNames(null, null, lowerBounds, upperBounds, names);
+    }
+
+    /**
+     * Returns the bucket's metric name for the given bounds,
+     * or null if those don't designate any of the buckets.
+     */
+    String get(double lowerBound, double upperBound) {
+        int index = Arrays.binarySearch(valueUpperBounds, upperBound);
+
+        if (index < 0 || valueLowerBounds[index] != lowerBound) {
+            return null;
+        }
+
+        return names[index];
+    }
+
+    /**
+     * Returns the bucket's metric name for the given bounds,
+     * or null if those don't designate any of the buckets.
+     */
+    String get(Duration lowerBound, Duration upperBound) {
+        int index = Arrays.binarySearch(durationUpperBounds, upperBound.getNanos());
+
+        if (index < 0 || durationLowerBounds[index] != lowerBound.getNanos()) {
+            return null;
+        }
+
+        return names[index];
+    }
+}
@@ -25,17 +25,34 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class StatsdAssertingUdpServer implements Runnable {
     private final int TIMEOUT_MILLIS = 1000;
-    private final int RECEIVE_MAX_SIZE = 1024;
+    private final int RECEIVE_MAX_SIZE = 65507;
     private final SocketAddress socketAddress;
+    private final AtomicInteger receivedLines = new AtomicInteger(0);
+    private final AtomicInteger receivedPackets = new AtomicInteger(0);
     private Set<String> expectedStrs;
+    private int expectedLines;
+    private boolean stopWhenIdle;
 
     StatsdAssertingUdpServer(String hostname, int port, Set<String> expectedStrs) {
+        this(hostname, port, expectedStrs, expectedStrs.size(), false);
+    }
+
+    /**
+     * @param expectedLines number of lines to receive before stopping
+     * @param stopWhenIdle  whether to stop (instead of failing) once no more packets arrive
+     */
+    StatsdAssertingUdpServer(String hostname, int port, Set<String> expectedStrs, int expectedLines, boolean stopWhenIdle) {
         this.expectedStrs = expectedStrs;
+        this.expectedLines = expectedLines;
+        this.stopWhenIdle = stopWhenIdle;
 
         try {
             this.socketAddress = new InetSocketAddress(InetAddress.getByName(hostname), port);
@@ -44,29 +61,50 @@ public class StatsdAssertingUdpServer implements Runnable {
         }
     }
 
+    int getReceivedLines() {
+        return receivedLines.get();
+    }
+
+    int getReceivedPackets() {
+        return receivedPackets.get();
+    }
+
     @Override
     public synchronized void run() {
         try (DatagramSocket serverSocket = new DatagramSocket(socketAddress)) {
             serverSocket.setSoTimeout(TIMEOUT_MILLIS);
 
-            for (int i = 0; i < expectedStrs.size(); i++) {
-                byte[] receiveData = new byte[RECEIVE_MAX_SIZE];
+            byte[] receiveData = new byte[RECEIVE_MAX_SIZE];
 
+            while (receivedLines.get() < expectedLines) {
                 DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
-                serverSocket.receive(receivePacket);
 
-                String receivedStr = new String(receivePacket.getData());
+                try {
+                    serverSocket.receive(receivePacket);
+                } catch (SocketTimeoutException e) {
+                    if (stopWhenIdle) {
+                        return;
+                    }
 
-                // Sometimes we get two messages at once
+                    throw e;
+                }
+
+                receivedPackets.incrementAndGet();
+
+                String receivedStr =
+                    new String(receivePacket.getData(), 0, receivePacket.getLength(), StandardCharsets.UTF_8);
+
+                // Multiple lines could be packed into a single packet
                 String[] strs = receivedStr.split("\n");
 
                 for (String str : strs) {
-                    // Clean the received message
-                    str = str.substring(0, str.lastIndexOf('|'));
-
-                    if (!expectedStrs.contains(str)) {
+                    // Lines are matched either as is, or with the last section
+                    // (e.g. type or sample-rate) being stripped
+                    if (!expectedStrs.contains(str) && !expectedStrs.contains(str.substring(0, str.lastIndexOf('|')))) {
                         throw new IllegalStateException(String.format("Unexpected message: %s", str));
                     }
+
+                    receivedLines.incrementAndGet();
                 }
             }
         } catch (Exception e) {
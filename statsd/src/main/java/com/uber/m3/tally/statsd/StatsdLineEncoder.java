@@ -0,0 +1,234 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.statsd;
+
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Encodes {@link StatsdMetric}s into DogStatsD lines of the form
+ * {@code <prefix>.<name>:<value>|<type>[|@<rate>][|#<tag>:<value>,...]}.
+ *
+ * Characters are written straight into the destination buffer (UTF-8), so the
+ * only per-line garbage is produced when formatting non-integral gauge values.
+ * Those are always written in plain notation, as StatsD accepts neither exponents,
+ * nor non-finite values (which are rejected).
+ */
+final class StatsdLineEncoder {
+    private static final char SANITIZED_CHAR = '_';
+
+    private final String prefix;
+
+    StatsdLineEncoder(String prefix) {
+        this.prefix = prefix == null || prefix.isEmpty() ? null : prefix;
+    }
+
+    /**
+     * Encodes provided metric into the buffer.
+     * @param dst    buffer to write the line to
+     * @param metric metric to encode
+     * @return {@code true} if line has been written fully, {@code false} if the buffer
+     *         did not have enough capacity (in which case its position is left intact)
+     * @throws IllegalArgumentException if metric's value is not finite
+     */
+    boolean encode(ByteBuffer dst, StatsdMetric metric) {
+        int start = dst.position();
+
+        try {
+            if (prefix != null) {
+                putName(dst, prefix);
+                dst.put((byte) '.');
+            }
+
+            putName(dst, metric.getName());
+            dst.put((byte) ':');
+
+            switch (metric.getType()) {
+                case GAUGE:
+                    putDouble(dst, metric.getDoubleValue());
+                    break;
+                default:
+                    putLong(dst, metric.getLongValue());
+                    break;
+            }
+
+            dst.put((byte) '|');
+            putAscii(dst, metric.getType().getSuffix());
+
+            if (metric.getSampleRate() < 1) {
+                dst.put((byte) '|');
+                dst.put((byte) '@');
+                putDouble(dst, metric.getSampleRate());
+            }
+
+            putTags(dst, metric.getTags());
+
+            return true;
+        } catch (BufferOverflowException e) {
+            dst.position(start);
+            return false;
+        }
+    }
+
+    private void putTags(ByteBuffer dst, Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return;
+        }
+
+        dst.put((byte) '|');
+        dst.put((byte) '#');
+
+        boolean first = true;
+
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!first) {
+                dst.put((byte) ',');
+            }
+
+            first = false;
+
+            putName(dst, tag.getKey());
+
+            String value = tag.getValue();
+            if (value != null && !value.isEmpty()) {
+                dst.put((byte) ':');
+                putTagValue(dst, value);
+            }
+        }
+    }
+
+    // Names (and tag keys) may not contain any of the characters delimiting line's sections
+    private static void putName(ByteBuffer dst, String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+
+            switch (c) {
+                case ':':
+                case '|':
+                case '@':
+                case '#':
+                case ',':
+                case '\n':
+                    putChar(dst, SANITIZED_CHAR);
+                    break;
+                default:
+                    i = putUtf8(dst, s, i);
+                    break;
+            }
+        }
+    }
+
+    // Tag values might contain ':' (e.g. host:port), but no section or tag delimiters
+    private static void putTagValue(ByteBuffer dst, String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+
+            switch (c) {
+                case '|':
+                case '#':
+                case ',':
+                case '\n':
+                    putChar(dst, SANITIZED_CHAR);
+                    break;
+                default:
+                    i = putUtf8(dst, s, i);
+                    break;
+            }
+        }
+    }
+
+    private static void putAscii(ByteBuffer dst, CharSequence s) {
+        for (int i = 0; i < s.length(); ++i) {
+            dst.put((byte) s.charAt(i));
+        }
+    }
+
+    private static void putChar(ByteBuffer dst, char c) {
+        dst.put((byte) c);
+    }
+
+    // Writes char at the given index as UTF-8, returning index of the last char consumed
+    private static int putUtf8(ByteBuffer dst, String s, int index) {
+        char c = s.charAt(index);
+
+        if (c < 0x80) {
+            dst.put((byte) c);
+        } else if (c < 0x800) {
+            dst.put((byte) (0xC0 | (c >> 6)));
+            dst.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c) && index + 1 < s.length() && Character.isLowSurrogate(s.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(c, s.charAt(index + 1));
+
+            dst.put((byte) (0xF0 | (codePoint >> 18)));
+            dst.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            dst.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            dst.put((byte) (0x80 | (codePoint & 0x3F)));
+
+            return index + 1;
+        } else if (Character.isSurrogate(c)) {
+            // Unpaired surrogate
+            dst.put((byte) '?');
+        } else {
+            dst.put((byte) (0xE0 | (c >> 12)));
+            dst.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            dst.put((byte) (0x80 | (c & 0x3F)));
+        }
+
+        return index;
+    }
+
+    private static void putLong(ByteBuffer dst, long value) {
+        if (value == Long.MIN_VALUE) {
+            putAscii(dst, "-9223372036854775808");
+            return;
+        }
+
+        if (value < 0) {
+            dst.put((byte) '-');
+            value = -value;
+        }
+
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+
+        for (; divisor > 0; divisor /= 10) {
+            dst.put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private static void putDouble(ByteBuffer dst, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Value is not finite: " + value);
+        }
+
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            putLong(dst, (long) value);
+            return;
+        }
+
+        // Shortest representation of the value, without the exponent (e.g. 1.0E-5)
+        putAscii(dst, BigDecimal.valueOf(value).stripTrailingZeros().toPlainString());
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.statsd;
+
+import java.util.Map;
+
+/**
+ * A single StatsD sample awaiting encoding by the {@link BatchingStatsdClient}'s sender.
+ */
+final class StatsdMetric {
+    private final Type type;
+    private final String name;
+    private final long longValue;
+    private final double doubleValue;
+    private final double sampleRate;
+    private final Map<String, String> tags;
+
+    private StatsdMetric(Type type, String name, long longValue, double doubleValue, double sampleRate, Map<String, String> tags) {
+        this.type = type;
+        this.name = name;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+        this.sampleRate = sampleRate;
+        this.tags = tags;
+    }
+
+    static StatsdMetric count(String name, long value, double sampleRate, Map<String, String> tags) {
+        return new StatsdMetric(Type.COUNT, name, value, 0, sampleRate, tags);
+    }
+
+    static StatsdMetric gauge(String name, double value, double sampleRate, Map<String, String> tags) {
+        return new StatsdMetric(Type.GAUGE, name, 0, value, sampleRate, tags);
+    }
+
+    static StatsdMetric timer(String name, long millis, double sampleRate, Map<String, String> tags) {
+        return new StatsdMetric(Type.TIMER, name, millis, 0, sampleRate, tags);
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getLongValue() {
+        return longValue;
+    }
+
+    double getDoubleValue() {
+        return doubleValue;
+    }
+
+    double getSampleRate() {
+        return sampleRate;
+    }
+
+    Map<String, String> getTags() {
+        return tags;
+    }
+
+    enum Type {
+        COUNT("c"),
+        GAUGE("g"),
+        TIMER("ms");
+
+        private final String suffix;
+
+        Type(String suffix) {
+            this.suffix = suffix;
+        }
+
+        String getSuffix() {
+            return suffix;
+        }
+    }
+}
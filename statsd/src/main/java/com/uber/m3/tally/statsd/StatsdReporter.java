@@ -28,6 +28,7 @@ import com.uber.m3.util.Duration;
 import com.uber.m3.tally.StatsReporter;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A StatsD reporter
@@ -36,10 +37,20 @@ public class StatsdReporter implements StatsReporter {
     private static final int DEFAULT_SAMPLE_RATE = 1;
     private static final int DEFAULT_HISTOGRAM_BUCKET_NAME_PRECISION = 6;
 
+    // NOTE: Exactly one of the clients is set
     private StatsDClient statsdClient;
+    private BatchingStatsdClient batchingClient;
     private double sampleRate;
     private String bucketFmt;
 
+    // Per-bucket metric names cached by histogram's name and then its (equal) buckets, sparing formatting
+    // on every flush. Histograms of the same name (e.g. in differently tagged scopes) may differ in buckets,
+    // while equal buckets, even if created for every tagged scope, share the names
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Buckets, HistogramBucketNames>> valueBucketNames =
+        new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Buckets, HistogramBucketNames>> durationBucketNames =
+        new ConcurrentHashMap<>();
+
     /**
      * Create a StatsD reporter
      * @param statsd                       a DogStatsD client
@@ -61,9 +72,31 @@ public class StatsdReporter implements StatsReporter {
         this(statsd, DEFAULT_SAMPLE_RATE, DEFAULT_HISTOGRAM_BUCKET_NAME_PRECISION);
     }
 
+    /**
+     * Create a tag-aware StatsD reporter backed by the built-in batching client
+     * @param client                       a batching (DogStatsD) client
+     * @param sampleRate                   the sample rate
+     * @param histogramBucketNamePrecision precision of histogram bucket
+     */
+    public StatsdReporter(BatchingStatsdClient client, double sampleRate, int histogramBucketNamePrecision) {
+        batchingClient = client;
+
+        this.sampleRate = sampleRate;
+        bucketFmt = String.format("%%.%df", histogramBucketNamePrecision);
+    }
+
+    /**
+     * Create a tag-aware StatsD reporter backed by the built-in batching client using default option values
+     * @param client a batching (DogStatsD) client
+     */
+    public StatsdReporter(BatchingStatsdClient client) {
+        this(client, DEFAULT_SAMPLE_RATE, DEFAULT_HISTOGRAM_BUCKET_NAME_PRECISION);
+    }
+
     @Override
     public Capabilities capabilities() {
-        return CapableOf.REPORTING;
+        // NOTE: Only the batching client reports timers along with the sample rate
+        return batchingClient != null ? CapableOf.REPORTING_TAGGING_SAMPLE_RATES : CapableOf.REPORTING;
     }
 
     @Override
@@ -73,25 +106,47 @@ public class StatsdReporter implements StatsReporter {
 
     @Override
     public void close() {
-        statsdClient.stop();
+        if (batchingClient != null) {
+            batchingClient.close();
+        } else {
+            statsdClient.stop();
+        }
     }
 
     @Override
     public void reportCounter(String name, Map<String, String> tags, long value) {
-        // We don't support tags for StatsD
-        statsdClient.count(name, value, sampleRate);
+        count(name, tags, value);
     }
 
     @Override
     public void reportGauge(String name, Map<String, String> tags, double value) {
-        // We don't support tags for StatsD
-        statsdClient.gauge(name, value, sampleRate);
+        if (batchingClient != null) {
+            batchingClient.gauge(name, value, sampleRate, tags);
+        } else {
+            // We don't support tags for StatsD
+            statsdClient.gauge(name, value, sampleRate);
+        }
     }
 
     @Override
     public void reportTimer(String name, Map<String, String> tags, Duration interval) {
-        // We don't support tags for StatsD
-        statsdClient.time(name, interval.toMillis(), sampleRate);
+        if (batchingClient != null) {
+            batchingClient.time(name, interval.toMillis(), sampleRate, tags);
+        } else {
+            // We don't support tags for StatsD
+            statsdClient.time(name, interval.toMillis(), sampleRate);
+        }
+    }
+
+    @Override
+    public void reportTimer(String name, Map<String, String> tags, Duration interval, double sampleRate) {
+        if (batchingClient != null) {
+            batchingClient.time(name, interval.toMillis(), this.sampleRate, sampleRate, tags);
+        } else {
+            // The client samples on its own, with no way to pass the rate the interval has
+            // been sampled at, hence it's reported once, as is
+            StatsReporter.super.reportTimer(name, tags, interval, sampleRate);
+        }
     }
 
     @Override
@@ -103,16 +158,23 @@ public class StatsdReporter implements StatsReporter {
         double bucketUpperBound,
         long samples
     ) {
-        // We don't support tags for StatsD
-        statsdClient.count(
-            bucketString(
+        HistogramBucketNames bucketNames = bucketNamesOf(valueBucketNames, name, buckets);
+        if (bucketNames == null) {
+            bucketNames = HistogramBucketNames.ofValues(name, buckets, this::valueBucketString);
+            cache(valueBucketNames, name, buckets, bucketNames);
+        }
+
+        String bucketName = bucketNames.get(bucketLowerBound, bucketUpperBound);
+        if (bucketName == null) {
+            // Bounds do not match any of the buckets
+            bucketName = bucketString(
                 name,
                 valueBucketString(bucketLowerBound),
                 valueBucketString(bucketUpperBound)
-            ),
-            samples,
-            sampleRate
-        );
+            );
+        }
+
+        count(bucketName, tags, samples);
     }
 
     @Override
@@ -124,16 +186,51 @@ public class StatsdReporter implements StatsReporter {
         Duration bucketUpperBound,
         long samples
     ) {
-        // We don't support tags for StatsD
-        statsdClient.count(
-            bucketString(
+        HistogramBucketNames bucketNames = bucketNamesOf(durationBucketNames, name, buckets);
+        if (bucketNames == null) {
+            bucketNames = HistogramBucketNames.ofDurations(name, buckets, this::durationBucketString);
+            cache(durationBucketNames, name, buckets, bucketNames);
+        }
+
+        String bucketName = bucketNames.get(bucketLowerBound, bucketUpperBound);
+        if (bucketName == null) {
+            // Bounds do not match any of the buckets
+            bucketName = bucketString(
                 name,
                 durationBucketString(bucketLowerBound),
                 durationBucketString(bucketUpperBound)
-            ),
-            samples,
-            sampleRate
-        );
+            );
+        }
+
+        count(bucketName, tags, samples);
+    }
+
+    private static HistogramBucketNames bucketNamesOf(
+        ConcurrentHashMap<String, ConcurrentHashMap<Buckets, HistogramBucketNames>> cache,
+        String name,
+        Buckets buckets
+    ) {
+        ConcurrentHashMap<Buckets, HistogramBucketNames> cached = cache.get(name);
+
+        return cached == null ? null : cached.get(buckets);
+    }
+
+    private static void cache(
+        ConcurrentHashMap<String, ConcurrentHashMap<Buckets, HistogramBucketNames>> cache,
+        String name,
+        Buckets buckets,
+        HistogramBucketNames bucketNames
+    ) {
+        cache.computeIfAbsent(name, ignored -> new ConcurrentHashMap<>()).putIfAbsent(buckets, bucketNames);
+    }
+
+    private void count(String name, Map<String, String> tags, long value) {
+        if (batchingClient != null) {
+            batchingClient.count(name, value, sampleRate, tags);
+        } else {
+            // We don't support tags for StatsD
+            statsdClient.count(name, value, sampleRate);
+        }
     }
 
     private String bucketString(String name, String lowerBound, String upperBound) {
@@ -0,0 +1,179 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.statsd;
+
+import com.uber.m3.util.ImmutableMap;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchingStatsdClientTest {
+    private static final ImmutableMap<String, String> TAGS = ImmutableMap.of("env", "test");
+
+    @Test
+    public void tagsAndBatching() throws Exception {
+        final int port = 4435;
+        final int lines = 1000;
+
+        Set<String> expectedStrs = new HashSet<>();
+        expectedStrs.add("statsd-test.count:1|c|#env:test");
+
+        StatsdAssertingUdpServer server = new StatsdAssertingUdpServer("localhost", port, expectedStrs, lines, false);
+        Thread serverThread = startServer(server);
+
+        BatchingStatsdClient client =
+            new BatchingStatsdClient.Builder("localhost", port)
+                .prefix("statsd-test")
+                .maxQueueSize(lines)
+                .build();
+
+        for (int i = 0; i < lines; ++i) {
+            client.count("count", 1, 1, TAGS);
+        }
+
+        client.close();
+        serverThread.join();
+
+        assertEquals(lines, server.getReceivedLines());
+        assertEquals(0, client.getDroppedMetricsCount());
+        assertEquals(0, client.getSendErrorsCount());
+        assertEquals(server.getReceivedPackets(), client.getSentPacketsCount());
+
+        // Multiple lines have to be packed into a single datagram
+        assertTrue(client.getSentPacketsCount() < lines);
+    }
+
+    @Test
+    public void packetSizeLimit() throws Exception {
+        final int port = 4436;
+        final int maxPacketSize = 128;
+        final int lines = 200;
+
+        Set<String> expectedStrs = Collections.singleton("statsd-test.timer:250|ms|#env:test");
+
+        StatsdAssertingUdpServer server = new StatsdAssertingUdpServer("localhost", port, expectedStrs, lines, false);
+        Thread serverThread = startServer(server);
+
+        BatchingStatsdClient client =
+            new BatchingStatsdClient.Builder("localhost", port)
+                .prefix("statsd-test")
+                .maxPacketSizeBytes(maxPacketSize)
+                .maxQueueSize(lines + 1)
+                .build();
+
+        for (int i = 0; i < lines; ++i) {
+            client.time("timer", 250, 1, TAGS);
+        }
+
+        // Line doesn't fit into a single packet
+        client.count(String.join("", Collections.nCopies(maxPacketSize, "x")), 1, 1, null);
+
+        client.close();
+        serverThread.join();
+
+        assertEquals(lines, server.getReceivedLines());
+        assertEquals(1, client.getOversizedMetricsCount());
+        assertTrue(client.getSentBytesCount() <= client.getSentPacketsCount() * maxPacketSize);
+    }
+
+    @Test
+    public void skipsFailedMetrics() throws Exception {
+        final int port = 4439;
+        final int lines = 10;
+
+        Set<String> expectedStrs = Collections.singleton("statsd-test.count:1|c|#env:test");
+
+        StatsdAssertingUdpServer server = new StatsdAssertingUdpServer("localhost", port, expectedStrs, lines, false);
+        Thread serverThread = startServer(server);
+
+        BatchingStatsdClient client =
+            new BatchingStatsdClient.Builder("localhost", port)
+                .prefix("statsd-test")
+                .build();
+
+        // Sample without a name fails to be encoded, and non-finite gauge can't be
+        client.count(null, 1, 1, TAGS);
+        client.gauge("gauge", Double.NaN, 1, TAGS);
+
+        for (int i = 0; i < lines; ++i) {
+            client.count("count", 1, 1, TAGS);
+        }
+
+        client.close();
+        serverThread.join();
+
+        assertEquals(lines, server.getReceivedLines());
+        assertEquals(2, client.getFailedMetricsCount());
+        assertEquals(0, client.getDroppedMetricsCount());
+    }
+
+    @Test
+    public void dropsWhenQueueIsFull() throws Exception {
+        final int port = 4437;
+        final int lines = 2000;
+
+        Set<String> expectedStrs = Collections.singleton("count:1|c");
+
+        StatsdAssertingUdpServer server = new StatsdAssertingUdpServer("localhost", port, expectedStrs, lines, true);
+        Thread serverThread = startServer(server);
+
+        BatchingStatsdClient client =
+            new BatchingStatsdClient.Builder("localhost", port)
+                .maxQueueSize(1)
+                .build();
+
+        for (int i = 0; i < lines; ++i) {
+            client.count("count", 1, 1, null);
+        }
+
+        client.close();
+        serverThread.join();
+
+        // Every line is either delivered, or accounted for as dropped
+        assertEquals(lines, server.getReceivedLines() + client.getDroppedMetricsCount());
+    }
+
+    @Test
+    public void dropsAfterClose() throws IOException {
+        BatchingStatsdClient client = new BatchingStatsdClient.Builder("localhost", 4438).build();
+        client.close();
+
+        client.gauge("gauge", 1, 1, null);
+
+        assertEquals(1, client.getDroppedMetricsCount());
+    }
+
+    private static Thread startServer(StatsdAssertingUdpServer server) throws InterruptedException {
+        Thread serverThread = new Thread(server);
+        serverThread.start();
+
+        // Give server a chance to bind before sending anything
+        Thread.sleep(100);
+
+        return serverThread;
+    }
+}
@@ -0,0 +1,55 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.statsd;
+
+import com.uber.m3.tally.DurationBuckets;
+import com.uber.m3.tally.ValueBuckets;
+import com.uber.m3.util.Duration;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class HistogramBucketNamesTest {
+    @Test
+    public void valueBucketNames() {
+        ValueBuckets buckets = ValueBuckets.linear(0, 10, 3);
+        HistogramBucketNames names = HistogramBucketNames.ofValues("hist", buckets, v -> String.valueOf(v.intValue()));
+
+        assertEquals("hist.0-10", names.get(0, 10));
+        assertEquals("hist.10-20", names.get(10, 20));
+        assertSame(names.get(10, 20), names.get(10, 20));
+
+        // Bounds not designating any of the buckets
+        assertNull(names.get(5, 10));
+        assertNull(names.get(10, 15));
+    }
+
+    @Test
+    public void durationBucketNames() {
+        DurationBuckets buckets = DurationBuckets.linear(Duration.ZERO, Duration.ofMillis(10), 3);
+        HistogramBucketNames names = HistogramBucketNames.ofDurations("hist", buckets, Duration::toString);
+
+        assertEquals("hist.10ms-20ms", names.get(Duration.ofMillis(10), Duration.ofMillis(20)));
+        assertNull(names.get(Duration.ofMillis(19), Duration.ofMillis(20)));
+    }
+}
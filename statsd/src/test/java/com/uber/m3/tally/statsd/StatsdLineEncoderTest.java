@@ -0,0 +1,122 @@
+// Copyright (c) 2021 Uber Technologies, Inc.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.uber.m3.tally.statsd;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StatsdLineEncoderTest {
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    @Test
+    public void encodeTypes() {
+        StatsdLineEncoder encoder = new StatsdLineEncoder("prefix");
+
+        assertEquals("prefix.count:-42|c", encode(encoder, StatsdMetric.count("count", -42, 1, null)));
+        assertEquals("prefix.gauge:1.5|g", encode(encoder, StatsdMetric.gauge("gauge", 1.5, 1, null)));
+        assertEquals("prefix.gauge:3|g", encode(encoder, StatsdMetric.gauge("gauge", 3.0, 1, null)));
+        assertEquals("prefix.timer:250|ms", encode(encoder, StatsdMetric.timer("timer", 250, 1, null)));
+        assertEquals("prefix.zero:0|c", encode(encoder, StatsdMetric.count("zero", 0, 1, null)));
+        assertEquals(
+            "prefix.max:9223372036854775807|c",
+            encode(encoder, StatsdMetric.count("max", Long.MAX_VALUE, 1, null))
+        );
+        assertEquals(
+            "prefix.min:-9223372036854775808|c",
+            encode(encoder, StatsdMetric.count("min", Long.MIN_VALUE, 1, null))
+        );
+    }
+
+    @Test
+    public void encodeDoubles() {
+        StatsdLineEncoder encoder = new StatsdLineEncoder(null);
+
+        assertEquals("gauge:0.00001|g", encode(encoder, StatsdMetric.gauge("gauge", 1e-5, 1, null)));
+        assertEquals("gauge:-0.1|g", encode(encoder, StatsdMetric.gauge("gauge", -0.1, 1, null)));
+        assertEquals("gauge:10000000000|g", encode(encoder, StatsdMetric.gauge("gauge", 1e10, 1, null)));
+        assertEquals(
+            "gauge:100000000000000000000|g",
+            encode(encoder, StatsdMetric.gauge("gauge", 1e20, 1, null))
+        );
+        assertEquals("count:1|c|@0.001", encode(encoder, StatsdMetric.count("count", 1, 1e-3, null)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNonFinite() {
+        new StatsdLineEncoder(null).encode(buffer, StatsdMetric.gauge("gauge", Double.NaN, 1, null));
+    }
+
+    @Test
+    public void encodeSampleRateAndTags() {
+        StatsdLineEncoder encoder = new StatsdLineEncoder(null);
+
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("env", "test");
+        tags.put("host", "localhost:8080");
+        tags.put("flag", "");
+
+        assertEquals(
+            "count:7|c|@0.25|#env:test,host:localhost:8080,flag",
+            encode(encoder, StatsdMetric.count("count", 7, 0.25, tags))
+        );
+    }
+
+    @Test
+    public void sanitize() {
+        StatsdLineEncoder encoder = new StatsdLineEncoder("");
+
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("k|ey", "v:a,l|ue");
+        tags.put("ключ", "значение");
+
+        assertEquals(
+            "a_b_c_d:1|c|#k_ey:v:a_l_ue,ключ:значение",
+            encode(encoder, StatsdMetric.count("a:b|c#d", 1, 1, tags))
+        );
+    }
+
+    @Test
+    public void overflow() {
+        StatsdLineEncoder encoder = new StatsdLineEncoder(null);
+        ByteBuffer small = ByteBuffer.allocate(7);
+        small.put((byte) 'x');
+
+        assertFalse(encoder.encode(small, StatsdMetric.count("too-long-name", 1, 1, null)));
+        assertEquals(1, small.position());
+
+        assertTrue(encoder.encode(small, StatsdMetric.count("ok", 1, 1, null)));
+        assertEquals(7, small.position());
+    }
+
+    private String encode(StatsdLineEncoder encoder, StatsdMetric metric) {
+        buffer.clear();
+        assertTrue(encoder.encode(buffer, metric));
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+}
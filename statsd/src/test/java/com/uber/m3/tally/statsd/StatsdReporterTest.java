@@ -27,8 +27,10 @@ import com.uber.m3.tally.CapableOf;
 import com.uber.m3.tally.DurationBuckets;
 import com.uber.m3.tally.ValueBuckets;
 import com.uber.m3.util.Duration;
+import com.uber.m3.util.ImmutableMap;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.HashSet;
 
 import static org.junit.Assert.assertEquals;
@@ -99,9 +101,95 @@ public class StatsdReporterTest {
     }
 
     @Test
-    public void capabilities() {
+    public void batchingClient() throws IOException, InterruptedException {
+        HashSet<String> expectedStrs = new HashSet<>();
+        expectedStrs.add("statsd-test.statsd-count:4|c|#env:test");
+        expectedStrs.add("statsd-test.statsd-gauge:1.5|g|#env:test");
+        expectedStrs.add("statsd-test.statsd-timer:250|ms|#env:test");
+        expectedStrs.add("statsd-test.statsd-sampled-timer:250|ms|@0.25|#env:test");
+        expectedStrs.add("statsd-test.statsd-histvalue.2000.000000-3000.000000:510|c|#env:test");
+        expectedStrs.add("statsd-test.statsd-histvalue.20.000000-30.000000:7|c|#env:other");
+        expectedStrs.add("statsd-test.statsd-histvalue.2000.000000-3000.000000:3|c|#env:test");
+
+        for (int i = 0; i < 16; i++) {
+            expectedStrs.add("statsd-test.statsd-histvalue.2000.000000-3000.000000:1|c|#env:scope-" + i);
+        }
+
+        StatsdAssertingUdpServer server = new StatsdAssertingUdpServer("localhost", PORT + 1, expectedStrs);
+
+        Thread serverThread = new Thread(server);
+        serverThread.start();
+
+        // Give server a chance to bind before sending anything
+        Thread.sleep(100);
+
+        reporter = new StatsdReporter(
+            new BatchingStatsdClient.Builder("localhost", PORT + 1)
+                .prefix("statsd-test")
+                .build()
+        );
+
+        ImmutableMap<String, String> tags = ImmutableMap.of("env", "test");
+
+        reporter.reportCounter("statsd-count", tags, 4);
+        reporter.reportGauge("statsd-gauge", tags, 1.5);
+        reporter.reportTimer("statsd-timer", tags, Duration.ofMillis(250));
+        reporter.reportTimer("statsd-sampled-timer", tags, Duration.ofMillis(250), 0.25);
+        reporter.reportHistogramValueSamples(
+            "statsd-histvalue",
+            tags,
+            ValueBuckets.linear(0, 1000, 6),
+            2000,
+            3000,
+            510
+        );
+
+        // Histograms of the same name may differ in buckets, e.g. in differently tagged scopes
+        reporter.reportHistogramValueSamples(
+            "statsd-histvalue",
+            ImmutableMap.of("env", "other"),
+            ValueBuckets.linear(0, 10, 6),
+            20,
+            30,
+            7
+        );
+        reporter.reportHistogramValueSamples(
+            "statsd-histvalue",
+            tags,
+            ValueBuckets.linear(0, 1000, 6),
+            2000,
+            3000,
+            3
+        );
+
+        // Equal buckets, although created for every tagged scope, share the names
+        for (int i = 0; i < 16; i++) {
+            reporter.reportHistogramValueSamples(
+                "statsd-histvalue",
+                ImmutableMap.of("env", "scope-" + i),
+                ValueBuckets.linear(0, 1000, 6),
+                2000,
+                3000,
+                1
+            );
+        }
+
+        reporter.close();
+        serverThread.join();
+
+        assertEquals(expectedStrs.size(), server.getReceivedLines());
+    }
+
+    @Test
+    public void capabilities() throws IOException {
         reporter = new StatsdReporter(new NoOpStatsDClient());
 
         assertEquals(CapableOf.REPORTING, reporter.capabilities());
+
+        reporter = new StatsdReporter(new BatchingStatsdClient.Builder("localhost", PORT).build());
+
+        assertEquals(CapableOf.REPORTING_TAGGING_SAMPLE_RATES, reporter.capabilities());
+
+        reporter.close();
     }
 }